@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-heap cache of expanded LESS imports, bounded by the total size of the cached text.  Each
+ * expanded import is cached with the paths of the files it imports in turn, and with the
+ * last-modified state of the imported file and of those files, so that it is invalidated when any
+ * file it was expanded from changes.  When space is needed, the least recently used imports are
+ * evicted.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class LessImportCache {
+
+  private final long maximumSize;
+  private final LinkedHashMap<String, ExpandedImport> entries = new LinkedHashMap<>(16, 0.75f,
+          true);
+  private long currentSize;
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maximumSize Maximum total size, in bytes, of cached imports.
+   */
+  public LessImportCache(final long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Retrieves an expanded import, if it was cached for the current last-modified state of the
+   * imported file and of the files it imports.  Imports cached for another state are removed.
+   *
+   * @param path Path of the imported file.
+   * @param stamp Current last-modified state of the imported file and of the files it imports.
+   * @return Expanded import, or null if the file's current expansion is not cached.
+   */
+  @Nullable
+  public synchronized ExpandedImport get(@Nonnull final String path,
+          @Nonnull final String stamp) {
+    final ExpandedImport expandedImport = entries.get(path);
+    if (expandedImport == null) {
+      return null;
+    }
+    if (!expandedImport.stamp.equals(stamp)) {
+      remove(path);
+      return null;
+    }
+    return expandedImport;
+  }
+
+  /**
+   * Paths of the files a cached import was expanded from, which its stamp must cover.
+   *
+   * @param path Path of the imported file.
+   * @return Paths of the files the imported file imports, or null if it is not cached.
+   */
+  @Nullable
+  public synchronized Set<String> getImportedPaths(@Nonnull final String path) {
+    final ExpandedImport expandedImport = entries.get(path);
+    if (expandedImport == null) {
+      return null;
+    }
+    return expandedImport.importedPaths;
+  }
+
+  /**
+   * Caches an expanded import, evicting the least recently used imports to make space.
+   *
+   * @param path Path of the imported file.
+   * @param stamp Last-modified state of the imported file and of the files it imports.
+   * @param content Expanded content of the imported file.
+   * @param importedPaths Paths of the files the imported file imports, directly or indirectly.
+   * @return Whether the import was cached.
+   */
+  public synchronized boolean put(@Nonnull final String path, @Nonnull final String stamp,
+          @Nonnull final String content, @Nonnull final Set<String> importedPaths) {
+    final ExpandedImport expandedImport = new ExpandedImport(stamp, content, importedPaths);
+    remove(path);
+    if (expandedImport.getSize() > maximumSize) {
+      return false;
+    }
+    final Iterator<ExpandedImport> iterator = entries.values().iterator();
+    while (currentSize + expandedImport.getSize() > maximumSize && iterator.hasNext()) {
+      currentSize -= iterator.next().getSize();
+      iterator.remove();
+    }
+    entries.put(path, expandedImport);
+    currentSize += expandedImport.getSize();
+    return true;
+  }
+
+  /**
+   * Removes the imports expanded from a changed resource.  An import is removed when the changed
+   * path is the imported file, is within it (such as its jcr:content), contains it, or is any of
+   * the files the import was expanded from.
+   *
+   * @param changedPath Path of the changed resource.
+   * @return Number of imports removed.
+   */
+  public synchronized int invalidate(@Nonnull final String changedPath) {
+    int removedCount = 0;
+    final Iterator<Map.Entry<String, ExpandedImport>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, ExpandedImport> entry = iterator.next();
+      if (isAffected(entry.getKey(), changedPath) || entry.getValue().importedPaths.stream()
+              .anyMatch(importedPath -> isAffected(importedPath, changedPath))) {
+        currentSize -= entry.getValue().getSize();
+        iterator.remove();
+        removedCount++;
+      }
+    }
+    return removedCount;
+  }
+
+  /**
+   * Removes all cached imports.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Total size, in bytes, of cached imports.
+   *
+   * @return Total size, in bytes, of cached imports.
+   */
+  public synchronized long getSize() {
+    return currentSize;
+  }
+
+  /**
+   * Number of cached imports.
+   *
+   * @return Number of cached imports.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  private void remove(@Nonnull final String path) {
+    final ExpandedImport removedImport = entries.remove(path);
+    if (removedImport != null) {
+      currentSize -= removedImport.getSize();
+    }
+  }
+
+  private static boolean isAffected(@Nonnull final String path,
+          @Nonnull final String changedPath) {
+    return path.equals(changedPath) || changedPath.startsWith(path + "/") || path.startsWith(
+            changedPath + "/");
+  }
+
+  /**
+   * Expanded content of an imported LESS file, with the files it was expanded from.
+   */
+  public static class ExpandedImport {
+
+    private final String stamp;
+    private final String content;
+    private final Set<String> importedPaths;
+
+    ExpandedImport(@Nonnull final String stamp, @Nonnull final String content,
+            @Nonnull final Set<String> importedPaths) {
+      this.stamp = stamp;
+      this.content = content;
+      this.importedPaths = Collections.unmodifiableSet(new LinkedHashSet<>(importedPaths));
+    }
+
+    /**
+     * Expanded content of the imported file.
+     *
+     * @return Expanded content of the imported file.
+     */
+    @Nonnull
+    public String getContent() {
+      return content;
+    }
+
+    /**
+     * Paths of the files the imported file imports, directly or indirectly.
+     *
+     * @return Paths of the files the imported file imports.
+     */
+    @Nonnull
+    public Set<String> getImportedPaths() {
+      return importedPaths;
+    }
+
+    long getSize() {
+      long size = 2L * (stamp.length() + content.length());
+      for (final String importedPath : importedPaths) {
+        size += 2L * importedPath.length();
+      }
+      return size;
+    }
+  }
+}
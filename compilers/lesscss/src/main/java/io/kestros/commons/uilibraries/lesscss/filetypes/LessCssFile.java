@@ -29,17 +29,25 @@ import io.kestros.commons.structuredslingmodels.filetypes.FileType;
 import io.kestros.commons.structuredslingmodels.utils.FileModelUtils;
 import io.kestros.commons.uilibraries.api.models.ScriptFile;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.BaseScriptFile;
+import io.kestros.commons.uilibraries.lesscss.services.LessImportCacheService;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Sling Model for .less files.
+ * Sling Model for .less files.  Imported files are expanded inline, with a {@link
+ * LessImportResolver} that expands each imported file once and detects import cycles.  Expanded
+ * imports are shared between compilations through the {@link LessImportCacheService}, when it is
+ * available.
  */
 @SuppressFBWarnings({"RI_REDUNDANT_INTERFACES", "IMC_IMMATURE_CLASS_NO_TOSTRING"})
 @KestrosModel
@@ -49,6 +57,9 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
 
   private static final Logger LOG = LoggerFactory.getLogger(LessCssFile.class);
 
+  @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+  private LessImportCacheService importCacheService;
+
   @Nonnull
   static String getFileNameFromImport(@Nonnull final String importLine) {
     final String[] importLineParts = importLine.split("@import \"");
@@ -72,6 +83,27 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
     return StringUtils.isNotEmpty(getFileNameFromImport(line));
   }
 
+  /**
+   * Names of the files imported by LESS source, in import order, with the import syntax that is
+   * expanded by {@link #getFileContent()}.  Lines with comments are not imports.
+   *
+   * @param reader LESS source.
+   * @return Names of the imported files, relative to the folder of the importing file.
+   * @throws IOException Failed to read the source.
+   */
+  @Nonnull
+  public static Set<String> getImportedFileNames(@Nonnull final BufferedReader reader)
+          throws IOException {
+    final Set<String> importedFileNames = new LinkedHashSet<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (isImportLine(line)) {
+        importedFileNames.add(getFileNameFromImport(line));
+      }
+    }
+    return importedFileNames;
+  }
+
   @Nonnull
   @Override
   public FileType getFileType() {
@@ -81,6 +113,31 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
   @Nonnull
   @Override
   public String getFileContent() throws JcrFileReadException {
+    return getFileContent(getImportResolver());
+  }
+
+  /**
+   * Resolver for the imports of this file, which shares expanded imports through the {@link
+   * LessImportCacheService}, when it is available.
+   *
+   * @return Resolver for the imports of this file.
+   */
+  @Nonnull
+  public LessImportResolver getImportResolver() {
+    return new LessImportResolver(getPath(), importCacheService);
+  }
+
+  /**
+   * Content of this file, with imports expanded by a resolver.  After reading, {@link
+   * LessImportResolver#getImportedPaths()} lists every file the content was expanded from.
+   *
+   * @param importResolver Resolver for the imports of this file.
+   * @return Content of this file, with imports expanded.
+   * @throws JcrFileReadException Failed to read this file, or one of its imports.
+   */
+  @Nonnull
+  public String getFileContent(@Nonnull final LessImportResolver importResolver)
+          throws JcrFileReadException {
     final StringBuilder builder = new StringBuilder();
 
     final BufferedReader bufferedReader = getBufferedReader();
@@ -91,7 +148,7 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
       while ((line = bufferedReader.readLine()) != null) {
 
         if (isImportLine(line)) {
-          line = getResolvedImportLine(line);
+          line = getResolvedImportLine(line, importResolver);
         }
         if (!firstLine) {
           line = "\n" + line;
@@ -115,7 +172,13 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
   }
 
   @Nonnull
-  String getResolvedImportLine(@Nonnull String line) {
+  String getResolvedImportLine(@Nonnull final String line) {
+    return getResolvedImportLine(line, getImportResolver());
+  }
+
+  @Nonnull
+  String getResolvedImportLine(@Nonnull String line,
+          @Nonnull final LessImportResolver importResolver) {
     final String filename = getFileNameFromImport(line);
     try {
       final BaseResource parentResource = getParent();
@@ -123,7 +186,10 @@ public class LessCssFile extends BaseScriptFile implements ScriptFile {
       final LessCssFile importedFile = FileModelUtils.getChildAsFileType(filename, parentResource,
               LessCssFile.class);
 
-      line = importedFile.getFileContent();
+      final String importedContent = importResolver.resolve(importedFile);
+      if (importedContent != null) {
+        line = importedContent;
+      }
     } catch (final ModelAdaptionException exception) {
       LOG.error("Unable to import Less script {} for {}. {}", filename.replaceAll("[\r\n]", ""),
               getPath().replaceAll("[\r\n]", ""),
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.filetypes;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.structuredslingmodels.exceptions.JcrFileReadException;
+import io.kestros.commons.uilibraries.lesscss.cache.LessImportCache.ExpandedImport;
+import io.kestros.commons.uilibraries.lesscss.services.LessImportCacheService;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the @import statements of a LESS file and of the files it imports.  Each imported file
+ * is read and expanded once, however many files import it, and imports that would lead back to a
+ * file that is still being expanded are reported as cycles instead of being followed.
+ *
+ * <p>
+ * When a {@link LessImportCacheService} is available, expanded imports are also looked up in and
+ * added to its node-wide cache, so that partials shared by many libraries are expanded once.
+ * Shared imports are stamped with the last-modified state of the imported file and of every file
+ * it imports, so a change to a nested import is noticed even if the cache missed its resource
+ * change.  Imports whose expansion was cut short by a cycle are not shared.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class LessImportResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LessImportResolver.class);
+
+  private static final String JCR_CONTENT = "jcr:content";
+  private static final String PROPERTY_LAST_MODIFIED = "jcr:lastModified";
+  private static final String MISSING_STAMP = "-";
+
+  private final LessImportCacheService importCacheService;
+  private final Map<String, String> expandedImports = new HashMap<>();
+  private final Map<String, Set<String>> nestedImportedPaths = new HashMap<>();
+  private final Map<String, Set<String>> expandingPaths = new LinkedHashMap<>();
+  private final Set<String> cyclicPaths = new HashSet<>();
+  private final Set<String> importedPaths = new LinkedHashSet<>();
+
+  /**
+   * Constructs a resolver for the imports of a LESS file.
+   *
+   * @param rootPath Path of the LESS file whose imports are resolved.
+   */
+  public LessImportResolver(@Nonnull final String rootPath) {
+    this(rootPath, null);
+  }
+
+  /**
+   * Constructs a resolver for the imports of a LESS file, which shares expanded imports through a
+   * node-wide cache.
+   *
+   * @param rootPath Path of the LESS file whose imports are resolved.
+   * @param importCacheService Node-wide cache of expanded imports.  Optional.
+   */
+  public LessImportResolver(@Nonnull final String rootPath,
+          @Nullable final LessImportCacheService importCacheService) {
+    this.importCacheService = importCacheService;
+    expandingPaths.put(rootPath, new LinkedHashSet<>());
+  }
+
+  /**
+   * Expanded content of an imported LESS file.
+   *
+   * @param importedFile Imported LESS file.
+   * @return Expanded content of the imported file, or null if importing it would create a cycle.
+   * @throws JcrFileReadException Failed to read the imported file, or one of its imports.
+   */
+  @Nullable
+  public String resolve(@Nonnull final LessCssFile importedFile) throws JcrFileReadException {
+    final String path = importedFile.getPath();
+    String expandedImport = expandedImports.get(path);
+    if (expandedImport != null) {
+      addImportedPaths(path, nestedImportedPaths.get(path));
+      return expandedImport;
+    }
+    if (expandingPaths.containsKey(path)) {
+      LOG.error("Unable to import Less script {}. Import cycle {} -> {}.",
+              path.replaceAll("[\r\n]", ""),
+              String.join(" -> ", expandingPaths.keySet()).replaceAll("[\r\n]", ""),
+              path.replaceAll("[\r\n]", ""));
+      cyclicPaths.addAll(expandingPaths.keySet());
+      addImportedPaths(path, Collections.emptySet());
+      return null;
+    }
+    String fileStamp = null;
+    if (importCacheService != null) {
+      fileStamp = getStamp(importedFile);
+    }
+    if (fileStamp != null) {
+      final ExpandedImport cachedImport = getCachedImport(importedFile, fileStamp);
+      if (cachedImport != null) {
+        expandedImports.put(path, cachedImport.getContent());
+        nestedImportedPaths.put(path, cachedImport.getImportedPaths());
+        addImportedPaths(path, cachedImport.getImportedPaths());
+        return cachedImport.getContent();
+      }
+    }
+    addImportedPaths(path, Collections.emptySet());
+    expandingPaths.put(path, new LinkedHashSet<>());
+    final Set<String> nestedPaths;
+    try {
+      expandedImport = importedFile.getFileContent(this);
+    } finally {
+      nestedPaths = expandingPaths.remove(path);
+    }
+    expandedImports.put(path, expandedImport);
+    nestedImportedPaths.put(path, nestedPaths);
+    if (fileStamp != null && !cyclicPaths.contains(path)) {
+      final String stamp = getStamp(importedFile, fileStamp, nestedPaths);
+      if (stamp != null) {
+        importCacheService.putExpandedImport(path, stamp, expandedImport, nestedPaths);
+      }
+    }
+    return expandedImport;
+  }
+
+  /**
+   * Shared expansion of an imported file, if it was cached for the current last-modified state of
+   * the file and of the files it imports.
+   */
+  @Nullable
+  private ExpandedImport getCachedImport(@Nonnull final LessCssFile importedFile,
+          @Nonnull final String fileStamp) {
+    final Set<String> cachedImportedPaths = importCacheService.getImportedPaths(
+            importedFile.getPath());
+    if (cachedImportedPaths == null) {
+      return null;
+    }
+    final String stamp = getStamp(importedFile, fileStamp, cachedImportedPaths);
+    if (stamp == null) {
+      return null;
+    }
+    return importCacheService.getExpandedImport(importedFile.getPath(), stamp);
+  }
+
+  /**
+   * Paths of all LESS files imported, directly or through other imports, in the order they were
+   * first imported.  Changes to any of these files change the expanded content.
+   *
+   * @return Paths of all imported LESS files.
+   */
+  @Nonnull
+  public Set<String> getImportedPaths() {
+    return Collections.unmodifiableSet(importedPaths);
+  }
+
+  /**
+   * Records an import, and the files it imports in turn, for every file being expanded.
+   */
+  private void addImportedPaths(@Nonnull final String path,
+          @Nonnull final Set<String> nestedPaths) {
+    importedPaths.add(path);
+    importedPaths.addAll(nestedPaths);
+    for (final Set<String> expandingImportedPaths : expandingPaths.values()) {
+      expandingImportedPaths.add(path);
+      expandingImportedPaths.addAll(nestedPaths);
+    }
+  }
+
+  /**
+   * Last-modified state of a LESS file, or null if it has no jcr:lastModified to validate cached
+   * imports against.
+   */
+  @Nullable
+  static String getStamp(@Nonnull final LessCssFile file) {
+    return getStamp(file.getResourceResolver().getResource(file.getPath() + "/" + JCR_CONTENT));
+  }
+
+  /**
+   * Last-modified state of a LESS file and of the files it imports, or null if one of them exists
+   * without a jcr:lastModified.  Imported files that no longer exist are stamped as missing.
+   */
+  @Nullable
+  static String getStamp(@Nonnull final LessCssFile file, @Nonnull final String fileStamp,
+          @Nonnull final Set<String> importedPaths) {
+    final StringBuilder stamp = new StringBuilder(fileStamp);
+    for (final String importedPath : importedPaths) {
+      final Resource importedResource = file.getResourceResolver().getResource(importedPath);
+      String importedStamp = MISSING_STAMP;
+      if (importedResource != null) {
+        importedStamp = getStamp(importedResource.getChild(JCR_CONTENT));
+        if (importedStamp == null) {
+          return null;
+        }
+      }
+      stamp.append('|').append(importedStamp);
+    }
+    return stamp.toString();
+  }
+
+  @Nullable
+  private static String getStamp(@Nullable final Resource contentResource) {
+    if (contentResource == null) {
+      return null;
+    }
+    final Calendar lastModified = contentResource.getValueMap().get(PROPERTY_LAST_MODIFIED,
+            Calendar.class);
+    if (lastModified == null) {
+      return null;
+    }
+    return String.valueOf(lastModified.getTimeInMillis());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services;
+
+import io.kestros.commons.uilibraries.lesscss.cache.LessImportCache.ExpandedImport;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Node-wide cache of expanded LESS imports, shared by every LESS compilation, so that partials
+ * imported by many libraries are read and expanded once.
+ */
+public interface LessImportCacheService {
+
+  /**
+   * Expanded import of a LESS file, if cached for the current last-modified state of the file and
+   * of the files it imports.
+   *
+   * @param path Path of the imported file.
+   * @param stamp Current last-modified state of the imported file and of the files it imports.
+   * @return Expanded import, or null if the file's current expansion is not cached.
+   */
+  @Nullable
+  ExpandedImport getExpandedImport(@Nonnull String path, @Nonnull String stamp);
+
+  /**
+   * Paths of the files a cached import was expanded from, which its stamp must cover.
+   *
+   * @param path Path of the imported file.
+   * @return Paths of the files the imported file imports, or null if it is not cached.
+   */
+  @Nullable
+  Set<String> getImportedPaths(@Nonnull String path);
+
+  /**
+   * Caches the expanded import of a LESS file.
+   *
+   * @param path Path of the imported file.
+   * @param stamp Last-modified state of the imported file and of the files it imports.
+   * @param content Expanded content of the imported file.
+   * @param importedPaths Paths of the files the imported file imports, directly or indirectly.
+   */
+  void putExpandedImport(@Nonnull String path, @Nonnull String stamp, @Nonnull String content,
+          @Nonnull Set<String> importedPaths);
+
+  /**
+   * Removes the imports expanded from a changed resource.
+   *
+   * @param changedPath Path of the changed resource.
+   */
+  void purgeExpandedImports(@Nonnull String changedPath);
+
+  /**
+   * Removes all cached imports.
+   */
+  void purgeAllExpandedImports();
+}
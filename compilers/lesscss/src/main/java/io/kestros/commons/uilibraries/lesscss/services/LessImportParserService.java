@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services;
+
+import io.kestros.commons.uilibraries.lesscss.filetypes.LessCssFile;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * Reads the files a LESS file imports, with the import syntax that {@link LessCssFile} expands, so
+ * that LESS dependencies can be tracked outside of this bundle without parsing LESS again.
+ */
+public interface LessImportParserService {
+
+  /**
+   * Names of the files a LESS file imports directly, in import order.
+   *
+   * @param fileResource LESS file resource.
+   * @return Names of the imported files, relative to the folder of the LESS file.  Empty if the
+   *     file could not be read.
+   */
+  @Nonnull
+  Set<String> getImportedFileNames(@Nonnull Resource fileResource);
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.uilibraries.lesscss.cache.LessImportCache;
+import io.kestros.commons.uilibraries.lesscss.cache.LessImportCache.ExpandedImport;
+import io.kestros.commons.uilibraries.lesscss.services.LessImportCacheService;
+import io.kestros.commons.uilibraries.lesscss.utils.ComponentPropertyUtils;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps expanded LESS imports in a {@link LessImportCache} shared by every LESS compilation on the
+ * node.  Imports are invalidated by resource changes to the files they were expanded from.  They
+ * are otherwise kept until the last-modified state of the imported file, or of any file it
+ * imports, changes, or until they are evicted.
+ */
+@SuppressFBWarnings("IMC_IMMATURE_CLASS_NO_TOSTRING")
+@Component(immediate = true,
+        service = {LessImportCacheService.class, ResourceChangeListener.class},
+        property = {ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED",
+                ResourceChangeListener.CHANGES + "=PROVIDER_ADDED",
+                ResourceChangeListener.CHANGES + "=PROVIDER_REMOVED",
+                ResourceChangeListener.PATHS + "=/apps",
+                ResourceChangeListener.PATHS + "=/etc/ui-frameworks",
+                ResourceChangeListener.PATHS + "=/etc/vendor-libraries",
+                ResourceChangeListener.PATHS + "=/libs/kestros"})
+public class LessImportCacheServiceImpl extends BaseServiceResolverService
+        implements LessImportCacheService, ResourceChangeListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LessImportCacheServiceImpl.class);
+
+  static final String PROPERTY_MAXIMUM_SIZE = "maximumSize";
+  static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024 * 1024;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  private volatile LessImportCache importCache = new LessImportCache(DEFAULT_MAXIMUM_SIZE);
+
+  @Nonnull
+  @Override
+  public String getDisplayName() {
+    return "LESS Import Cache Service";
+  }
+
+  @Override
+  public void activate(@Nonnull final ComponentContext componentContext) {
+    importCache = new LessImportCache(ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE));
+    super.activate(componentContext);
+  }
+
+  @Override
+  public void deactivate(@Nonnull final ComponentContext componentContext) {
+    purgeAllExpandedImports();
+    super.deactivate(componentContext);
+  }
+
+  @Nullable
+  @Override
+  public ExpandedImport getExpandedImport(@Nonnull final String path,
+          @Nonnull final String stamp) {
+    return importCache.get(path, stamp);
+  }
+
+  @Nullable
+  @Override
+  public Set<String> getImportedPaths(@Nonnull final String path) {
+    return importCache.getImportedPaths(path);
+  }
+
+  @Override
+  public void putExpandedImport(@Nonnull final String path, @Nonnull final String stamp,
+          @Nonnull final String content, @Nonnull final Set<String> importedPaths) {
+    importCache.put(path, stamp, content, importedPaths);
+  }
+
+  @Override
+  public void purgeExpandedImports(@Nonnull final String changedPath) {
+    final int removedCount = importCache.invalidate(changedPath);
+    if (removedCount > 0) {
+      LOG.debug("Purged {} expanded LESS imports affected by {}.", removedCount,
+              changedPath.replaceAll("[\r\n]", ""));
+    }
+  }
+
+  @Override
+  public void purgeAllExpandedImports() {
+    importCache.clear();
+  }
+
+  @Override
+  public void onChange(@Nonnull final List<ResourceChange> changes) {
+    for (final ResourceChange change : changes) {
+      purgeExpandedImports(change.getPath());
+    }
+  }
+
+  /**
+   * Cache used for expanded imports.
+   *
+   * @return Cache used for expanded imports.
+   */
+  @Nonnull
+  LessImportCache getImportCache() {
+    return importCache;
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+}
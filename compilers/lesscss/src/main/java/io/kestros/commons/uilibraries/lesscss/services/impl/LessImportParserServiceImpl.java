@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.lesscss.filetypes.LessCssFile;
+import io.kestros.commons.uilibraries.lesscss.services.LessImportParserService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import org.apache.sling.api.resource.Resource;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads LESS imports with {@link LessCssFile#getImportedFileNames(BufferedReader)}.
+ */
+@SuppressFBWarnings("IMC_IMMATURE_CLASS_NO_TOSTRING")
+@Component(immediate = true,
+        service = LessImportParserService.class)
+public class LessImportParserServiceImpl implements LessImportParserService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LessImportParserServiceImpl.class);
+
+  @Nonnull
+  @Override
+  public Set<String> getImportedFileNames(@Nonnull final Resource fileResource) {
+    final InputStream inputStream = fileResource.adaptTo(InputStream.class);
+    if (inputStream == null) {
+      return Collections.emptySet();
+    }
+    try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      return LessCssFile.getImportedFileNames(reader);
+    } catch (final IOException e) {
+      LOG.warn("Unable to read imports of {}. {}", fileResource.getPath().replaceAll("[\r\n]", ""),
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+    return Collections.emptySet();
+  }
+}
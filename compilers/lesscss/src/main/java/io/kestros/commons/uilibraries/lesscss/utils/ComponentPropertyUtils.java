@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.osgi.service.component.ComponentContext;
+
+/**
+ * Utility methods for reading OSGi component configuration properties.
+ */
+public final class ComponentPropertyUtils {
+
+  private ComponentPropertyUtils() {
+  }
+
+  /**
+   * Reads a component property as a long.
+   *
+   * @param componentContext ComponentContext to read properties from.
+   * @param propertyName Property to read.
+   * @param defaultValue Value to return when the property is missing or invalid.
+   * @return Property value, or the default value.
+   */
+  public static long getLongProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName, final long defaultValue) {
+    final Object value = getProperty(componentContext, propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value != null) {
+      try {
+        return Long.parseLong(value.toString().trim());
+      } catch (final NumberFormatException e) {
+        return defaultValue;
+      }
+    }
+    return defaultValue;
+  }
+
+  @Nullable
+  private static Object getProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName) {
+    if (componentContext != null && componentContext.getProperties() != null) {
+      return componentContext.getProperties().get(propertyName);
+    }
+    return null;
+  }
+}
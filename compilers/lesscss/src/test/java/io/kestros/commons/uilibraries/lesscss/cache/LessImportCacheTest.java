@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.lesscss.cache.LessImportCache.ExpandedImport;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LessImportCacheTest {
+
+  private LessImportCache importCache;
+
+  @Before
+  public void setUp() {
+    importCache = new LessImportCache(200);
+  }
+
+  @Test
+  public void testGet() {
+    assertTrue(importCache.put("/etc/ui-frameworks/grid.less", "1", ".row {}",
+            Collections.singleton("/etc/ui-frameworks/variables.less")));
+
+    ExpandedImport expandedImport = importCache.get("/etc/ui-frameworks/grid.less", "1");
+    assertEquals(".row {}", expandedImport.getContent());
+    assertEquals(Collections.singleton("/etc/ui-frameworks/variables.less"),
+            expandedImport.getImportedPaths());
+    assertNull(importCache.get("/etc/ui-frameworks/mixins.less", "1"));
+    assertEquals(1, importCache.getEntryCount());
+  }
+
+  @Test
+  public void testGetImportedPaths() {
+    importCache.put("/etc/ui-frameworks/grid.less", "1|1", ".row {}",
+            Collections.singleton("/etc/ui-frameworks/variables.less"));
+
+    assertEquals(Collections.singleton("/etc/ui-frameworks/variables.less"),
+            importCache.getImportedPaths("/etc/ui-frameworks/grid.less"));
+    assertNull(importCache.getImportedPaths("/etc/ui-frameworks/mixins.less"));
+  }
+
+  @Test
+  public void testGetWhenStampChanged() {
+    importCache.put("/etc/ui-frameworks/grid.less", "1", ".row {}", Collections.emptySet());
+
+    assertNull(importCache.get("/etc/ui-frameworks/grid.less", "2"));
+    assertEquals(0, importCache.getEntryCount());
+    assertEquals(0, importCache.getSize());
+  }
+
+  @Test
+  public void testPutEvictsLeastRecentlyUsedImports() {
+    importCache = new LessImportCache(25);
+    importCache.put("/a.less", "1", "a {}", Collections.emptySet());
+    importCache.put("/b.less", "1", "b {}", Collections.emptySet());
+    importCache.get("/a.less", "1");
+    importCache.put("/c.less", "1", "c {}", Collections.emptySet());
+
+    assertEquals("a {}", importCache.get("/a.less", "1").getContent());
+    assertNull(importCache.get("/b.less", "1"));
+    assertEquals("c {}", importCache.get("/c.less", "1").getContent());
+    assertEquals(20, importCache.getSize());
+  }
+
+  @Test
+  public void testPutWhenImportIsLargerThanCache() {
+    importCache = new LessImportCache(4);
+
+    assertFalse(importCache.put("/a.less", "1", "a {}", Collections.emptySet()));
+    assertEquals(0, importCache.getSize());
+  }
+
+  @Test
+  public void testInvalidate() {
+    importCache.put("/etc/ui-frameworks/variables.less", "1", "@a: 1;", Collections.emptySet());
+    importCache.put("/etc/ui-frameworks/grid.less", "1", "@a: 1;\n.row {}",
+            Collections.singleton("/etc/ui-frameworks/variables.less"));
+    importCache.put("/etc/ui-frameworks/type.less", "1", "p {}", Collections.emptySet());
+    importCache.put("/etc/ui-frameworks-2/type.less", "1", "p {}", Collections.emptySet());
+
+    assertEquals(2, importCache.invalidate("/etc/ui-frameworks/variables.less/jcr:content"));
+    assertNull(importCache.get("/etc/ui-frameworks/variables.less", "1"));
+    assertNull(importCache.get("/etc/ui-frameworks/grid.less", "1"));
+    assertEquals("p {}", importCache.get("/etc/ui-frameworks/type.less", "1").getContent());
+
+    assertEquals(1, importCache.invalidate("/etc/ui-frameworks"));
+    assertNull(importCache.get("/etc/ui-frameworks/type.less", "1"));
+    assertEquals("p {}", importCache.get("/etc/ui-frameworks-2/type.less", "1").getContent());
+  }
+
+  @Test
+  public void testClear() {
+    importCache.put("/a.less", "1", "a {}", Collections.emptySet());
+
+    importCache.clear();
+
+    assertNull(importCache.get("/a.less", "1"));
+    assertEquals(0, importCache.getSize());
+  }
+}
@@ -20,17 +20,27 @@
 package io.kestros.commons.uilibraries.lesscss.filetypes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.spy;
 
 import io.kestros.commons.structuredslingmodels.exceptions.JcrFileReadException;
+import io.kestros.commons.uilibraries.lesscss.services.impl.LessImportCacheServiceImpl;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
 import org.junit.Rule;
@@ -65,6 +75,18 @@ public class LessCssFileTest {
     assertTrue(lessCssFile.isImportLine("@import \"test.less\";"));
   }
 
+  @Test
+  public void getImportedFileNames() throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader("@import \"variables.less\";\n"
+            + "// @import \"commented.less\";\n"
+            + "@import \"unterminated.less\"\n"
+            + "@import \"../mixins.less\";\n"
+            + ".class { color: @color; }"));
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("variables.less", "../mixins.less")),
+            LessCssFile.getImportedFileNames(reader));
+  }
+
   @Test
   public void getFileType() {
     context.create().resource("/content/test.less", "jcr:primaryType", "nt:file");
@@ -152,7 +174,152 @@ public class LessCssFileTest {
             lessCssFile.getResolvedImportLine("@import \"test.less\";"));
 }
 
+  private void createLessFile(String path, String contents) {
+    Map<String, Object> contentProperties = new HashMap<>();
+    contentProperties.put("jcr:data", new ByteArrayInputStream(contents.getBytes()));
+    contentProperties.put("jcr:mimeType", "text/less");
+    context.create().resource(path, "jcr:primaryType", "nt:file");
+    context.create().resource(path + "/jcr:content", contentProperties);
+  }
+
+  @Test
+  public void testGetFileContentWhenFileIsImportedMoreThanOnce() throws JcrFileReadException {
+    createLessFile("/content/variables.less", "@color: #000;");
+    createLessFile("/content/header.less", "@import \"variables.less\";\n.header {}");
+    createLessFile("/content/footer.less", "@import \"variables.less\";\n.footer {}");
+    createLessFile("/content/theme.less",
+            "@import \"header.less\";\n@import \"footer.less\";");
+
+    lessCssFile = context.resourceResolver().getResource("/content/theme.less")
+            .adaptTo(LessCssFile.class);
+    LessImportResolver importResolver = new LessImportResolver("/content/theme.less");
+
+    assertEquals("@color: #000;\n"
+            + ".header {}\n"
+            + "@color: #000;\n"
+            + ".footer {}", lessCssFile.getFileContent(importResolver));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/content/header.less",
+            "/content/variables.less", "/content/footer.less")),
+            importResolver.getImportedPaths());
+  }
+
+  @Test
+  public void testGetFileContentWhenImportCycle() throws JcrFileReadException {
+    createLessFile("/content/first.less", "@import \"second.less\";\n.first {}");
+    createLessFile("/content/second.less", "@import \"first.less\";\n.second {}");
+
+    lessCssFile = context.resourceResolver().getResource("/content/first.less")
+            .adaptTo(LessCssFile.class);
+    LessImportResolver importResolver = new LessImportResolver("/content/first.less");
+
+    assertEquals("@import \"first.less\";\n"
+            + ".second {}\n"
+            + ".first {}", lessCssFile.getFileContent(importResolver));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/content/second.less",
+            "/content/first.less")), importResolver.getImportedPaths());
+  }
+
+  private void createLessFile(String path, String contents, long lastModified) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastModified);
+    Map<String, Object> contentProperties = new HashMap<>();
+    contentProperties.put("jcr:data", new ByteArrayInputStream(contents.getBytes()));
+    contentProperties.put("jcr:mimeType", "text/less");
+    contentProperties.put("jcr:lastModified", calendar);
+    context.create().resource(path, "jcr:primaryType", "nt:file");
+    context.create().resource(path + "/jcr:content", contentProperties);
+  }
+
+  private void updateLessFile(String path, String contents, long lastModified)
+          throws PersistenceException {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastModified);
+    ModifiableValueMap properties = context.resourceResolver().getResource(
+            path + "/jcr:content").adaptTo(ModifiableValueMap.class);
+    properties.put("jcr:data", new ByteArrayInputStream(contents.getBytes()));
+    properties.put("jcr:lastModified", calendar);
+    context.resourceResolver().commit();
+  }
+
+  private String getFileContent(String path) throws JcrFileReadException {
+    return context.resourceResolver().getResource(path).adaptTo(LessCssFile.class)
+            .getFileContent();
+  }
+
+  @Test
+  public void testGetFileContentWhenImportIsSharedBetweenFiles()
+          throws JcrFileReadException, PersistenceException {
+    LessImportCacheServiceImpl importCacheService = context.registerInjectActivateService(
+            new LessImportCacheServiceImpl());
+    createLessFile("/content/variables.less", "@color: #000;", 1000L);
+    createLessFile("/content/theme-a.less", "@import \"variables.less\";\n.a {}", 1000L);
+    createLessFile("/content/theme-b.less", "@import \"variables.less\";\n.b {}", 1000L);
+
+    assertEquals("@color: #000;\n.a {}", getFileContent("/content/theme-a.less"));
+    assertNotNull(importCacheService.getExpandedImport("/content/variables.less", "1000"));
+
+    updateLessFile("/content/variables.less", "@color: #fff;", 1000L);
+    assertEquals("@color: #000;\n.b {}", getFileContent("/content/theme-b.less"));
+
+    importCacheService.purgeExpandedImports("/content/variables.less/jcr:content");
+    assertEquals("@color: #fff;\n.b {}", getFileContent("/content/theme-b.less"));
+
+    updateLessFile("/content/variables.less", "@color: #eee;", 2000L);
+    assertEquals("@color: #eee;\n.a {}", getFileContent("/content/theme-a.less"));
+  }
+
+  @Test
+  public void testGetFileContentWhenSharedImportHasNestedImports()
+          throws JcrFileReadException {
+    LessImportCacheServiceImpl importCacheService = context.registerInjectActivateService(
+            new LessImportCacheServiceImpl());
+    createLessFile("/content/variables.less", "@color: #000;", 1000L);
+    createLessFile("/content/grid.less", "@import \"variables.less\";\n.row {}", 1000L);
+    createLessFile("/content/theme-a.less", "@import \"grid.less\";", 1000L);
+    createLessFile("/content/theme-b.less", "@import \"grid.less\";", 1000L);
 
+    getFileContent("/content/theme-a.less");
+    lessCssFile = context.resourceResolver().getResource("/content/theme-b.less")
+            .adaptTo(LessCssFile.class);
+    LessImportResolver importResolver = new LessImportResolver("/content/theme-b.less",
+            importCacheService);
+
+    assertEquals("@color: #000;\n.row {}", lessCssFile.getFileContent(importResolver));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/content/grid.less",
+            "/content/variables.less")), importResolver.getImportedPaths());
 
+    importCacheService.purgeExpandedImports("/content/variables.less");
+    assertNull(importCacheService.getExpandedImport("/content/grid.less", "1000"));
+  }
 
-}
\ No newline at end of file
+  @Test
+  public void testGetFileContentWhenNestedImportIsModified()
+          throws JcrFileReadException, PersistenceException {
+    LessImportCacheServiceImpl importCacheService = context.registerInjectActivateService(
+            new LessImportCacheServiceImpl());
+    createLessFile("/content/variables.less", "@color: #000;", 1000L);
+    createLessFile("/content/grid.less", "@import \"variables.less\";\n.row {}", 1000L);
+    createLessFile("/content/theme-a.less", "@import \"grid.less\";", 1000L);
+    createLessFile("/content/theme-b.less", "@import \"grid.less\";", 1000L);
+
+    assertEquals("@color: #000;\n.row {}", getFileContent("/content/theme-a.less"));
+    assertNotNull(importCacheService.getExpandedImport("/content/grid.less", "1000|1000"));
+
+    updateLessFile("/content/variables.less", "@color: #fff;", 2000L);
+
+    assertEquals("@color: #fff;\n.row {}", getFileContent("/content/theme-b.less"));
+    assertNotNull(importCacheService.getExpandedImport("/content/grid.less", "1000|2000"));
+  }
+
+  @Test
+  public void testGetFileContentWhenImportCycleIsNotShared() throws JcrFileReadException {
+    LessImportCacheServiceImpl importCacheService = context.registerInjectActivateService(
+            new LessImportCacheServiceImpl());
+    createLessFile("/content/first.less", "@import \"second.less\";\n.first {}", 1000L);
+    createLessFile("/content/second.less", "@import \"first.less\";\n.second {}", 1000L);
+
+    getFileContent("/content/first.less");
+
+    assertNull(importCacheService.getExpandedImport("/content/second.less", "1000"));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.filetypes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.structuredslingmodels.exceptions.JcrFileReadException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LessImportResolverTest {
+
+  private LessImportResolver importResolver;
+
+  private LessCssFile variablesFile;
+
+  @Before
+  public void setUp() throws Exception {
+    importResolver = new LessImportResolver("/content/theme.less");
+    variablesFile = mock(LessCssFile.class);
+    when(variablesFile.getPath()).thenReturn("/content/variables.less");
+    when(variablesFile.getFileContent(importResolver)).thenReturn("@color: #000;");
+  }
+
+  @Test
+  public void testResolve() throws JcrFileReadException {
+    assertEquals("@color: #000;", importResolver.resolve(variablesFile));
+    assertEquals(Collections.singleton("/content/variables.less"),
+            importResolver.getImportedPaths());
+  }
+
+  @Test
+  public void testResolveExpandsEachFileOnce() throws JcrFileReadException {
+    assertEquals("@color: #000;", importResolver.resolve(variablesFile));
+    assertEquals("@color: #000;", importResolver.resolve(variablesFile));
+    assertEquals("@color: #000;", importResolver.resolve(variablesFile));
+
+    verify(variablesFile, times(1)).getFileContent(importResolver);
+  }
+
+  @Test
+  public void testResolveWhenImportCycle() throws JcrFileReadException {
+    LessCssFile mixinsFile = mock(LessCssFile.class);
+    when(mixinsFile.getPath()).thenReturn("/content/mixins.less");
+    LessCssFile themeFile = mock(LessCssFile.class);
+    when(themeFile.getPath()).thenReturn("/content/theme.less");
+    when(mixinsFile.getFileContent(importResolver)).thenAnswer(
+            invocation -> String.valueOf(importResolver.resolve(themeFile)));
+
+    assertEquals("null", importResolver.resolve(mixinsFile));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/content/mixins.less", "/content/theme.less")),
+            importResolver.getImportedPaths());
+    verify(themeFile, times(0)).getFileContent(importResolver);
+  }
+
+  @Test
+  public void testResolveWhenFileImportsItself() throws JcrFileReadException {
+    LessCssFile themeFile = mock(LessCssFile.class);
+    when(themeFile.getPath()).thenReturn("/content/theme.less");
+
+    assertNull(importResolver.resolve(themeFile));
+  }
+}
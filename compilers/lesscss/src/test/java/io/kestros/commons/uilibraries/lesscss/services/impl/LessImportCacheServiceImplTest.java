@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class LessImportCacheServiceImplTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private LessImportCacheServiceImpl importCacheService;
+
+  @Before
+  public void setUp() {
+    importCacheService = new LessImportCacheServiceImpl();
+  }
+
+  @Test
+  public void testGetDisplayName() {
+    assertEquals("LESS Import Cache Service", importCacheService.getDisplayName());
+  }
+
+  @Test
+  public void testGetExpandedImport() {
+    context.registerInjectActivateService(importCacheService);
+
+    importCacheService.putExpandedImport("/etc/ui-frameworks/grid.less", "1", ".row {}",
+            Collections.emptySet());
+
+    assertEquals(".row {}", importCacheService.getExpandedImport("/etc/ui-frameworks/grid.less",
+            "1").getContent());
+    assertNull(importCacheService.getExpandedImport("/etc/ui-frameworks/grid.less", "2"));
+  }
+
+  @Test
+  public void testGetImportedPaths() {
+    context.registerInjectActivateService(importCacheService);
+
+    importCacheService.putExpandedImport("/etc/ui-frameworks/grid.less", "1|1", ".row {}",
+            Collections.singleton("/etc/ui-frameworks/variables.less"));
+
+    assertEquals(Collections.singleton("/etc/ui-frameworks/variables.less"),
+            importCacheService.getImportedPaths("/etc/ui-frameworks/grid.less"));
+    assertNull(importCacheService.getImportedPaths("/etc/ui-frameworks/type.less"));
+  }
+
+  @Test
+  public void testActivateWhenMaximumSizeIsConfigured() {
+    context.registerInjectActivateService(importCacheService, "maximumSize", 10L);
+
+    importCacheService.putExpandedImport("/etc/ui-frameworks/grid.less", "1", ".row { }",
+            Collections.emptySet());
+
+    assertNull(importCacheService.getExpandedImport("/etc/ui-frameworks/grid.less", "1"));
+    assertEquals(0, importCacheService.getImportCache().getSize());
+  }
+
+  @Test
+  public void testOnChange() {
+    context.registerInjectActivateService(importCacheService);
+    importCacheService.putExpandedImport("/etc/ui-frameworks/variables.less", "1", "@a: 1;",
+            Collections.emptySet());
+    importCacheService.putExpandedImport("/etc/ui-frameworks/grid.less", "1", "@a: 1;",
+            Collections.singleton("/etc/ui-frameworks/variables.less"));
+    importCacheService.putExpandedImport("/etc/ui-frameworks/type.less", "1", "p {}",
+            Collections.emptySet());
+
+    importCacheService.onChange(Arrays.asList(
+            new ResourceChange(ChangeType.CHANGED,
+                    "/etc/ui-frameworks/variables.less/jcr:content", false)));
+
+    assertNull(importCacheService.getExpandedImport("/etc/ui-frameworks/variables.less", "1"));
+    assertNull(importCacheService.getExpandedImport("/etc/ui-frameworks/grid.less", "1"));
+    assertNotNull(importCacheService.getExpandedImport("/etc/ui-frameworks/type.less", "1"));
+  }
+
+  @Test
+  public void testDeactivate() {
+    context.registerInjectActivateService(importCacheService);
+    importCacheService.putExpandedImport("/etc/ui-frameworks/grid.less", "1", ".row {}",
+            Collections.emptySet());
+
+    importCacheService.deactivate(context.componentContext());
+
+    assertNull(importCacheService.getExpandedImport("/etc/ui-frameworks/grid.less", "1"));
+  }
+}
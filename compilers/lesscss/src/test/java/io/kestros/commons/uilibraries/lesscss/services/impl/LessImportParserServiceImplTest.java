@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.lesscss.services.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class LessImportParserServiceImplTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private LessImportParserServiceImpl importParserService;
+
+  @Before
+  public void setUp() {
+    importParserService = new LessImportParserServiceImpl();
+  }
+
+  @Test
+  public void testGetImportedFileNames() {
+    context.load().binaryFile(new ByteArrayInputStream(("@import \"variables.less\";\n"
+            + "// @import \"commented.less\";\n"
+            + "@import \"../shared/mixins.less\";\n"
+            + ".class { color: @color; }").getBytes(StandardCharsets.UTF_8)),
+            "/apps/ui-library/css/styles.less");
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("variables.less", "../shared/mixins.less")),
+            importParserService.getImportedFileNames(context.resourceResolver().getResource(
+                    "/apps/ui-library/css/styles.less")));
+  }
+
+  @Test
+  public void testGetImportedFileNamesWhenResourceIsNotAFile() {
+    context.create().resource("/apps/ui-library/css");
+
+    assertTrue(importParserService.getImportedFileNames(
+            context.resourceResolver().getResource("/apps/ui-library/css")).isEmpty());
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core;
+
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.models.FrontendLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
+import org.apache.sling.models.annotations.injectorspecific.RequestAttribute;
+import org.apache.sling.models.annotations.injectorspecific.Self;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sling Model for a bundle of UiLibraries, which are included on a page with a single CSS and a
+ * single JavaScript request.  Libraries are passed as the 'uiLibraries' use parameter, which can be
+ * a list of UiLibraries or UiLibrary paths.  The bundle servlets only serve bundles declared in
+ * their 'bundles' property, unless they allow undeclared bundles.
+ */
+@Model(adaptables = SlingHttpServletRequest.class)
+public class UiLibraryBundle {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UiLibraryBundle.class);
+
+  @Self
+  private SlingHttpServletRequest request;
+
+  @RequestAttribute(name = "uiLibraries", injectionStrategy = InjectionStrategy.OPTIONAL)
+  private Object uiLibraries;
+
+  @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+  private UiLibraryCacheService uiLibraryCacheService;
+
+  /**
+   * Paths of the bundled UiLibraries, in output order.
+   *
+   * @return Paths of the bundled UiLibraries, in output order.
+   */
+  @Nonnull
+  public List<String> getLibraryPaths() {
+    List<String> libraryPaths = new ArrayList<>();
+    for (Object uiLibrary : getUiLibraryList()) {
+      if (uiLibrary instanceof FrontendLibrary) {
+        libraryPaths.add(((FrontendLibrary) uiLibrary).getPath());
+      } else if (uiLibrary instanceof Resource) {
+        libraryPaths.add(((Resource) uiLibrary).getPath());
+      } else if (uiLibrary instanceof String) {
+        libraryPaths.add((String) uiLibrary);
+      }
+    }
+    return UiLibraryBundleUtils.getBundledLibraryPaths(libraryPaths.toArray(new String[0]));
+  }
+
+  /**
+   * CSS bundle path.
+   *
+   * @return CSS bundle path, or an empty String if no libraries are bundled.
+   */
+  @Nonnull
+  public String getCssPath() {
+    return getBundlePath(ScriptTypes.CSS, false, false);
+  }
+
+  /**
+   * JavaScript bundle path.
+   *
+   * @return JavaScript bundle path, or an empty String if no libraries are bundled.
+   */
+  @Nonnull
+  public String getJsPath() {
+    return getBundlePath(ScriptTypes.JAVASCRIPT, false, false);
+  }
+
+  /**
+   * CSS bundle path with a content fingerprint selector, which can be cached by browsers
+   * indefinitely.  Falls back to {@link #getCssPath()} when the bundle has not been cached yet.
+   *
+   * @return CSS bundle path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedCssPath() {
+    return getBundlePath(ScriptTypes.CSS, false, true);
+  }
+
+  /**
+   * Minified CSS bundle path with a content fingerprint selector.  Falls back to the
+   * non-fingerprinted minified path when the minified bundle has not been cached yet.
+   *
+   * @return Minified CSS bundle path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedMinifiedCssPath() {
+    return getBundlePath(ScriptTypes.CSS, true, true);
+  }
+
+  /**
+   * JavaScript bundle path with a content fingerprint selector, which can be cached by browsers
+   * indefinitely.  Falls back to {@link #getJsPath()} when the bundle has not been cached yet.
+   *
+   * @return JavaScript bundle path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedJsPath() {
+    return getBundlePath(ScriptTypes.JAVASCRIPT, false, true);
+  }
+
+  /**
+   * Minified JavaScript bundle path with a content fingerprint selector.  Falls back to the
+   * non-fingerprinted minified path when the minified bundle has not been cached yet.
+   *
+   * @return Minified JavaScript bundle path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedMinifiedJsPath() {
+    return getBundlePath(ScriptTypes.JAVASCRIPT, true, true);
+  }
+
+  @Nonnull
+  private String getBundlePath(@Nonnull final ScriptTypes scriptType, final boolean minified,
+          final boolean fingerprinted) {
+    List<String> libraryPaths = getLibraryPaths();
+    if (libraryPaths.isEmpty()) {
+      return StringUtils.EMPTY;
+    }
+    String fingerprint = StringUtils.EMPTY;
+    if (fingerprinted) {
+      fingerprint = getFingerprint(libraryPaths, scriptType, minified);
+    }
+    return UiLibraryBundleUtils.getBundleUrl(libraryPaths, scriptType, fingerprint, minified);
+  }
+
+  @Nonnull
+  private String getFingerprint(@Nonnull final List<String> libraryPaths,
+          @Nonnull final ScriptTypes scriptType, final boolean minified) {
+    if (uiLibraryCacheService instanceof UiLibraryOutputCacheService) {
+      String bundleOutputPath = UiLibraryBundleUtils.getBundleOutputPath(libraryPaths);
+      try {
+        return UiLibraryCacheUtils.getFingerprint(
+                ((UiLibraryOutputCacheService) uiLibraryCacheService).getCachedETag(
+                        bundleOutputPath, scriptType, minified, request.getResourceResolver()));
+      } catch (CacheRetrievalException e) {
+        LOG.debug("Unable to fingerprint {} bundle path for {}. {}",
+                scriptType.getName().replaceAll("[\r\n]", ""),
+                bundleOutputPath.replaceAll("[\r\n]", ""),
+                e.getMessage().replaceAll("[\r\n]", ""));
+      }
+    }
+    return StringUtils.EMPTY;
+  }
+
+  @Nonnull
+  private List<Object> getUiLibraryList() {
+    if (uiLibraries instanceof Iterable) {
+      List<Object> uiLibraryList = new ArrayList<>();
+      for (Object uiLibrary : (Iterable<?>) uiLibraries) {
+        uiLibraryList.add(uiLibrary);
+      }
+      return uiLibraryList;
+    }
+    if (uiLibraries instanceof Object[]) {
+      return Arrays.asList((Object[]) uiLibraries);
+    }
+    if (uiLibraries instanceof String) {
+      return new ArrayList<>(Arrays.asList(((String) uiLibraries).split(",")));
+    }
+    if (uiLibraries != null) {
+      return Collections.singletonList(uiLibraries);
+    }
+    return Collections.emptyList();
+  }
+}
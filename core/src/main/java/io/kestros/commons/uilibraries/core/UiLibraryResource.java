@@ -22,20 +22,28 @@ package io.kestros.commons.uilibraries.core;
 import static io.kestros.commons.structuredslingmodels.utils.FileModelUtils.getChildAsFileType;
 import static io.kestros.commons.structuredslingmodels.utils.SlingModelUtils.getChildAsBaseResource;
 
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
 import io.kestros.commons.structuredslingmodels.BaseResource;
 import io.kestros.commons.structuredslingmodels.exceptions.ChildResourceNotFoundException;
 import io.kestros.commons.structuredslingmodels.exceptions.InvalidResourceTypeException;
 import io.kestros.commons.uilibraries.api.models.ScriptFile;
 import io.kestros.commons.uilibraries.api.models.ScriptType;
 import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +56,12 @@ public class UiLibraryResource extends BaseResource implements UiLibrary {
 
   private static final Logger LOG = LoggerFactory.getLogger(UiLibraryResource.class);
 
+  private static final String JCR_CONTENT = "jcr:content";
+  private static final String JCR_MIME_TYPE = "jcr:mimeType";
+
+  @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+  private UiLibraryCacheService uiLibraryCacheService;
+
   @Nonnull
   @Override
   public String getCssPath() {
@@ -60,6 +74,76 @@ public class UiLibraryResource extends BaseResource implements UiLibrary {
     return getPath() + ScriptTypes.JAVASCRIPT.getExtension();
   }
 
+  /**
+   * CSS path with a content fingerprint selector, which can be cached by browsers indefinitely.
+   * Falls back to {@link #getCssPath()} when the CSS output has not been cached yet.
+   *
+   * @return CSS path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedCssPath() {
+    return getFingerprintedPath(ScriptTypes.CSS, false, getCssPath());
+  }
+
+  /**
+   * Minified CSS path with a content fingerprint selector, which can be cached by browsers
+   * indefinitely.  Falls back to the non-fingerprinted minified path when the minified CSS output
+   * has not been cached yet.
+   *
+   * @return Minified CSS path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedMinifiedCssPath() {
+    return getFingerprintedPath(ScriptTypes.CSS, true,
+            getPath() + ".min" + ScriptTypes.CSS.getExtension());
+  }
+
+  /**
+   * JavaScript path with a content fingerprint selector, which can be cached by browsers
+   * indefinitely.  Falls back to {@link #getJsPath()} when the JavaScript output has not been
+   * cached yet.
+   *
+   * @return JavaScript path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedJsPath() {
+    return getFingerprintedPath(ScriptTypes.JAVASCRIPT, false, getJsPath());
+  }
+
+  /**
+   * Minified JavaScript path with a content fingerprint selector, which can be cached by browsers
+   * indefinitely.  Falls back to the non-fingerprinted minified path when the minified JavaScript
+   * output has not been cached yet.
+   *
+   * @return Minified JavaScript path with a content fingerprint selector.
+   */
+  @Nonnull
+  public String getFingerprintedMinifiedJsPath() {
+    return getFingerprintedPath(ScriptTypes.JAVASCRIPT, true,
+            getPath() + ".min" + ScriptTypes.JAVASCRIPT.getExtension());
+  }
+
+  @Nonnull
+  private String getFingerprintedPath(@Nonnull final ScriptType scriptType, final boolean minified,
+          @Nonnull final String defaultPath) {
+    if (uiLibraryCacheService instanceof UiLibraryOutputCacheService) {
+      try {
+        String fingerprint = UiLibraryCacheUtils.getFingerprint(
+                ((UiLibraryOutputCacheService) uiLibraryCacheService).getCachedETag(getPath(),
+                        scriptType, minified, getResourceResolver()));
+        if (StringUtils.isNotEmpty(fingerprint)) {
+          return UiLibraryCacheUtils.getFingerprintedPath(getPath(), fingerprint, minified,
+                  scriptType.getExtension());
+        }
+      } catch (CacheRetrievalException e) {
+        LOG.debug("Unable to fingerprint {} path for {}. {}",
+                scriptType.getName().replaceAll("[\r\n]", ""),
+                getPath().replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+      }
+    }
+    return defaultPath;
+  }
+
   @Nonnull
   @Override
   public List<String> getIncludedFileNames(@Nonnull ScriptType scriptType) {
@@ -83,9 +167,20 @@ public class UiLibraryResource extends BaseResource implements UiLibrary {
     BaseResource folderResource = null;
     try {
       folderResource = getChildAsBaseResource(folderName, this);
+      Resource folder = getResourceResolver().getResource(folderResource.getPath());
       for (String includedFileName : getIncludedFileNames(ScriptTypes.lookup(folderName))) {
+        Resource includedFile = folder != null ? folder.getChild(includedFileName) : null;
+        if (folder != null && includedFile == null) {
+          LOG.trace("Included file {} not found under {}.",
+                  includedFileName.replaceAll("[\r\n]", ""),
+                  folderResource.getPath().replaceAll("[\r\n]", ""));
+          continue;
+        }
+        String mimeType = getMimeType(includedFile);
         for (ScriptType scriptType : scriptTypes) {
-
+          if (!isReadableAs(includedFileName, mimeType, scriptType)) {
+            continue;
+          }
           try {
             T script = (T) getChildAsFileType(includedFileName, folderResource,
                 scriptType.getFileModelClass());
@@ -102,4 +197,31 @@ public class UiLibraryResource extends BaseResource implements UiLibrary {
     }
     return scriptFileList;
   }
+
+  /**
+   * MIME type of an included file, or null if it cannot be determined.
+   */
+  @Nullable
+  private static String getMimeType(@Nullable final Resource includedFile) {
+    if (includedFile == null) {
+      return null;
+    }
+    Resource contentResource = includedFile.getChild(JCR_CONTENT);
+    if (contentResource == null) {
+      return null;
+    }
+    return contentResource.getValueMap().get(JCR_MIME_TYPE, String.class);
+  }
+
+  /**
+   * Whether an included file could be read as a ScriptType, judged by its extension or MIME type.
+   * Files that are not ruled out are still validated by adapting them to the ScriptType's model.
+   */
+  static boolean isReadableAs(@Nonnull final String fileName, @Nullable final String mimeType,
+          @Nonnull final ScriptType scriptType) {
+    if (mimeType == null || fileName.endsWith(scriptType.getExtension())) {
+      return true;
+    }
+    return scriptType.getReadableContentTypes().contains(mimeType);
+  }
 }
\ No newline at end of file
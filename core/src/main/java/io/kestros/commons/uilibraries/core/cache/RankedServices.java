@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.osgi.framework.Constants;
+
+/**
+ * Services bound to a dynamic, multiple cardinality reference, kept in ranking order.  Services
+ * with a higher service ranking come first, and services with the same ranking are kept in the
+ * order they were registered.  The ordered list is rebuilt when a service is bound or unbound, so
+ * reading it never looks up services.
+ *
+ * @param <T> Service type.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class RankedServices<T> {
+
+  private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+  private volatile List<T> services = Collections.emptyList();
+
+  /**
+   * Adds a service.
+   *
+   * @param service Service to add.
+   * @param properties Service properties.
+   */
+  public synchronized void bind(@Nonnull final T service,
+          @Nonnull final Map<String, Object> properties) {
+    entries.put(service,
+            new Entry<>(service, getLongProperty(properties, Constants.SERVICE_RANKING),
+                    getLongProperty(properties, Constants.SERVICE_ID)));
+    rebuild();
+  }
+
+  /**
+   * Removes a service.
+   *
+   * @param service Service to remove.
+   */
+  public synchronized void unbind(@Nonnull final T service) {
+    if (entries.remove(service) != null) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Bound services, in ranking order.
+   *
+   * @return Bound services, in ranking order.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<T> getServices() {
+    return services;
+  }
+
+  private void rebuild() {
+    List<Entry<T>> sortedEntries = new ArrayList<>(entries.values());
+    sortedEntries.sort(Comparator.<Entry<T>>comparingLong(entry -> -entry.ranking)
+            .thenComparingLong(entry -> entry.serviceId));
+    List<T> sortedServices = new ArrayList<>(sortedEntries.size());
+    for (Entry<T> entry : sortedEntries) {
+      sortedServices.add(entry.service);
+    }
+    services = Collections.unmodifiableList(sortedServices);
+  }
+
+  private static long getLongProperty(@Nonnull final Map<String, Object> properties,
+          @Nonnull final String name) {
+    Object value = properties.get(name);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    return 0L;
+  }
+
+  private static final class Entry<T> {
+
+    private final T service;
+    private final long ranking;
+    private final long serviceId;
+
+    private Entry(@Nonnull final T service, final long ranking, final long serviceId) {
+      this.service = service;
+      this.ranking = ranking;
+      this.serviceId = serviceId;
+    }
+  }
+}
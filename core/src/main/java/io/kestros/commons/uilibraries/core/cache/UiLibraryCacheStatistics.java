@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+
+/**
+ * Hit, miss, fill time and byte counters for UiLibrary output, broken down by script type and
+ * minified flag.  Counters are updated without locking, so that recording does not contend between
+ * request threads.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryCacheStatistics {
+
+  private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+  /**
+   * Key of the counters for a script type and minified flag.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @return Key of the counters for a script type and minified flag.
+   */
+  @Nonnull
+  public static String getKey(@Nonnull final ScriptType scriptType, final boolean minified) {
+    if (minified) {
+      return scriptType.getName() + ".min";
+    }
+    return scriptType.getName();
+  }
+
+  /**
+   * Counters for a script type and minified flag.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @return Counters for a script type and minified flag.
+   */
+  @Nonnull
+  public Counters getCounters(@Nonnull final ScriptType scriptType, final boolean minified) {
+    return counters.computeIfAbsent(getKey(scriptType, minified), key -> new Counters());
+  }
+
+  /**
+   * Counters that have been recorded, sorted by key.
+   *
+   * @return Counters that have been recorded, sorted by key.
+   */
+  @Nonnull
+  public Map<String, Counters> getAllCounters() {
+    return new TreeMap<>(counters);
+  }
+
+  /**
+   * Sum of all recorded counters.
+   *
+   * @return Sum of all recorded counters.
+   */
+  @Nonnull
+  public Counters getTotals() {
+    Counters totals = new Counters();
+    for (Counters scriptTypeCounters : counters.values()) {
+      totals.add(scriptTypeCounters);
+    }
+    return totals;
+  }
+
+  /**
+   * Resets all counters.
+   */
+  public void reset() {
+    counters.clear();
+  }
+
+  /**
+   * Hit, miss, fill time and byte counters.
+   */
+  @SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+  public static class Counters {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder fillTime = new LongAdder();
+    private final LongAccumulator maximumFillTime = new LongAccumulator(Math::max, 0);
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder bytesStored = new LongAdder();
+
+    /**
+     * Records a request served from the cache.
+     */
+    public void recordHit() {
+      hits.increment();
+    }
+
+    /**
+     * Records a request that was not cached.
+     */
+    public void recordMiss() {
+      misses.increment();
+    }
+
+    /**
+     * Records the time taken to compile and cache output.
+     *
+     * @param milliseconds Time taken, in milliseconds.
+     */
+    public void recordFill(final long milliseconds) {
+      fills.increment();
+      fillTime.add(milliseconds);
+      maximumFillTime.accumulate(milliseconds);
+    }
+
+    /**
+     * Records bytes written to a response.
+     *
+     * @param bytes Bytes written.
+     */
+    public void recordBytesServed(final long bytes) {
+      bytesServed.add(bytes);
+    }
+
+    /**
+     * Records bytes written to the cache.
+     *
+     * @param bytes Bytes written.
+     */
+    public void recordBytesStored(final long bytes) {
+      bytesStored.add(bytes);
+    }
+
+    void add(@Nonnull final Counters other) {
+      hits.add(other.getHitCount());
+      misses.add(other.getMissCount());
+      fills.add(other.getFillCount());
+      fillTime.add(other.getTotalFillTime());
+      maximumFillTime.accumulate(other.getMaximumFillTime());
+      bytesServed.add(other.getBytesServed());
+      bytesStored.add(other.getBytesStored());
+    }
+
+    /**
+     * Requests served from the cache.
+     *
+     * @return Requests served from the cache.
+     */
+    public long getHitCount() {
+      return hits.sum();
+    }
+
+    /**
+     * Requests that were not cached.
+     *
+     * @return Requests that were not cached.
+     */
+    public long getMissCount() {
+      return misses.sum();
+    }
+
+    /**
+     * Fraction of requests served from the cache, or 0 if nothing has been requested.
+     *
+     * @return Fraction of requests served from the cache.
+     */
+    public double getHitRatio() {
+      long hitCount = getHitCount();
+      long requestCount = hitCount + getMissCount();
+      if (requestCount == 0) {
+        return 0;
+      }
+      return (double) hitCount / requestCount;
+    }
+
+    /**
+     * Outputs compiled and cached.
+     *
+     * @return Outputs compiled and cached.
+     */
+    public long getFillCount() {
+      return fills.sum();
+    }
+
+    /**
+     * Total time, in milliseconds, spent compiling and caching output.
+     *
+     * @return Total time, in milliseconds, spent compiling and caching output.
+     */
+    public long getTotalFillTime() {
+      return fillTime.sum();
+    }
+
+    /**
+     * Average time, in milliseconds, spent compiling and caching an output, or 0 if nothing has
+     * been compiled.
+     *
+     * @return Average time, in milliseconds, spent compiling and caching an output.
+     */
+    public double getAverageFillTime() {
+      long fillCount = getFillCount();
+      if (fillCount == 0) {
+        return 0;
+      }
+      return (double) getTotalFillTime() / fillCount;
+    }
+
+    /**
+     * Longest time, in milliseconds, spent compiling and caching an output.
+     *
+     * @return Longest time, in milliseconds, spent compiling and caching an output.
+     */
+    public long getMaximumFillTime() {
+      return maximumFillTime.get();
+    }
+
+    /**
+     * Bytes written to responses.
+     *
+     * @return Bytes written to responses.
+     */
+    public long getBytesServed() {
+      return bytesServed.sum();
+    }
+
+    /**
+     * Bytes written to the cache.
+     *
+     * @return Bytes written to the cache.
+     */
+    public long getBytesStored() {
+      return bytesStored.sum();
+    }
+  }
+}
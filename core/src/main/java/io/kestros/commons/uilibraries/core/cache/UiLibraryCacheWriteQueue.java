@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache.CachedOutput;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Queue of UiLibrary output waiting to be persisted.  Writes are keyed by
+ * {@link UiLibraryOutputMemoryCache#getKey(String, ScriptType, boolean)}, and a write replaces any
+ * pending write for the same key, so only the latest output for a key is persisted.
+ *
+ * <p>
+ * The queue has a generation, which changes whenever pending writes are removed by an
+ * invalidation.  Each drained {@link WriteBatch} carries the generation it was drained in, read
+ * atomically with the writes, and writers compare it with the current generation before
+ * committing, so that a batch drained before an invalidation is not committed after it.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryCacheWriteQueue {
+
+  private final Map<String, PendingCacheWrite> pendingWrites = new LinkedHashMap<>();
+  private long generation;
+
+  /**
+   * Queues a write, replacing any pending write for the same key.
+   *
+   * @param write Write to queue.
+   */
+  public synchronized void offer(@Nonnull final PendingCacheWrite write) {
+    pendingWrites.remove(write.getKey());
+    pendingWrites.put(write.getKey(), write);
+  }
+
+  /**
+   * Queues writes that failed to persist, unless a newer write for the same key has been queued
+   * since.
+   *
+   * @param writes Writes to queue again.
+   */
+  public synchronized void requeue(@Nonnull final Collection<PendingCacheWrite> writes) {
+    for (PendingCacheWrite write : writes) {
+      pendingWrites.putIfAbsent(write.getKey(), write);
+    }
+  }
+
+  /**
+   * Removes and returns up to a number of the oldest pending writes, with the generation they were
+   * drained in.
+   *
+   * @param maximumSize Maximum number of writes to return.
+   * @return Oldest pending writes.
+   */
+  @Nonnull
+  public synchronized WriteBatch drain(final int maximumSize) {
+    List<PendingCacheWrite> writes = new ArrayList<>();
+    Iterator<PendingCacheWrite> iterator = pendingWrites.values().iterator();
+    while (iterator.hasNext() && writes.size() < maximumSize) {
+      writes.add(iterator.next());
+      iterator.remove();
+    }
+    return new WriteBatch(writes, generation);
+  }
+
+  /**
+   * Pending write for a key.
+   *
+   * @param key Cache key.
+   * @return Pending write for a key, or null if no write is pending.
+   */
+  @Nullable
+  public synchronized PendingCacheWrite get(@Nonnull final String key) {
+    return pendingWrites.get(key);
+  }
+
+  /**
+   * Removes the pending write for a key.  Always changes the generation, as a write for the key may
+   * have been drained and not yet committed.
+   *
+   * @param key Cache key.
+   */
+  public synchronized void remove(@Nonnull final String key) {
+    pendingWrites.remove(key);
+    generation++;
+  }
+
+  /**
+   * Removes all pending writes.
+   */
+  public synchronized void clear() {
+    pendingWrites.clear();
+    generation++;
+  }
+
+  /**
+   * Number of pending writes.
+   *
+   * @return Number of pending writes.
+   */
+  public synchronized int size() {
+    return pendingWrites.size();
+  }
+
+  /**
+   * Current generation.  Changes whenever pending writes are invalidated.
+   *
+   * @return Current generation.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Writes drained from the queue, with the generation of the queue when they were drained.
+   */
+  public static class WriteBatch {
+
+    private final List<PendingCacheWrite> writes;
+    private final long generation;
+
+    WriteBatch(@Nonnull final List<PendingCacheWrite> writes, final long generation) {
+      this.writes = Collections.unmodifiableList(writes);
+      this.generation = generation;
+    }
+
+    /**
+     * Drained writes, oldest first.
+     *
+     * @return Drained writes.
+     */
+    @Nonnull
+    public List<PendingCacheWrite> getWrites() {
+      return writes;
+    }
+
+    /**
+     * Generation of the queue when the writes were drained.
+     *
+     * @return Generation of the queue when the writes were drained.
+     */
+    public long getGeneration() {
+      return generation;
+    }
+
+    /**
+     * Whether no writes were drained.
+     *
+     * @return Whether no writes were drained.
+     */
+    public boolean isEmpty() {
+      return writes.isEmpty();
+    }
+  }
+
+  /**
+   * UiLibrary output waiting to be persisted.
+   */
+  public static class PendingCacheWrite {
+
+    private final String outputPath;
+    private final List<String> bundledLibraryPaths;
+    private final String content;
+    private final Map<UiLibraryContentEncoding, byte[]> encodedContent;
+    private final ScriptType scriptType;
+    private final boolean minified;
+    private final String eTag;
+    private final long created;
+    private int failedAttempts;
+
+    /**
+     * Constructs a pending write.
+     *
+     * @param outputPath UiLibrary or bundle path.
+     * @param bundledLibraryPaths Paths of the libraries in a bundle.  Empty for UiLibraries.
+     * @param content Output to persist.
+     * @param scriptType ScriptType of the output.
+     * @param minified Whether the output is minified.
+     * @param eTag ETag of the output.
+     * @param created Time, in milliseconds since the epoch, that the output was cached.
+     */
+    public PendingCacheWrite(@Nonnull final String outputPath,
+            @Nonnull final List<String> bundledLibraryPaths, @Nonnull final String content,
+            @Nonnull final ScriptType scriptType, final boolean minified,
+            @Nonnull final String eTag, final long created) {
+      this(outputPath, bundledLibraryPaths, content, Collections.emptyMap(), scriptType, minified,
+              eTag, created);
+    }
+
+    /**
+     * Constructs a pending write with compressed variants of its output.
+     *
+     * @param outputPath UiLibrary or bundle path.
+     * @param bundledLibraryPaths Paths of the libraries in a bundle.  Empty for UiLibraries.
+     * @param content Output to persist.
+     * @param encodedContent Compressed variants of the output, by encoding.
+     * @param scriptType ScriptType of the output.
+     * @param minified Whether the output is minified.
+     * @param eTag ETag of the output.
+     * @param created Time, in milliseconds since the epoch, that the output was cached.
+     */
+    public PendingCacheWrite(@Nonnull final String outputPath,
+            @Nonnull final List<String> bundledLibraryPaths, @Nonnull final String content,
+            @Nonnull final Map<UiLibraryContentEncoding, byte[]> encodedContent,
+            @Nonnull final ScriptType scriptType, final boolean minified,
+            @Nonnull final String eTag, final long created) {
+      this.outputPath = outputPath;
+      this.bundledLibraryPaths = Collections.unmodifiableList(
+              new ArrayList<>(bundledLibraryPaths));
+      this.content = content;
+      this.encodedContent = Collections.unmodifiableMap(new LinkedHashMap<>(encodedContent));
+      this.scriptType = scriptType;
+      this.minified = minified;
+      this.eTag = eTag;
+      this.created = created;
+    }
+
+    /**
+     * Cache key of the write.
+     *
+     * @return Cache key of the write.
+     */
+    @Nonnull
+    public String getKey() {
+      return UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, minified);
+    }
+
+    /**
+     * UiLibrary or bundle path.
+     *
+     * @return UiLibrary or bundle path.
+     */
+    @Nonnull
+    public String getOutputPath() {
+      return outputPath;
+    }
+
+    /**
+     * Paths of the libraries in a bundle.  Empty for UiLibraries.
+     *
+     * @return Paths of the libraries in a bundle.  Empty for UiLibraries.
+     */
+    @Nonnull
+    public List<String> getBundledLibraryPaths() {
+      return bundledLibraryPaths;
+    }
+
+    /**
+     * Output to persist.
+     *
+     * @return Output to persist.
+     */
+    @Nonnull
+    public String getContent() {
+      return content;
+    }
+
+    /**
+     * Compressed variants of the output, by encoding.
+     *
+     * @return Compressed variants of the output, by encoding.
+     */
+    @Nonnull
+    public Map<UiLibraryContentEncoding, byte[]> getEncodedContent() {
+      return encodedContent;
+    }
+
+    /**
+     * ScriptType of the output.
+     *
+     * @return ScriptType of the output.
+     */
+    @Nonnull
+    public ScriptType getScriptType() {
+      return scriptType;
+    }
+
+    /**
+     * Whether the output is minified.
+     *
+     * @return Whether the output is minified.
+     */
+    public boolean isMinified() {
+      return minified;
+    }
+
+    /**
+     * ETag of the output.
+     *
+     * @return ETag of the output.
+     */
+    @Nonnull
+    public String getETag() {
+      return eTag;
+    }
+
+    /**
+     * Time, in milliseconds since the epoch, that the output was cached.
+     *
+     * @return Time, in milliseconds since the epoch, that the output was cached.
+     */
+    public long getCreated() {
+      return created;
+    }
+
+    /**
+     * Pending output, so that it can be served before it is persisted.
+     *
+     * @return Pending output.
+     */
+    @Nonnull
+    public CachedOutput getCachedOutput() {
+      return new CachedOutput(content, encodedContent, eTag, created);
+    }
+
+    /**
+     * Records a failed attempt to persist the write.
+     *
+     * @return Number of failed attempts.
+     */
+    public synchronized int recordFailedAttempt() {
+      return ++failedAttempts;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nonnull;
+
+/**
+ * Coalesces concurrent compilations of the same UiLibrary output.  The first caller for a key runs
+ * the compilation, and callers that arrive while it is running wait for, and share, its result.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryCompilationCoalescer {
+
+  private final ConcurrentMap<String, CompletableFuture<String>> inFlightCompilations
+          = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the compilation for a key, or waits for the compilation that is already running for it.
+   *
+   * @param key Compilation key, see {@link UiLibraryOutputMemoryCache#getKey}.
+   * @param compilation Compilation to run if no compilation is in flight for the key.
+   * @return Compiled output.
+   * @throws ExecutionException The compilation failed.  The cause is the compilation's exception.
+   * @throws InterruptedException Interrupted while waiting for another thread's compilation.
+   */
+  @Nonnull
+  public String compile(@Nonnull final String key, @Nonnull final Callable<String> compilation)
+          throws ExecutionException, InterruptedException {
+    CompletableFuture<String> compilationFuture = new CompletableFuture<>();
+    CompletableFuture<String> inFlightCompilation = inFlightCompilations.putIfAbsent(key,
+            compilationFuture);
+    if (inFlightCompilation != null) {
+      return inFlightCompilation.get();
+    }
+    try {
+      String output = compilation.call();
+      compilationFuture.complete(output);
+      return output;
+    } catch (Exception e) {
+      compilationFuture.completeExceptionally(e);
+      throw new ExecutionException(e);
+    } finally {
+      inFlightCompilations.remove(key, compilationFuture);
+    }
+  }
+
+  /**
+   * Submits the compilation for a key to an executor, or returns the compilation that is already
+   * in flight for it.  Callers wait on the returned future, and may stop waiting without
+   * cancelling the compilation, so that its output is still cached for later requests.
+   *
+   * @param key Compilation key, see {@link UiLibraryOutputMemoryCache#getKey}.
+   * @param compilation Compilation to run if no compilation is in flight for the key.
+   * @param executor Executor to run the compilation on.
+   * @return Future which completes with the compiled output, or with the compilation's exception.
+   * @throws RejectedExecutionException The executor did not accept the compilation.
+   */
+  @Nonnull
+  public CompletableFuture<String> submit(@Nonnull final String key,
+          @Nonnull final Callable<String> compilation, @Nonnull final Executor executor) {
+    CompletableFuture<String> compilationFuture = new CompletableFuture<>();
+    CompletableFuture<String> inFlightCompilation = inFlightCompilations.putIfAbsent(key,
+            compilationFuture);
+    if (inFlightCompilation != null) {
+      return inFlightCompilation;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          String output = compilation.call();
+          inFlightCompilations.remove(key, compilationFuture);
+          compilationFuture.complete(output);
+        } catch (Exception e) {
+          inFlightCompilations.remove(key, compilationFuture);
+          compilationFuture.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlightCompilations.remove(key, compilationFuture);
+      compilationFuture.completeExceptionally(e);
+      throw e;
+    }
+    return compilationFuture;
+  }
+
+  /**
+   * Number of compilations currently running.
+   *
+   * @return Number of compilations currently running.
+   */
+  public int getInFlightCount() {
+    return inFlightCompilations.size();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptFile;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Everything needed to compile one script folder of a UiLibrary, other than the file content: the
+ * files the folder includes, in output order, the ScriptTypes of those files, and the compiler
+ * chosen for them.  Manifests are built once from {@link
+ * io.kestros.commons.uilibraries.api.models.FrontendLibrary#getScriptFiles(List, String)} and
+ * reused for every output of the folder until the library changes.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public final class UiLibraryCompileManifest {
+
+  private final String folderName;
+  private final String stamp;
+  private final UiLibraryCompilerIndex compilerIndex;
+  private final List<ManifestFile> files;
+  private final List<ScriptType> scriptTypes;
+  private final ScriptTypeCompiler compiler;
+
+  /**
+   * Builds a manifest from the script files a folder resolves to across all registered
+   * ScriptTypes.
+   *
+   * @param folderName Script folder name.
+   * @param stamp Last-modified state of the library and folder the manifest was built from.
+   * @param compilerIndex Compilers the manifest was built with.
+   * @param scriptFiles Script files resolved for all registered ScriptTypes, in include order.
+   */
+  public UiLibraryCompileManifest(@Nonnull final String folderName, @Nonnull final String stamp,
+          @Nonnull final UiLibraryCompilerIndex compilerIndex,
+          @Nonnull final List<? extends ScriptFile> scriptFiles) {
+    this.folderName = folderName;
+    this.stamp = stamp;
+    this.compilerIndex = compilerIndex;
+    List<ManifestFile> fileList = new ArrayList<>(scriptFiles.size());
+    List<ScriptType> scriptTypeList = new ArrayList<>();
+    for (ScriptFile scriptFile : scriptFiles) {
+      ScriptType fileType = (ScriptType) scriptFile.getFileType();
+      fileList.add(new ManifestFile(scriptFile.getName(), scriptFile.getClass(), fileType));
+      if (!scriptTypeList.contains(fileType)) {
+        scriptTypeList.add(fileType);
+      }
+    }
+    this.files = Collections.unmodifiableList(fileList);
+    this.scriptTypes = Collections.unmodifiableList(scriptTypeList);
+    this.compiler = compilerIndex.getCompiler(scriptTypeList);
+  }
+
+  /**
+   * Script folder name.
+   *
+   * @return Script folder name.
+   */
+  @Nonnull
+  public String getFolderName() {
+    return folderName;
+  }
+
+  /**
+   * Whether the manifest still describes a folder.
+   *
+   * @param currentStamp Current last-modified state of the library and folder.
+   * @param currentCompilerIndex Currently registered compilers.
+   * @return Whether the manifest still describes a folder.
+   */
+  public boolean isCurrent(@Nonnull final String currentStamp,
+          @Nonnull final UiLibraryCompilerIndex currentCompilerIndex) {
+    return stamp.equals(currentStamp) && compilerIndex == currentCompilerIndex;
+  }
+
+  /**
+   * Included files, in include order.
+   *
+   * @return Included files, in include order.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<ManifestFile> getFiles() {
+    return files;
+  }
+
+  /**
+   * Included files that a compiler reads, in output order.  Files are kept in include order, and
+   * an include that resolved to more than one ScriptType is ordered by the compiler's ScriptTypes.
+   *
+   * @param compilerScriptTypes ScriptTypes supported by the compiler.
+   * @return Included files that a compiler reads, in output order.
+   */
+  @Nonnull
+  public List<ManifestFile> getFiles(@Nonnull final List<ScriptType> compilerScriptTypes) {
+    List<ManifestFile> fileList = new ArrayList<>(files.size());
+    int start = 0;
+    while (start < files.size()) {
+      int end = start + 1;
+      while (end < files.size() && Objects.equals(files.get(end).getName(),
+          files.get(start).getName())) {
+        end++;
+      }
+      for (ScriptType scriptType : compilerScriptTypes) {
+        for (ManifestFile file : files.subList(start, end)) {
+          if (scriptType.equals(file.getFileType())) {
+            fileList.add(file);
+          }
+        }
+      }
+      start = end;
+    }
+    return fileList;
+  }
+
+  /**
+   * ScriptTypes of the included files.
+   *
+   * @return ScriptTypes of the included files.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<ScriptType> getScriptTypes() {
+    return scriptTypes;
+  }
+
+  /**
+   * Best matching compiler for the included files.
+   *
+   * @return Best matching compiler for the included files, or null if no registered compiler
+   *     supports all of their ScriptTypes.
+   */
+  @Nullable
+  public ScriptTypeCompiler getCompiler() {
+    return compiler;
+  }
+
+  /**
+   * A file included by a script folder.
+   */
+  public static final class ManifestFile {
+
+    private final String name;
+    private final Class<?> modelClass;
+    private final ScriptType fileType;
+
+    /**
+     * Included file.
+     *
+     * @param name File name.
+     * @param modelClass Model class the file was resolved as.
+     * @param fileType ScriptType of the file.
+     */
+    public ManifestFile(@Nonnull final String name, @Nonnull final Class<?> modelClass,
+            @Nonnull final ScriptType fileType) {
+      this.name = name;
+      this.modelClass = modelClass;
+      this.fileType = fileType;
+    }
+
+    /**
+     * File name.
+     *
+     * @return File name.
+     */
+    @Nonnull
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Model class the file was resolved as.
+     *
+     * @return Model class the file was resolved as.
+     */
+    @Nonnull
+    public Class<?> getModelClass() {
+      return modelClass;
+    }
+
+    /**
+     * ScriptType of the file.
+     *
+     * @return ScriptType of the file.
+     */
+    @Nonnull
+    public ScriptType getFileType() {
+      return fileType;
+    }
+  }
+}
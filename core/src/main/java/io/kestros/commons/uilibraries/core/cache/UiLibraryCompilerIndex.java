@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.services.CssScriptTypeCompilerService;
+import io.kestros.commons.uilibraries.api.services.JavaScriptScriptTypeCompilerService;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Immutable snapshot of the registered compilers, their ScriptTypes, and the best matching
+ * compiler for each set of ScriptTypes.  A new index is built whenever a compiler service is
+ * registered or unregistered, so compiler lookups never query the service registry.
+ *
+ * <p>
+ * The best compiler for the empty set, for each registered ScriptType on its own, and for the
+ * ScriptTypes of each compiler are computed when the index is built.  Other combinations are
+ * computed on first use and remembered for the lifetime of the index.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public final class UiLibraryCompilerIndex {
+
+  private static final int MAXIMUM_MEMOIZED_SCRIPT_TYPE_SETS = 256;
+
+  private final List<ScriptTypeCompiler> compilers;
+  private final List<CssScriptTypeCompilerService> cssCompilers;
+  private final List<JavaScriptScriptTypeCompilerService> javaScriptCompilers;
+  private final List<ScriptType> cssScriptTypes;
+  private final List<ScriptType> javaScriptScriptTypes;
+  private final List<ScriptType> allScriptTypes;
+  private final Map<Set<ScriptType>, ScriptTypeCompiler> bestCompilers;
+  private final ConcurrentMap<Set<ScriptType>, ScriptTypeCompiler> memoizedBestCompilers
+          = new ConcurrentHashMap<>();
+
+  /**
+   * Builds an index of registered compilers.
+   *
+   * @param compilers All registered compilers, in ranking order.
+   * @param cssCompilers Registered CSS compilers, in ranking order.
+   * @param javaScriptCompilers Registered JavaScript compilers, in ranking order.
+   */
+  public UiLibraryCompilerIndex(@Nonnull final List<? extends ScriptTypeCompiler> compilers,
+          @Nonnull final List<? extends CssScriptTypeCompilerService> cssCompilers,
+          @Nonnull final List<? extends JavaScriptScriptTypeCompilerService> javaScriptCompilers) {
+    this.compilers = Collections.unmodifiableList(new ArrayList<>(compilers));
+    this.cssCompilers = Collections.unmodifiableList(new ArrayList<>(cssCompilers));
+    this.javaScriptCompilers = Collections.unmodifiableList(new ArrayList<>(javaScriptCompilers));
+    this.cssScriptTypes = Collections.unmodifiableList(getScriptTypes(this.cssCompilers));
+    this.javaScriptScriptTypes = Collections.unmodifiableList(
+            getScriptTypes(this.javaScriptCompilers));
+    List<ScriptType> scriptTypes = new ArrayList<>(cssScriptTypes);
+    scriptTypes.addAll(javaScriptScriptTypes);
+    this.allScriptTypes = Collections.unmodifiableList(scriptTypes);
+
+    Set<Set<ScriptType>> scriptTypeSets = new HashSet<>();
+    scriptTypeSets.add(Collections.emptySet());
+    for (ScriptType scriptType : allScriptTypes) {
+      scriptTypeSets.add(Collections.singleton(scriptType));
+    }
+    for (ScriptTypeCompiler compiler : this.compilers) {
+      for (ScriptType scriptType : compiler.getScriptTypes()) {
+        scriptTypeSets.add(Collections.singleton(scriptType));
+      }
+      scriptTypeSets.add(new HashSet<>(compiler.getScriptTypes()));
+    }
+    Map<Set<ScriptType>, ScriptTypeCompiler> compilerMap = new HashMap<>();
+    for (Set<ScriptType> scriptTypeSet : scriptTypeSets) {
+      ScriptTypeCompiler compiler = findCompiler(new ArrayList<>(scriptTypeSet), this.compilers);
+      if (compiler != null) {
+        compilerMap.put(scriptTypeSet, compiler);
+      }
+    }
+    this.bestCompilers = Collections.unmodifiableMap(compilerMap);
+  }
+
+  /**
+   * All registered compilers, in ranking order.
+   *
+   * @return All registered compilers, in ranking order.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<ScriptTypeCompiler> getCompilers() {
+    return compilers;
+  }
+
+  /**
+   * Registered CSS compilers, in ranking order.
+   *
+   * @return Registered CSS compilers, in ranking order.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<CssScriptTypeCompilerService> getCssCompilers() {
+    return cssCompilers;
+  }
+
+  /**
+   * Registered JavaScript compilers, in ranking order.
+   *
+   * @return Registered JavaScript compilers, in ranking order.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<JavaScriptScriptTypeCompilerService> getJavaScriptCompilers() {
+    return javaScriptCompilers;
+  }
+
+  /**
+   * ScriptTypes supported by the registered CSS compilers.
+   *
+   * @return ScriptTypes supported by the registered CSS compilers.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<ScriptType> getCssScriptTypes() {
+    return cssScriptTypes;
+  }
+
+  /**
+   * ScriptTypes supported by the registered JavaScript compilers.
+   *
+   * @return ScriptTypes supported by the registered JavaScript compilers.  The list is
+   *     unmodifiable.
+   */
+  @Nonnull
+  public List<ScriptType> getJavaScriptScriptTypes() {
+    return javaScriptScriptTypes;
+  }
+
+  /**
+   * CSS ScriptTypes followed by JavaScript ScriptTypes.
+   *
+   * @return CSS ScriptTypes followed by JavaScript ScriptTypes.  The list is unmodifiable.
+   */
+  @Nonnull
+  public List<ScriptType> getAllScriptTypes() {
+    return allScriptTypes;
+  }
+
+  /**
+   * Best matching registered compiler for a list of ScriptTypes.
+   *
+   * @param scriptTypes ScriptTypes to compile.
+   * @return Best matching registered compiler, or null if no registered compiler supports all of
+   *     the ScriptTypes.
+   */
+  @Nullable
+  public ScriptTypeCompiler getCompiler(@Nonnull final List<ScriptType> scriptTypes) {
+    Set<ScriptType> scriptTypeSet = new HashSet<>(scriptTypes);
+    if (scriptTypeSet.size() != scriptTypes.size()) {
+      // Repeated ScriptTypes change the size comparison, so they are never memoized.
+      return findCompiler(scriptTypes, compilers);
+    }
+    ScriptTypeCompiler compiler = bestCompilers.get(scriptTypeSet);
+    if (compiler == null) {
+      compiler = memoizedBestCompilers.get(scriptTypeSet);
+    }
+    if (compiler == null) {
+      compiler = findCompiler(scriptTypes, compilers);
+      if (compiler != null
+          && memoizedBestCompilers.size() < MAXIMUM_MEMOIZED_SCRIPT_TYPE_SETS) {
+        memoizedBestCompilers.putIfAbsent(scriptTypeSet, compiler);
+      }
+    }
+    return compiler;
+  }
+
+  /**
+   * Finds the best matching compiler for a list of ScriptTypes.  Compilers that support only a
+   * single ScriptType are preferred for single ScriptType lists, and compilers supporting the
+   * fewest ScriptTypes are preferred otherwise, so that CSS only libraries will never be run
+   * through compilers that could break them.
+   *
+   * @param scriptTypes ScriptTypes to compile.
+   * @param registeredCompilers Compilers to choose from, in ranking order.
+   * @return Best matching compiler, or null if no compiler supports all of the ScriptTypes.
+   */
+  @Nullable
+  public static ScriptTypeCompiler findCompiler(@Nonnull final List<ScriptType> scriptTypes,
+          @Nonnull final List<? extends ScriptTypeCompiler> registeredCompilers) {
+    List<ScriptTypeCompiler> compatibleCompilers = new ArrayList<>();
+    for (ScriptTypeCompiler compiler : registeredCompilers) {
+      List<ScriptType> compilerScriptTypes = compiler.getScriptTypes();
+      if (compilerScriptTypes.size() >= scriptTypes.size() && compilerScriptTypes.containsAll(
+          scriptTypes)) {
+        compatibleCompilers.add(compiler);
+      }
+    }
+    ScriptTypeCompiler compiler = null;
+    if (scriptTypes.size() <= 1) {
+      for (ScriptTypeCompiler compatibleCompiler : compatibleCompilers) {
+        compiler = compatibleCompiler;
+        if (compatibleCompiler.getScriptTypes().size() == 1) {
+          break;
+        }
+      }
+    } else {
+      int bestMatch = Integer.MAX_VALUE;
+      for (ScriptTypeCompiler compatibleCompiler : compatibleCompilers) {
+        if (compatibleCompiler.getScriptTypes().size() < bestMatch) {
+          bestMatch = compatibleCompiler.getScriptTypes().size();
+          compiler = compatibleCompiler;
+        }
+      }
+    }
+    return compiler;
+  }
+
+  @Nonnull
+  private static List<ScriptType> getScriptTypes(
+          @Nonnull final List<? extends ScriptTypeCompiler> compilers) {
+    List<ScriptType> scriptTypeList = new ArrayList<>();
+    for (ScriptTypeCompiler compiler : compilers) {
+      for (ScriptType scriptType : compiler.getScriptTypes()) {
+        if (!scriptTypeList.contains(scriptType)) {
+          scriptTypeList.add(scriptType);
+        }
+      }
+    }
+    return scriptTypeList;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+import org.apache.sling.api.resource.ResourceUtil;
+
+/**
+ * In-heap graph of the files each UiLibrary is built from, with a reverse lookup from files to the
+ * UiLibraries that depend on them.  Files include both the files a library includes and the files
+ * those files import, directly or transitively.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryDependencyGraph {
+
+  private final Map<String, Set<String>> libraryFiles = new HashMap<>();
+  private final NavigableMap<String, Set<String>> fileLibraries = new TreeMap<>();
+
+  /**
+   * Sets the files a UiLibrary depends on, replacing any previously recorded files.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param filePaths Paths of the files the UiLibrary depends on.
+   */
+  public synchronized void put(@Nonnull final String libraryPath,
+          @Nonnull final Collection<String> filePaths) {
+    remove(libraryPath);
+    Set<String> files = new LinkedHashSet<>(filePaths);
+    libraryFiles.put(libraryPath, files);
+    for (String filePath : files) {
+      fileLibraries.computeIfAbsent(filePath, key -> new LinkedHashSet<>()).add(libraryPath);
+    }
+  }
+
+  /**
+   * Removes a UiLibrary and its dependencies from the graph.
+   *
+   * @param libraryPath UiLibrary path.
+   */
+  public synchronized void remove(@Nonnull final String libraryPath) {
+    Set<String> files = libraryFiles.remove(libraryPath);
+    if (files != null) {
+      for (String filePath : files) {
+        Set<String> libraries = fileLibraries.get(filePath);
+        if (libraries != null) {
+          libraries.remove(libraryPath);
+          if (libraries.isEmpty()) {
+            fileLibraries.remove(filePath);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all UiLibraries from the graph.
+   */
+  public synchronized void clear() {
+    libraryFiles.clear();
+    fileLibraries.clear();
+  }
+
+  /**
+   * Whether the graph has an entry for a UiLibrary.
+   *
+   * @param libraryPath UiLibrary path.
+   * @return Whether the graph has an entry for a UiLibrary.
+   */
+  public synchronized boolean contains(@Nonnull final String libraryPath) {
+    return libraryFiles.containsKey(libraryPath);
+  }
+
+  /**
+   * Paths of all UiLibraries in the graph.
+   *
+   * @return Paths of all UiLibraries in the graph.
+   */
+  @Nonnull
+  public synchronized Set<String> getLibraryPaths() {
+    return new LinkedHashSet<>(libraryFiles.keySet());
+  }
+
+  /**
+   * Paths of the files a UiLibrary depends on.
+   *
+   * @param libraryPath UiLibrary path.
+   * @return Paths of the files a UiLibrary depends on, or an empty set if the UiLibrary is not in
+   *     the graph.
+   */
+  @Nonnull
+  public synchronized Set<String> getFilePaths(@Nonnull final String libraryPath) {
+    Set<String> files = libraryFiles.get(libraryPath);
+    if (files == null) {
+      return Collections.emptySet();
+    }
+    return new LinkedHashSet<>(files);
+  }
+
+  /**
+   * Paths of the UiLibraries that depend on a path.  A UiLibrary depends on a path when it depends
+   * on a file at, above or below the path, so changes to a file's jcr:content and removals of
+   * folders are both mapped to the UiLibraries they affect.
+   *
+   * @param path Changed path.
+   * @return Paths of the UiLibraries that depend on a path.
+   */
+  @Nonnull
+  public synchronized Set<String> getDependentLibraryPaths(@Nonnull final String path) {
+    Set<String> libraries = new LinkedHashSet<>();
+    String currentPath = path;
+    while (currentPath != null) {
+      Set<String> fileDependents = fileLibraries.get(currentPath);
+      if (fileDependents != null) {
+        libraries.addAll(fileDependents);
+      }
+      currentPath = ResourceUtil.getParent(currentPath);
+    }
+    String descendantPrefix = path.endsWith("/") ? path : path + "/";
+    for (Set<String> fileDependents : fileLibraries.subMap(descendantPrefix, true,
+            descendantPrefix + Character.MAX_VALUE, false).values()) {
+      libraries.addAll(fileDependents);
+    }
+    return libraries;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-heap cache of UiLibrary outputs that failed to compile, or whose libraries could not be
+ * retrieved.  Entries expire after a short time to live, so that failures are not rebuilt on every
+ * request, but are retried soon after the cause is fixed.  Entries are keyed with {@link
+ * UiLibraryOutputMemoryCache#getKey(String, io.kestros.commons.uilibraries.api.models.ScriptType,
+ * boolean)}, and are removed along with the output of any library they were built from.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryFailureCache {
+
+  private final long maximumEntries;
+  private final Map<String, Failure> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maximumEntries Maximum number of failures to cache.
+   */
+  public UiLibraryFailureCache(final long maximumEntries) {
+    this.maximumEntries = maximumEntries;
+  }
+
+  /**
+   * Retrieves an unexpired failure.  Expired failures are removed.
+   *
+   * @param key Cache key.
+   * @param now Current time, in milliseconds since the epoch.
+   * @return Unexpired failure, or null if the key has no failure cached.
+   */
+  @Nullable
+  public Failure get(@Nonnull final String key, final long now) {
+    Failure failure = entries.get(key);
+    if (failure != null && failure.isExpired(now)) {
+      entries.remove(key, failure);
+      return null;
+    }
+    return failure;
+  }
+
+  /**
+   * Caches a failure.  When the cache is full, expired failures are removed, and the failure is
+   * not cached if none had expired.
+   *
+   * @param key Cache key.
+   * @param failure Failure to cache.
+   * @param now Current time, in milliseconds since the epoch.
+   * @return Whether the failure was cached.
+   */
+  public synchronized boolean put(@Nonnull final String key, @Nonnull final Failure failure,
+          final long now) {
+    if (!entries.containsKey(key) && entries.size() >= maximumEntries) {
+      entries.values().removeIf(entry -> entry.isExpired(now));
+      if (entries.size() >= maximumEntries) {
+        return false;
+      }
+    }
+    entries.put(key, failure);
+    return true;
+  }
+
+  /**
+   * Removes a single failure.
+   *
+   * @param key Cache key.
+   */
+  public void remove(@Nonnull final String key) {
+    entries.remove(key);
+  }
+
+  /**
+   * Removes every failure of an output path, or built from a library path.
+   *
+   * @param libraryPath UiLibrary path.
+   */
+  public void removeLibrary(@Nonnull final String libraryPath) {
+    entries.values().removeIf(
+            failure -> failure.getOutputPath().equals(libraryPath) || failure.getLibraryPaths()
+                    .contains(libraryPath));
+  }
+
+  /**
+   * Removes all cached failures.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Number of cached failures, including expired failures that have not been removed yet.
+   *
+   * @return Number of cached failures.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * UiLibrary output that failed to compile, or whose libraries could not be retrieved.
+   */
+  public static class Failure {
+
+    private final String outputPath;
+    private final List<String> libraryPaths;
+    private final String errorOutput;
+    private final long expires;
+
+    /**
+     * Constructs a failure.
+     *
+     * @param outputPath Path the output is cached under.
+     * @param libraryPaths Paths of the libraries the output is built from.
+     * @param errorOutput Compilation error output, or null if the libraries could not be
+     *     retrieved or compiled.
+     * @param expires Time, in milliseconds since the epoch, that the failure expires.
+     */
+    public Failure(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+            @Nullable final String errorOutput, final long expires) {
+      this.outputPath = outputPath;
+      this.libraryPaths = Collections.unmodifiableList(new ArrayList<>(libraryPaths));
+      this.errorOutput = errorOutput;
+      this.expires = expires;
+    }
+
+    /**
+     * Path the output is cached under.
+     *
+     * @return Path the output is cached under.
+     */
+    @Nonnull
+    public String getOutputPath() {
+      return outputPath;
+    }
+
+    /**
+     * Paths of the libraries the output is built from.
+     *
+     * @return Paths of the libraries the output is built from.
+     */
+    @Nonnull
+    public List<String> getLibraryPaths() {
+      return libraryPaths;
+    }
+
+    /**
+     * Compilation error output.
+     *
+     * @return Compilation error output, or null if the libraries could not be retrieved or
+     *     compiled.
+     */
+    @Nullable
+    public String getErrorOutput() {
+      return errorOutput;
+    }
+
+    /**
+     * Time, in milliseconds since the epoch, that the failure expires.
+     *
+     * @return Time, in milliseconds since the epoch, that the failure expires.
+     */
+    public long getExpires() {
+      return expires;
+    }
+
+    /**
+     * Whether the failure has expired.
+     *
+     * @param now Current time, in milliseconds since the epoch.
+     * @return Whether the failure has expired.
+     */
+    public boolean isExpired(final long now) {
+      return now >= expires;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-heap cache of the content of individual UiLibrary script files, bounded by the total size of
+ * the cached content.  Content is cached with the last-modified state of its file, and is only
+ * returned while the file is in that state, so that a library rebuild only reads the files that
+ * changed.  Content that includes other files, such as LESS files with expanded imports, is cached
+ * with the paths of those files, so that its stamp can cover their last-modified states as well.
+ * When space is needed, the least recently used content is evicted.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryFileContentCache {
+
+  private final long maximumSize;
+  private final LinkedHashMap<String, FileContent> entries = new LinkedHashMap<>(16, 0.75f,
+          true);
+  private long currentSize;
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maximumSize Maximum total size, in bytes, of cached content.
+   */
+  public UiLibraryFileContentCache(final long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Builds the cache key for the content of a file read as a model class.
+   *
+   * @param path File path.
+   * @param modelClass Model class the file is read as.
+   * @return Cache key for the content of a file.
+   */
+  @Nonnull
+  public static String getKey(@Nonnull final String path, @Nonnull final Class<?> modelClass) {
+    return path + "|" + modelClass.getName();
+  }
+
+  /**
+   * Retrieves cached content, if it was cached for the file's current last-modified state.
+   * Content cached for another state is removed.
+   *
+   * @param key Cache key.
+   * @param stamp Current last-modified state of the file.
+   * @return Cached content, or null if the file's current content is not cached.
+   */
+  @Nullable
+  public synchronized String get(@Nonnull final String key, @Nonnull final String stamp) {
+    FileContent fileContent = entries.get(key);
+    if (fileContent == null) {
+      return null;
+    }
+    if (!fileContent.stamp.equals(stamp)) {
+      remove(key);
+      return null;
+    }
+    return fileContent.content;
+  }
+
+  /**
+   * Caches the content of a file, evicting the least recently used content to make space.
+   *
+   * @param key Cache key.
+   * @param stamp Last-modified state of the file the content was read from.
+   * @param content File content.
+   * @return Whether the content was cached.
+   */
+  public synchronized boolean put(@Nonnull final String key, @Nonnull final String stamp,
+          @Nonnull final String content) {
+    return put(key, stamp, content, Collections.<String>emptySet());
+  }
+
+  /**
+   * Caches the content of a file that includes other files, evicting the least recently used
+   * content to make space.
+   *
+   * @param key Cache key.
+   * @param stamp Last-modified state of the file and of the files it includes.
+   * @param content File content.
+   * @param dependencyPaths Paths of the files included in the content.
+   * @return Whether the content was cached.
+   */
+  public synchronized boolean put(@Nonnull final String key, @Nonnull final String stamp,
+          @Nonnull final String content, @Nonnull final Set<String> dependencyPaths) {
+    FileContent fileContent = new FileContent(stamp, content, dependencyPaths);
+    remove(key);
+    if (fileContent.getSize() > maximumSize) {
+      return false;
+    }
+    Iterator<FileContent> iterator = entries.values().iterator();
+    while (currentSize + fileContent.getSize() > maximumSize && iterator.hasNext()) {
+      currentSize -= iterator.next().getSize();
+      iterator.remove();
+    }
+    entries.put(key, fileContent);
+    currentSize += fileContent.getSize();
+    return true;
+  }
+
+  /**
+   * Paths of the files included in cached content, which its stamp must cover.
+   *
+   * @param key Cache key.
+   * @return Paths of the files included in cached content, or null if nothing is cached.
+   */
+  @Nullable
+  public synchronized Set<String> getDependencyPaths(@Nonnull final String key) {
+    FileContent fileContent = entries.get(key);
+    if (fileContent == null) {
+      return null;
+    }
+    return fileContent.dependencyPaths;
+  }
+
+  /**
+   * Removes cached content.
+   *
+   * @param key Cache key.
+   */
+  public synchronized void remove(@Nonnull final String key) {
+    FileContent removedContent = entries.remove(key);
+    if (removedContent != null) {
+      currentSize -= removedContent.getSize();
+    }
+  }
+
+  /**
+   * Removes the cached content of every file at or below a path.
+   *
+   * @param path Path to remove the content of.
+   */
+  public synchronized void removeAll(@Nonnull final String path) {
+    Iterator<Map.Entry<String, FileContent>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, FileContent> entry = iterator.next();
+      if (entry.getKey().startsWith(path + "/") || entry.getKey().startsWith(path + "|")) {
+        currentSize -= entry.getValue().getSize();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached content.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Total size, in bytes, of cached content.
+   *
+   * @return Total size, in bytes, of cached content.
+   */
+  public synchronized long getSize() {
+    return currentSize;
+  }
+
+  /**
+   * Number of files with cached content.
+   *
+   * @return Number of files with cached content.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  private static class FileContent {
+
+    private final String stamp;
+    private final String content;
+    private final Set<String> dependencyPaths;
+
+    FileContent(@Nonnull final String stamp, @Nonnull final String content,
+            @Nonnull final Set<String> dependencyPaths) {
+      this.stamp = stamp;
+      this.content = content;
+      this.dependencyPaths = Collections.unmodifiableSet(new LinkedHashSet<>(dependencyPaths));
+    }
+
+    long getSize() {
+      long size = 2L * (content.length() + stamp.length());
+      for (String dependencyPath : dependencyPaths) {
+        size += 2L * dependencyPath.length();
+      }
+      return size;
+    }
+  }
+}
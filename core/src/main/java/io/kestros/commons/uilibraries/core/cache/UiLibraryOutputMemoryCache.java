@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-heap cache of UiLibrary output, bounded by the total size of the cached output.
+ *
+ * <p>
+ * Eviction is frequency aware.  Access counts are kept for cached and uncached keys, and are
+ * periodically halved so that old popularity fades.  When space is needed, the least frequently
+ * accessed entries are evicted, and a new entry is only admitted if it has been accessed at least
+ * as often as every entry it would evict.  This keeps libraries that are requested on every page in
+ * memory when rarely requested libraries are compiled.
+ * </p>
+ *
+ * <p>
+ * Entries can be marked stale instead of being removed, so that their output can still be served
+ * while fresh output is rebuilt.  Stale entries are replaced by the next {@link #put(String,
+ * String, String)} for their key.
+ * </p>
+ *
+ * <p>
+ * Compressed variants of an output can be cached with it, so that responses in any supported
+ * {@link UiLibraryContentEncoding} are served from memory.  They count against the same maximum
+ * size as the output.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryOutputMemoryCache {
+
+  private static final int AGING_SAMPLE_SIZE = 10000;
+
+  private final long maximumSize;
+  private final Map<String, CachedOutput> entries = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> frequencies = new ConcurrentHashMap<>();
+  private final AtomicLong accessesSinceAging = new AtomicLong();
+  private long currentSize;
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maximumSize Maximum total size, in bytes, of cached output.
+   */
+  public UiLibraryOutputMemoryCache(final long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Builds the cache key for a UiLibrary output.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @return Cache key for a UiLibrary output.
+   */
+  @Nonnull
+  public static String getKey(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified) {
+    return libraryPath + "|" + scriptType.getName() + "|" + minified;
+  }
+
+  /**
+   * Retrieves cached output, and records an access of the key.
+   *
+   * @param key Cache key.
+   * @return Cached output, or null if the key is not cached.
+   */
+  @Nullable
+  public CachedOutput get(@Nonnull final String key) {
+    recordAccess(key);
+    return entries.get(key);
+  }
+
+  /**
+   * Caches output, created now, if it fits and is accessed at least as often as the entries it
+   * would evict.
+   *
+   * @param key Cache key.
+   * @param output Output to cache.
+   * @param eTag ETag of the output.
+   * @return Whether the output was cached.
+   */
+  public boolean put(@Nonnull final String key, @Nonnull final String output,
+          @Nonnull final String eTag) {
+    return put(key, output, eTag, System.currentTimeMillis());
+  }
+
+  /**
+   * Caches output, if it fits and is accessed at least as often as the entries it would evict.
+   *
+   * @param key Cache key.
+   * @param output Output to cache.
+   * @param eTag ETag of the output.
+   * @param created Time, in milliseconds since the epoch, that the output was cached.
+   * @return Whether the output was cached.
+   */
+  public boolean put(@Nonnull final String key, @Nonnull final String output,
+          @Nonnull final String eTag, final long created) {
+    return put(key, new CachedOutput(output, eTag, created));
+  }
+
+  /**
+   * Caches output, and any compressed variants it holds, if it fits and is accessed at least as
+   * often as the entries it would evict.
+   *
+   * @param key Cache key.
+   * @param cachedOutput Output to cache.
+   * @return Whether the output was cached.
+   */
+  public synchronized boolean put(@Nonnull final String key,
+          @Nonnull final CachedOutput cachedOutput) {
+    if (cachedOutput.getSize() > maximumSize) {
+      return false;
+    }
+    CachedOutput existingOutput = entries.remove(key);
+    if (existingOutput != null) {
+      currentSize -= existingOutput.getSize();
+    }
+
+    int candidateFrequency = getFrequency(key);
+    List<String> victims = new ArrayList<>();
+    long freedSize = 0;
+    while (currentSize - freedSize + cachedOutput.getSize() > maximumSize) {
+      String victim = getLeastFrequentKey(victims);
+      if (victim == null || getFrequency(victim) > candidateFrequency) {
+        return false;
+      }
+      victims.add(victim);
+      freedSize += entries.get(victim).getSize();
+    }
+    for (String victim : victims) {
+      entries.remove(victim);
+    }
+    entries.put(key, cachedOutput);
+    currentSize += cachedOutput.getSize() - freedSize;
+    return true;
+  }
+
+  /**
+   * Removes a single cached output.
+   *
+   * @param key Cache key.
+   */
+  public synchronized void remove(@Nonnull final String key) {
+    CachedOutput removedOutput = entries.remove(key);
+    if (removedOutput != null) {
+      currentSize -= removedOutput.getSize();
+    }
+  }
+
+  /**
+   * Removes all cached output.  Access frequencies are kept.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Marks a single cached output as stale.  Stale output is kept until it is replaced or evicted.
+   *
+   * @param key Cache key.
+   */
+  public synchronized void markStale(@Nonnull final String key) {
+    entries.computeIfPresent(key, (k, cachedOutput) -> cachedOutput.asStale());
+  }
+
+  /**
+   * Marks all cached output as stale.  Stale output is kept until it is replaced or evicted.
+   */
+  public synchronized void markAllStale() {
+    for (Map.Entry<String, CachedOutput> entry : entries.entrySet()) {
+      entry.setValue(entry.getValue().asStale());
+    }
+  }
+
+  /**
+   * Removes cached output only if it is stale, so that fresh output cached in the meantime is
+   * kept.
+   *
+   * @param key Cache key.
+   * @return Whether stale output was removed.
+   */
+  public synchronized boolean removeIfStale(@Nonnull final String key) {
+    CachedOutput cachedOutput = entries.get(key);
+    if (cachedOutput != null && cachedOutput.isStale()) {
+      remove(key);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Total size, in bytes, of cached output.
+   *
+   * @return Total size, in bytes, of cached output.
+   */
+  public synchronized long getSize() {
+    return currentSize;
+  }
+
+  /**
+   * Maximum total size, in bytes, of cached output.
+   *
+   * @return Maximum total size, in bytes, of cached output.
+   */
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  int getFrequency(@Nonnull final String key) {
+    AtomicInteger frequency = frequencies.get(key);
+    if (frequency != null) {
+      return frequency.get();
+    }
+    return 0;
+  }
+
+  void recordAccess(@Nonnull final String key) {
+    frequencies.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    if (accessesSinceAging.incrementAndGet() >= AGING_SAMPLE_SIZE) {
+      age();
+    }
+  }
+
+  synchronized void age() {
+    if (accessesSinceAging.get() < AGING_SAMPLE_SIZE) {
+      return;
+    }
+    accessesSinceAging.set(0);
+    Iterator<Map.Entry<String, AtomicInteger>> iterator = frequencies.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, AtomicInteger> frequency = iterator.next();
+      if (frequency.getValue().updateAndGet(count -> count / 2) == 0
+          && !entries.containsKey(frequency.getKey())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @Nullable
+  private String getLeastFrequentKey(@Nonnull final List<String> excludedKeys) {
+    String leastFrequentKey = null;
+    int leastFrequency = Integer.MAX_VALUE;
+    for (String key : entries.keySet()) {
+      int frequency = getFrequency(key);
+      if (frequency < leastFrequency && !excludedKeys.contains(key)) {
+        leastFrequentKey = key;
+        leastFrequency = frequency;
+      }
+    }
+    return leastFrequentKey;
+  }
+
+  /**
+   * UiLibrary output held in memory as UTF-8 bytes, with its ETag.  Output is kept encoded so that
+   * it can be written to responses without being re-encoded for each request.  Compressed variants
+   * of the output are optional.
+   */
+  public static class CachedOutput {
+
+    private final byte[] output;
+    private final Map<UiLibraryContentEncoding, byte[]> encodedOutputs;
+    private final String eTag;
+    private final long created;
+    private final boolean stale;
+    private final AtomicBoolean revalidationRequested = new AtomicBoolean();
+
+    CachedOutput(@Nonnull final String output, @Nonnull final String eTag, final long created) {
+      this(output, Collections.emptyMap(), eTag, created);
+    }
+
+    /**
+     * Constructs cached output with compressed variants.
+     *
+     * @param output Output to cache.
+     * @param encodedOutputs Compressed variants of the output, by encoding.  Identity variants are
+     *     ignored.
+     * @param eTag ETag of the output.
+     * @param created Time, in milliseconds since the epoch, that the output was cached.
+     */
+    public CachedOutput(@Nonnull final String output,
+            @Nonnull final Map<UiLibraryContentEncoding, byte[]> encodedOutputs,
+            @Nonnull final String eTag, final long created) {
+      this(output.getBytes(StandardCharsets.UTF_8), getCompressedOutputs(encodedOutputs), eTag,
+              created, false);
+    }
+
+    private CachedOutput(@Nonnull final byte[] output,
+            @Nonnull final Map<UiLibraryContentEncoding, byte[]> encodedOutputs,
+            @Nonnull final String eTag, final long created, final boolean stale) {
+      this.output = output;
+      this.encodedOutputs = encodedOutputs;
+      this.eTag = eTag;
+      this.created = created;
+      this.stale = stale;
+    }
+
+    @Nonnull
+    CachedOutput asStale() {
+      return new CachedOutput(output, encodedOutputs, eTag, created, true);
+    }
+
+    @Nonnull
+    private static Map<UiLibraryContentEncoding, byte[]> getCompressedOutputs(
+            @Nonnull final Map<UiLibraryContentEncoding, byte[]> encodedOutputs) {
+      Map<UiLibraryContentEncoding, byte[]> compressedOutputs = new EnumMap<>(
+              UiLibraryContentEncoding.class);
+      for (Map.Entry<UiLibraryContentEncoding, byte[]> entry : encodedOutputs.entrySet()) {
+        if (entry.getKey() != UiLibraryContentEncoding.IDENTITY) {
+          compressedOutputs.put(entry.getKey(), entry.getValue());
+        }
+      }
+      return Collections.unmodifiableMap(compressedOutputs);
+    }
+
+    /**
+     * Cached output.  Decodes the cached bytes, prefer {@link #getOutputStream()} when writing
+     * responses.
+     *
+     * @return Cached output.
+     */
+    @Nonnull
+    public String getOutput() {
+      return new String(output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stream over the cached UTF-8 bytes.  The bytes are not copied.
+     *
+     * @return Stream over the cached UTF-8 bytes.
+     */
+    @Nonnull
+    public InputStream getOutputStream() {
+      return new ByteArrayInputStream(output);
+    }
+
+    /**
+     * Length, in bytes, of the UTF-8 encoded output.
+     *
+     * @return Length, in bytes, of the UTF-8 encoded output.
+     */
+    public long getContentLength() {
+      return output.length;
+    }
+
+    /**
+     * Whether output is held in an encoding.  Identity output is always held.
+     *
+     * @param encoding Content encoding.
+     * @return Whether output is held in the encoding.
+     */
+    public boolean hasEncoding(@Nonnull final UiLibraryContentEncoding encoding) {
+      return encoding == UiLibraryContentEncoding.IDENTITY || encodedOutputs.containsKey(encoding);
+    }
+
+    /**
+     * Stream over the output in an encoding.  The bytes are not copied.
+     *
+     * @param encoding Content encoding.
+     * @return Stream over the output in the encoding, or null if it is not held.
+     */
+    @Nullable
+    public InputStream getOutputStream(@Nonnull final UiLibraryContentEncoding encoding) {
+      if (encoding == UiLibraryContentEncoding.IDENTITY) {
+        return getOutputStream();
+      }
+      byte[] encodedOutput = encodedOutputs.get(encoding);
+      if (encodedOutput != null) {
+        return new ByteArrayInputStream(encodedOutput);
+      }
+      return null;
+    }
+
+    /**
+     * Length, in bytes, of the output in an encoding.
+     *
+     * @param encoding Content encoding.
+     * @return Length, in bytes, of the output in the encoding, or -1 if it is not held.
+     */
+    public long getContentLength(@Nonnull final UiLibraryContentEncoding encoding) {
+      if (encoding == UiLibraryContentEncoding.IDENTITY) {
+        return getContentLength();
+      }
+      byte[] encodedOutput = encodedOutputs.get(encoding);
+      if (encodedOutput != null) {
+        return encodedOutput.length;
+      }
+      return -1;
+    }
+
+    /**
+     * ETag of the cached output.
+     *
+     * @return ETag of the cached output.
+     */
+    @Nonnull
+    public String getETag() {
+      return eTag;
+    }
+
+    /**
+     * Time, in milliseconds since the epoch, that the output was cached.
+     *
+     * @return Time, in milliseconds since the epoch, that the output was cached.
+     */
+    public long getCreated() {
+      return created;
+    }
+
+    /**
+     * Whether the output was cached before the last purge, and needs to be rebuilt.
+     *
+     * @return Whether the output was cached before the last purge, and needs to be rebuilt.
+     */
+    public boolean isStale() {
+      return stale;
+    }
+
+    /**
+     * Claims revalidation of stale output.  Only the first call for an entry succeeds, so that
+     * stale output is only rebuilt once.
+     *
+     * @return Whether the caller should revalidate the output.
+     */
+    public boolean requestRevalidation() {
+      return stale && revalidationRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * Approximate heap size of the cached output and its compressed variants, in bytes.
+     *
+     * @return Approximate heap size of the cached output and its compressed variants, in bytes.
+     */
+    public long getSize() {
+      long size = output.length + 2L * eTag.length();
+      for (byte[] encodedOutput : encodedOutputs.values()) {
+        size += encodedOutput.length;
+      }
+      return size;
+    }
+  }
+}
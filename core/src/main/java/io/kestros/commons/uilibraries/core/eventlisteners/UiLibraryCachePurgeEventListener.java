@@ -24,11 +24,22 @@ import static io.kestros.commons.osgiserviceutils.utils.OsgiServiceUtils.getAllO
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.kestros.commons.osgiserviceutils.services.eventlisteners.impl.BaseCachePurgeOnResourceChangeEventListener;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompileManifestService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryDependencyIndexService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
@@ -40,6 +51,16 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Purges cached UiLibrary CSS and JavaScript on caches after changes under /apps, /etc, and /libs.
+ * Changes are mapped to the kes:UiLibrary they belong to, and only the output of those libraries
+ * (and of bundles that include them) is purged.  Changes to files that other libraries depend on,
+ * such as imported LESS files, are mapped to those libraries with the
+ * {@link UiLibraryDependencyIndexService}, which is kept up to date with the same changes.  Changes
+ * that belong to no library are ignored.  Caches are purged completely when the affected libraries
+ * cannot be determined, such as a change to a LESS file while no dependency index is available, or
+ * while it is still being built.
+ * Complete purges switch {@link UiLibraryOutputCacheService} caches to a new cache generation, so
+ * that output which is still being served is not deleted.  The compile manifests of affected
+ * libraries are purged from the {@link UiLibraryCompileManifestService} as well.
  */
 @SuppressFBWarnings("IMC_IMMATURE_CLASS_NO_TOSTRING")
 @Component(service = {ResourceChangeListener.class, UiLibraryCachePurgeEventListener.class},
@@ -58,10 +79,23 @@ public class UiLibraryCachePurgeEventListener extends BaseCachePurgeOnResourceCh
   private static final Logger LOG = LoggerFactory.getLogger(
           UiLibraryCachePurgeEventListener.class);
 
+  private static final String UI_LIBRARY_RESOURCE_TYPE = "kes:UiLibrary";
+  private static final String LESS_EXTENSION = ".less";
+  private static final String[] FULL_PURGE_PATHS = {"/etc/ui-frameworks/",
+          "/etc/vendor-libraries/"};
+
   @Reference(cardinality = ReferenceCardinality.OPTIONAL,
           policyOption = ReferencePolicyOption.GREEDY)
   private ResourceResolverFactory resourceResolverFactory;
 
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryDependencyIndexService dependencyIndexService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCompileManifestService compileManifestService;
+
   @Nonnull
   @Override
   public String getDisplayName() {
@@ -73,6 +107,194 @@ public class UiLibraryCachePurgeEventListener extends BaseCachePurgeOnResourceCh
     LOG.info("Deactivating UiLibraryCachePurgeEventListener.");
   }
 
+  @Override
+  public void onChange(@Nonnull final List<ResourceChange> changes) {
+    Set<String> libraryPaths = null;
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      libraryPaths = getAffectedLibraryPaths(changes, resourceResolver);
+      updateDependencyIndex(changes, libraryPaths, resourceResolver);
+    } catch (LoginException e) {
+      LOG.warn("Unable to map resource changes to UiLibraries. {}",
+              e.getMessage().replaceAll("[\r\n]", ""));
+    }
+    purgeCompileManifests(libraryPaths);
+    if (!isTargetedPurgeSupported()) {
+      super.onChange(changes);
+    } else if (libraryPaths == null || !purgeLibraryOutput(libraryPaths)) {
+      if (!purgeAllOutput()) {
+        super.onChange(changes);
+      }
+    }
+  }
+
+  /**
+   * Paths of the UiLibraries whose output is affected by resource changes.
+   *
+   * @param changes Resource changes.
+   * @param resourceResolver ResourceResolver used to find the UiLibraries changed resources belong
+   *     to.
+   * @return Paths of the UiLibraries whose output is affected by resource changes, or null if the
+   *     affected libraries cannot be determined.
+   */
+  @Nullable
+  Set<String> getAffectedLibraryPaths(@Nonnull final List<ResourceChange> changes,
+          @Nonnull final ResourceResolver resourceResolver) {
+    for (ResourceChange change : changes) {
+      String path = change.getPath();
+      boolean untrackedLessChange = isLessPath(path) && !isDependencyIndexAvailable();
+      if (isProviderChange(change) || requiresFullPurge(path) || untrackedLessChange) {
+        LOG.debug("Change to {} may affect any UiLibrary.", path.replaceAll("[\r\n]", ""));
+        return null;
+      }
+    }
+    return getChangedLibraryPaths(changes, resourceResolver);
+  }
+
+  /**
+   * Re-indexes the dependencies of UiLibraries affected by resource changes.  Must be called after
+   * the affected libraries have been determined, as those are looked up with the dependencies that
+   * were indexed before the changes.
+   */
+  private void updateDependencyIndex(@Nonnull final List<ResourceChange> changes,
+          @Nullable final Set<String> affectedLibraryPaths,
+          @Nonnull final ResourceResolver resourceResolver) {
+    UiLibraryDependencyIndexService dependencyIndexService = getDependencyIndexService();
+    if (dependencyIndexService == null) {
+      return;
+    }
+    for (ResourceChange change : changes) {
+      if (isProviderChange(change)) {
+        // Queued on the index's background thread, so the observation thread is not held up.
+        dependencyIndexService.rebuildIndex();
+        return;
+      }
+    }
+    if (affectedLibraryPaths != null) {
+      dependencyIndexService.indexLibraries(affectedLibraryPaths);
+    } else {
+      dependencyIndexService.indexLibraries(getChangedLibraryPaths(changes, resourceResolver));
+    }
+  }
+
+  @Nonnull
+  private Set<String> getChangedLibraryPaths(@Nonnull final List<ResourceChange> changes,
+          @Nonnull final ResourceResolver resourceResolver) {
+    UiLibraryDependencyIndexService dependencyIndexService = getDependencyIndexService();
+    Set<String> libraryPaths = new LinkedHashSet<>();
+    for (ResourceChange change : changes) {
+      String path = change.getPath();
+      String libraryPath = getLibraryPath(path, resourceResolver);
+      if (libraryPath != null) {
+        libraryPaths.add(libraryPath);
+      }
+      if (dependencyIndexService != null) {
+        libraryPaths.addAll(dependencyIndexService.getDependentLibraryPaths(path));
+      }
+    }
+    return libraryPaths;
+  }
+
+  private boolean isDependencyIndexAvailable() {
+    UiLibraryDependencyIndexService dependencyIndexService = getDependencyIndexService();
+    return dependencyIndexService != null && dependencyIndexService.isAvailable();
+  }
+
+  private static boolean isProviderChange(@Nonnull final ResourceChange change) {
+    return change.getType() == ChangeType.PROVIDER_ADDED
+           || change.getType() == ChangeType.PROVIDER_REMOVED;
+  }
+
+  static boolean requiresFullPurge(@Nonnull final String path) {
+    for (String fullPurgePath : FULL_PURGE_PATHS) {
+      if (path.startsWith(fullPurgePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean isLessPath(@Nonnull final String path) {
+    for (String pathSegment : path.split("/")) {
+      if (pathSegment.endsWith(LESS_EXTENSION)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Path of the nearest kes:UiLibrary at or above a changed path.  Removed resources are mapped
+   * through their nearest remaining ancestor.
+   */
+  @Nullable
+  static String getLibraryPath(@Nonnull final String path,
+          @Nonnull final ResourceResolver resourceResolver) {
+    String currentPath = path;
+    while (currentPath != null) {
+      Resource resource = resourceResolver.getResource(currentPath);
+      if (resource != null && resource.isResourceType(UI_LIBRARY_RESOURCE_TYPE)) {
+        return currentPath;
+      }
+      currentPath = ResourceUtil.getParent(currentPath);
+    }
+    return null;
+  }
+
+  /**
+   * Removes the compile manifests of affected UiLibraries, so files that were added to or removed
+   * from a library folder are discovered again.
+   */
+  private void purgeCompileManifests(@Nullable final Set<String> libraryPaths) {
+    UiLibraryCompileManifestService compileManifestService = getCompileManifestService();
+    if (compileManifestService == null) {
+      return;
+    }
+    if (libraryPaths == null) {
+      compileManifestService.purgeAllCompileManifests();
+      return;
+    }
+    for (String libraryPath : libraryPaths) {
+      compileManifestService.purgeCompileManifests(libraryPath);
+    }
+  }
+
+  private boolean isTargetedPurgeSupported() {
+    List<UiLibraryCacheService> cacheServices = getCacheServices();
+    for (UiLibraryCacheService cacheService : cacheServices) {
+      if (!(cacheService instanceof UiLibraryOutputCacheService)) {
+        return false;
+      }
+    }
+    return !cacheServices.isEmpty();
+  }
+
+  private boolean purgeLibraryOutput(@Nonnull final Set<String> libraryPaths) {
+    if (libraryPaths.isEmpty()) {
+      LOG.debug("Resource changes do not affect any UiLibrary, no caches were purged.");
+      return true;
+    }
+    for (UiLibraryCacheService cacheService : getCacheServices()) {
+      for (String libraryPath : libraryPaths) {
+        if (!((UiLibraryOutputCacheService) cacheService).purgeLibraryOutput(libraryPath)) {
+          return false;
+        }
+      }
+    }
+    LOG.info("Purged cached output for UiLibraries {}.",
+            String.join(", ", libraryPaths).replaceAll("[\r\n]", ""));
+    return true;
+  }
+
+  private boolean purgeAllOutput() {
+    for (UiLibraryCacheService cacheService : getCacheServices()) {
+      if (!((UiLibraryOutputCacheService) cacheService).purgeAllOutput()) {
+        return false;
+      }
+    }
+    LOG.info("Switched UiLibrary caches to a new cache generation.");
+    return true;
+  }
+
   @Nonnull
   @Override
   protected Logger getLogger() {
@@ -108,4 +330,14 @@ public class UiLibraryCachePurgeEventListener extends BaseCachePurgeOnResourceCh
     return resourceResolverFactory;
   }
 
+  @Nullable
+  UiLibraryDependencyIndexService getDependencyIndexService() {
+    return dependencyIndexService;
+  }
+
+  @Nullable
+  UiLibraryCompileManifestService getCompileManifestService() {
+    return compileManifestService;
+  }
+
 }
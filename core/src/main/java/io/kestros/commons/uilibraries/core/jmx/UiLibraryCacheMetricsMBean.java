@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.jmx;
+
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.TabularData;
+
+/**
+ * JMX view of UiLibrary cache hits, misses, fill times and bytes.
+ */
+public interface UiLibraryCacheMetricsMBean {
+
+  /**
+   * Requests served from the cache.
+   *
+   * @return Requests served from the cache.
+   */
+  long getHitCount();
+
+  /**
+   * Requests whose output was not cached.
+   *
+   * @return Requests whose output was not cached.
+   */
+  long getMissCount();
+
+  /**
+   * Fraction of requests served from the cache.
+   *
+   * @return Fraction of requests served from the cache.
+   */
+  double getHitRatio();
+
+  /**
+   * Outputs compiled and cached for requests that missed the cache.
+   *
+   * @return Outputs compiled and cached for requests that missed the cache.
+   */
+  long getFillCount();
+
+  /**
+   * Average time, in milliseconds, taken to compile and cache an output.
+   *
+   * @return Average time, in milliseconds, taken to compile and cache an output.
+   */
+  double getAverageFillTime();
+
+  /**
+   * Longest time, in milliseconds, taken to compile and cache an output.
+   *
+   * @return Longest time, in milliseconds, taken to compile and cache an output.
+   */
+  long getMaximumFillTime();
+
+  /**
+   * Bytes written to responses.
+   *
+   * @return Bytes written to responses.
+   */
+  long getBytesServed();
+
+  /**
+   * Bytes written to the cache.
+   *
+   * @return Bytes written to the cache.
+   */
+  long getBytesStored();
+
+  /**
+   * Counters broken down by script type and minified flag, keyed by output (css, css.min, js,
+   * js.min).
+   *
+   * @return Counters broken down by script type and minified flag.
+   * @throws OpenDataException Counters could not be converted to open data.
+   */
+  TabularData getStatistics() throws OpenDataException;
+
+  /**
+   * Resets all counters.
+   */
+  void resetStatistics();
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.jobs;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.exceptions.CacheBuilderException;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.structuredslingmodels.exceptions.InvalidResourceTypeException;
+import io.kestros.commons.uilibraries.api.exceptions.LibraryRetrievalException;
+import io.kestros.commons.uilibraries.api.exceptions.NoMatchingCompilerException;
+import io.kestros.commons.uilibraries.api.exceptions.ScriptCompressionException;
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds UiLibrary output that is being served stale after a cache purge.  Jobs are added by
+ * {@link UiLibraryOutputCacheService} implementations, and the rebuilt output replaces the stale
+ * output once it has been cached.  If the output cannot be rebuilt, the stale output is removed so
+ * that the next request compiles the library itself.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+@Component(immediate = true,
+        service = JobConsumer.class,
+        property = JobConsumer.PROPERTY_TOPICS + "=kestros/ui-libraries/cache")
+public class UiLibraryCacheRevalidationJobConsumer extends BaseServiceResolverService
+        implements JobConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+          UiLibraryCacheRevalidationJobConsumer.class);
+
+  public static final String PROPERTY_LIBRARY_PATH = "libraryPath";
+  public static final String PROPERTY_SCRIPT_TYPE = "scriptType";
+  public static final String PROPERTY_MINIFIED = "minified";
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCacheService uiLibraryCacheService;
+
+  @Nonnull
+  @Override
+  public String getDisplayName() {
+    return "UI Library Cache Revalidation Job Consumer";
+  }
+
+  @Nonnull
+  @Override
+  public JobResult process(@Nonnull final Job job) {
+    String libraryPath = job.getProperty(PROPERTY_LIBRARY_PATH, StringUtils.EMPTY);
+    ScriptTypes scriptType = getScriptType(job.getProperty(PROPERTY_SCRIPT_TYPE,
+            StringUtils.EMPTY));
+    boolean minified = job.getProperty(PROPERTY_MINIFIED, Boolean.FALSE);
+    if (StringUtils.isEmpty(libraryPath) || scriptType == null) {
+      LOG.warn("Unable to revalidate UiLibrary cache, job is missing a library path or has an "
+               + "unknown script type.");
+      return JobResult.CANCEL;
+    }
+    if (uiLibraryRetrievalService == null || uiLibraryCompilationService == null
+        || uiLibraryCacheService == null) {
+      LOG.warn("Unable to revalidate cached {} for library {}. Required services not detected.",
+              scriptType.getName(), libraryPath.replaceAll("[\r\n]", ""));
+      removeStaleOutput(libraryPath, scriptType, minified);
+      return JobResult.CANCEL;
+    }
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      UiLibrary library = uiLibraryRetrievalService.getUiLibrary(libraryPath, resourceResolver);
+      String output = uiLibraryCompilationService.getUiLibraryOutput(library, scriptType,
+              resourceResolver);
+      if (output.startsWith("<h1>")) {
+        LOG.warn("Unable to revalidate cached {} for library {}. Compilation failed.",
+                scriptType.getName(), libraryPath.replaceAll("[\r\n]", ""));
+        removeStaleOutput(libraryPath, scriptType, minified);
+        return JobResult.CANCEL;
+      }
+      if (minified && uiLibraryMinificationService != null) {
+        output = uiLibraryMinificationService.getMinifiedOutput(output, scriptType);
+      }
+      uiLibraryCacheService.cacheUiLibraryScript(libraryPath, output, scriptType, minified,
+              resourceResolver);
+      LOG.debug("Revalidated cached {} for library {}.", scriptType.getName(),
+              libraryPath.replaceAll("[\r\n]", ""));
+      return JobResult.OK;
+    } catch (LoginException | LibraryRetrievalException | InvalidResourceTypeException
+                     | NoMatchingCompilerException | ScriptCompressionException
+                     | CacheBuilderException e) {
+      LOG.warn("Unable to revalidate cached {} for library {}. {}", scriptType.getName(),
+              libraryPath.replaceAll("[\r\n]", ""),
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+      removeStaleOutput(libraryPath, scriptType, minified);
+      return JobResult.CANCEL;
+    }
+  }
+
+  private void removeStaleOutput(@Nonnull final String libraryPath,
+          @Nonnull final ScriptTypes scriptType, final boolean minified) {
+    if (uiLibraryCacheService instanceof UiLibraryOutputCacheService) {
+      ((UiLibraryOutputCacheService) uiLibraryCacheService).removeStaleOutput(libraryPath,
+              scriptType, minified);
+    }
+  }
+
+  @Nullable
+  static ScriptTypes getScriptType(@Nonnull final String scriptTypeName) {
+    for (ScriptTypes scriptType : ScriptTypes.values()) {
+      if (scriptType.getName().equals(scriptTypeName)) {
+        return scriptType;
+      }
+    }
+    return null;
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.jobs;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.exceptions.CacheBuilderException;
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.structuredslingmodels.exceptions.InvalidResourceTypeException;
+import io.kestros.commons.uilibraries.api.exceptions.LibraryRetrievalException;
+import io.kestros.commons.uilibraries.api.exceptions.NoMatchingCompilerException;
+import io.kestros.commons.uilibraries.api.exceptions.ScriptCompressionException;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles and caches the CSS and JavaScript output of UiLibraries, minified and unminified, before
+ * they are requested.  Libraries are compiled on a fixed size thread pool, separate from the pool
+ * that compiles output for requests, and output that is already cached is skipped.  Progress is
+ * reported through the job's {@link JobExecutionContext}.
+ *
+ * <p>
+ * Warm-up jobs warm every kes:UiLibrary, unless the job lists the library paths to warm.  A job is
+ * added on activation when warmUpOnActivation is enabled, and by
+ * {@link UiLibraryOutputCacheService} implementations after purges.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+@Component(immediate = true,
+        service = {JobExecutor.class, UiLibraryCacheWarmUpJobExecutor.class},
+        property = JobExecutor.PROPERTY_TOPICS + "=" + UiLibraryCacheWarmUpJobExecutor.TOPIC)
+public class UiLibraryCacheWarmUpJobExecutor extends BaseServiceResolverService
+        implements JobExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+          UiLibraryCacheWarmUpJobExecutor.class);
+
+  public static final String TOPIC = "kestros/ui-libraries/cache/warm-up";
+  public static final String PROPERTY_LIBRARY_PATHS = "libraryPaths";
+
+  static final String PROPERTY_THREAD_COUNT = "threadCount";
+  static final String PROPERTY_WARM_UP_ON_ACTIVATION = "warmUpOnActivation";
+
+  private static final String UI_LIBRARY_QUERY = "SELECT * FROM [kes:UiLibrary]";
+  private static final String QUERY_LANGUAGE_JCR_SQL2 = "JCR-SQL2";
+  private static final List<ScriptType> SCRIPT_TYPES = Arrays.asList(ScriptTypes.CSS,
+          ScriptTypes.JAVASCRIPT);
+
+  enum WarmUpResult {
+    WARMED, SKIPPED, FAILED
+  }
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private JobManager jobManager;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCacheService uiLibraryCacheService;
+
+  private volatile ThreadPoolExecutor executor;
+
+  @Nonnull
+  @Override
+  public String getDisplayName() {
+    return "UI Library Cache Warm-Up Job Executor";
+  }
+
+  @Override
+  public void activate(@Nonnull ComponentContext componentContext) {
+    int threadCount = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_THREAD_COUNT, getDefaultThreadCount()));
+    executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), new WarmUpThreadFactory());
+    super.activate(componentContext);
+    if (ComponentPropertyUtils.getBooleanProperty(componentContext,
+            PROPERTY_WARM_UP_ON_ACTIVATION, false)) {
+      addWarmUpJob(jobManager, Collections.emptyList());
+    }
+  }
+
+  @Override
+  public void deactivate(@Nonnull ComponentContext componentContext) {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    super.deactivate(componentContext);
+  }
+
+  /**
+   * Adds a warm-up job.
+   *
+   * @param jobManager JobManager to add the job with.
+   * @param libraryPaths Paths of the UiLibraries to warm.  Empty to warm all UiLibraries.
+   * @return Whether the job was added.
+   */
+  public static boolean addWarmUpJob(@Nullable final JobManager jobManager,
+          @Nonnull final Collection<String> libraryPaths) {
+    if (jobManager == null) {
+      LOG.warn("Unable to add UiLibrary cache warm-up job. JobManager not detected.");
+      return false;
+    }
+    Map<String, Object> jobProperties = new HashMap<>();
+    if (!libraryPaths.isEmpty()) {
+      jobProperties.put(PROPERTY_LIBRARY_PATHS, libraryPaths.toArray(new String[0]));
+    }
+    if (jobManager.addJob(TOPIC, jobProperties) == null) {
+      LOG.warn("Unable to add UiLibrary cache warm-up job.");
+      return false;
+    }
+    LOG.debug("Added UiLibrary cache warm-up job.");
+    return true;
+  }
+
+  @Nonnull
+  @Override
+  public JobExecutionResult process(@Nonnull final Job job,
+          @Nonnull final JobExecutionContext context) {
+    ThreadPoolExecutor currentExecutor = executor;
+    if (currentExecutor == null || uiLibraryRetrievalService == null
+        || uiLibraryCompilationService == null || uiLibraryCacheService == null) {
+      LOG.warn("Unable to warm UiLibrary cache. Required services not detected.");
+      return context.result().message("Required services not detected.").cancelled();
+    }
+    long startTime = System.currentTimeMillis();
+    Set<String> libraryPaths = getLibraryPaths(job);
+    int taskCount = libraryPaths.size() * SCRIPT_TYPES.size();
+    context.initProgress(taskCount, -1);
+    context.log("Warming cached output of {0} UiLibraries.", libraryPaths.size());
+
+    ExecutorCompletionService<WarmUpResult> completionService = new ExecutorCompletionService<>(
+            currentExecutor);
+    List<Future<WarmUpResult>> futures = new ArrayList<>();
+    for (String libraryPath : libraryPaths) {
+      for (ScriptType scriptType : SCRIPT_TYPES) {
+        futures.add(completionService.submit(() -> warmUp(libraryPath, scriptType)));
+      }
+    }
+
+    Map<WarmUpResult, Integer> resultCounts = new HashMap<>();
+    try {
+      for (int completed = 0; completed < taskCount; completed++) {
+        if (context.isStopped()) {
+          cancel(futures);
+          return context.result().message("Warm-up was stopped.").cancelled();
+        }
+        WarmUpResult result = completionService.take().get();
+        resultCounts.merge(result, 1, Integer::sum);
+        context.incrementProgressCount(1);
+      }
+    } catch (InterruptedException e) {
+      cancel(futures);
+      Thread.currentThread().interrupt();
+      return context.result().message("Warm-up was interrupted.").cancelled();
+    } catch (ExecutionException e) {
+      cancel(futures);
+      LOG.warn("UiLibrary cache warm-up failed. {}",
+              String.valueOf(e.getCause()).replaceAll("[\r\n]", ""));
+      return context.result().message("Warm-up failed.").failed();
+    }
+
+    String message = String.format(
+            "Warmed UiLibrary cache in %d ms. %d outputs compiled, %d already cached, %d failed.",
+            System.currentTimeMillis() - startTime,
+            resultCounts.getOrDefault(WarmUpResult.WARMED, 0),
+            resultCounts.getOrDefault(WarmUpResult.SKIPPED, 0),
+            resultCounts.getOrDefault(WarmUpResult.FAILED, 0));
+    LOG.info(message);
+    context.log(message);
+    return context.result().message(message).succeeded();
+  }
+
+  @Nonnull
+  Set<String> getLibraryPaths(@Nonnull final Job job) {
+    Set<String> libraryPaths = new LinkedHashSet<>();
+    String[] jobLibraryPaths = job.getProperty(PROPERTY_LIBRARY_PATHS, String[].class);
+    if (jobLibraryPaths != null && jobLibraryPaths.length > 0) {
+      libraryPaths.addAll(Arrays.asList(jobLibraryPaths));
+      return libraryPaths;
+    }
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      Iterator<Resource> libraryIterator = resourceResolver.findResources(UI_LIBRARY_QUERY,
+              QUERY_LANGUAGE_JCR_SQL2);
+      while (libraryIterator.hasNext()) {
+        libraryPaths.add(libraryIterator.next().getPath());
+      }
+    } catch (LoginException e) {
+      LOG.warn("Unable to find UiLibraries to warm. {}", e.getMessage().replaceAll("[\r\n]", ""));
+    }
+    return libraryPaths;
+  }
+
+  /**
+   * Compiles and caches the unminified and minified output of a UiLibrary for a ScriptType, unless
+   * both are already cached.  Each warm-up uses its own ResourceResolver, as they run in parallel.
+   */
+  @Nonnull
+  WarmUpResult warmUp(@Nonnull final String libraryPath, @Nonnull final ScriptType scriptType) {
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      if (isCached(libraryPath, scriptType, false, resourceResolver) && isCached(libraryPath,
+              scriptType, true, resourceResolver)) {
+        return WarmUpResult.SKIPPED;
+      }
+      UiLibrary library = uiLibraryRetrievalService.getUiLibrary(libraryPath, resourceResolver);
+      String output = uiLibraryCompilationService.getUiLibraryOutput(library, scriptType,
+              resourceResolver);
+      if (output.startsWith("<h1>")) {
+        LOG.warn("Unable to warm cached {} for library {}. Compilation failed.",
+                scriptType.getName(), libraryPath.replaceAll("[\r\n]", ""));
+        return WarmUpResult.FAILED;
+      }
+      uiLibraryCacheService.cacheUiLibraryScript(libraryPath, output, scriptType, false,
+              resourceResolver);
+      if (uiLibraryMinificationService != null) {
+        uiLibraryCacheService.cacheUiLibraryScript(libraryPath,
+                uiLibraryMinificationService.getMinifiedOutput(output, scriptType), scriptType,
+                true, resourceResolver);
+      }
+      LOG.debug("Warmed cached {} for library {}.", scriptType.getName(),
+              libraryPath.replaceAll("[\r\n]", ""));
+      return WarmUpResult.WARMED;
+    } catch (LoginException | LibraryRetrievalException | InvalidResourceTypeException
+                     | NoMatchingCompilerException | ScriptCompressionException
+                     | CacheBuilderException e) {
+      LOG.warn("Unable to warm cached {} for library {}. {}", scriptType.getName(),
+              libraryPath.replaceAll("[\r\n]", ""),
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+      return WarmUpResult.FAILED;
+    }
+  }
+
+  private boolean isCached(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver) {
+    if (!(uiLibraryCacheService instanceof UiLibraryOutputCacheService)) {
+      return false;
+    }
+    try {
+      ((UiLibraryOutputCacheService) uiLibraryCacheService).getCachedETag(libraryPath,
+              scriptType, minified, resourceResolver);
+      return true;
+    } catch (CacheRetrievalException e) {
+      return false;
+    }
+  }
+
+  private static void cancel(@Nonnull final List<Future<WarmUpResult>> futures) {
+    for (Future<WarmUpResult> future : futures) {
+      future.cancel(false);
+    }
+  }
+
+  private static long getDefaultThreadCount() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+
+  private static class WarmUpThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@Nonnull final Runnable runnable) {
+      Thread thread = new Thread(runnable,
+              "ui-library-warm-up-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
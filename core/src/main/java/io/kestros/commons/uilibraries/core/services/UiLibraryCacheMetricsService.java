@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import javax.annotation.Nonnull;
+
+/**
+ * Records how UiLibrary output requests are served, so that the effectiveness of the UiLibrary
+ * cache can be monitored.
+ */
+public interface UiLibraryCacheMetricsService {
+
+  /**
+   * Records a request served from the cache.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @param bytesServed Bytes written to the response.
+   */
+  void recordHit(@Nonnull ScriptType scriptType, boolean minified, long bytesServed);
+
+  /**
+   * Records a request whose output was not cached.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   */
+  void recordMiss(@Nonnull ScriptType scriptType, boolean minified);
+
+  /**
+   * Records output that was compiled, and cached, for a request that missed the cache.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @param milliseconds Time taken to compile and cache the output.
+   * @param bytesServed Bytes written to the response.
+   */
+  void recordFill(@Nonnull ScriptType scriptType, boolean minified, long milliseconds,
+          long bytesServed);
+
+  /**
+   * Records output written to the cache.
+   *
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @param bytesStored Bytes written to the cache.
+   */
+  void recordBytesStored(@Nonnull ScriptType scriptType, boolean minified, long bytesStored);
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Stream over cached UiLibrary output, with the length of the output it was read from.  The stream
+ * and its length come from a single cache entry, so that the Content-Length sent with the output
+ * always matches the output that is streamed.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public class UiLibraryCachedOutputStream extends FilterInputStream {
+
+  private final long contentLength;
+
+  /**
+   * Constructs a stream over cached UiLibrary output.
+   *
+   * @param cachedOutput Cached output.
+   * @param contentLength Length, in bytes, of the cached output, or 0 if the cache entry has no
+   *     recorded length.
+   */
+  public UiLibraryCachedOutputStream(@Nonnull final InputStream cachedOutput,
+          final long contentLength) {
+    super(cachedOutput);
+    this.contentLength = contentLength;
+  }
+
+  /**
+   * Length, in bytes, of the cached output.
+   *
+   * @return Length, in bytes, of the cached output, or 0 if the cache entry has no recorded
+   *     length.
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nonnull;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Runs UiLibrary compilations on a dedicated, bounded pool of threads, so that request threads are
+ * only blocked for a limited time while CSS/JavaScript is compiled and minified.
+ */
+public interface UiLibraryCompilationExecutorService {
+
+  /**
+   * Compilation of UiLibrary output.
+   */
+  @FunctionalInterface
+  interface UiLibraryCompilation {
+
+    /**
+     * Compiles UiLibrary output.
+     *
+     * @param resourceResolver ResourceResolver to read library files and write the cache with.
+     *     Only valid for the duration of the compilation.
+     * @return Compiled output.
+     * @throws Exception Output could not be compiled.
+     */
+    @Nonnull
+    String compile(@Nonnull ResourceResolver resourceResolver) throws Exception;
+  }
+
+  /**
+   * Runs a compilation, or waits for the compilation that is already running for the same key, for
+   * up to the configured timeout.  Compilations that time out continue running, so their output is
+   * still cached for later requests.
+   *
+   * @param key Compilation key.
+   * @param compilation Compilation to run.
+   * @return Compiled output.
+   * @throws TimeoutException The compilation did not complete in time, or the compilation queue
+   *     is full.
+   * @throws ExecutionException The compilation failed.  The cause is the compilation's exception.
+   * @throws InterruptedException Interrupted while waiting for the compilation.
+   */
+  @Nonnull
+  String compile(@Nonnull String key, @Nonnull UiLibraryCompilation compilation)
+          throws TimeoutException, ExecutionException, InterruptedException;
+
+  /**
+   * HTTP status to respond with when a compilation times out.
+   *
+   * @return HTTP status to respond with when a compilation times out.
+   */
+  int getTimeoutResponseStatus();
+
+  /**
+   * Seconds to send in the Retry-After header when a compilation times out.  Zero or less sends no
+   * Retry-After header.
+   *
+   * @return Seconds to send in the Retry-After header when a compilation times out.
+   */
+  long getRetryAfterSeconds();
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import io.kestros.commons.uilibraries.api.models.FrontendLibrary;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompileManifest;
+import javax.annotation.Nonnull;
+
+/**
+ * Builds and keeps the {@link UiLibraryCompileManifest} of each UiLibrary script folder, so that
+ * included files and ScriptTypes are discovered once rather than on every compile.
+ */
+public interface UiLibraryCompileManifestService {
+
+  /**
+   * Compile manifest of a UiLibrary script folder.  Manifests are reused until the library or
+   * folder is modified, the registered compilers change, or the manifest is purged.
+   *
+   * @param library UiLibrary.
+   * @param folderName Script folder name.
+   * @return Compile manifest of a UiLibrary script folder.
+   */
+  @Nonnull
+  UiLibraryCompileManifest getCompileManifest(@Nonnull FrontendLibrary library,
+          @Nonnull String folderName);
+
+  /**
+   * Removes the compile manifests of a UiLibrary, and the cached content of its files.
+   *
+   * @param libraryPath UiLibrary path.
+   */
+  void purgeCompileManifests(@Nonnull String libraryPath);
+
+  /**
+   * Removes all compile manifests and cached file content.
+   */
+  void purgeAllCompileManifests();
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Content encodings that cached UiLibrary output can be stored and served with.  Compressed
+ * encodings are built once, when output is cached, and stored next to the identity encoded output.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+public enum UiLibraryContentEncoding {
+  IDENTITY("identity", "") {
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull final byte[] content) {
+      return content.clone();
+    }
+  },
+  GZIP("gzip", ".gz") {
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull final byte[] content) throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length / 4 + 64);
+      try (GZIPOutputStream gzipOutputStream = new BestCompressionGzipOutputStream(
+              outputStream)) {
+        gzipOutputStream.write(content);
+      }
+      return outputStream.toByteArray();
+    }
+  };
+
+  private final String name;
+  private final String extension;
+
+  UiLibraryContentEncoding(final String name, final String extension) {
+    this.name = name;
+    this.extension = extension;
+  }
+
+  /**
+   * Content-Encoding header value.
+   *
+   * @return Content-Encoding header value.
+   */
+  @Nonnull
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Extension appended to the cached output file name.
+   *
+   * @return Extension appended to the cached output file name.
+   */
+  @Nonnull
+  public String getExtension() {
+    return this.extension;
+  }
+
+  /**
+   * ETag of output with this encoding, derived from the ETag of the identity encoded output.
+   *
+   * @param identityETag ETag of the identity encoded output.
+   * @return ETag of output with this encoding.
+   */
+  @Nonnull
+  public String getETag(@Nonnull final String identityETag) {
+    if (this == IDENTITY || identityETag.length() < 2 || !identityETag.endsWith("\"")) {
+      return identityETag;
+    }
+    return identityETag.substring(0, identityETag.length() - 1) + "-" + this.name + "\"";
+  }
+
+  /**
+   * Encodes the specified content.
+   *
+   * @param content Identity encoded content.
+   * @return Encoded content.
+   * @throws IOException Content could not be encoded.
+   */
+  @Nonnull
+  public abstract byte[] encode(@Nonnull byte[] content) throws IOException;
+
+  /**
+   * Encodings which are compressed, and should be built whenever output is cached.
+   *
+   * @return Encodings which are compressed, and should be built whenever output is cached.
+   */
+  @Nonnull
+  public static List<UiLibraryContentEncoding> getCompressedEncodings() {
+    List<UiLibraryContentEncoding> compressedEncodings = new ArrayList<>();
+    for (UiLibraryContentEncoding encoding : values()) {
+      if (encoding != IDENTITY) {
+        compressedEncodings.add(encoding);
+      }
+    }
+    return compressedEncodings;
+  }
+
+  private static class BestCompressionGzipOutputStream extends GZIPOutputStream {
+
+    BestCompressionGzipOutputStream(@Nonnull final ByteArrayOutputStream outputStream)
+            throws IOException {
+      super(outputStream);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
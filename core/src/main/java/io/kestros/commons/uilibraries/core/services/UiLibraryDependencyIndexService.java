@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import java.util.Collection;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+/**
+ * Index of the files each UiLibrary is built from, including files imported by LESS files, with a
+ * reverse lookup from files to the UiLibraries they affect.
+ */
+public interface UiLibraryDependencyIndexService {
+
+  /**
+   * Whether the index covers all UiLibraries.  The index is not available while it is first built
+   * from all kes:UiLibrary resources, as libraries that have not been indexed yet are missing from
+   * reverse lookups.  A persisted index stays available while it is rebuilt.
+   *
+   * @return Whether the index covers all UiLibraries.
+   */
+  boolean isAvailable();
+
+  /**
+   * Paths of all indexed UiLibraries.
+   *
+   * @return Paths of all indexed UiLibraries.
+   */
+  @Nonnull
+  Set<String> getLibraryPaths();
+
+  /**
+   * Paths of the files a UiLibrary is built from.  Includes the library's script folders, the
+   * files they include, and files imported by those files, directly or transitively.  Imports that
+   * could not be resolved are included, so that the library is affected when they are created.
+   *
+   * @param libraryPath UiLibrary path.
+   * @return Paths of the files a UiLibrary is built from, or an empty set if the library is not
+   *     indexed.
+   */
+  @Nonnull
+  Set<String> getFilePaths(@Nonnull String libraryPath);
+
+  /**
+   * Paths of the UiLibraries whose output is affected by a change to a path.
+   *
+   * @param path Changed path.
+   * @return Paths of the UiLibraries whose output is affected by a change to a path.
+   */
+  @Nonnull
+  Set<String> getDependentLibraryPaths(@Nonnull String path);
+
+  /**
+   * Re-indexes UiLibraries.  Libraries that no longer exist are removed from the index.
+   *
+   * @param libraryPaths Paths of the UiLibraries to re-index.
+   */
+  void indexLibraries(@Nonnull Collection<String> libraryPaths);
+
+  /**
+   * Queues a rebuild of the index from all kes:UiLibrary resources.  The rebuild runs on a
+   * background thread, so this returns without waiting for it.
+   */
+  void rebuildIndex();
+}
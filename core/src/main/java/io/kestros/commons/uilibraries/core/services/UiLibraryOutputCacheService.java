@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import io.kestros.commons.osgiserviceutils.exceptions.CacheBuilderException;
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache.Failure;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * {@link UiLibraryCacheService} which stores metadata alongside cached UiLibrary output, so that
+ * requests can be validated without reading the cached output.
+ */
+public interface UiLibraryOutputCacheService extends UiLibraryCacheService {
+
+  /**
+   * Strong ETag that was computed when the specified UiLibrary output was cached.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType to retrieve.
+   * @param minified Whether to retrieve the minified output.
+   * @param resourceResolver ResourceResolver used to read the cache entry.
+   * @return Strong ETag that was computed when the specified UiLibrary output was cached.
+   * @throws CacheRetrievalException Output has not been cached, or the entry has no ETag.
+   */
+  @Nonnull
+  String getCachedETag(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException;
+
+  /**
+   * Cached UiLibrary output, with the specified content encoding.  Compressed encodings are built
+   * when the output is cached, so no compression happens on retrieval.  Output is streamed from
+   * the cached binary, without being decoded to a String.  The stream carries the length of the
+   * output, read from the same cache entry, so that the two always match.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType to retrieve.
+   * @param minified Whether to retrieve the minified output.
+   * @param encoding Content encoding to retrieve.
+   * @param resourceResolver ResourceResolver used to read the cache entry.
+   * @return Cached UiLibrary output, with the specified content encoding, and its length.  Must be
+   *     closed by the caller.
+   * @throws CacheRetrievalException Output has not been cached with the specified encoding.
+   */
+  @Nonnull
+  UiLibraryCachedOutputStream getCachedOutputStream(@Nonnull String libraryPath,
+          @Nonnull ScriptType scriptType, boolean minified,
+          @Nonnull UiLibraryContentEncoding encoding, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException;
+
+  /**
+   * Length, in bytes, of cached UiLibrary output with the specified content encoding.  When
+   * streaming output, use {@link UiLibraryCachedOutputStream#getContentLength()} instead, as the
+   * entry may be replaced between two lookups.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType to retrieve.
+   * @param minified Whether to retrieve the minified output.
+   * @param encoding Content encoding to retrieve.
+   * @param resourceResolver ResourceResolver used to read the cache entry.
+   * @return Length, in bytes, of cached UiLibrary output with the specified content encoding.
+   * @throws CacheRetrievalException Output has not been cached with the specified encoding, or the
+   *     entry has no recorded length.
+   */
+  long getCachedContentLength(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull UiLibraryContentEncoding encoding,
+          @Nonnull ResourceResolver resourceResolver) throws CacheRetrievalException;
+
+  /**
+   * Time that the specified UiLibrary output was cached.  Used as the Last-Modified time of
+   * responses.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType to retrieve.
+   * @param minified Whether to retrieve the minified output.
+   * @param resourceResolver ResourceResolver used to read the cache entry.
+   * @return Time, in milliseconds since the epoch, that the specified UiLibrary output was cached.
+   * @throws CacheRetrievalException Output has not been cached, or the entry has no recorded
+   *     creation time.
+   */
+  long getCachedLastModified(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException;
+
+  /**
+   * Caches the output of a bundle, along with the paths of the libraries it was built from, so
+   * that the bundle is purged with {@link #purgeLibraryOutput(String)} for any of them.
+   *
+   * @param bundlePath Path the bundle output is cached under.
+   * @param libraryPaths Paths of the bundled libraries.
+   * @param content Bundle output.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @param resourceResolver ResourceResolver used to write the cache entry.
+   * @throws CacheBuilderException Output could not be cached.
+   */
+  void cacheUiLibraryBundleScript(@Nonnull String bundlePath, @Nonnull List<String> libraryPaths,
+          @Nonnull String content, @Nonnull ScriptType scriptType, boolean minified,
+          @Nonnull ResourceResolver resourceResolver) throws CacheBuilderException;
+
+  /**
+   * Removes all cached output of a single library, for every script type, minification and
+   * content encoding, along with the output of every bundle that includes the library.
+   *
+   * @param libraryPath UiLibrary path.
+   * @return Whether the output was removed.  When false, cached output of the library may still be
+   *     served.
+   */
+  boolean purgeLibraryOutput(@Nonnull String libraryPath);
+
+  /**
+   * Purges all cached output by switching to a new, empty cache generation.  Output of the previous
+   * generation is not deleted straight away, so that requests that are still reading it are not
+   * affected, and is deleted once a grace period has passed.
+   *
+   * @return Whether a new generation was started.  When false, output of the current generation
+   *     may still be served.
+   */
+  boolean purgeAllOutput();
+
+  /**
+   * Removes output that was kept after a cache purge, so that it is no longer served.  Called when
+   * stale output could not be rebuilt.  Fresh output is not removed.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType to remove.
+   * @param minified Whether to remove the minified output.
+   */
+  void removeStaleOutput(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified);
+
+  /**
+   * Caches a failure to build UiLibrary output, so that the output is not rebuilt on every request.
+   * Failures expire after a configured time to live, and are purged along with the output of the
+   * output path and of each of the libraries.
+   *
+   * @param outputPath Path the output is cached under.
+   * @param libraryPaths Paths of the libraries the output is built from.
+   * @param errorOutput Compilation error output, or null if the libraries could not be retrieved or
+   *     compiled.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   */
+  void cacheFailure(@Nonnull String outputPath, @Nonnull List<String> libraryPaths,
+          @Nullable String errorOutput, @Nonnull ScriptType scriptType, boolean minified);
+
+  /**
+   * Cached failure to build UiLibrary output, that has not expired or been purged.
+   *
+   * @param outputPath Path the output is cached under.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @return Cached failure to build UiLibrary output, or null if none is cached.
+   */
+  @Nullable
+  Failure getCachedFailure(@Nonnull String outputPath, @Nonnull ScriptType scriptType,
+          boolean minified);
+
+}
@@ -32,16 +32,59 @@ import io.kestros.commons.structuredslingmodels.filetypes.BaseFile;
 import io.kestros.commons.uilibraries.api.models.FrontendLibrary;
 import io.kestros.commons.uilibraries.api.models.ScriptType;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.ScriptMinifierService;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue.PendingCacheWrite;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue.WriteBatch;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache.Failure;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache.CachedOutput;
+import io.kestros.commons.uilibraries.core.jobs.UiLibraryCacheRevalidationJobConsumer;
+import io.kestros.commons.uilibraries.core.jobs.UiLibraryCacheWarmUpJobExecutor;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCachedOutputStream;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheGenerationUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.event.jobs.JobManager;
 import org.apache.sling.models.factory.ModelFactory;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
@@ -51,24 +94,140 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Service for managing, building, retrieving and purging UiLibrary output caches.  Saves output as
- * nt:file Resources under /var/cache/ui-libraries.
+ * nt:file Resources under the current generation of /var/cache/ui-libraries.  Each cached file is
+ * stored with a strong ETag, the byte length of its content and its creation time, as the
+ * kes:UiLibraryCacheEntry mixin, and with precompressed variants for each {@link
+ * UiLibraryContentEncoding}.  Output is also held in a bounded in-heap tier, so that cache hits do
+ * not need to read from the JCR.  The in-heap tier is cleared whenever the JCR cache is purged,
+ * unless stale-while-revalidate is enabled, in which case in-heap output is marked stale and is
+ * served while a {@link UiLibraryCacheRevalidationJobConsumer} job rebuilds it.  The output of a
+ * single library, and of the bundles that include it, can be purged without purging the rest of the
+ * cache.  When warmUpAfterPurge is enabled, purged output is rebuilt by a {@link
+ * UiLibraryCacheWarmUpJobExecutor} job.
+ *
+ * <p>
+ * When writeBehind is enabled, new output is added to the in-heap tier straight away and is
+ * persisted later, in batched commits from a single service session, instead of being committed
+ * with the request's ResourceResolver.  Pending writes to the same output are coalesced, and
+ * failed commits are retried with exponential backoff.
+ * </p>
+ *
+ * <p>
+ * Generations are named {@code <number>-<versionKey>}, where the version key is derived from the
+ * registered compilers and minifiers, and the current generation is stored in the currentGeneration
+ * property of /var/cache/ui-libraries.  {@link #purgeAllOutput()} starts a new, empty generation by
+ * switching that property in a single commit, instead of deleting output that is still being
+ * served.  Purges that follow a switch within the minimum time between cache purges are coalesced
+ * into one switch at the end of that time.  A new generation is also started when the version key
+ * changes, once the changed key has been seen by two consecutive generation checks, so that
+ * compilers and minifiers which are still registering after a restart do not start generations of
+ * their own.  Retired generations are deleted after generationGracePeriod milliseconds, and output
+ * left directly under the cache root by versions without generations is deleted by the first
+ * generation check.
+ * </p>
+ *
+ * <p>
+ * Outputs that failed to compile, or whose libraries could not be retrieved, are cached in heap
+ * for failureCacheTimeToLive milliseconds, so that a broken library is not recompiled on every
+ * request.  Failures are purged with the output of their libraries, and with the whole cache.
+ * </p>
  */
 @SuppressFBWarnings({"FCBL_FIELD_COULD_BE_LOCAL","IMC_IMMATURE_CLASS_NO_TOSTRING"})
-@Component(immediate = true, service = {ManagedCacheService.class, UiLibraryCacheService.class},
+@Component(immediate = true, service = {ManagedCacheService.class, UiLibraryCacheService.class,
+        UiLibraryOutputCacheService.class},
         property = "service.ranking:Integer=100")
 public class JcrFileUiLibraryCacheService extends JcrFileCacheService implements
-        UiLibraryCacheService {
+        UiLibraryOutputCacheService {
 
   private static final Logger LOG = LoggerFactory.getLogger(JcrFileUiLibraryCacheService.class);
 
+  private static final String CACHE_ENTRY_MIXIN = "kes:UiLibraryCacheEntry";
+  private static final String PROPERTY_ETAG = "etag";
+  private static final String PROPERTY_CONTENT_LENGTH = "contentLength";
+  private static final String PROPERTY_CREATED = "created";
+  private static final String PROPERTY_LAST_MODIFIED = "jcr:lastModified";
+  private static final String PROPERTY_LIBRARIES = "libraries";
+  private static final String PROPERTY_MIXIN_TYPES = "jcr:mixinTypes";
+  private static final String JCR_CONTENT = "jcr:content";
+  private static final String JCR_DATA = "jcr:data";
+  private static final String SLING_FOLDER = "sling:Folder";
+  private static final String PROPERTY_CURRENT_GENERATION = "currentGeneration";
+  private static final String PROPERTY_RETIRED = "retired";
+
   private static final String UI_LIBRARY_CACHE_PURGE_SERVICE_USER = "ui-library-manager";
   private static final long serialVersionUID = 8442978263338882415L;
 
+  static final String PROPERTY_MEMORY_CACHE_MAXIMUM_SIZE = "memoryCacheMaximumSize";
+  static final long DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE = 32L * 1024 * 1024;
+  static final String PROPERTY_STALE_WHILE_REVALIDATE = "staleWhileRevalidate";
+  static final String PROPERTY_WARM_UP_AFTER_PURGE = "warmUpAfterPurge";
+  static final String PROPERTY_WRITE_BEHIND = "writeBehind";
+  static final String PROPERTY_WRITE_BEHIND_BATCH_SIZE = "writeBehindBatchSize";
+  static final String PROPERTY_WRITE_BEHIND_INTERVAL = "writeBehindInterval";
+  static final String PROPERTY_WRITE_BEHIND_MAXIMUM_RETRY_DELAY = "writeBehindMaximumRetryDelay";
+  static final String PROPERTY_WRITE_BEHIND_MAXIMUM_ATTEMPTS = "writeBehindMaximumAttempts";
+  static final long DEFAULT_WRITE_BEHIND_BATCH_SIZE = 50;
+  static final long DEFAULT_WRITE_BEHIND_INTERVAL = 1000;
+  static final long DEFAULT_WRITE_BEHIND_MAXIMUM_RETRY_DELAY = 60000;
+  static final long DEFAULT_WRITE_BEHIND_MAXIMUM_ATTEMPTS = 5;
+  static final String PROPERTY_FAILURE_CACHE_TIME_TO_LIVE = "failureCacheTimeToLive";
+  static final String PROPERTY_FAILURE_CACHE_MAXIMUM_ENTRIES = "failureCacheMaximumEntries";
+  static final long DEFAULT_FAILURE_CACHE_TIME_TO_LIVE = 10000;
+  static final long DEFAULT_FAILURE_CACHE_MAXIMUM_ENTRIES = 1000;
+  static final String PROPERTY_GENERATION_GRACE_PERIOD = "generationGracePeriod";
+  static final String PROPERTY_GENERATION_CHECK_INTERVAL = "generationCheckInterval";
+  static final long DEFAULT_GENERATION_GRACE_PERIOD = 300000;
+  static final long DEFAULT_GENERATION_CHECK_INTERVAL = 60000;
+
+  private boolean staleWhileRevalidate;
+  private boolean warmUpAfterPurge;
+  private int writeBehindBatchSize = (int) DEFAULT_WRITE_BEHIND_BATCH_SIZE;
+  private long writeBehindInterval = DEFAULT_WRITE_BEHIND_INTERVAL;
+  private long writeBehindMaximumRetryDelay = DEFAULT_WRITE_BEHIND_MAXIMUM_RETRY_DELAY;
+  private int writeBehindMaximumAttempts = (int) DEFAULT_WRITE_BEHIND_MAXIMUM_ATTEMPTS;
+  private long failureCacheTimeToLive = DEFAULT_FAILURE_CACHE_TIME_TO_LIVE;
+  private long generationGracePeriod = DEFAULT_GENERATION_GRACE_PERIOD;
+  private volatile String currentGeneration;
+  private String pendingVersionKey;
+  private boolean legacyOutputRemoved;
+  private long lastGenerationSwitch;
+  private boolean generationSwitchScheduled;
+  private int consecutiveFailedFlushes;
+  private long nextFlushTime;
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private final transient UiLibraryCacheWriteQueue writeQueue = new UiLibraryCacheWriteQueue();
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private final transient Object flushLock = new Object();
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private final transient Object generationLock = new Object();
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private transient volatile ScheduledExecutorService writeBehindExecutor;
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private transient volatile ScheduledExecutorService generationExecutor;
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private transient UiLibraryOutputMemoryCache memoryCache = new UiLibraryOutputMemoryCache(
+          DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE);
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private transient UiLibraryFailureCache failureCache = new UiLibraryFailureCache(
+          DEFAULT_FAILURE_CACHE_MAXIMUM_ENTRIES);
+
   @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED", "SE_BAD_FIELD"})
   @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption =
           ReferencePolicyOption.GREEDY)
   private UiLibraryCompilationService uiLibraryCompilationService;
 
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED", "SE_BAD_FIELD"})
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption =
+          ReferencePolicyOption.GREEDY)
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
   @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED", "SE_BAD_FIELD"})
   @Reference
   private ResourceResolverFactory resourceResolverFactory;
@@ -94,9 +253,158 @@ public class JcrFileUiLibraryCacheService extends JcrFileCacheService implements
     return "Ui Library Cache Service";
   }
 
+  @Override
+  public void activate(@Nonnull ComponentContext componentContext) {
+    memoryCache = new UiLibraryOutputMemoryCache(
+            ComponentPropertyUtils.getLongProperty(componentContext,
+                    PROPERTY_MEMORY_CACHE_MAXIMUM_SIZE, DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE));
+    failureCache = new UiLibraryFailureCache(
+            ComponentPropertyUtils.getLongProperty(componentContext,
+                    PROPERTY_FAILURE_CACHE_MAXIMUM_ENTRIES, DEFAULT_FAILURE_CACHE_MAXIMUM_ENTRIES));
+    failureCacheTimeToLive = Math.max(0, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_FAILURE_CACHE_TIME_TO_LIVE, DEFAULT_FAILURE_CACHE_TIME_TO_LIVE));
+    generationGracePeriod = Math.max(0, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_GENERATION_GRACE_PERIOD, DEFAULT_GENERATION_GRACE_PERIOD));
+    long generationCheckInterval = Math.max(1, ComponentPropertyUtils.getLongProperty(
+            componentContext, PROPERTY_GENERATION_CHECK_INTERVAL,
+            DEFAULT_GENERATION_CHECK_INTERVAL));
+    currentGeneration = null;
+    pendingVersionKey = null;
+    legacyOutputRemoved = false;
+    synchronized (generationLock) {
+      lastGenerationSwitch = 0;
+      generationSwitchScheduled = false;
+    }
+    staleWhileRevalidate = ComponentPropertyUtils.getBooleanProperty(componentContext,
+            PROPERTY_STALE_WHILE_REVALIDATE, false);
+    warmUpAfterPurge = ComponentPropertyUtils.getBooleanProperty(componentContext,
+            PROPERTY_WARM_UP_AFTER_PURGE, false);
+    writeBehindBatchSize = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(
+            componentContext, PROPERTY_WRITE_BEHIND_BATCH_SIZE, DEFAULT_WRITE_BEHIND_BATCH_SIZE));
+    writeBehindInterval = Math.max(1, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_WRITE_BEHIND_INTERVAL, DEFAULT_WRITE_BEHIND_INTERVAL));
+    writeBehindMaximumRetryDelay = Math.max(writeBehindInterval,
+            ComponentPropertyUtils.getLongProperty(componentContext,
+                    PROPERTY_WRITE_BEHIND_MAXIMUM_RETRY_DELAY,
+                    DEFAULT_WRITE_BEHIND_MAXIMUM_RETRY_DELAY));
+    writeBehindMaximumAttempts = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(
+            componentContext, PROPERTY_WRITE_BEHIND_MAXIMUM_ATTEMPTS,
+            DEFAULT_WRITE_BEHIND_MAXIMUM_ATTEMPTS));
+    if (ComponentPropertyUtils.getBooleanProperty(componentContext, PROPERTY_WRITE_BEHIND,
+            false)) {
+      writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ui-library-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      writeBehindExecutor.scheduleWithFixedDelay(this::flushPendingWrites, writeBehindInterval,
+              writeBehindInterval, TimeUnit.MILLISECONDS);
+    }
+    generationExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ui-library-cache-generations");
+      thread.setDaemon(true);
+      return thread;
+    });
+    generationExecutor.scheduleWithFixedDelay(this::maintainGenerations, generationCheckInterval,
+            generationCheckInterval, TimeUnit.MILLISECONDS);
+    super.activate(componentContext);
+  }
+
+  @Override
+  public void deactivate(@Nonnull ComponentContext componentContext) {
+    ScheduledExecutorService currentGenerationExecutor = generationExecutor;
+    generationExecutor = null;
+    if (currentGenerationExecutor != null) {
+      currentGenerationExecutor.shutdownNow();
+    }
+    ScheduledExecutorService currentExecutor = writeBehindExecutor;
+    writeBehindExecutor = null;
+    if (currentExecutor != null) {
+      currentExecutor.shutdown();
+      try {
+        currentExecutor.awaitTermination(writeBehindInterval, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      nextFlushTime = 0;
+      flushPendingWrites();
+    }
+    super.deactivate(componentContext);
+  }
+
   @Override
   protected void afterCachePurgeComplete(@Nonnull ResourceResolver resourceResolver) {
-    // does nothing
+    resetAfterPurge();
+  }
+
+  /**
+   * Starts a new generation.  Generations are switched at most once per {@link
+   * #getMinimumTimeBetweenCachePurges()}.  Purges within that interval of the last switch are
+   * coalesced into a single switch at the end of the interval.
+   *
+   * @return Whether a new generation was started or scheduled.
+   */
+  @Override
+  public boolean purgeAllOutput() {
+    synchronized (generationLock) {
+      long delay = lastGenerationSwitch + getMinimumTimeBetweenCachePurges()
+                   - System.currentTimeMillis();
+      ScheduledExecutorService executor = generationExecutor;
+      if (delay > 0 && executor != null) {
+        if (!generationSwitchScheduled) {
+          executor.schedule(this::switchScheduledGeneration, delay, TimeUnit.MILLISECONDS);
+          generationSwitchScheduled = true;
+          LOG.debug("UiLibrary cache generation was switched less than {}ms ago, the next switch "
+                    + "is scheduled in {}ms.", getMinimumTimeBetweenCachePurges(), delay);
+        }
+        return true;
+      }
+    }
+    return switchToNextGeneration();
+  }
+
+  private void switchScheduledGeneration() {
+    synchronized (generationLock) {
+      generationSwitchScheduled = false;
+    }
+    switchToNextGeneration();
+  }
+
+  private boolean switchToNextGeneration() {
+    synchronized (generationLock) {
+      try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+        String previousGeneration = getCurrentGeneration();
+        String nextGeneration = UiLibraryCacheGenerationUtils.getGenerationName(
+                UiLibraryCacheGenerationUtils.getGenerationNumber(previousGeneration) + 1,
+                getVersionKey());
+        switchGeneration(previousGeneration, nextGeneration, resourceResolver);
+      } catch (LoginException | PersistenceException e) {
+        LOG.warn("Unable to switch to a new UiLibrary cache generation. {}",
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        return false;
+      }
+    }
+    resetAfterPurge();
+    return true;
+  }
+
+  /**
+   * Clears in-heap state after all cached output has been purged, or a new generation has been
+   * started.
+   */
+  private void resetAfterPurge() {
+    synchronized (flushLock) {
+      writeQueue.clear();
+    }
+    failureCache.clear();
+    if (staleWhileRevalidate) {
+      memoryCache.markAllStale();
+    } else {
+      memoryCache.clear();
+    }
+    if (warmUpAfterPurge) {
+      UiLibraryCacheWarmUpJobExecutor.addWarmUpJob(getJobManager(), Collections.emptyList());
+    }
   }
 
   @Override
@@ -116,6 +424,231 @@ public class JcrFileUiLibraryCacheService extends JcrFileCacheService implements
     return "/var/cache/ui-libraries";
   }
 
+  /**
+   * Name of the generation that output is currently read from and written to.  Resolved from the
+   * persisted generation pointer the first time it is needed.  The persisted generation is used
+   * even if its version key differs from the current one, as compilers and minifiers may still be
+   * registering.  Version key changes are left to {@link #maintainGenerations()}.
+   *
+   * @return Name of the generation that output is currently read from and written to.
+   */
+  @Nonnull
+  String getCurrentGeneration() {
+    String generation = currentGeneration;
+    if (generation != null) {
+      return generation;
+    }
+    synchronized (generationLock) {
+      if (currentGeneration == null) {
+        currentGeneration = resolveGeneration();
+      }
+      return currentGeneration;
+    }
+  }
+
+  @Nonnull
+  private String resolveGeneration() {
+    String versionKey = getVersionKey();
+    String initialGeneration = UiLibraryCacheGenerationUtils.getGenerationName(1, versionKey);
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      Resource rootResource = resourceResolver.getResource(getServiceCacheRootPath());
+      String persistedGeneration = null;
+      if (rootResource != null) {
+        persistedGeneration = rootResource.getValueMap().get(PROPERTY_CURRENT_GENERATION,
+                String.class);
+      }
+      if (persistedGeneration != null && UiLibraryCacheGenerationUtils.isGenerationName(
+              persistedGeneration)) {
+        return persistedGeneration;
+      }
+    } catch (LoginException e) {
+      LOG.warn("Unable to resolve the current UiLibrary cache generation. {}",
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+    return initialGeneration;
+  }
+
+  /**
+   * Creates the next generation, and points the cache at it with a single commit.  The previous
+   * generation is marked as retired, and is deleted once the grace period has passed, so that
+   * requests that are still reading from it are not affected.
+   */
+  private void switchGeneration(@Nonnull final String previousGeneration,
+          @Nonnull final String nextGeneration, @Nonnull final ResourceResolver resourceResolver)
+          throws PersistenceException {
+    Resource rootResource = ResourceUtil.getOrCreateResource(resourceResolver,
+            getServiceCacheRootPath(), SLING_FOLDER, SLING_FOLDER, false);
+    ResourceUtil.getOrCreateResource(resourceResolver,
+            getServiceCacheRootPath() + "/" + nextGeneration, SLING_FOLDER, SLING_FOLDER, false);
+    ModifiableValueMap rootProperties = rootResource.adaptTo(ModifiableValueMap.class);
+    if (rootProperties == null) {
+      throw new PersistenceException(
+              String.format("Unable to store the current cache generation, '%s' is not "
+                            + "modifiable.", getServiceCacheRootPath()));
+    }
+    rootProperties.put(PROPERTY_CURRENT_GENERATION, nextGeneration);
+    Resource previousGenerationResource = rootResource.getChild(previousGeneration);
+    if (previousGenerationResource != null) {
+      ModifiableValueMap previousProperties = previousGenerationResource.adaptTo(
+              ModifiableValueMap.class);
+      if (previousProperties != null) {
+        previousProperties.put(PROPERTY_RETIRED, Calendar.getInstance());
+      }
+    }
+    resourceResolver.commit();
+    currentGeneration = nextGeneration;
+    lastGenerationSwitch = System.currentTimeMillis();
+    LOG.info("Switched UiLibrary cache from generation {} to {}.", previousGeneration,
+            nextGeneration);
+  }
+
+  /**
+   * Starts a new generation if the compiler and minifier version key has changed, and deletes
+   * generations that were retired more than the grace period ago.  A changed version key must be
+   * seen by two consecutive checks before a new generation is started, so that the generation is
+   * not switched while compilers and minifiers are still registering.  Generations that are neither
+   * current nor marked as retired, such as those left by a different version key, are marked as
+   * retired first.
+   */
+  void maintainGenerations() {
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      boolean switched = false;
+      synchronized (generationLock) {
+        String generation = getCurrentGeneration();
+        String versionKey = getVersionKey();
+        if (versionKey.equals(UiLibraryCacheGenerationUtils.getVersionKey(generation))) {
+          pendingVersionKey = null;
+        } else if (versionKey.equals(pendingVersionKey)) {
+          String nextGeneration = UiLibraryCacheGenerationUtils.getGenerationName(
+                  UiLibraryCacheGenerationUtils.getGenerationNumber(generation) + 1, versionKey);
+          switchGeneration(generation, nextGeneration, resourceResolver);
+          LOG.info("UiLibrary compilers or minifiers have changed, started cache generation {}.",
+                  nextGeneration);
+          pendingVersionKey = null;
+          switched = true;
+        } else {
+          LOG.debug("UiLibrary compilers or minifiers have changed, waiting for them to settle "
+                    + "before starting a new cache generation.");
+          pendingVersionKey = versionKey;
+        }
+      }
+      if (switched) {
+        resetAfterPurge();
+      }
+      if (!legacyOutputRemoved) {
+        deleteLegacyOutput(resourceResolver);
+        legacyOutputRemoved = true;
+      }
+      deleteRetiredGenerations(System.currentTimeMillis(), resourceResolver);
+    } catch (LoginException | PersistenceException e) {
+      LOG.warn("Unable to maintain UiLibrary cache generations. {}",
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    } catch (RuntimeException e) {
+      LOG.error("Unexpected error while maintaining UiLibrary cache generations. {}",
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+  }
+
+  /**
+   * Deletes output that versions without cache generations stored directly under the cache root.
+   * It is never read, and would otherwise never be deleted, as it does not belong to a generation.
+   *
+   * @param resourceResolver Service ResourceResolver.
+   * @throws PersistenceException Legacy output could not be deleted.
+   */
+  void deleteLegacyOutput(@Nonnull final ResourceResolver resourceResolver)
+          throws PersistenceException {
+    Resource rootResource = resourceResolver.getResource(getServiceCacheRootPath());
+    if (rootResource == null) {
+      return;
+    }
+    List<Resource> legacyResources = new ArrayList<>();
+    for (Resource resource : rootResource.getChildren()) {
+      if (!UiLibraryCacheGenerationUtils.isGenerationName(resource.getName())) {
+        legacyResources.add(resource);
+      }
+    }
+    for (Resource legacyResource : legacyResources) {
+      LOG.info("Deleting legacy UiLibrary cache output {}.", legacyResource.getPath());
+      resourceResolver.delete(legacyResource);
+    }
+    if (!legacyResources.isEmpty()) {
+      resourceResolver.commit();
+    }
+  }
+
+  void deleteRetiredGenerations(final long now, @Nonnull final ResourceResolver resourceResolver)
+          throws PersistenceException {
+    Resource rootResource = resourceResolver.getResource(getServiceCacheRootPath());
+    if (rootResource == null) {
+      return;
+    }
+    String generation = getCurrentGeneration();
+    List<Resource> expiredGenerations = new ArrayList<>();
+    boolean modified = false;
+    for (Resource generationResource : rootResource.getChildren()) {
+      if (generation.equals(generationResource.getName())
+          || !UiLibraryCacheGenerationUtils.isGenerationName(generationResource.getName())) {
+        continue;
+      }
+      Calendar retired = generationResource.getValueMap().get(PROPERTY_RETIRED, Calendar.class);
+      if (retired == null) {
+        ModifiableValueMap properties = generationResource.adaptTo(ModifiableValueMap.class);
+        if (properties != null) {
+          properties.put(PROPERTY_RETIRED, Calendar.getInstance());
+          modified = true;
+        }
+      } else if (now - retired.getTimeInMillis() >= generationGracePeriod) {
+        expiredGenerations.add(generationResource);
+      }
+    }
+    for (Resource expiredGeneration : expiredGenerations) {
+      LOG.info("Deleting retired UiLibrary cache generation {}.", expiredGeneration.getName());
+      resourceResolver.delete(expiredGeneration);
+      modified = true;
+    }
+    if (modified) {
+      resourceResolver.commit();
+    }
+  }
+
+  /**
+   * Version key of the compilers and minifiers that are currently registered.
+   *
+   * @return Version key of the compilers and minifiers that are currently registered.
+   */
+  @Nonnull
+  String getVersionKey() {
+    List<String> componentVersions = new ArrayList<>();
+    if (uiLibraryCompilationService != null) {
+      for (ScriptTypeCompiler compiler : uiLibraryCompilationService.getCompilers()) {
+        componentVersions.add(UiLibraryCacheGenerationUtils.getComponentVersion(compiler));
+      }
+    }
+    if (uiLibraryMinificationService != null) {
+      for (ScriptMinifierService minifier :
+              uiLibraryMinificationService.getMinificationServices()) {
+        componentVersions.add(UiLibraryCacheGenerationUtils.getComponentVersion(minifier));
+      }
+    }
+    return UiLibraryCacheGenerationUtils.getVersionKey(componentVersions);
+  }
+
+  /**
+   * Path, relative to the cache root, of cached output in the current generation.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @return Path, relative to the cache root, of cached output in the current generation.
+   */
+  @Nonnull
+  String getGenerationRelativePath(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified) {
+    return "/" + getCurrentGeneration() + getCachedFileRelativePath(libraryPath, scriptType,
+            minified);
+  }
+
   @Nonnull
   @Override
   protected String getServiceUserName() {
@@ -145,16 +678,32 @@ public class JcrFileUiLibraryCacheService extends JcrFileCacheService implements
   public String getCachedOutput(@Nonnull String libraryPath, ScriptType scriptType,
           boolean minified, @Nonnull ResourceResolver resourceResolver) throws
           CacheRetrievalException {
-    String cachedResourcePath = String.format("%s%s%s", getServiceCacheRootPath(), libraryPath,
-            scriptType.getExtension());
-    if (minified) {
-      cachedResourcePath = String.format("%s%s.min%s", getServiceCacheRootPath(), libraryPath,
-              scriptType.getExtension());
+    String memoryCacheKey = UiLibraryOutputMemoryCache.getKey(libraryPath, scriptType, minified);
+    CachedOutput cachedOutput = getMemoryCachedOutput(libraryPath, scriptType, minified);
+    if (cachedOutput != null) {
+      return cachedOutput.getOutput();
     }
+    String cachedResourcePath = getServiceCacheRootPath() + getGenerationRelativePath(libraryPath,
+            scriptType, minified);
     try {
       BaseFile file = getResourceAsType(cachedResourcePath, resourceResolver,
               scriptType.getFileModelClass());
-      return file.getFileContent();
+      String output = file.getFileContent();
+      String eTag = getPersistedETagOrEmptyString(libraryPath, scriptType, minified,
+              resourceResolver);
+      if (StringUtils.isEmpty(eTag)) {
+        eTag = UiLibraryCacheUtils.getETag(output);
+      }
+      Calendar created = getPersistedCreated(libraryPath, scriptType, minified,
+              resourceResolver);
+      long createdTime = System.currentTimeMillis();
+      if (created != null) {
+        createdTime = created.getTimeInMillis();
+      }
+      memoryCache.put(memoryCacheKey, new CachedOutput(output,
+              getPersistedEncodedOutputs(libraryPath, scriptType, minified, resourceResolver),
+              eTag, createdTime));
+      return output;
     } catch (ModelAdaptionException | IOException | JcrFileReadException e) {
       throw new CacheRetrievalException(e.getMessage(), e);
     }
@@ -168,20 +717,641 @@ public class JcrFileUiLibraryCacheService extends JcrFileCacheService implements
     return getCachedOutput(library.getPath(), scriptType, minified, resourceResolver);
   }
 
+  @Nonnull
+  @Override
+  public String getCachedETag(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException {
+    CachedOutput cachedOutput = getMemoryCachedOutput(libraryPath, scriptType, minified);
+    if (cachedOutput != null) {
+      return cachedOutput.getETag();
+    }
+    String eTag = getPersistedETagOrEmptyString(libraryPath, scriptType, minified,
+            resourceResolver);
+    if (StringUtils.isNotEmpty(eTag)) {
+      return eTag;
+    }
+    throw new CacheRetrievalException(String.format("No cached ETag found for '%s%s/%s'.",
+            getServiceCacheRootPath(), getGenerationRelativePath(libraryPath, scriptType, minified),
+            JCR_CONTENT));
+  }
+
+  @Override
+  public long getCachedContentLength(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull UiLibraryContentEncoding encoding,
+          @Nonnull ResourceResolver resourceResolver) throws CacheRetrievalException {
+    CachedOutput cachedOutput = getMemoryCachedOutput(libraryPath, scriptType, minified);
+    if (cachedOutput != null && cachedOutput.hasEncoding(encoding)) {
+      return cachedOutput.getContentLength(encoding);
+    }
+    String cachedContentPath = String.format("%s%s%s/%s", getServiceCacheRootPath(),
+            getGenerationRelativePath(libraryPath, scriptType, minified), encoding.getExtension(),
+            JCR_CONTENT);
+    Resource cachedContentResource = resourceResolver.getResource(cachedContentPath);
+    if (cachedContentResource != null) {
+      Long contentLength = cachedContentResource.getValueMap().get(PROPERTY_CONTENT_LENGTH,
+              Long.class);
+      if (contentLength != null) {
+        return contentLength;
+      }
+    }
+    throw new CacheRetrievalException(
+            String.format("No cached %s content length found for '%s'.", encoding.getName(),
+                    cachedContentPath));
+  }
+
+  @Override
+  public long getCachedLastModified(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException {
+    CachedOutput cachedOutput = getMemoryCachedOutput(libraryPath, scriptType, minified);
+    if (cachedOutput != null) {
+      return cachedOutput.getCreated();
+    }
+    Calendar created = getPersistedCreated(libraryPath, scriptType, minified, resourceResolver);
+    if (created != null) {
+      return created.getTimeInMillis();
+    }
+    throw new CacheRetrievalException(String.format("No cached creation time found for '%s%s/%s'.",
+            getServiceCacheRootPath(), getGenerationRelativePath(libraryPath, scriptType, minified),
+            JCR_CONTENT));
+  }
+
+  @Override
+  public void removeStaleOutput(@Nonnull String libraryPath, @Nonnull ScriptType scriptType,
+          boolean minified) {
+    memoryCache.removeIfStale(UiLibraryOutputMemoryCache.getKey(libraryPath, scriptType, minified));
+  }
+
+  /**
+   * Retrieves in-heap output.  Stale output is returned as well, and the first retrieval of stale
+   * output starts a background job which rebuilds it.
+   */
+  @Nullable
+  private CachedOutput getMemoryCachedOutput(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified) {
+    String key = UiLibraryOutputMemoryCache.getKey(libraryPath, scriptType, minified);
+    CachedOutput cachedOutput = memoryCache.get(key);
+    if (cachedOutput == null) {
+      PendingCacheWrite pendingWrite = writeQueue.get(key);
+      if (pendingWrite != null) {
+        return pendingWrite.getCachedOutput();
+      }
+    }
+    if (cachedOutput != null && cachedOutput.requestRevalidation()
+        && !addRevalidationJob(libraryPath, scriptType, minified)) {
+      removeStaleOutput(libraryPath, scriptType, minified);
+    }
+    return cachedOutput;
+  }
+
+  boolean addRevalidationJob(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified) {
+    if (getJobManager() == null) {
+      LOG.warn("Unable to revalidate stale output for library {}. JobManager not detected.",
+              libraryPath.replaceAll("[\r\n]", ""));
+      return false;
+    }
+    Map<String, Object> jobProperties = new HashMap<>();
+    jobProperties.put(UiLibraryCacheRevalidationJobConsumer.PROPERTY_LIBRARY_PATH, libraryPath);
+    jobProperties.put(UiLibraryCacheRevalidationJobConsumer.PROPERTY_SCRIPT_TYPE,
+            scriptType.getName());
+    jobProperties.put(UiLibraryCacheRevalidationJobConsumer.PROPERTY_MINIFIED, minified);
+    if (getJobManager().addJob(getCacheCreationJobName(), jobProperties) == null) {
+      LOG.warn("Unable to add revalidation job for library {}.",
+              libraryPath.replaceAll("[\r\n]", ""));
+      return false;
+    }
+    LOG.debug("Added revalidation job for library {}.", libraryPath.replaceAll("[\r\n]", ""));
+    return true;
+  }
+
+  @Nonnull
+  private String getPersistedETagOrEmptyString(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Resource cachedContentResource = resourceResolver.getResource(
+            String.format("%s%s/%s", getServiceCacheRootPath(),
+                    getGenerationRelativePath(libraryPath, scriptType, minified), JCR_CONTENT));
+    if (cachedContentResource != null) {
+      return cachedContentResource.getValueMap().get(PROPERTY_ETAG, StringUtils.EMPTY);
+    }
+    return StringUtils.EMPTY;
+  }
+
+  /**
+   * Creation time of a JCR cache entry.  Falls back to jcr:lastModified for entries that were
+   * cached before creation times were recorded.
+   */
+  @Nullable
+  private Calendar getPersistedCreated(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Resource cachedContentResource = resourceResolver.getResource(
+            String.format("%s%s/%s", getServiceCacheRootPath(),
+                    getGenerationRelativePath(libraryPath, scriptType, minified), JCR_CONTENT));
+    if (cachedContentResource != null) {
+      Calendar created = cachedContentResource.getValueMap().get(PROPERTY_CREATED,
+              Calendar.class);
+      if (created != null) {
+        return created;
+      }
+      return cachedContentResource.getValueMap().get(PROPERTY_LAST_MODIFIED, Calendar.class);
+    }
+    return null;
+  }
+
+  /**
+   * Reads the persisted compressed variants of an output, so that they can be held in memory with
+   * it.  Variants which are missing or unreadable are left out, and are served from the JCR.
+   */
+  @Nonnull
+  private Map<UiLibraryContentEncoding, byte[]> getPersistedEncodedOutputs(
+          @Nonnull final String libraryPath, @Nonnull final ScriptType scriptType,
+          final boolean minified, @Nonnull final ResourceResolver resourceResolver) {
+    Map<UiLibraryContentEncoding, byte[]> encodedOutputs = new EnumMap<>(
+            UiLibraryContentEncoding.class);
+    for (UiLibraryContentEncoding encoding : UiLibraryContentEncoding.getCompressedEncodings()) {
+      Resource cachedContentResource = resourceResolver.getResource(
+              String.format("%s%s%s/%s", getServiceCacheRootPath(),
+                      getGenerationRelativePath(libraryPath, scriptType, minified),
+                      encoding.getExtension(), JCR_CONTENT));
+      if (cachedContentResource != null) {
+        try (InputStream encodedOutput = cachedContentResource.getValueMap().get(JCR_DATA,
+                InputStream.class)) {
+          if (encodedOutput != null) {
+            encodedOutputs.put(encoding, readBytes(encodedOutput));
+          }
+        } catch (IOException e) {
+          LOG.debug("Unable to read {} encoded cache for library {}. {}", encoding.getName(),
+                  libraryPath.replaceAll("[\r\n]", ""),
+                  String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        }
+      }
+    }
+    return encodedOutputs;
+  }
+
+  @Nonnull
+  private static byte[] readBytes(@Nonnull final InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read = inputStream.read(buffer);
+    while (read != -1) {
+      outputStream.write(buffer, 0, read);
+      read = inputStream.read(buffer);
+    }
+    return outputStream.toByteArray();
+  }
+
+  @Nonnull
+  @Override
+  public UiLibraryCachedOutputStream getCachedOutputStream(@Nonnull String libraryPath,
+          @Nonnull ScriptType scriptType, boolean minified,
+          @Nonnull UiLibraryContentEncoding encoding, @Nonnull ResourceResolver resourceResolver)
+          throws CacheRetrievalException {
+    CachedOutput memoryCachedOutput = getMemoryCachedOutput(libraryPath, scriptType, minified);
+    if (memoryCachedOutput != null && memoryCachedOutput.hasEncoding(encoding)) {
+      return new UiLibraryCachedOutputStream(memoryCachedOutput.getOutputStream(encoding),
+              memoryCachedOutput.getContentLength(encoding));
+    }
+    String cachedContentPath = String.format("%s%s%s/%s", getServiceCacheRootPath(),
+            getGenerationRelativePath(libraryPath, scriptType, minified), encoding.getExtension(),
+            JCR_CONTENT);
+    Resource cachedContentResource = resourceResolver.getResource(cachedContentPath);
+    if (cachedContentResource != null) {
+      ValueMap properties = cachedContentResource.getValueMap();
+      InputStream cachedOutput = properties.get(JCR_DATA, InputStream.class);
+      if (cachedOutput != null) {
+        return new UiLibraryCachedOutputStream(cachedOutput,
+                properties.get(PROPERTY_CONTENT_LENGTH, 0L));
+      }
+    }
+    throw new CacheRetrievalException(
+            String.format("No cached %s output found for '%s'.", encoding.getName(),
+                    cachedContentPath));
+  }
+
   @Override
   public void cacheUiLibraryScript(@Nonnull String libraryPath, @Nonnull String content,
           @Nonnull ScriptType scriptType, boolean isMinified,
           ResourceResolver resourceResolver) throws CacheBuilderException {
+    cacheOutput(libraryPath, Collections.emptyList(), content, scriptType, isMinified,
+            resourceResolver);
+  }
+
+  @Override
+  public void cacheUiLibraryBundleScript(@Nonnull String bundlePath,
+          @Nonnull List<String> libraryPaths, @Nonnull String content,
+          @Nonnull ScriptType scriptType, boolean minified,
+          @Nonnull ResourceResolver resourceResolver) throws CacheBuilderException {
+    cacheOutput(bundlePath, libraryPaths, content, scriptType, minified, resourceResolver);
+  }
+
+  @Override
+  public boolean purgeLibraryOutput(@Nonnull String libraryPath) {
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      boolean purged = purgeLibraryOutput(libraryPath, resourceResolver);
+      if (purged && warmUpAfterPurge) {
+        UiLibraryCacheWarmUpJobExecutor.addWarmUpJob(getJobManager(),
+                Collections.singletonList(libraryPath));
+      }
+      return purged;
+    } catch (LoginException e) {
+      LOG.warn("Unable to purge cached output for library {}. {}",
+              libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+    }
+    return false;
+  }
+
+  boolean purgeLibraryOutput(@Nonnull final String libraryPath,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Set<String> outputPaths = new LinkedHashSet<>();
+    outputPaths.add(libraryPath);
+    outputPaths.addAll(getBundlePathsIncludingLibrary(libraryPath, resourceResolver));
+    failureCache.removeLibrary(libraryPath);
+    synchronized (flushLock) {
+      for (String outputPath : outputPaths) {
+        for (ScriptType scriptType : getOutputScriptTypes()) {
+          writeQueue.remove(UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, false));
+          writeQueue.remove(UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, true));
+        }
+      }
+    }
+    try {
+      for (String outputPath : outputPaths) {
+        deleteCachedFiles(outputPath, resourceResolver);
+      }
+      resourceResolver.commit();
+    } catch (PersistenceException e) {
+      LOG.warn("Unable to purge cached output for library {}. {}",
+              libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+      return false;
+    }
+    for (String outputPath : outputPaths) {
+      for (ScriptType scriptType : getOutputScriptTypes()) {
+        invalidateMemoryCachedOutput(
+                UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, false));
+        invalidateMemoryCachedOutput(
+                UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, true));
+      }
+    }
+    LOG.debug("Purged cached output for library {} and {} bundle(s).",
+            libraryPath.replaceAll("[\r\n]", ""), outputPaths.size() - 1);
+    return true;
+  }
+
+  /**
+   * Removes in-heap output, or marks it stale when stale output is served while it is rebuilt.
+   */
+  private void invalidateMemoryCachedOutput(@Nonnull final String key) {
+    if (staleWhileRevalidate) {
+      memoryCache.markStale(key);
+    } else {
+      memoryCache.remove(key);
+    }
+  }
+
+  @Override
+  public void cacheFailure(@Nonnull String outputPath, @Nonnull List<String> libraryPaths,
+          @Nullable String errorOutput, @Nonnull ScriptType scriptType, boolean minified) {
+    if (failureCacheTimeToLive > 0) {
+      long now = System.currentTimeMillis();
+      failureCache.put(UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, minified),
+              new Failure(outputPath, libraryPaths, errorOutput, now + failureCacheTimeToLive),
+              now);
+    }
+  }
+
+  @Nullable
+  @Override
+  public Failure getCachedFailure(@Nonnull String outputPath, @Nonnull ScriptType scriptType,
+          boolean minified) {
+    return failureCache.get(UiLibraryOutputMemoryCache.getKey(outputPath, scriptType, minified),
+            System.currentTimeMillis());
+  }
+
+  @Nonnull
+  private Set<String> getBundlePathsIncludingLibrary(@Nonnull final String libraryPath,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Set<String> bundlePaths = new LinkedHashSet<>();
+    Resource bundleRootResource = resourceResolver.getResource(
+            getServiceCacheRootPath() + "/" + getCurrentGeneration()
+            + UiLibraryBundleUtils.BUNDLE_OUTPUT_ROOT_PATH);
+    if (bundleRootResource != null) {
+      for (Resource cachedFileResource : bundleRootResource.getChildren()) {
+        Resource cachedContentResource = cachedFileResource.getChild(JCR_CONTENT);
+        if (cachedContentResource != null && Arrays.asList(
+                cachedContentResource.getValueMap().get(PROPERTY_LIBRARIES, new String[]{}))
+                .contains(libraryPath)) {
+          bundlePaths.add(UiLibraryBundleUtils.BUNDLE_OUTPUT_ROOT_PATH + "/"
+                          + StringUtils.substringBefore(cachedFileResource.getName(), "."));
+        }
+      }
+    }
+    return bundlePaths;
+  }
+
+  private void deleteCachedFiles(@Nonnull final String outputPath,
+          @Nonnull final ResourceResolver resourceResolver) throws PersistenceException {
+    for (ScriptType scriptType : getOutputScriptTypes()) {
+      for (boolean minified : new boolean[]{false, true}) {
+        String cachedFilePath = getServiceCacheRootPath() + getGenerationRelativePath(outputPath,
+                scriptType, minified);
+        List<String> cachedFilePaths = new ArrayList<>();
+        cachedFilePaths.add(cachedFilePath);
+        for (UiLibraryContentEncoding encoding :
+                UiLibraryContentEncoding.getCompressedEncodings()) {
+          cachedFilePaths.add(cachedFilePath + encoding.getExtension());
+        }
+        for (String path : cachedFilePaths) {
+          Resource cachedFileResource = resourceResolver.getResource(path);
+          if (cachedFileResource != null) {
+            resourceResolver.delete(cachedFileResource);
+          }
+        }
+      }
+    }
+  }
+
+  @Nonnull
+  private static List<ScriptType> getOutputScriptTypes() {
+    return Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT);
+  }
+
+  private void cacheOutput(@Nonnull final String libraryPath,
+          @Nonnull final List<String> bundledLibraryPaths, @Nonnull final String content,
+          @Nonnull final ScriptType scriptType, final boolean isMinified,
+          @Nonnull final ResourceResolver resourceResolver) throws CacheBuilderException {
     if (isMinified) {
       LOG.debug("Attempting to cache minified script for library {}",
               libraryPath.replaceAll("[\r\n]", ""));
-      createCacheFile(content, String.format("%s.min%s", libraryPath, scriptType.getExtension()),
-              scriptType, resourceResolver);
     } else {
       LOG.debug("Attempting to cache non-minified script for library {}",
               libraryPath.replaceAll("[\r\n]", ""));
-      createCacheFile(content, String.format("%s%s", libraryPath, scriptType.getExtension()),
-              scriptType, resourceResolver);
     }
+    PendingCacheWrite write = new PendingCacheWrite(libraryPath, bundledLibraryPaths, content,
+            getEncodedContent(libraryPath, content), scriptType, isMinified,
+            UiLibraryCacheUtils.getETag(content), System.currentTimeMillis());
+    failureCache.remove(write.getKey());
+    if (writeBehindExecutor != null) {
+      memoryCache.put(write.getKey(), write.getCachedOutput());
+      writeQueue.offer(write);
+      return;
+    }
+    writeCacheEntry(write, resourceResolver);
+    try {
+      resourceResolver.commit();
+    } catch (PersistenceException e) {
+      throw new CacheBuilderException(e.getMessage());
+    }
+    memoryCache.put(write.getKey(), write.getCachedOutput());
+  }
+
+  /**
+   * Compresses output once for every supported encoding, so that the same bytes are persisted and
+   * held in memory.  Encodings which fail are left out, and are not served.
+   */
+  @Nonnull
+  private static Map<UiLibraryContentEncoding, byte[]> getEncodedContent(
+          @Nonnull final String outputPath, @Nonnull final String content) {
+    byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+    Map<UiLibraryContentEncoding, byte[]> encodedContent = new EnumMap<>(
+            UiLibraryContentEncoding.class);
+    for (UiLibraryContentEncoding encoding : UiLibraryContentEncoding.getCompressedEncodings()) {
+      try {
+        encodedContent.put(encoding, encoding.encode(contentBytes));
+      } catch (IOException e) {
+        LOG.warn("Unable to build {} encoded cache for library {}. {}", encoding.getName(),
+                outputPath.replaceAll("[\r\n]", ""),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+      }
+    }
+    return encodedContent;
+  }
+
+  /**
+   * Creates the cache files of an output, without committing them.
+   */
+  private void writeCacheEntry(@Nonnull final PendingCacheWrite write,
+          @Nonnull final ResourceResolver resourceResolver) throws CacheBuilderException {
+    String relativePath = getGenerationRelativePath(write.getOutputPath(), write.getScriptType(),
+            write.isMinified());
+    try {
+      ResourceUtil.getOrCreateResource(resourceResolver,
+              ResourceUtil.getParent(getServiceCacheRootPath() + relativePath), SLING_FOLDER,
+              SLING_FOLDER, false);
+    } catch (PersistenceException e) {
+      throw new CacheBuilderException(e.getMessage());
+    }
+    byte[] contentBytes = write.getContent().getBytes(StandardCharsets.UTF_8);
+    Calendar created = Calendar.getInstance();
+    created.setTimeInMillis(write.getCreated());
+    createCacheFile(write.getContent(), relativePath, write.getScriptType(), resourceResolver);
+    addCacheEntryMetadata(relativePath, write.getETag(), contentBytes.length, created,
+            resourceResolver);
+    if (!write.getBundledLibraryPaths().isEmpty()) {
+      addBundledLibraryPaths(relativePath, write.getBundledLibraryPaths(), resourceResolver);
+    }
+    Map<UiLibraryContentEncoding, byte[]> encodedContent = write.getEncodedContent();
+    for (Map.Entry<UiLibraryContentEncoding, byte[]> entry : encodedContent.entrySet()) {
+      createEncodedCacheFile(entry.getValue(), relativePath, write.getScriptType(),
+              write.getETag(), created, entry.getKey(), resourceResolver);
+    }
+  }
+
+  /**
+   * Persists pending writes in batches, with a single service ResourceResolver.  Stops at the first
+   * failed commit, and backs off exponentially before the next attempt.
+   */
+  void flushPendingWrites() {
+    if (writeQueue.size() == 0 || System.currentTimeMillis() < nextFlushTime) {
+      return;
+    }
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      WriteBatch batch = writeQueue.drain(writeBehindBatchSize);
+      while (!batch.isEmpty()) {
+        if (!flushBatch(batch, resourceResolver)) {
+          onFailedFlush(batch.getWrites());
+          return;
+        }
+        consecutiveFailedFlushes = 0;
+        batch = writeQueue.drain(writeBehindBatchSize);
+      }
+    } catch (LoginException e) {
+      LOG.warn("Unable to persist pending UiLibrary cache writes. {}",
+              e.getMessage().replaceAll("[\r\n]", ""));
+      onFailedFlush(Collections.emptyList());
+    }
+  }
+
+  /**
+   * Persists a batch of writes, unless pending writes have been invalidated since the batch was
+   * drained.  Invalidated batches are discarded.
+   *
+   * @param batch Drained writes.
+   * @param resourceResolver ResourceResolver used to persist the writes.
+   * @return Whether the batch was committed or discarded, false if the commit failed.
+   */
+  boolean flushBatch(@Nonnull final WriteBatch batch,
+          @Nonnull final ResourceResolver resourceResolver) {
+    synchronized (flushLock) {
+      long generation = batch.getGeneration();
+      if (writeQueue.getGeneration() != generation) {
+        LOG.debug("Discarded {} pending UiLibrary cache writes invalidated by a purge.",
+                batch.getWrites().size());
+        return true;
+      }
+      for (PendingCacheWrite write : batch.getWrites()) {
+        try {
+          writeCacheEntry(write, resourceResolver);
+        } catch (CacheBuilderException e) {
+          LOG.warn("Unable to persist cached output for {}. {}",
+                  write.getOutputPath().replaceAll("[\r\n]", ""),
+                  String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        }
+      }
+      if (writeQueue.getGeneration() != generation) {
+        resourceResolver.revert();
+        return true;
+      }
+      try {
+        resourceResolver.commit();
+        LOG.debug("Persisted {} pending UiLibrary cache writes.", batch.getWrites().size());
+        return true;
+      } catch (PersistenceException e) {
+        LOG.warn("Unable to commit {} pending UiLibrary cache writes. {}",
+                batch.getWrites().size(),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        resourceResolver.revert();
+        return false;
+      }
+    }
+  }
+
+  private void onFailedFlush(@Nonnull final List<PendingCacheWrite> batch) {
+    List<PendingCacheWrite> retries = new ArrayList<>();
+    for (PendingCacheWrite write : batch) {
+      if (write.recordFailedAttempt() < writeBehindMaximumAttempts) {
+        retries.add(write);
+      } else {
+        LOG.warn("Discarding pending cache write for {} after {} failed attempts.",
+                write.getOutputPath().replaceAll("[\r\n]", ""), writeBehindMaximumAttempts);
+      }
+    }
+    writeQueue.requeue(retries);
+    consecutiveFailedFlushes++;
+    nextFlushTime = System.currentTimeMillis() + getRetryDelay(consecutiveFailedFlushes,
+            writeBehindInterval, writeBehindMaximumRetryDelay);
+  }
+
+  static long getRetryDelay(final int failedAttempts, final long interval,
+          final long maximumDelay) {
+    long delay = interval;
+    for (int attempt = 1; attempt < failedAttempts && delay < maximumDelay; attempt++) {
+      delay *= 2;
+    }
+    return Math.min(maximumDelay, delay);
+  }
+
+  @Nonnull
+  UiLibraryCacheWriteQueue getWriteQueue() {
+    return writeQueue;
+  }
+
+  @Nonnull
+  UiLibraryFailureCache getFailureCache() {
+    return failureCache;
+  }
+
+  @Nonnull
+  UiLibraryOutputMemoryCache getMemoryCache() {
+    return memoryCache;
+  }
+
+  void addCacheEntryMetadata(@Nonnull final String relativePath, @Nonnull final String eTag,
+          final long contentLength, @Nonnull final Calendar created,
+          @Nonnull final ResourceResolver resourceResolver)
+          throws CacheBuilderException {
+    String cachedContentPath = String.format("%s%s/%s", getServiceCacheRootPath(), relativePath,
+            JCR_CONTENT);
+    Resource cachedContentResource = resourceResolver.getResource(cachedContentPath);
+    if (cachedContentResource == null) {
+      throw new CacheBuilderException(
+              String.format("Unable to store ETag, '%s' was not found.", cachedContentPath));
+    }
+    ModifiableValueMap properties = cachedContentResource.adaptTo(ModifiableValueMap.class);
+    if (properties == null) {
+      throw new CacheBuilderException(
+              String.format("Unable to store ETag, '%s' is not modifiable.", cachedContentPath));
+    }
+    List<String> mixinTypes = new ArrayList<>(
+            Arrays.asList(properties.get(PROPERTY_MIXIN_TYPES, new String[]{})));
+    if (!mixinTypes.contains(CACHE_ENTRY_MIXIN)) {
+      mixinTypes.add(CACHE_ENTRY_MIXIN);
+      properties.put(PROPERTY_MIXIN_TYPES, mixinTypes.toArray(new String[0]));
+    }
+    properties.put(PROPERTY_ETAG, eTag);
+    properties.put(PROPERTY_CONTENT_LENGTH, contentLength);
+    properties.put(PROPERTY_CREATED, created);
+  }
+
+  private void addBundledLibraryPaths(@Nonnull final String relativePath,
+          @Nonnull final List<String> bundledLibraryPaths,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Resource cachedContentResource = resourceResolver.getResource(
+            String.format("%s%s/%s", getServiceCacheRootPath(), relativePath, JCR_CONTENT));
+    if (cachedContentResource != null) {
+      ModifiableValueMap properties = cachedContentResource.adaptTo(ModifiableValueMap.class);
+      if (properties != null) {
+        properties.put(PROPERTY_LIBRARIES, bundledLibraryPaths.toArray(new String[0]));
+      }
+    }
+  }
+
+  void createEncodedCacheFile(@Nonnull final byte[] encodedContent,
+          @Nonnull final String relativePath, @Nonnull final ScriptType scriptType,
+          @Nonnull final String eTag, @Nonnull final Calendar created,
+          @Nonnull final UiLibraryContentEncoding encoding,
+          @Nonnull final ResourceResolver resourceResolver) throws CacheBuilderException {
+    String encodedFilePath = getServiceCacheRootPath() + relativePath + encoding.getExtension();
+    try {
+      Resource existingResource = resourceResolver.getResource(encodedFilePath);
+      if (existingResource != null) {
+        resourceResolver.delete(existingResource);
+      }
+      Resource parentResource = resourceResolver.getResource(
+              ResourceUtil.getParent(encodedFilePath));
+      if (parentResource == null) {
+        throw new CacheBuilderException(
+                String.format("Unable to create '%s', parent resource was not found.",
+                        encodedFilePath));
+      }
+      Map<String, Object> fileProperties = new HashMap<>();
+      fileProperties.put("jcr:primaryType", "nt:file");
+      Resource fileResource = resourceResolver.create(parentResource,
+              ResourceUtil.getName(encodedFilePath), fileProperties);
+
+      Map<String, Object> contentProperties = new HashMap<>();
+      contentProperties.put("jcr:primaryType", "nt:resource");
+      contentProperties.put(PROPERTY_MIXIN_TYPES, new String[]{CACHE_ENTRY_MIXIN});
+      contentProperties.put("jcr:mimeType", scriptType.getOutputContentType());
+      contentProperties.put(JCR_DATA, new ByteArrayInputStream(encodedContent));
+      contentProperties.put(PROPERTY_ETAG, encoding.getETag(eTag));
+      contentProperties.put(PROPERTY_CONTENT_LENGTH, (long) encodedContent.length);
+      contentProperties.put(PROPERTY_CREATED, created);
+      resourceResolver.create(fileResource, JCR_CONTENT, contentProperties);
+    } catch (PersistenceException e) {
+      throw new CacheBuilderException(e.getMessage());
+    }
+  }
+
+  @Nonnull
+  static String getCachedFileRelativePath(@Nonnull final String libraryPath,
+          @Nonnull final ScriptType scriptType, final boolean minified) {
+    if (minified) {
+      return String.format("%s.min%s", libraryPath, scriptType.getExtension());
+    }
+    return String.format("%s%s", libraryPath, scriptType.getExtension());
   }
-}
\ No newline at end of file
+}
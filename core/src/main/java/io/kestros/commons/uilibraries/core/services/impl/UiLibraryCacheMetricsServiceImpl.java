@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheStatistics;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheStatistics.Counters;
+import io.kestros.commons.uilibraries.core.jmx.UiLibraryCacheMetricsMBean;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCacheMetricsService;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * Records UiLibrary cache metrics, and exposes them as the
+ * io.kestros.commons.uilibraries:type=UiLibraryCacheMetrics MBean.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+@Component(immediate = true,
+        service = {UiLibraryCacheMetricsService.class, DynamicMBean.class},
+        property = "jmx.objectname=" + UiLibraryCacheMetricsServiceImpl.OBJECT_NAME)
+public class UiLibraryCacheMetricsServiceImpl extends StandardMBean
+        implements UiLibraryCacheMetricsService, UiLibraryCacheMetricsMBean {
+
+  static final String OBJECT_NAME = "io.kestros.commons.uilibraries:type=UiLibraryCacheMetrics";
+
+  private static final String[] STATISTICS_ITEM_NAMES = {"output", "hits", "misses", "hitRatio",
+          "fills", "averageFillTime", "maximumFillTime", "bytesServed", "bytesStored"};
+  private static final String[] STATISTICS_ITEM_DESCRIPTIONS = {"Script type and minified flag",
+          "Requests served from the cache", "Requests whose output was not cached",
+          "Fraction of requests served from the cache", "Outputs compiled and cached",
+          "Average milliseconds to compile and cache an output",
+          "Longest milliseconds to compile and cache an output", "Bytes written to responses",
+          "Bytes written to the cache"};
+  private static final OpenType<?>[] STATISTICS_ITEM_TYPES = {SimpleType.STRING, SimpleType.LONG,
+          SimpleType.LONG, SimpleType.DOUBLE, SimpleType.LONG, SimpleType.DOUBLE, SimpleType.LONG,
+          SimpleType.LONG, SimpleType.LONG};
+
+  private final UiLibraryCacheStatistics statistics = new UiLibraryCacheStatistics();
+
+  /**
+   * Constructs the service.
+   *
+   * @throws NotCompliantMBeanException MBean interface is not compliant.
+   */
+  public UiLibraryCacheMetricsServiceImpl() throws NotCompliantMBeanException {
+    super(UiLibraryCacheMetricsMBean.class);
+  }
+
+  @Override
+  public void recordHit(@Nonnull final ScriptType scriptType, final boolean minified,
+          final long bytesServed) {
+    Counters counters = statistics.getCounters(scriptType, minified);
+    counters.recordHit();
+    counters.recordBytesServed(bytesServed);
+  }
+
+  @Override
+  public void recordMiss(@Nonnull final ScriptType scriptType, final boolean minified) {
+    statistics.getCounters(scriptType, minified).recordMiss();
+  }
+
+  @Override
+  public void recordFill(@Nonnull final ScriptType scriptType, final boolean minified,
+          final long milliseconds, final long bytesServed) {
+    Counters counters = statistics.getCounters(scriptType, minified);
+    counters.recordFill(milliseconds);
+    counters.recordBytesServed(bytesServed);
+  }
+
+  @Override
+  public void recordBytesStored(@Nonnull final ScriptType scriptType, final boolean minified,
+          final long bytesStored) {
+    statistics.getCounters(scriptType, minified).recordBytesStored(bytesStored);
+  }
+
+  @Override
+  public long getHitCount() {
+    return statistics.getTotals().getHitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return statistics.getTotals().getMissCount();
+  }
+
+  @Override
+  public double getHitRatio() {
+    return statistics.getTotals().getHitRatio();
+  }
+
+  @Override
+  public long getFillCount() {
+    return statistics.getTotals().getFillCount();
+  }
+
+  @Override
+  public double getAverageFillTime() {
+    return statistics.getTotals().getAverageFillTime();
+  }
+
+  @Override
+  public long getMaximumFillTime() {
+    return statistics.getTotals().getMaximumFillTime();
+  }
+
+  @Override
+  public long getBytesServed() {
+    return statistics.getTotals().getBytesServed();
+  }
+
+  @Override
+  public long getBytesStored() {
+    return statistics.getTotals().getBytesStored();
+  }
+
+  @Override
+  public TabularData getStatistics() throws OpenDataException {
+    CompositeType rowType = new CompositeType("UiLibraryCacheStatistics",
+            "UiLibrary cache statistics for a script type and minified flag",
+            STATISTICS_ITEM_NAMES, STATISTICS_ITEM_DESCRIPTIONS, STATISTICS_ITEM_TYPES);
+    TabularDataSupport table = new TabularDataSupport(new TabularType("UiLibraryCacheStatistics",
+            "UiLibrary cache statistics by script type and minified flag", rowType,
+            new String[]{"output"}));
+    for (Map.Entry<String, Counters> entry : statistics.getAllCounters().entrySet()) {
+      Counters counters = entry.getValue();
+      table.put(new CompositeDataSupport(rowType, STATISTICS_ITEM_NAMES, new Object[]{
+              entry.getKey(), counters.getHitCount(), counters.getMissCount(),
+              counters.getHitRatio(), counters.getFillCount(), counters.getAverageFillTime(),
+              counters.getMaximumFillTime(), counters.getBytesServed(),
+              counters.getBytesStored()}));
+    }
+    return table;
+  }
+
+  @Override
+  public void resetStatistics() {
+    statistics.reset();
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompilationCoalescer;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompilationExecutorService;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs UiLibrary compilations on a fixed size thread pool with a bounded queue.  Compilations read
+ * libraries with the ui-library-manager service user, so that compilations which outlive the
+ * request that started them can still complete and be cached.
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+@Component(immediate = true,
+        service = UiLibraryCompilationExecutorService.class)
+public class UiLibraryCompilationExecutorServiceImpl extends BaseServiceResolverService
+        implements UiLibraryCompilationExecutorService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+          UiLibraryCompilationExecutorServiceImpl.class);
+
+  static final String PROPERTY_THREAD_COUNT = "threadCount";
+  static final String PROPERTY_QUEUE_SIZE = "queueSize";
+  static final String PROPERTY_TIMEOUT = "timeout";
+  static final String PROPERTY_TIMEOUT_RESPONSE_STATUS = "timeoutResponseStatus";
+  static final String PROPERTY_RETRY_AFTER_SECONDS = "retryAfterSeconds";
+
+  static final long DEFAULT_QUEUE_SIZE = 64;
+  static final long DEFAULT_TIMEOUT = 10000;
+  static final long DEFAULT_RETRY_AFTER_SECONDS = 5;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  private final UiLibraryCompilationCoalescer compilationCoalescer
+          = new UiLibraryCompilationCoalescer();
+
+  private volatile ThreadPoolExecutor executor;
+  private long timeout = DEFAULT_TIMEOUT;
+  private int timeoutResponseStatus = SlingHttpServletResponse.SC_SERVICE_UNAVAILABLE;
+  private long retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+
+  @Nonnull
+  @Override
+  public String getDisplayName() {
+    return "UI Library Compilation Executor Service";
+  }
+
+  @Override
+  public void activate(@Nonnull ComponentContext componentContext) {
+    int threadCount = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_THREAD_COUNT, getDefaultThreadCount()));
+    int queueSize = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+    timeout = Math.max(1, ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_TIMEOUT, DEFAULT_TIMEOUT));
+    timeoutResponseStatus = (int) ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_TIMEOUT_RESPONSE_STATUS, SlingHttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    retryAfterSeconds = ComponentPropertyUtils.getLongProperty(componentContext,
+            PROPERTY_RETRY_AFTER_SECONDS, DEFAULT_RETRY_AFTER_SECONDS);
+    executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), new CompilerThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    super.activate(componentContext);
+  }
+
+  @Override
+  public void deactivate(@Nonnull ComponentContext componentContext) {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    super.deactivate(componentContext);
+  }
+
+  @Nonnull
+  @Override
+  public String compile(@Nonnull final String key, @Nonnull final UiLibraryCompilation compilation)
+          throws TimeoutException, ExecutionException, InterruptedException {
+    Callable<String> serviceCompilation = () -> {
+      try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+        return compilation.compile(resourceResolver);
+      }
+    };
+    ThreadPoolExecutor currentExecutor = executor;
+    if (currentExecutor == null) {
+      return compilationCoalescer.compile(key, serviceCompilation);
+    }
+    try {
+      return compilationCoalescer.submit(key, serviceCompilation, currentExecutor).get(timeout,
+              TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("UiLibrary compilation queue is full, unable to compile {}.",
+              key.replaceAll("[\r\n]", ""));
+      throw new TimeoutException("UiLibrary compilation queue is full.");
+    }
+  }
+
+  @Override
+  public int getTimeoutResponseStatus() {
+    return timeoutResponseStatus;
+  }
+
+  @Override
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  /**
+   * Number of compilations waiting for a compiler thread.
+   *
+   * @return Number of compilations waiting for a compiler thread.
+   */
+  int getQueuedCount() {
+    if (executor != null) {
+      return executor.getQueue().size();
+    }
+    return 0;
+  }
+
+  private static long getDefaultThreadCount() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+
+  private static class CompilerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@Nonnull final Runnable runnable) {
+      Thread thread = new Thread(runnable,
+              "ui-library-compiler-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -19,11 +19,17 @@
 
 package io.kestros.commons.uilibraries.core.services.impl;
 
-import static io.kestros.commons.osgiserviceutils.utils.OsgiServiceUtils.getAllOsgiServicesOfType;
+import static io.kestros.commons.structuredslingmodels.utils.FileModelUtils.getChildAsFileType;
+import static io.kestros.commons.structuredslingmodels.utils.SlingModelUtils.getChildAsBaseResource;
+import static io.kestros.commons.structuredslingmodels.utils.SlingModelUtils.getResourceAsType;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.structuredslingmodels.BaseResource;
+import io.kestros.commons.structuredslingmodels.exceptions.ChildResourceNotFoundException;
 import io.kestros.commons.structuredslingmodels.exceptions.InvalidResourceTypeException;
 import io.kestros.commons.structuredslingmodels.exceptions.JcrFileReadException;
+import io.kestros.commons.structuredslingmodels.exceptions.ModelAdaptionException;
 import io.kestros.commons.uilibraries.api.exceptions.NoMatchingCompilerException;
 import io.kestros.commons.uilibraries.api.models.FrontendLibrary;
 import io.kestros.commons.uilibraries.api.models.ScriptFile;
@@ -33,30 +39,126 @@ import io.kestros.commons.uilibraries.api.services.JavaScriptScriptTypeCompilerS
 import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.structuredslingmodels.filetypes.BaseFile;
+import io.kestros.commons.uilibraries.core.cache.RankedServices;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompileManifest;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompileManifest.ManifestFile;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompilerIndex;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFileContentCache;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompileManifestService;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import io.kestros.commons.uilibraries.lesscss.filetypes.LessCssFile;
+import io.kestros.commons.uilibraries.lesscss.filetypes.LessImportResolver;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.felix.hc.api.FormattingResultLog;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Looks up compiler services to provide compiled CSS or JavaScript output for UiLibraries.
+ *
+ * <p>
+ * Compilers are tracked with dynamic references and indexed by {@link UiLibraryCompilerIndex},
+ * which is rebuilt only when a compiler is registered or unregistered.
+ * </p>
+ *
+ * <p>
+ * The included files, ScriptTypes and compiler of each UiLibrary script folder are discovered
+ * once and kept as a {@link UiLibraryCompileManifest}, which is reused for every output of the
+ * folder until the library or folder's last-modified state changes or the manifest is purged.
+ * </p>
+ *
+ * <p>
+ * When parallelFileLoading is enabled, the files of larger folders are read concurrently on a
+ * fixed pool of ui-library-file-loader threads.  The calling thread reads its share of the files
+ * through the models it already resolved.  Only pooled workers, which cannot use the caller's
+ * resolver, read their shares through their own ui-library-manager service resolvers.  Files a
+ * worker could not read are read by the calling thread, and the contents are joined in include
+ * order.
+ * </p>
+ *
+ * <p>
+ * File content is cached in a {@link UiLibraryFileContentCache} with the last-modified state of
+ * the file, so rebuilding a library only reads the files that changed since it was last compiled.
+ * CSS and JavaScript files are cached with their own last-modified state.  LESS files are cached
+ * with the last-modified state of every file their imports were expanded from as well.  Other file
+ * types are not cached, since they may include other files.
+ * </p>
  */
 @SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
-@Component(immediate = true, service = UiLibraryCompilationService.class)
-public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationService {
+@Component(immediate = true,
+    service = {UiLibraryCompilationService.class, UiLibraryCompileManifestService.class})
+public class UiLibraryCompilationServiceImpl extends BaseServiceResolverService
+    implements UiLibraryCompilationService, UiLibraryCompileManifestService {
 
   private static final Logger LOG = LoggerFactory.getLogger(UiLibraryCompilationServiceImpl.class);
 
+  static final String PROPERTY_PARALLEL_FILE_LOADING = "parallelFileLoading";
+  static final String PROPERTY_FILE_LOADING_THREAD_COUNT = "fileLoadingThreadCount";
+  static final String PROPERTY_PARALLEL_FILE_LOADING_THRESHOLD = "parallelFileLoadingThreshold";
+
+  static final String PROPERTY_FILE_CONTENT_CACHE_MAXIMUM_SIZE = "fileContentCacheMaximumSize";
+
+  static final long DEFAULT_PARALLEL_FILE_LOADING_THRESHOLD = 4;
+  static final long DEFAULT_FILE_CONTENT_CACHE_MAXIMUM_SIZE = 16L * 1024 * 1024;
+
+  private static final int MAXIMUM_COMPILE_MANIFESTS = 10000;
+  private static final int FILE_LOADING_QUEUE_SIZE_PER_THREAD = 16;
+  private static final String PROPERTY_INCLUDE = "include";
+  private static final String PROPERTY_LAST_MODIFIED = "jcr:lastModified";
+  private static final String JCR_CONTENT = "jcr:content";
+
   protected ComponentContext context;
 
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+      policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  private volatile ThreadPoolExecutor fileLoadingExecutor;
+  private int fileLoadingThreadCount = 1;
+  private int parallelFileLoadingThreshold = (int) DEFAULT_PARALLEL_FILE_LOADING_THRESHOLD;
+  private volatile UiLibraryFileContentCache fileContentCache;
+
+  private final RankedServices<ScriptTypeCompiler> compilers = new RankedServices<>();
+  private final RankedServices<CssScriptTypeCompilerService> cssCompilers = new RankedServices<>();
+  private final RankedServices<JavaScriptScriptTypeCompilerService> javaScriptCompilers
+      = new RankedServices<>();
+  private volatile UiLibraryCompilerIndex compilerIndex = new UiLibraryCompilerIndex(
+      Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+  private final ConcurrentMap<String, UiLibraryCompileManifest> compileManifests
+      = new ConcurrentHashMap<>();
+
   @Nonnull
   @Override
   public String getDisplayName() {
@@ -66,10 +168,118 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   @Override
   public void activate(@Nonnull ComponentContext componentContext) {
     this.context = componentContext;
+    long fileContentCacheMaximumSize = ComponentPropertyUtils.getLongProperty(componentContext,
+        PROPERTY_FILE_CONTENT_CACHE_MAXIMUM_SIZE, DEFAULT_FILE_CONTENT_CACHE_MAXIMUM_SIZE);
+    if (fileContentCacheMaximumSize > 0) {
+      fileContentCache = new UiLibraryFileContentCache(fileContentCacheMaximumSize);
+    }
+    if (ComponentPropertyUtils.getBooleanProperty(componentContext,
+        PROPERTY_PARALLEL_FILE_LOADING, false)) {
+      fileLoadingThreadCount = (int) Math.max(1, ComponentPropertyUtils.getLongProperty(
+          componentContext, PROPERTY_FILE_LOADING_THREAD_COUNT, getDefaultThreadCount()));
+      parallelFileLoadingThreshold = (int) Math.max(2, ComponentPropertyUtils.getLongProperty(
+          componentContext, PROPERTY_PARALLEL_FILE_LOADING_THRESHOLD,
+          DEFAULT_PARALLEL_FILE_LOADING_THRESHOLD));
+      fileLoadingExecutor = new ThreadPoolExecutor(fileLoadingThreadCount,
+          fileLoadingThreadCount, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(fileLoadingThreadCount * FILE_LOADING_QUEUE_SIZE_PER_THREAD),
+          new FileLoaderThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+    super.activate(componentContext);
   }
 
   @Override
   public void deactivate(@Nonnull ComponentContext componentContext) {
+    if (fileLoadingExecutor != null) {
+      fileLoadingExecutor.shutdownNow();
+      fileLoadingExecutor = null;
+    }
+    purgeAllCompileManifests();
+    fileContentCache = null;
+    super.deactivate(componentContext);
+  }
+
+  /**
+   * Adds a compiler to the compiler index.
+   *
+   * @param compiler Compiler.
+   * @param properties Service properties.
+   */
+  @Reference(service = ScriptTypeCompiler.class,
+      cardinality = ReferenceCardinality.MULTIPLE,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY,
+      unbind = "unbindCompiler")
+  protected void bindCompiler(@Nonnull final ScriptTypeCompiler compiler,
+      @Nonnull final Map<String, Object> properties) {
+    compilers.bind(compiler, properties);
+    rebuildCompilerIndex();
+  }
+
+  /**
+   * Removes a compiler from the compiler index.
+   *
+   * @param compiler Compiler.
+   */
+  protected void unbindCompiler(@Nonnull final ScriptTypeCompiler compiler) {
+    compilers.unbind(compiler);
+    rebuildCompilerIndex();
+  }
+
+  /**
+   * Adds a CSS compiler to the compiler index.
+   *
+   * @param compiler CSS compiler.
+   * @param properties Service properties.
+   */
+  @Reference(service = CssScriptTypeCompilerService.class,
+      cardinality = ReferenceCardinality.MULTIPLE,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY,
+      unbind = "unbindCssCompiler")
+  protected void bindCssCompiler(@Nonnull final CssScriptTypeCompilerService compiler,
+      @Nonnull final Map<String, Object> properties) {
+    cssCompilers.bind(compiler, properties);
+    rebuildCompilerIndex();
+  }
+
+  /**
+   * Removes a CSS compiler from the compiler index.
+   *
+   * @param compiler CSS compiler.
+   */
+  protected void unbindCssCompiler(@Nonnull final CssScriptTypeCompilerService compiler) {
+    cssCompilers.unbind(compiler);
+    rebuildCompilerIndex();
+  }
+
+  /**
+   * Adds a JavaScript compiler to the compiler index.
+   *
+   * @param compiler JavaScript compiler.
+   * @param properties Service properties.
+   */
+  @Reference(service = JavaScriptScriptTypeCompilerService.class,
+      cardinality = ReferenceCardinality.MULTIPLE,
+      policy = ReferencePolicy.DYNAMIC,
+      policyOption = ReferencePolicyOption.GREEDY,
+      unbind = "unbindJavaScriptCompiler")
+  protected void bindJavaScriptCompiler(
+      @Nonnull final JavaScriptScriptTypeCompilerService compiler,
+      @Nonnull final Map<String, Object> properties) {
+    javaScriptCompilers.bind(compiler, properties);
+    rebuildCompilerIndex();
+  }
+
+  /**
+   * Removes a JavaScript compiler from the compiler index.
+   *
+   * @param compiler JavaScript compiler.
+   */
+  protected void unbindJavaScriptCompiler(
+      @Nonnull final JavaScriptScriptTypeCompilerService compiler) {
+    javaScriptCompilers.unbind(compiler);
+    rebuildCompilerIndex();
   }
 
   @Override
@@ -89,56 +299,37 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   @Nonnull
   @Override
   public List<ScriptType> getAllRegisteredScriptTypes() {
-    List<ScriptType> scriptTypeList = new ArrayList<>();
-    scriptTypeList.addAll(getRegisteredCssScriptTypes());
-    scriptTypeList.addAll(getRegisteredJavaScriptScriptTypes());
-    return scriptTypeList;
+    return compilerIndex.getAllScriptTypes();
   }
 
   @Nonnull
   @Override
   public List<ScriptType> getRegisteredCssScriptTypes() {
-    List<ScriptType> scriptTypeList = new ArrayList<>();
-    for (CssScriptTypeCompilerService cssCompiler : getCssCompilers()) {
-      for (ScriptType scriptType : cssCompiler.getScriptTypes()) {
-        if (!scriptTypeList.contains(scriptType)) {
-          scriptTypeList.add(scriptType);
-        }
-      }
-    }
-    return scriptTypeList;
+    return compilerIndex.getCssScriptTypes();
   }
 
   @Nonnull
   @Override
   public List<ScriptType> getRegisteredJavaScriptScriptTypes() {
-    List<ScriptType> scriptTypeList = new ArrayList<>();
-    for (JavaScriptScriptTypeCompilerService javaScriptCompiler : getJavaScriptCompilers()) {
-      for (ScriptType scriptType : javaScriptCompiler.getScriptTypes()) {
-        if (!scriptTypeList.contains(scriptType)) {
-          scriptTypeList.add(scriptType);
-        }
-      }
-    }
-    return scriptTypeList;
+    return compilerIndex.getJavaScriptScriptTypes();
   }
 
   @Nonnull
   @Override
   public List<CssScriptTypeCompilerService> getCssCompilers() {
-    return getAllOsgiServicesOfType(context, CssScriptTypeCompilerService.class);
+    return compilerIndex.getCssCompilers();
   }
 
   @Nonnull
   @Override
   public List<JavaScriptScriptTypeCompilerService> getJavaScriptCompilers() {
-    return getAllOsgiServicesOfType(context, JavaScriptScriptTypeCompilerService.class);
+    return compilerIndex.getJavaScriptCompilers();
   }
 
   @Nonnull
   @Override
   public List<ScriptTypeCompiler> getCompilers() {
-    return getAllOsgiServicesOfType(context, ScriptTypeCompiler.class);
+    return compilerIndex.getCompilers();
   }
 
   @Nonnull
@@ -146,48 +337,17 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   public <T extends ScriptTypeCompiler> ScriptTypeCompiler getCompiler(
       @Nonnull List<ScriptType> scriptTypes, List<T> registeredCompilers) throws
       NoMatchingCompilerException {
-    List<ScriptTypeCompiler> compatibleCompilers = new ArrayList<>();
-    for (ScriptTypeCompiler compiler : registeredCompilers) {
-      List<ScriptType> compilerScriptTypes = compiler.getScriptTypes();
-      if (compilerScriptTypes.size() >= scriptTypes.size() && compilerScriptTypes.containsAll(
-          scriptTypes)) {
-        compatibleCompilers.add(compiler);
-      }
-    }
-    // find the best matching, so that CSS only libraries will never be run through compilers that
-    // could break them.
-    ScriptTypeCompiler compiler = null;
-    int bestMatch = 999;
-    if (scriptTypes.isEmpty()) {
-      for (ScriptTypeCompiler compatibleCompiler : compatibleCompilers) {
-        if (compatibleCompiler.getScriptTypes().size() == 1) {
-          compiler = compatibleCompiler;
-          break;
-        } else {
-          compiler = compatibleCompiler;
-        }
-      }
-    } else if (scriptTypes.size() == 1) {
-      for (ScriptTypeCompiler compatibleCompiler : compatibleCompilers) {
-        if (compatibleCompiler.getScriptTypes().size() == 1) {
-          compiler = compatibleCompiler;
-          break;
-        } else {
-          compiler = compatibleCompiler;
-        }
-      }
-    } else {
-      for (ScriptTypeCompiler compatibleCompiler : compatibleCompilers) {
-        if (compatibleCompiler.getScriptTypes().size() < bestMatch) {
-          bestMatch = compatibleCompiler.getScriptTypes().size();
-          compiler = compatibleCompiler;
-        }
-      }
-    }
+    ScriptTypeCompiler compiler = UiLibraryCompilerIndex.findCompiler(scriptTypes,
+        registeredCompilers);
     if (compiler != null) {
       return compiler;
     }
+    throw getNoMatchingCompilerException(scriptTypes);
+  }
 
+  @Nonnull
+  private NoMatchingCompilerException getNoMatchingCompilerException(
+      @Nonnull List<ScriptType> scriptTypes) {
     StringBuilder scriptTypesStringBuilder = new StringBuilder();
     for (ScriptType scriptType : scriptTypes) {
       if (StringUtils.isNotEmpty(scriptTypesStringBuilder.toString())) {
@@ -195,7 +355,7 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
       }
       scriptTypesStringBuilder.append(scriptType.getName());
     }
-    throw new NoMatchingCompilerException(
+    return new NoMatchingCompilerException(
         String.format("No compiler registered for ScriptType(s): %s.",
             scriptTypesStringBuilder.toString()));
   }
@@ -205,10 +365,10 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   public String getUiLibraryOutput(@Nonnull FrontendLibrary library, ScriptType scriptType,
       @Nonnull ResourceResolver resourceResolver) throws InvalidResourceTypeException,
       NoMatchingCompilerException {
-    ScriptTypeCompiler compiler = getCompiler(
-        getLibraryScriptTypes(library, scriptType.getRootResourceName()), getCompilers());
-    String uiLibrarySource = getUiLibrarySource(library, scriptType, resourceResolver);
-    return compiler.getOutput(uiLibrarySource);
+    UiLibraryCompileManifest manifest = getCompileManifest(library,
+        scriptType.getRootResourceName());
+    ScriptTypeCompiler compiler = getCompiler(manifest);
+    return compiler.getOutput(getUiLibrarySource(library, manifest, compiler));
   }
 
   @Nonnull
@@ -217,9 +377,10 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
       InvalidResourceTypeException, NoMatchingCompilerException {
     LOG.warn("getUiLibraryOutput(FrontendLibrary, ScriptType) is deprecated. Use getUiLibraryOutput"
              + "(FrontendLibrary, ScriptType, ResourceResolver) instead.");
-    ScriptTypeCompiler compiler = getCompiler(
-        getLibraryScriptTypes(uiLibrary, scriptType.getRootResourceName()), getCompilers());
-    return compiler.getOutput(getUiLibrarySource(uiLibrary, scriptType));
+    UiLibraryCompileManifest manifest = getCompileManifest(uiLibrary,
+        scriptType.getRootResourceName());
+    ScriptTypeCompiler compiler = getCompiler(manifest);
+    return compiler.getOutput(getUiLibrarySource(uiLibrary, manifest, compiler));
   }
 
   @Nonnull
@@ -227,28 +388,9 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   public String getUiLibrarySource(@Nonnull FrontendLibrary library, ScriptType scriptType,
       @Nonnull ResourceResolver resourceResolver) throws InvalidResourceTypeException,
       NoMatchingCompilerException {
-    ScriptTypeCompiler compiler = getCompiler(
-        getLibraryScriptTypes(library, scriptType.getRootResourceName()), getCompilers());
-    StringBuilder rawOutputStringBuilder = new StringBuilder();
-
-    for (ScriptFile scriptFile : library.getScriptFiles(compiler.getScriptTypes(),
-        scriptType.getRootResourceName())) {
-
-      try {
-        String fileContent = scriptFile.getFileContent();
-        if (StringUtils.isNotEmpty(rawOutputStringBuilder.toString()) && StringUtils.isNotEmpty(
-            fileContent)) {
-          rawOutputStringBuilder.append('\n');
-        }
-        rawOutputStringBuilder.append(scriptFile.getFileContent());
-
-      } catch (IOException | JcrFileReadException e) {
-        LOG.error("Unable to append {} file {} to UiLibrary output due to IOException",
-            scriptFile.getFileType().getFileModelClass().getName().replaceAll("[\r\n]", ""),
-            scriptFile.getName().replaceAll("[\r\n]", ""));
-      }
-    }
-    return rawOutputStringBuilder.toString();
+    UiLibraryCompileManifest manifest = getCompileManifest(library,
+        scriptType.getRootResourceName());
+    return getUiLibrarySource(library, manifest, getCompiler(manifest));
   }
 
   @Nonnull
@@ -257,43 +399,477 @@ public class UiLibraryCompilationServiceImpl implements UiLibraryCompilationServ
   public String getUiLibrarySource(@Nonnull FrontendLibrary library, ScriptType scriptType) throws
       InvalidResourceTypeException, NoMatchingCompilerException {
     LOG.warn("getUiLibrarySource(FrontendLibrary, ScriptType) is deprecated.");
-    ScriptTypeCompiler compiler = getCompiler(
-        getLibraryScriptTypes(library, scriptType.getRootResourceName()), getCompilers());
-    StringBuilder rawOutputStringBuilder = new StringBuilder();
+    UiLibraryCompileManifest manifest = getCompileManifest(library,
+        scriptType.getRootResourceName());
+    return getUiLibrarySource(library, manifest, getCompiler(manifest));
+  }
 
-    for (ScriptFile scriptFile : library.getScriptFiles(compiler.getScriptTypes(),
-        scriptType.getRootResourceName())) {
+  /**
+   * Concatenates the content of the files a compiler reads, separated by line breaks.  Each file
+   * is read exactly once, and the output buffer is sized to the total content length before
+   * anything is copied into it.
+   */
+  @Nonnull
+  private String getUiLibrarySource(@Nonnull FrontendLibrary library,
+      @Nonnull UiLibraryCompileManifest manifest, @Nonnull ScriptTypeCompiler compiler) {
+    List<String> fileContents = new ArrayList<>();
+    int length = 0;
+    for (String fileContent : getFileContents(getScriptFiles(library, manifest, compiler))) {
+      if (StringUtils.isNotEmpty(fileContent)) {
+        fileContents.add(fileContent);
+        length += fileContent.length() + 1;
+      }
+    }
+    if (fileContents.size() == 1) {
+      return fileContents.get(0);
+    }
+    StringBuilder rawOutputStringBuilder = new StringBuilder(Math.max(length - 1, 0));
+    for (String fileContent : fileContents) {
+      if (rawOutputStringBuilder.length() > 0) {
+        rawOutputStringBuilder.append('\n');
+      }
+      rawOutputStringBuilder.append(fileContent);
+    }
+    return rawOutputStringBuilder.toString();
+  }
 
+  /**
+   * Content of each script file, in the order of the files.  Content is null for files that could
+   * not be read.  When parallel file loading is enabled and enough files are included, the files
+   * are split between workers, the calling thread being one of them.  Files that pooled workers
+   * could not read are read through the caller's models afterwards.
+   */
+  @Nonnull
+  private List<String> getFileContents(@Nonnull List<ScriptFile> scriptFiles) {
+    Map<Integer, String> loadedFileContents = Collections.emptyMap();
+    ThreadPoolExecutor currentExecutor = fileLoadingExecutor;
+    if (currentExecutor != null && scriptFiles.size() >= parallelFileLoadingThreshold) {
+      loadedFileContents = loadFileContents(scriptFiles, currentExecutor);
+    }
+    List<String> fileContents = new ArrayList<>(scriptFiles.size());
+    for (int index = 0; index < scriptFiles.size(); index++) {
+      if (loadedFileContents.containsKey(index)) {
+        fileContents.add(loadedFileContents.get(index));
+      } else {
+        fileContents.add(getFileContent(scriptFiles.get(index)));
+      }
+    }
+    return fileContents;
+  }
+
+  @Nonnull
+  private Map<Integer, String> loadFileContents(@Nonnull List<ScriptFile> scriptFiles,
+      @Nonnull ThreadPoolExecutor executor) {
+    int workerCount = Math.min(fileLoadingThreadCount, scriptFiles.size());
+    List<Future<Map<Integer, String>>> futures = new ArrayList<>();
+    Map<Integer, String> fileContents = new HashMap<>();
+    for (int worker = 1; worker < workerCount; worker++) {
+      final int firstIndex = worker;
+      try {
+        futures.add(executor.submit(
+            () -> loadFileContents(scriptFiles, firstIndex, workerCount)));
+      } catch (RejectedExecutionException e) {
+        LOG.debug("UiLibrary file loading queue is full, reading files on the calling thread.");
+        fileContents.putAll(readFileContents(scriptFiles, firstIndex, workerCount));
+      }
+    }
+    fileContents.putAll(readFileContents(scriptFiles, 0, workerCount));
+    for (Future<Map<Integer, String>> future : futures) {
       try {
-        String fileContent = scriptFile.getFileContent();
-        if (StringUtils.isNotEmpty(rawOutputStringBuilder.toString()) && StringUtils.isNotEmpty(
-            fileContent)) {
-          rawOutputStringBuilder.append('\n');
+        fileContents.putAll(future.get());
+      } catch (ExecutionException e) {
+        LOG.warn("Unable to load UiLibrary files in parallel, reading them on the caller. {}",
+            String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (Future<Map<Integer, String>> remainingFuture : futures) {
+          remainingFuture.cancel(true);
         }
-        rawOutputStringBuilder.append(scriptFile.getFileContent());
+        break;
+      }
+    }
+    return fileContents;
+  }
+
+  /**
+   * Reads every workerCount-th file, starting at firstIndex, through the caller's models.  Runs on
+   * the calling thread.
+   */
+  @Nonnull
+  private Map<Integer, String> readFileContents(@Nonnull List<ScriptFile> scriptFiles,
+      int firstIndex, int workerCount) {
+    Map<Integer, String> fileContents = new HashMap<>();
+    for (int index = firstIndex; index < scriptFiles.size(); index += workerCount) {
+      fileContents.put(index, getFileContent(scriptFiles.get(index)));
+    }
+    return fileContents;
+  }
 
-      } catch (IOException | JcrFileReadException e) {
-        LOG.error("Unable to append {} file {} to UiLibrary output due to IOException",
-            scriptFile.getFileType().getFileModelClass().getName().replaceAll("[\r\n]", ""),
-            scriptFile.getName().replaceAll("[\r\n]", ""));
+  /**
+   * Reads every workerCount-th file, starting at firstIndex, through a new service resolver.  Runs
+   * on pooled workers, which cannot use the caller's resolver.  Files that could not be read are
+   * left out, so that the calling thread reads them.
+   */
+  @Nonnull
+  @SuppressWarnings("unchecked")
+  private Map<Integer, String> loadFileContents(@Nonnull List<ScriptFile> scriptFiles,
+      int firstIndex, int workerCount) {
+    Map<Integer, String> fileContents = new HashMap<>();
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      for (int index = firstIndex; index < scriptFiles.size(); index += workerCount) {
+        ScriptFile scriptFile = scriptFiles.get(index);
+        if (scriptFile instanceof BaseResource) {
+          String path = ((BaseResource) scriptFile).getPath();
+          try {
+            String fileContent = getFileContent((ScriptFile) getResourceAsType(path,
+                resourceResolver, (Class<? extends BaseResource>) scriptFile.getClass()));
+            if (fileContent != null) {
+              fileContents.put(index, fileContent);
+            }
+          } catch (ModelAdaptionException e) {
+            LOG.debug("Unable to load UiLibrary file {} with service resolver. {}",
+                path.replaceAll("[\r\n]", ""),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+          }
+        }
       }
+    } catch (LoginException e) {
+      LOG.warn("Unable to load UiLibrary files in parallel. Failed to log in as {}. {}",
+          getServiceUserName(), String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
     }
-    return rawOutputStringBuilder.toString();
+    return fileContents;
+  }
+
+  /**
+   * Content of a script file.  Content cached for the file's current last-modified state is
+   * returned without reading the file.
+   */
+  @Nullable
+  String getFileContent(@Nonnull ScriptFile scriptFile) {
+    UiLibraryFileContentCache currentFileContentCache = fileContentCache;
+    if (currentFileContentCache != null && isLessFile(scriptFile)) {
+      return getLessFileContent((LessCssFile) scriptFile, currentFileContentCache);
+    }
+    String key = null;
+    String stamp = null;
+    if (currentFileContentCache != null && isFileContentCacheable(scriptFile)) {
+      BaseResource file = (BaseResource) scriptFile;
+      stamp = getFileContentStamp(file);
+      if (stamp != null) {
+        key = UiLibraryFileContentCache.getKey(file.getPath(), scriptFile.getClass());
+        String fileContent = currentFileContentCache.get(key, stamp);
+        if (fileContent != null) {
+          return fileContent;
+        }
+      }
+    }
+    try {
+      String fileContent = scriptFile.getFileContent();
+      if (key != null && fileContent != null) {
+        currentFileContentCache.put(key, stamp, fileContent);
+      }
+      return fileContent;
+    } catch (IOException | JcrFileReadException e) {
+      logFileReadError(scriptFile);
+    }
+    return null;
+  }
+
+  /**
+   * Content of a LESS file.  As LESS files expand their imports, content is cached with the
+   * last-modified state of the file and of every file it was expanded from, and is only returned
+   * while none of them have changed.
+   */
+  @Nullable
+  private String getLessFileContent(@Nonnull LessCssFile lessFile,
+      @Nonnull UiLibraryFileContentCache currentFileContentCache) {
+    String fileStamp = getFileContentStamp(lessFile);
+    String key = UiLibraryFileContentCache.getKey(lessFile.getPath(), lessFile.getClass());
+    if (fileStamp != null) {
+      Set<String> importedPaths = currentFileContentCache.getDependencyPaths(key);
+      String stamp = importedPaths != null ? getLessFileContentStamp(lessFile, fileStamp,
+          importedPaths) : null;
+      String fileContent = stamp != null ? currentFileContentCache.get(key, stamp) : null;
+      if (fileContent != null) {
+        return fileContent;
+      }
+    }
+    try {
+      LessImportResolver importResolver = lessFile.getImportResolver();
+      String fileContent = lessFile.getFileContent(importResolver);
+      Set<String> importedPaths = importResolver.getImportedPaths();
+      String stamp = fileStamp != null ? getLessFileContentStamp(lessFile, fileStamp,
+          importedPaths) : null;
+      if (stamp != null) {
+        currentFileContentCache.put(key, stamp, fileContent, importedPaths);
+      }
+      return fileContent;
+    } catch (JcrFileReadException e) {
+      logFileReadError(lessFile);
+    }
+    return null;
+  }
+
+  private static void logFileReadError(@Nonnull ScriptFile scriptFile) {
+    LOG.error("Unable to append {} file {} to UiLibrary output due to IOException",
+        scriptFile.getFileType().getFileModelClass().getName().replaceAll("[\r\n]", ""),
+        scriptFile.getName().replaceAll("[\r\n]", ""));
+  }
+
+  /**
+   * Whether a script file is read with the LESS file model, whose content expands its imports.
+   */
+  static boolean isLessFile(@Nonnull ScriptFile scriptFile) {
+    return LessCssFile.class.equals(scriptFile.getClass());
+  }
+
+  /**
+   * Whether a script file's content can be cached with the file's own last-modified state.  Only
+   * the base CSS and JavaScript file models qualify, as their content is read from the file alone.
+   * Other file models may include the content of other files, whose changes the file's own stamp
+   * would not reflect.  LESS files are cached separately, with the stamps of their imports.
+   */
+  static boolean isFileContentCacheable(@Nonnull ScriptFile scriptFile) {
+    if (scriptFile instanceof BaseResource) {
+      for (ScriptTypes scriptType : ScriptTypes.values()) {
+        if (scriptType.getFileModelClass().equals(scriptFile.getClass())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Script files a compiler reads, in output order.  Files of cached manifests are resolved
+   * directly as the model they were discovered as.  If a file can no longer be resolved, the
+   * manifest is purged and the folder's files are looked up again.
+   */
+  @Nonnull
+  private List<ScriptFile> getScriptFiles(@Nonnull FrontendLibrary library,
+      @Nonnull UiLibraryCompileManifest manifest, @Nonnull ScriptTypeCompiler compiler) {
+    if (library instanceof BaseResource && StringUtils.isNotEmpty(library.getPath())) {
+      List<ManifestFile> files = manifest.getFiles(compiler.getScriptTypes());
+      if (files.isEmpty()) {
+        return Collections.emptyList();
+      }
+      List<ScriptFile> scriptFiles = new ArrayList<>();
+      try {
+        BaseResource folderResource = getChildAsBaseResource(manifest.getFolderName(),
+            (BaseResource) library);
+        for (ManifestFile file : files) {
+          scriptFiles.add(getScriptFile(file, folderResource));
+        }
+        return scriptFiles;
+      } catch (ChildResourceNotFoundException | InvalidResourceTypeException e) {
+        LOG.debug("Compile manifest for {} folder {} is out of date. {}",
+            library.getPath().replaceAll("[\r\n]", ""),
+            manifest.getFolderName().replaceAll("[\r\n]", ""),
+            e.getMessage().replaceAll("[\r\n]", ""));
+        compileManifests.remove(getCompileManifestKey(library.getPath(),
+            manifest.getFolderName()));
+      }
+    }
+    return library.getScriptFiles(compiler.getScriptTypes(), manifest.getFolderName());
+  }
+
+  @Nonnull
+  @SuppressWarnings("unchecked")
+  private static ScriptFile getScriptFile(@Nonnull ManifestFile file,
+      @Nonnull BaseResource folderResource)
+      throws ChildResourceNotFoundException, InvalidResourceTypeException {
+    return (ScriptFile) getChildAsFileType(file.getName(), folderResource,
+        (Class<? extends BaseFile>) file.getModelClass());
   }
 
   @Nonnull
   @Override
   public List<ScriptType> getLibraryScriptTypes(FrontendLibrary library,
       @Nonnull String folderName) {
-    List<ScriptType> scriptTypes = new ArrayList<>();
+    return new ArrayList<>(getCompileManifest(library, folderName).getScriptTypes());
+  }
+
+  @Nonnull
+  @Override
+  public UiLibraryCompileManifest getCompileManifest(@Nonnull FrontendLibrary library,
+      @Nonnull String folderName) {
+    UiLibraryCompilerIndex currentCompilerIndex = compilerIndex;
+    if (!(library instanceof BaseResource) || StringUtils.isEmpty(library.getPath())) {
+      return new UiLibraryCompileManifest(folderName, StringUtils.EMPTY, currentCompilerIndex,
+          library.getScriptFiles(currentCompilerIndex.getAllScriptTypes(), folderName));
+    }
+    String key = getCompileManifestKey(library.getPath(), folderName);
+    String stamp = getCompileManifestStamp((BaseResource) library, folderName);
+    UiLibraryCompileManifest manifest = compileManifests.get(key);
+    if (manifest != null && manifest.isCurrent(stamp, currentCompilerIndex)) {
+      return manifest;
+    }
+    manifest = new UiLibraryCompileManifest(folderName, stamp, currentCompilerIndex,
+        library.getScriptFiles(currentCompilerIndex.getAllScriptTypes(), folderName));
+    if (compileManifests.size() < MAXIMUM_COMPILE_MANIFESTS || compileManifests.containsKey(
+        key)) {
+      compileManifests.put(key, manifest);
+    }
+    return manifest;
+  }
+
+  @Override
+  public void purgeCompileManifests(@Nonnull String libraryPath) {
+    compileManifests.keySet().removeIf(key -> key.startsWith(libraryPath + "|"));
+    UiLibraryFileContentCache currentFileContentCache = fileContentCache;
+    if (currentFileContentCache != null) {
+      currentFileContentCache.removeAll(libraryPath);
+    }
+  }
+
+  @Override
+  public void purgeAllCompileManifests() {
+    compileManifests.clear();
+    UiLibraryFileContentCache currentFileContentCache = fileContentCache;
+    if (currentFileContentCache != null) {
+      currentFileContentCache.clear();
+    }
+  }
+
+  @Nonnull
+  private ScriptTypeCompiler getCompiler(@Nonnull UiLibraryCompileManifest manifest)
+      throws NoMatchingCompilerException {
+    ScriptTypeCompiler compiler = manifest.getCompiler();
+    if (compiler != null) {
+      return compiler;
+    }
+    throw getNoMatchingCompilerException(manifest.getScriptTypes());
+  }
+
+  @Nonnull
+  private static String getCompileManifestKey(@Nonnull String libraryPath,
+      @Nonnull String folderName) {
+    return libraryPath + "|" + folderName;
+  }
+
+  /**
+   * Last-modified state of a UiLibrary and one of its script folders.  Changes when either
+   * resource is modified or the folder's includes change.
+   */
+  @Nonnull
+  private static String getCompileManifestStamp(@Nonnull BaseResource library,
+      @Nonnull String folderName) {
+    Resource libraryResource = library.getResourceResolver().getResource(library.getPath());
+    if (libraryResource == null) {
+      return StringUtils.EMPTY;
+    }
+    StringBuilder stamp = new StringBuilder();
+    stamp.append(getLastModified(libraryResource.getValueMap()));
+    Resource folderResource = libraryResource.getChild(folderName);
+    if (folderResource != null) {
+      ValueMap folderProperties = folderResource.getValueMap();
+      stamp.append('|').append(getLastModified(folderProperties)).append('|').append(
+          String.join("/", folderProperties.get(PROPERTY_INCLUDE, new String[]{})));
+    }
+    return stamp.toString();
+  }
 
-    for (ScriptFile scriptFile : library.getScriptFiles(getAllRegisteredScriptTypes(),
-        folderName)) {
-      if (!scriptTypes.contains(scriptFile.getFileType())) {
-        scriptTypes.add((ScriptType) scriptFile.getFileType());
+  /**
+   * Last-modified state of a file's content, or null if the file has no jcr:lastModified to
+   * validate cached content against.
+   */
+  @Nullable
+  private static String getFileContentStamp(@Nonnull BaseResource file) {
+    Resource fileResource = file.getResourceResolver().getResource(file.getPath());
+    if (fileResource == null) {
+      return null;
+    }
+    return getFileContentStamp(fileResource);
+  }
+
+  @Nullable
+  private static String getFileContentStamp(@Nonnull Resource fileResource) {
+    Resource contentResource = fileResource.getChild(JCR_CONTENT);
+    if (contentResource == null) {
+      return null;
+    }
+    long lastModified = getLastModified(contentResource.getValueMap());
+    if (lastModified == 0L) {
+      return null;
+    }
+    return String.valueOf(lastModified);
+  }
+
+  /**
+   * Last-modified state of a LESS file and of the files its imports were expanded from, or null if
+   * one of them exists without a jcr:lastModified.  Imported files that no longer exist are
+   * stamped as missing, so that removing them changes the stamp.
+   */
+  @Nullable
+  private static String getLessFileContentStamp(@Nonnull BaseResource file,
+      @Nonnull String fileStamp, @Nonnull Set<String> importedPaths) {
+    StringBuilder stamp = new StringBuilder(fileStamp);
+    for (String importedPath : importedPaths) {
+      Resource importedResource = file.getResourceResolver().getResource(importedPath);
+      String importedStamp = "-";
+      if (importedResource != null) {
+        importedStamp = getFileContentStamp(importedResource);
+        if (importedStamp == null) {
+          return null;
+        }
       }
+      stamp.append('|').append(importedStamp);
+    }
+    return stamp.toString();
+  }
+
+  private static long getLastModified(@Nonnull ValueMap properties) {
+    Calendar lastModified = properties.get(PROPERTY_LAST_MODIFIED, Calendar.class);
+    if (lastModified != null) {
+      return lastModified.getTimeInMillis();
+    }
+    return 0L;
+  }
+
+  private synchronized void rebuildCompilerIndex() {
+    compilerIndex = new UiLibraryCompilerIndex(compilers.getServices(),
+        cssCompilers.getServices(), javaScriptCompilers.getServices());
+  }
+
+  private static long getDefaultThreadCount() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+
+  private static class FileLoaderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@Nonnull final Runnable runnable) {
+      Thread thread = new Thread(runnable,
+          "ui-library-file-loader-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
     }
-    return scriptTypes;
   }
 
 }
@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.kestros.commons.osgiserviceutils.services.BaseServiceResolverService;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryDependencyGraph;
+import io.kestros.commons.uilibraries.core.services.UiLibraryDependencyIndexService;
+import io.kestros.commons.uilibraries.lesscss.services.LessImportParserService;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Indexes the files each UiLibrary is built from, and persists the index under
+ * /var/ui-libraries/dependencies so that it survives restarts.  The in-memory index is loaded from
+ * the persisted index on activation, and is then rebuilt from all kes:UiLibrary resources on a
+ * background thread, as libraries may have changed while the node was down.  The persisted index
+ * is served while the rebuild runs.  When nothing has been persisted yet, the index is not
+ * available until the rebuild completes.
+ *
+ * <p>
+ * Imports of LESS files are read by the {@link LessImportParserService}, so that they are parsed
+ * with the same syntax the LESS compiler expands.  Without it, only included files are indexed.
+ * </p>
+ */
+@SuppressFBWarnings({"IMC_IMMATURE_CLASS_NO_TOSTRING"})
+@Component(immediate = true,
+        service = UiLibraryDependencyIndexService.class)
+public class UiLibraryDependencyIndexServiceImpl extends BaseServiceResolverService
+        implements UiLibraryDependencyIndexService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+          UiLibraryDependencyIndexServiceImpl.class);
+
+  static final String INDEX_ROOT_PATH = "/var/ui-libraries/dependencies";
+  static final String PROPERTY_FILES = "files";
+
+  private static final String UI_LIBRARY_RESOURCE_TYPE = "kes:UiLibrary";
+  private static final String UI_LIBRARY_QUERY = "SELECT * FROM [kes:UiLibrary]";
+  private static final String QUERY_LANGUAGE_JCR_SQL2 = "JCR-SQL2";
+  private static final String PROPERTY_INCLUDE = "include";
+  private static final String LESS_EXTENSION = ".less";
+  private static final List<ScriptType> SCRIPT_TYPES = Arrays.asList(ScriptTypes.CSS,
+          ScriptTypes.JAVASCRIPT);
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private ResourceResolverFactory resourceResolverFactory;
+
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private LessImportParserService lessImportParserService;
+
+  private final UiLibraryDependencyGraph dependencyGraph = new UiLibraryDependencyGraph();
+
+  private final Set<String> pendingLibraryPaths = ConcurrentHashMap.newKeySet();
+
+  private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+  private volatile boolean available;
+
+  private volatile boolean rebuilding;
+
+  private volatile ExecutorService rebuildExecutor;
+
+  @Nonnull
+  @Override
+  public String getDisplayName() {
+    return "UI Library Dependency Index Service";
+  }
+
+  @Override
+  public void activate(@Nonnull ComponentContext componentContext) {
+    super.activate(componentContext);
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      loadIndex(resourceResolver);
+    } catch (LoginException e) {
+      LOG.warn("Unable to load UiLibrary dependency index. {}",
+              e.getMessage().replaceAll("[\r\n]", ""));
+    }
+    available = !dependencyGraph.getLibraryPaths().isEmpty();
+    rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ui-library-dependency-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    rebuildIndex();
+  }
+
+  @Override
+  public void deactivate(@Nonnull ComponentContext componentContext) {
+    ExecutorService currentExecutor = rebuildExecutor;
+    rebuildExecutor = null;
+    if (currentExecutor != null) {
+      currentExecutor.shutdownNow();
+    }
+    rebuildQueued.set(false);
+    available = false;
+    dependencyGraph.clear();
+    pendingLibraryPaths.clear();
+    super.deactivate(componentContext);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return available;
+  }
+
+  @Nonnull
+  @Override
+  public Set<String> getLibraryPaths() {
+    return dependencyGraph.getLibraryPaths();
+  }
+
+  @Nonnull
+  @Override
+  public Set<String> getFilePaths(@Nonnull final String libraryPath) {
+    return dependencyGraph.getFilePaths(libraryPath);
+  }
+
+  @Nonnull
+  @Override
+  public Set<String> getDependentLibraryPaths(@Nonnull final String path) {
+    return dependencyGraph.getDependentLibraryPaths(path);
+  }
+
+  @Override
+  public void indexLibraries(@Nonnull final Collection<String> libraryPaths) {
+    if (libraryPaths.isEmpty()) {
+      return;
+    }
+    if (rebuilding) {
+      pendingLibraryPaths.addAll(libraryPaths);
+    }
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      indexLibraries(libraryPaths, resourceResolver);
+    } catch (LoginException e) {
+      LOG.warn("Unable to index UiLibraries {}. {}",
+              String.join(", ", libraryPaths).replaceAll("[\r\n]", ""),
+              e.getMessage().replaceAll("[\r\n]", ""));
+    }
+  }
+
+  /**
+   * Queues a rebuild of the index on the background thread.  Requests made while a rebuild is
+   * queued and has not started yet are coalesced into it.
+   */
+  @Override
+  public void rebuildIndex() {
+    ExecutorService executor = rebuildExecutor;
+    if (executor == null) {
+      LOG.debug("Unable to rebuild UiLibrary dependency index, the service is not active.");
+      return;
+    }
+    if (!rebuildQueued.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::runQueuedRebuild);
+    } catch (RejectedExecutionException e) {
+      rebuildQueued.set(false);
+      LOG.debug("Unable to queue UiLibrary dependency index rebuild. {}",
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+  }
+
+  private void runQueuedRebuild() {
+    rebuildQueued.set(false);
+    try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+      rebuildIndex(resourceResolver);
+    } catch (LoginException e) {
+      LOG.warn("Unable to rebuild UiLibrary dependency index. {}",
+              e.getMessage().replaceAll("[\r\n]", ""));
+    } catch (RuntimeException e) {
+      LOG.error("Unexpected error while rebuilding UiLibrary dependency index. {}",
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+  }
+
+  /**
+   * Rebuilds the index from all kes:UiLibrary resources.  The current index is served while the
+   * rebuild runs.  Libraries that were re-indexed for changes while the rebuild was running are
+   * indexed again afterwards, so that the rebuild does not overwrite them with dependencies read
+   * before the changes.
+   *
+   * @param resourceResolver ResourceResolver used to find and index UiLibraries.
+   */
+  void rebuildIndex(@Nonnull final ResourceResolver resourceResolver) {
+    rebuilding = true;
+    try {
+      Set<String> libraryPaths = new LinkedHashSet<>(dependencyGraph.getLibraryPaths());
+      Iterator<Resource> libraryIterator = resourceResolver.findResources(UI_LIBRARY_QUERY,
+              QUERY_LANGUAGE_JCR_SQL2);
+      while (libraryIterator.hasNext()) {
+        libraryPaths.add(libraryIterator.next().getPath());
+      }
+      indexLibraries(libraryPaths, resourceResolver);
+      while (!pendingLibraryPaths.isEmpty()) {
+        Set<String> changedLibraryPaths = new LinkedHashSet<>(pendingLibraryPaths);
+        pendingLibraryPaths.removeAll(changedLibraryPaths);
+        indexLibraries(changedLibraryPaths, resourceResolver);
+      }
+      available = true;
+    } finally {
+      rebuilding = false;
+    }
+    LOG.info("Rebuilt UiLibrary dependency index with {} libraries.",
+            dependencyGraph.getLibraryPaths().size());
+  }
+
+  void indexLibraries(@Nonnull final Collection<String> libraryPaths,
+          @Nonnull final ResourceResolver resourceResolver) {
+    for (String libraryPath : libraryPaths) {
+      Resource libraryResource = resourceResolver.getResource(libraryPath);
+      if (libraryResource != null && libraryResource.isResourceType(UI_LIBRARY_RESOURCE_TYPE)) {
+        Set<String> filePaths = getLibraryFilePaths(libraryResource);
+        dependencyGraph.put(libraryPath, filePaths);
+        persistEntry(libraryPath, filePaths, resourceResolver);
+      } else {
+        dependencyGraph.remove(libraryPath);
+        removeEntry(libraryPath, resourceResolver);
+      }
+    }
+    try {
+      resourceResolver.commit();
+    } catch (PersistenceException e) {
+      LOG.warn("Unable to persist UiLibrary dependency index. {}",
+              e.getMessage().replaceAll("[\r\n]", ""));
+      resourceResolver.revert();
+    }
+  }
+
+  void loadIndex(@Nonnull final ResourceResolver resourceResolver) {
+    Resource indexRootResource = resourceResolver.getResource(INDEX_ROOT_PATH);
+    if (indexRootResource != null) {
+      loadEntries(indexRootResource);
+    }
+    LOG.debug("Loaded UiLibrary dependency index with {} libraries.",
+            dependencyGraph.getLibraryPaths().size());
+  }
+
+  private void loadEntries(@Nonnull final Resource resource) {
+    String[] filePaths = resource.getValueMap().get(PROPERTY_FILES, String[].class);
+    if (filePaths != null) {
+      dependencyGraph.put(resource.getPath().substring(INDEX_ROOT_PATH.length()),
+              Arrays.asList(filePaths));
+    }
+    for (Resource child : resource.getChildren()) {
+      loadEntries(child);
+    }
+  }
+
+  private void persistEntry(@Nonnull final String libraryPath,
+          @Nonnull final Set<String> filePaths, @Nonnull final ResourceResolver resourceResolver) {
+    try {
+      Map<String, Object> properties = new HashMap<>();
+      properties.put("jcr:primaryType", "nt:unstructured");
+      Resource entryResource = ResourceUtil.getOrCreateResource(resourceResolver,
+              INDEX_ROOT_PATH + libraryPath, properties, "sling:Folder", false);
+      ModifiableValueMap entryProperties = entryResource.adaptTo(ModifiableValueMap.class);
+      if (entryProperties != null) {
+        entryProperties.put(PROPERTY_FILES, filePaths.toArray(new String[0]));
+      }
+    } catch (PersistenceException e) {
+      LOG.warn("Unable to persist dependencies of UiLibrary {}. {}",
+              libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+    }
+  }
+
+  private void removeEntry(@Nonnull final String libraryPath,
+          @Nonnull final ResourceResolver resourceResolver) {
+    Resource entryResource = resourceResolver.getResource(INDEX_ROOT_PATH + libraryPath);
+    if (entryResource == null) {
+      return;
+    }
+    try {
+      if (entryResource.hasChildren()) {
+        ModifiableValueMap entryProperties = entryResource.adaptTo(ModifiableValueMap.class);
+        if (entryProperties != null) {
+          entryProperties.remove(PROPERTY_FILES);
+        }
+      } else {
+        resourceResolver.delete(entryResource);
+      }
+    } catch (PersistenceException e) {
+      LOG.warn("Unable to remove dependencies of UiLibrary {}. {}",
+              libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+    }
+  }
+
+  /**
+   * Paths of the files a UiLibrary is built from.
+   *
+   * @param libraryResource UiLibrary resource.
+   * @return Paths of the script folders, included files, and files imported by included LESS
+   *     files.
+   */
+  @Nonnull
+  Set<String> getLibraryFilePaths(@Nonnull final Resource libraryResource) {
+    Set<String> filePaths = new LinkedHashSet<>();
+    for (ScriptType scriptType : SCRIPT_TYPES) {
+      String folderPath = libraryResource.getPath() + "/" + scriptType.getName();
+      filePaths.add(folderPath);
+      Resource folderResource = libraryResource.getChild(scriptType.getName());
+      if (folderResource != null) {
+        for (String includedFileName : folderResource.getValueMap().get(PROPERTY_INCLUDE,
+                new String[]{})) {
+          addFilePath(folderPath, includedFileName, filePaths,
+                  libraryResource.getResourceResolver());
+        }
+      }
+    }
+    return filePaths;
+  }
+
+  private void addFilePath(@Nonnull final String parentPath,
+          @Nonnull final String fileName, @Nonnull final Set<String> filePaths,
+          @Nonnull final ResourceResolver resourceResolver) {
+    String filePath = ResourceUtil.normalize(parentPath + "/" + fileName);
+    if (filePath == null || !filePaths.add(filePath) || !filePath.endsWith(LESS_EXTENSION)) {
+      return;
+    }
+    LessImportParserService importParserService = getLessImportParserService();
+    Resource fileResource = resourceResolver.getResource(filePath);
+    if (importParserService == null || fileResource == null) {
+      return;
+    }
+    for (String importedFileName : importParserService.getImportedFileNames(fileResource)) {
+      addFilePath(parentPath(filePath), importedFileName, filePaths, resourceResolver);
+    }
+  }
+
+  @Nonnull
+  private static String parentPath(@Nonnull final String path) {
+    String parentPath = ResourceUtil.getParent(path);
+    return parentPath != null ? parentPath : "/";
+  }
+
+  @Nullable
+  LessImportParserService getLessImportParserService() {
+    return lessImportParserService;
+  }
+
+  @Nonnull
+  @Override
+  protected String getServiceUserName() {
+    return "ui-library-manager";
+  }
+
+  @Nonnull
+  @Override
+  protected Logger getLogger() {
+    return LOG;
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getRequiredResourcePaths() {
+    return Collections.emptyList();
+  }
+
+  @Nullable
+  @Override
+  protected ResourceResolverFactory getResourceResolverFactory() {
+    return resourceResolverFactory;
+  }
+}
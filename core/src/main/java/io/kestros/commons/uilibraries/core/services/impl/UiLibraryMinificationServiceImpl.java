@@ -19,8 +19,6 @@
 
 package io.kestros.commons.uilibraries.core.services.impl;
 
-import static io.kestros.commons.osgiserviceutils.utils.OsgiServiceUtils.getAllOsgiServicesOfType;
-
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.kestros.commons.uilibraries.api.exceptions.ScriptCompressionException;
 import io.kestros.commons.uilibraries.api.models.ScriptType;
@@ -28,9 +26,13 @@ import io.kestros.commons.uilibraries.api.services.ScriptMinifierService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.RankedServices;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.felix.hc.api.FormattingResultLog;
@@ -39,10 +41,16 @@ import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
 
 /**
  * Finds registered {@link ScriptMinifierService} instances to minify CSS and JavaScript.
+ *
+ * <p>
+ * Minifiers are tracked with a dynamic reference, and the minifiers for each ScriptType are
+ * indexed only when a minifier is registered or unregistered.
+ * </p>
  */
 @SuppressFBWarnings({"FCBL_FIELD_COULD_BE_LOCAL", "IMC_IMMATURE_CLASS_NO_TOSTRING"})
 @Component(immediate = true,
@@ -53,7 +61,9 @@ public class UiLibraryMinificationServiceImpl implements UiLibraryMinificationSe
           policyOption = ReferencePolicyOption.GREEDY)
   private UiLibraryCompilationService uiLibraryCompilationService;
 
-  private ComponentContext componentContext;
+  private final RankedServices<ScriptMinifierService> minifierServices = new RankedServices<>();
+  private volatile Map<ScriptType, List<ScriptMinifierService>> minifierServicesByScriptType
+          = Collections.emptyMap();
 
   @Nonnull
   @Override
@@ -63,7 +73,6 @@ public class UiLibraryMinificationServiceImpl implements UiLibraryMinificationSe
 
   @Override
   public void activate(@Nonnull ComponentContext componentContext) {
-    this.componentContext = componentContext;
   }
 
   @Override
@@ -71,6 +80,33 @@ public class UiLibraryMinificationServiceImpl implements UiLibraryMinificationSe
 
   }
 
+  /**
+   * Adds a minifier to the minifier index.
+   *
+   * @param minifierService Minifier.
+   * @param properties Service properties.
+   */
+  @Reference(service = ScriptMinifierService.class,
+          cardinality = ReferenceCardinality.MULTIPLE,
+          policy = ReferencePolicy.DYNAMIC,
+          policyOption = ReferencePolicyOption.GREEDY,
+          unbind = "unbindMinifierService")
+  protected void bindMinifierService(@Nonnull final ScriptMinifierService minifierService,
+          @Nonnull final Map<String, Object> properties) {
+    minifierServices.bind(minifierService, properties);
+    rebuildMinifierIndex();
+  }
+
+  /**
+   * Removes a minifier from the minifier index.
+   *
+   * @param minifierService Minifier.
+   */
+  protected void unbindMinifierService(@Nonnull final ScriptMinifierService minifierService) {
+    minifierServices.unbind(minifierService);
+    rebuildMinifierIndex();
+  }
+
   @Override
   public void runAdditionalHealthChecks(@Nonnull FormattingResultLog log) {
     if (getCssMinificationServices().isEmpty()) {
@@ -90,7 +126,7 @@ public class UiLibraryMinificationServiceImpl implements UiLibraryMinificationSe
   @Nonnull
   @Override
   public List<ScriptMinifierService> getMinificationServices() {
-    return getAllOsgiServicesOfType(componentContext, ScriptMinifierService.class);
+    return minifierServices.getServices();
   }
 
   @Nonnull
@@ -121,12 +157,28 @@ public class UiLibraryMinificationServiceImpl implements UiLibraryMinificationSe
   @Nonnull
   private List<ScriptMinifierService> getMinificationServicesForScriptType(
           @Nonnull ScriptType scriptType) {
-    List<ScriptMinifierService> scriptMinifierServiceList = new ArrayList<>();
-    for (ScriptMinifierService minifierService : getMinificationServices()) {
-      if (minifierService.getSupportedScriptTypes().contains(scriptType)) {
-        scriptMinifierServiceList.add(minifierService);
-      }
+    List<ScriptMinifierService> scriptMinifierServiceList = minifierServicesByScriptType.get(
+            scriptType);
+    if (scriptMinifierServiceList == null) {
+      return Collections.emptyList();
     }
     return scriptMinifierServiceList;
   }
+
+  private synchronized void rebuildMinifierIndex() {
+    Map<ScriptType, List<ScriptMinifierService>> index = new HashMap<>();
+    for (ScriptMinifierService minifierService : minifierServices.getServices()) {
+      for (ScriptType scriptType : minifierService.getSupportedScriptTypes()) {
+        List<ScriptMinifierService> scriptMinifierServiceList = index.computeIfAbsent(scriptType,
+                key -> new ArrayList<>());
+        if (!scriptMinifierServiceList.contains(minifierService)) {
+          scriptMinifierServiceList.add(minifierService);
+        }
+      }
+    }
+    for (Map.Entry<ScriptType, List<ScriptMinifierService>> entry : index.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+    minifierServicesByScriptType = index;
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.servlets;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Common logic for UiLibrary bundle servlets, which concatenate the output of the UiLibraries
+ * listed in the 'library' request parameter.
+ *
+ * <p>
+ * Only declared bundles are cached.  Bundles are declared with the 'bundles' property, where each
+ * value is a comma separated list of library paths in output order.  A request for the libraries
+ * of a declared bundle, in any order, is served in the declared order and cached under a path
+ * derived from the sorted libraries.  Undeclared bundles are rejected, unless
+ * 'allowUndeclaredBundles' is true, in which case they are built in the requested order for every
+ * request, without being cached.
+ * </p>
+ *
+ * <p>
+ * Bundle output joins the cached output of each library, so bundled libraries are only compiled
+ * when their own output has not been cached yet.
+ * </p>
+ */
+public abstract class BaseUiLibraryBundleServlet extends BaseUiLibraryServlet {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BaseUiLibraryBundleServlet.class);
+  private static final long serialVersionUID = 1L;
+
+  static final int MAXIMUM_BUNDLE_SIZE = 32;
+  static final String PROPERTY_BUNDLES = "bundles";
+  static final String PROPERTY_ALLOW_UNDECLARED_BUNDLES = "allowUndeclaredBundles";
+  static final String UNDECLARED_BUNDLE_OUTPUT_ROOT_PATH = "/undeclared-bundles";
+
+  private Map<String, List<String>> declaredBundles = Collections.emptyMap();
+  private boolean allowUndeclaredBundles;
+
+  /**
+   * Reads the caching policy and the declared bundles from the component configuration.
+   *
+   * @param componentContext ComponentContext
+   */
+  @Override
+  public void activate(@Nonnull final ComponentContext componentContext) {
+    super.activate(componentContext);
+    Map<String, List<String>> bundles = new HashMap<>();
+    for (String bundle : ComponentPropertyUtils.getStringArrayProperty(componentContext,
+            PROPERTY_BUNDLES)) {
+      List<String> libraryPaths = UiLibraryBundleUtils.getBundledLibraryPaths(bundle.split(","));
+      if (libraryPaths.isEmpty() || libraryPaths.size() > MAXIMUM_BUNDLE_SIZE) {
+        LOG.warn("Ignoring declared {} bundle '{}', bundles must list between 1 and {} libraries.",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                bundle.replaceAll("[\r\n]", ""), MAXIMUM_BUNDLE_SIZE);
+      } else if (bundles.putIfAbsent(UiLibraryBundleUtils.getBundleOutputPath(libraryPaths),
+              libraryPaths) != null) {
+        LOG.warn("Ignoring declared {} bundle '{}', its libraries are already declared.",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                bundle.replaceAll("[\r\n]", ""));
+      }
+    }
+    declaredBundles = bundles;
+    allowUndeclaredBundles = ComponentPropertyUtils.getBooleanProperty(componentContext,
+            PROPERTY_ALLOW_UNDECLARED_BUNDLES, false);
+  }
+
+  /**
+   * Path that the bundle output is cached under.  Undeclared bundles get a path derived from the
+   * requested order, which is only used to coalesce concurrent compilations and is never cached.
+   *
+   * @param request Current request.
+   * @return Path that the bundle output is cached under.
+   */
+  @Nonnull
+  @Override
+  protected String getOutputPath(@Nonnull final SlingHttpServletRequest request) {
+    List<String> libraryPaths = getBundledLibraryPaths(request);
+    String bundleOutputPath = UiLibraryBundleUtils.getBundleOutputPath(libraryPaths);
+    if (declaredBundles.containsKey(bundleOutputPath)) {
+      return bundleOutputPath;
+    }
+    return UNDECLARED_BUNDLE_OUTPUT_ROOT_PATH + "/" + UiLibraryCacheUtils.getContentHash(
+            String.join("\n", libraryPaths).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Nonnull
+  @Override
+  protected List<String> getLibraryPaths(@Nonnull final SlingHttpServletRequest request) {
+    List<String> libraryPaths = getBundledLibraryPaths(request);
+    if (libraryPaths.isEmpty() || libraryPaths.size() > MAXIMUM_BUNDLE_SIZE) {
+      LOG.warn("Unable to build {} bundle, bundles must list between 1 and {} libraries.",
+              getScriptType().getName().replaceAll("[\r\n]", ""), MAXIMUM_BUNDLE_SIZE);
+      return Collections.emptyList();
+    }
+    List<String> declaredLibraryPaths = declaredBundles.get(
+            UiLibraryBundleUtils.getBundleOutputPath(libraryPaths));
+    if (declaredLibraryPaths != null) {
+      return declaredLibraryPaths;
+    }
+    if (!allowUndeclaredBundles) {
+      LOG.warn("Unable to build {} bundle, the requested libraries are not a declared bundle.",
+              getScriptType().getName().replaceAll("[\r\n]", ""));
+      return Collections.emptyList();
+    }
+    return libraryPaths;
+  }
+
+  /**
+   * Caches the output of declared bundles, and of the individual libraries bundles are built from.
+   * Output of undeclared bundles is not cached, so that arbitrary library combinations cannot fill
+   * the cache.
+   */
+  @Override
+  void cacheOutput(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+          @Nonnull final String content, @Nonnull final ScriptTypes scriptType,
+          final boolean minified, @Nonnull final ResourceResolver resourceResolver) {
+    if (declaredBundles.containsKey(outputPath) || Collections.singletonList(outputPath).equals(
+            libraryPaths)) {
+      super.cacheOutput(outputPath, libraryPaths, content, scriptType, minified,
+              resourceResolver);
+    }
+  }
+
+  @Override
+  void cacheFailure(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+          @Nullable final String errorOutput, final boolean minified) {
+    if (declaredBundles.containsKey(outputPath)) {
+      super.cacheFailure(outputPath, libraryPaths, errorOutput, minified);
+    }
+  }
+
+  @Nonnull
+  List<String> getBundledLibraryPaths(@Nonnull final SlingHttpServletRequest request) {
+    return UiLibraryBundleUtils.getBundledLibraryPaths(
+            request.getParameterValues(UiLibraryBundleUtils.PARAMETER_LIBRARY));
+  }
+}
@@ -19,15 +19,35 @@
 
 package io.kestros.commons.uilibraries.core.servlets;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.kestros.commons.osgiserviceutils.exceptions.CacheBuilderException;
 import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.exceptions.LibraryRetrievalException;
 import io.kestros.commons.uilibraries.api.models.FrontendLibrary;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryConfigurationService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompilationCoalescer;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache.Failure;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCacheMetricsService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCachedOutputStream;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompilationExecutorService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.ComponentPropertyUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
@@ -35,6 +55,7 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +67,29 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
   private static final Logger LOG = LoggerFactory.getLogger(BaseUiLibraryServlet.class);
   private static final long serialVersionUID = 1L;
 
+  static final String HEADER_ETAG = "ETag";
+  static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+  static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  static final String HEADER_VARY = "Vary";
+  static final String HEADER_CACHE_CONTROL = "Cache-Control";
+  static final String HEADER_EXPIRES = "Expires";
+  static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  static final String HEADER_LOCATION = "Location";
+  static final String HEADER_RETRY_AFTER = "Retry-After";
+  static final String CACHE_CONTROL_IMMUTABLE = "public, max-age=31536000, immutable";
+  static final String CACHE_CONTROL_NO_CACHE = "no-cache";
+  static final String CACHE_CONTROL_NO_STORE = "no-store";
+  static final long IMMUTABLE_MAX_AGE_MILLISECONDS = 31536000000L;
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED"})
+  private final transient UiLibraryCompilationCoalescer compilationCoalescer
+          = new UiLibraryCompilationCoalescer();
+
+  private UiLibraryCachingPolicy cachingPolicy = new UiLibraryCachingPolicy(
+          UiLibraryCachingPolicy.DEFAULT_MAX_AGE, UiLibraryCachingPolicy.DEFAULT_SHARED_MAX_AGE);
+
   @Nullable
   protected abstract <T extends FrontendLibrary> T getLibrary(@Nonnull final String libraryPath,
           @Nonnull final ResourceResolver resourceResolver);
@@ -69,6 +113,43 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
   @Nonnull
   protected abstract ScriptTypes getScriptType();
 
+  /**
+   * Service that runs compilations off the request thread.  When not available, compilations run
+   * on the request thread.
+   *
+   * @return Service that runs compilations off the request thread.
+   */
+  @Nullable
+  protected UiLibraryCompilationExecutorService getUiLibraryCompilationExecutorService() {
+    return null;
+  }
+
+  /**
+   * Service that records cache hits, misses, fill times and bytes.  When not available, nothing is
+   * recorded.
+   *
+   * @return Service that records cache hits, misses, fill times and bytes.
+   */
+  @Nullable
+  protected UiLibraryCacheMetricsService getUiLibraryCacheMetricsService() {
+    return null;
+  }
+
+  /**
+   * Reads the caching policy for responses from the component configuration.
+   *
+   * @param componentContext ComponentContext
+   */
+  public void activate(@Nonnull final ComponentContext componentContext) {
+    cachingPolicy = new UiLibraryCachingPolicy(
+            ComponentPropertyUtils.getLongProperty(componentContext,
+                    UiLibraryCachingPolicy.PROPERTY_MAX_AGE,
+                    UiLibraryCachingPolicy.DEFAULT_MAX_AGE),
+            ComponentPropertyUtils.getLongProperty(componentContext,
+                    UiLibraryCachingPolicy.PROPERTY_SHARED_MAX_AGE,
+                    UiLibraryCachingPolicy.DEFAULT_SHARED_MAX_AGE));
+  }
+
   /**
    * Writes the GET response for the current UiLibrary.
    *
@@ -78,7 +159,7 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
   @Override
   public void doGet(@Nonnull final SlingHttpServletRequest request,
           @Nonnull final SlingHttpServletResponse response) {
-    String libraryPath = request.getResource().getPath();
+    String libraryPath = getOutputPath(request);
     Boolean isMinified = Boolean.FALSE;
     LOG.debug("Building {} response for library {}.",
             getScriptType().getName().replaceAll("[\r\n]", ""),
@@ -88,78 +169,448 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
       isMinified = getUiLibraryMinificationService().isMinifiedRequest(request);
     }
 
+    UiLibraryContentEncoding encoding = UiLibraryCacheUtils.getAcceptedContentEncoding(
+            request.getHeader(HEADER_ACCEPT_ENCODING));
+    response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+
+    String eTag = getCachedETagOrEmptyString(libraryPath, isMinified,
+            request.getResourceResolver());
+    if (StringUtils.isNotEmpty(eTag) && handleFingerprint(eTag, isMinified, request, response)) {
+      return;
+    }
+    boolean immutable = StringUtils.isNotEmpty(eTag) && isCurrentFingerprint(eTag, request);
+    String notModifiedETag = getNotModifiedETag(request, eTag, encoding);
+    if (StringUtils.isNotEmpty(notModifiedETag)) {
+      response.setHeader(HEADER_ETAG, notModifiedETag);
+      setCachingHeaders(libraryPath, isMinified, immutable, request, response);
+      response.setStatus(SlingHttpServletResponse.SC_NOT_MODIFIED);
+      recordHit(isMinified, 0);
+      return;
+    }
+
+    if (StringUtils.isNotEmpty(eTag) && (writeCachedOutputStream(libraryPath, isMinified,
+            encoding, eTag, immutable, request, response)
+            || encoding != UiLibraryContentEncoding.IDENTITY && writeCachedOutputStream(libraryPath,
+            isMinified, UiLibraryContentEncoding.IDENTITY, eTag, immutable, request, response))) {
+      return;
+    }
+
     String output = getCachedOutputOrEmptyString(libraryPath, isMinified,
             request.getResourceResolver());
     if (StringUtils.isNotEmpty(output)) {
       try {
+        if (StringUtils.isNotEmpty(eTag)) {
+          response.setHeader(HEADER_ETAG, eTag);
+        }
+        setCachingHeaders(libraryPath, isMinified, immutable, request, response);
         response.setContentType(getScriptType().getOutputContentType());
         writeResponse(output, SlingHttpServletResponse.SC_OK, response);
+        recordHit(isMinified, output.getBytes(StandardCharsets.UTF_8).length);
         return;
       } catch (IOException e) {
-        LOG.error("Unable to write cached script output for {}, script type: {}. IOException: {}",
+        if (!resetUncommittedResponse(response)) {
+          LOG.debug("Stopped writing cached script output for {}, script type: {}. {}",
+                  libraryPath.replaceAll("[\r\n]", ""),
+                  getScriptType().getName().replaceAll("[\r\n]", ""),
+                  String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+          return;
+        }
+        LOG.warn("Unable to write cached script output for {}, script type: {}. IOException: {}",
                 libraryPath.replaceAll("[\r\n]", ""),
                 getScriptType().getName().replaceAll("[\r\n]", ""),
-                e.getMessage().replaceAll("[\r\n]", ""));
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
       }
 
     }
-    FrontendLibrary library = getLibrary(libraryPath, request.getResourceResolver());
-    if (library != null) {
+    if (writeCachedFailure(libraryPath, isMinified, response)) {
+      return;
+    }
+    UiLibraryCacheMetricsService metricsService = getUiLibraryCacheMetricsService();
+    if (metricsService != null) {
+      metricsService.recordMiss(getScriptType(), isMinified);
+    }
+    final List<String> libraryPaths = getLibraryPaths(request);
+    final List<FrontendLibrary> libraries = getLibraries(libraryPaths,
+            request.getResourceResolver());
+    if (!libraries.isEmpty()) {
+      final boolean minified = isMinified;
       try {
-        output = getUiLibraryCompilationService().getUiLibraryOutput(library, getScriptType(),
+        long compilationStart = System.currentTimeMillis();
+        output = compileOutput(libraryPath, libraryPaths, libraries, minified,
                 request.getResourceResolver());
+        long fillTime = System.currentTimeMillis() - compilationStart;
 
         if (output.startsWith("<h1>")) {
+          cacheFailure(libraryPath, libraryPaths, output, minified);
           response.setStatus(SlingHttpServletResponse.SC_INTERNAL_SERVER_ERROR);
           response.setContentType("text/html");
           writeResponse(output, SlingHttpServletResponse.SC_INTERNAL_SERVER_ERROR, response);
           return;
         }
 
-        if (isMinified) {
-          output = getUiLibraryMinificationService().getMinifiedOutput(output, getScriptType());
+        String outputETag = UiLibraryCacheUtils.getETag(output);
+        if (handleFingerprint(outputETag, minified, request, response)) {
+          return;
         }
-
+        response.setHeader(HEADER_ETAG, outputETag);
+        setCachingHeaders(libraryPath, minified, isCurrentFingerprint(outputETag, request),
+                request, response);
         response.setContentType(getScriptType().getOutputContentType());
         writeResponse(output, SlingHttpServletResponse.SC_OK, response);
-
-        try {
-          cacheOutput(library, output, getScriptType(), isMinified, request.getResourceResolver());
-          return;
-        } catch (Exception e) {
-          LOG.error("Could not cache {} script for {}. {}.",
-                  getScriptType().getName().replaceAll("[\r\n]", ""),
-                  libraryPath.replaceAll("[\r\n]", ""),
-                  e.getMessage().replaceAll("[\r\n]", ""));
-          return;
+        if (metricsService != null) {
+          metricsService.recordFill(getScriptType(), minified, fillTime,
+                  output.getBytes(StandardCharsets.UTF_8).length);
         }
+        return;
+      } catch (IOException e) {
+        LOG.debug("Stopped writing {} script output for {}. {}",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                libraryPath.replaceAll("[\r\n]", ""),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        return;
+      } catch (TimeoutException e) {
+        LOG.warn("Timed out while compiling {} script for {}. {}",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                libraryPath.replaceAll("[\r\n]", ""),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+        writeCompilationTimeoutResponse(response);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.error("Interrupted while waiting for {} script for {}.",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                libraryPath.replaceAll("[\r\n]", ""));
       } catch (Exception e) {
-
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null
+                          ? e.getCause() : e;
         LOG.error("Could not render {} script for {}. {}.",
                 getScriptType().getName().replaceAll("[\r\n]", ""),
                 libraryPath.replaceAll("[\r\n]", ""),
-                e.getMessage().replaceAll("[\r\n]", ""));
+                String.valueOf(cause.getMessage()).replaceAll("[\r\n]", ""));
+        cacheFailure(libraryPath, libraryPaths, null, minified);
       }
+    } else {
+      cacheFailure(libraryPath, libraryPaths, null, isMinified);
     }
     response.setStatus(SlingHttpServletResponse.SC_BAD_REQUEST);
     response.setContentType("text/plain");
   }
 
-  void cacheOutput(@Nonnull final FrontendLibrary library, @Nonnull final String content,
-          @Nonnull final ScriptTypes scriptType,
+  /**
+   * Path that the output of the current request is cached under.
+   *
+   * @param request Current request.
+   * @return Path that the output of the current request is cached under.
+   */
+  @Nonnull
+  protected String getOutputPath(@Nonnull final SlingHttpServletRequest request) {
+    return request.getResource().getPath();
+  }
+
+  /**
+   * Paths of the libraries whose output is concatenated, in order, to build the response.
+   *
+   * @param request Current request.
+   * @return Paths of the libraries whose output is concatenated, in order, to build the response.
+   */
+  @Nonnull
+  protected List<String> getLibraryPaths(@Nonnull final SlingHttpServletRequest request) {
+    return Collections.singletonList(request.getResource().getPath());
+  }
+
+  /**
+   * Retrieves libraries whose output is concatenated, in order, to build the response.
+   *
+   * @param libraryPaths Library paths, in output order.
+   * @param resourceResolver ResourceResolver used to retrieve the libraries.
+   * @return Libraries whose output is concatenated, in order, to build the response.  Empty if any
+   *     library could not be retrieved.
+   */
+  @Nonnull
+  List<FrontendLibrary> getLibraries(@Nonnull final List<String> libraryPaths,
+          @Nonnull final ResourceResolver resourceResolver) {
+    List<FrontendLibrary> libraries = new ArrayList<>();
+    for (String path : libraryPaths) {
+      FrontendLibrary library = getLibrary(path, resourceResolver);
+      if (library == null) {
+        LOG.debug("Unable to build {} output, library {} could not be retrieved.",
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                path.replaceAll("[\r\n]", ""));
+        return Collections.emptyList();
+      }
+      libraries.add(library);
+    }
+    return libraries;
+  }
+
+  /**
+   * Compiles output, or waits for the compilation that is already running for the same output.
+   * When a {@link UiLibraryCompilationExecutorService} is available, the compilation runs on its
+   * thread pool, with libraries retrieved by its own ResourceResolver, and waiting is limited by
+   * its timeout.
+   *
+   * @param outputPath Path to cache the output under.
+   * @param libraryPaths Library paths, in output order.
+   * @param libraries Libraries retrieved by the request ResourceResolver, in output order.  Used
+   *     when compiling on the request thread.
+   * @param minified Whether to minify the output.
+   * @param resourceResolver Request ResourceResolver.
+   * @return Compiled output, or compilation error output.
+   * @throws TimeoutException Compilation did not complete in time.
+   * @throws ExecutionException Compilation failed.
+   * @throws InterruptedException Interrupted while waiting for the compilation.
+   */
+  @Nonnull
+  String compileOutput(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+          @Nonnull final List<FrontendLibrary> libraries, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver)
+          throws TimeoutException, ExecutionException, InterruptedException {
+    String key = UiLibraryOutputMemoryCache.getKey(outputPath, getScriptType(), minified);
+    UiLibraryCompilationExecutorService executorService = getUiLibraryCompilationExecutorService();
+    if (executorService != null) {
+      return executorService.compile(key, compilationResourceResolver -> {
+        List<FrontendLibrary> compilationLibraries = getLibraries(libraryPaths,
+                compilationResourceResolver);
+        if (compilationLibraries.isEmpty()) {
+          throw new LibraryRetrievalException(
+                  String.format("Unable to retrieve libraries for %s.", outputPath));
+        }
+        return buildOutput(outputPath, compilationLibraries, minified,
+                compilationResourceResolver);
+      });
+    }
+    return compilationCoalescer.compile(key,
+            () -> buildOutput(outputPath, libraries, minified, resourceResolver));
+  }
+
+  /**
+   * Caches a failure to build output, when the cache service supports it, so that the output is
+   * not rebuilt on every request until the failure expires or is purged.
+   *
+   * @param outputPath Path the output is cached under.
+   * @param libraryPaths Paths of the libraries the output is built from.
+   * @param errorOutput Compilation error output, or null if the libraries could not be retrieved or
+   *     compiled.
+   * @param minified Whether the output is minified.
+   */
+  void cacheFailure(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+          @Nullable final String errorOutput, final boolean minified) {
+    if (getUiLibraryCacheService() instanceof UiLibraryOutputCacheService) {
+      ((UiLibraryOutputCacheService) getUiLibraryCacheService()).cacheFailure(outputPath,
+              libraryPaths, errorOutput, getScriptType(), minified);
+    }
+  }
+
+  /**
+   * Responds with a cached failure to build output, with the same status and body as the original
+   * failure.
+   *
+   * @param outputPath Path the output is cached under.
+   * @param minified Whether the output is minified.
+   * @param response Response to write to.
+   * @return Whether a cached failure was written.
+   */
+  boolean writeCachedFailure(@Nonnull final String outputPath, final boolean minified,
+          @Nonnull final SlingHttpServletResponse response) {
+    if (!(getUiLibraryCacheService() instanceof UiLibraryOutputCacheService)) {
+      return false;
+    }
+    Failure failure = ((UiLibraryOutputCacheService) getUiLibraryCacheService()).getCachedFailure(
+            outputPath, getScriptType(), minified);
+    if (failure == null) {
+      return false;
+    }
+    LOG.debug("Responding with cached {} failure for {}.",
+            getScriptType().getName().replaceAll("[\r\n]", ""),
+            outputPath.replaceAll("[\r\n]", ""));
+    if (failure.getErrorOutput() == null) {
+      response.setStatus(SlingHttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      return true;
+    }
+    response.setStatus(SlingHttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    response.setContentType("text/html");
+    try {
+      writeResponse(failure.getErrorOutput(), SlingHttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+              response);
+    } catch (IOException e) {
+      LOG.error("Unable to write cached failure for {}, script type: {}. IOException: {}",
+              outputPath.replaceAll("[\r\n]", ""),
+              getScriptType().getName().replaceAll("[\r\n]", ""),
+              String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+    }
+    return true;
+  }
+
+  /**
+   * Responds to a request whose compilation timed out, with the status and Retry-After configured
+   * on the {@link UiLibraryCompilationExecutorService}.  The response is not cacheable, so that
+   * clients and CDNs retry once the output has been compiled.
+   *
+   * @param response Response to write to.
+   */
+  void writeCompilationTimeoutResponse(@Nonnull final SlingHttpServletResponse response) {
+    UiLibraryCompilationExecutorService executorService = getUiLibraryCompilationExecutorService();
+    int status = SlingHttpServletResponse.SC_SERVICE_UNAVAILABLE;
+    if (executorService != null) {
+      status = executorService.getTimeoutResponseStatus();
+      if (executorService.getRetryAfterSeconds() > 0) {
+        response.setHeader(HEADER_RETRY_AFTER,
+                String.valueOf(executorService.getRetryAfterSeconds()));
+      }
+    }
+    response.setHeader(HEADER_CACHE_CONTROL, CACHE_CONTROL_NO_STORE);
+    response.setStatus(status);
+    response.setContentType("text/plain");
+  }
+
+  /**
+   * Compiles, minifies (when requested) and caches UiLibrary output.  Output built from libraries
+   * other than the output path (bundles) joins the cached output of each library, which is only
+   * compiled, minified and cached under its own path when it has not been cached yet.  Compilation
+   * errors are returned without being minified or cached.
+   *
+   * @param outputPath Path to cache the output under.
+   * @param libraries Libraries to build output for, in output order.
+   * @param minified Whether to minify the output.
+   * @param resourceResolver ResourceResolver used to read library files and write the cache.
+   * @return Compiled output, or compilation error output.
+   * @throws Exception Output could not be compiled or minified.
+   */
+  @Nonnull
+  String buildOutput(@Nonnull final String outputPath,
+          @Nonnull final List<FrontendLibrary> libraries, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver) throws Exception {
+    List<String> libraryPaths = new ArrayList<>();
+    for (FrontendLibrary library : libraries) {
+      libraryPaths.add(library.getPath());
+    }
+    String output;
+    if (Collections.singletonList(outputPath).equals(libraryPaths)) {
+      output = compileLibraryOutput(libraries.get(0), minified, resourceResolver);
+    } else {
+      StringBuilder outputBuilder = new StringBuilder();
+      for (FrontendLibrary library : libraries) {
+        String libraryOutput = getBundledLibraryOutput(library, minified, resourceResolver);
+        if (libraryOutput.startsWith("<h1>")) {
+          return libraryOutput;
+        }
+        if (outputBuilder.length() > 0) {
+          outputBuilder.append(getOutputSeparator());
+        }
+        outputBuilder.append(libraryOutput);
+      }
+      output = outputBuilder.toString();
+    }
+    if (!output.startsWith("<h1>")) {
+      cacheOutput(outputPath, libraryPaths, output, getScriptType(), minified, resourceResolver);
+    }
+    return output;
+  }
+
+  /**
+   * Output of a library that is part of a bundle.  The library's cached output is used when
+   * available.  Otherwise the library is compiled, minified when requested, and cached under its
+   * own path, so that it is not compiled again for this or any other bundle.
+   *
+   * @param library Bundled library.
+   * @param minified Whether to minify the output.
+   * @param resourceResolver ResourceResolver used to read library files and the cache.
+   * @return Library output, or compilation error output.
+   * @throws Exception Output could not be compiled or minified.
+   */
+  @Nonnull
+  String getBundledLibraryOutput(@Nonnull final FrontendLibrary library, final boolean minified,
+          @Nonnull final ResourceResolver resourceResolver) throws Exception {
+    String output = getCachedOutputOrEmptyString(library.getPath(), minified, resourceResolver);
+    if (StringUtils.isNotEmpty(output)) {
+      return output;
+    }
+    output = compileLibraryOutput(library, minified, resourceResolver);
+    if (!output.startsWith("<h1>")) {
+      cacheOutput(library.getPath(), Collections.singletonList(library.getPath()), output,
+              getScriptType(), minified, resourceResolver);
+    }
+    return output;
+  }
+
+  @Nonnull
+  private String compileLibraryOutput(@Nonnull final FrontendLibrary library,
+          final boolean minified, @Nonnull final ResourceResolver resourceResolver)
+          throws Exception {
+    String output = getUiLibraryCompilationService().getUiLibraryOutput(library, getScriptType(),
+            resourceResolver);
+    if (minified && !output.startsWith("<h1>")) {
+      output = getUiLibraryMinificationService().getMinifiedOutput(output, getScriptType());
+    }
+    return output;
+  }
+
+  /**
+   * Separator placed between the output of concatenated libraries.  JavaScript output is separated
+   * by a semicolon, so that a library without a trailing semicolon cannot change how the next
+   * library is parsed.
+   *
+   * @return Separator placed between the output of concatenated libraries.
+   */
+  @Nonnull
+  String getOutputSeparator() {
+    if (getScriptType() == ScriptTypes.JAVASCRIPT) {
+      return ";\n";
+    }
+    return "\n";
+  }
+
+  /**
+   * Caches output.  Output built from libraries other than the output path (bundles) is cached
+   * with the paths of those libraries, when supported, so that it is purged with them.
+   *
+   * @param outputPath Path to cache the output under.
+   * @param libraryPaths Paths of the libraries the output was built from.
+   * @param content Output to cache.
+   * @param scriptType ScriptType of the output.
+   * @param minified Whether the output is minified.
+   * @param resourceResolver ResourceResolver used to write the cache.
+   */
+  void cacheOutput(@Nonnull final String outputPath, @Nonnull final List<String> libraryPaths,
+          @Nonnull final String content, @Nonnull final ScriptTypes scriptType,
           boolean minified, @Nonnull final ResourceResolver resourceResolver) {
     if (getUiLibraryCacheService() != null) {
       try {
-        getUiLibraryCacheService().cacheUiLibraryScript(library.getPath(), content, scriptType,
+        if (getUiLibraryCacheService() instanceof UiLibraryOutputCacheService
+            && !Collections.singletonList(outputPath).equals(libraryPaths)) {
+          ((UiLibraryOutputCacheService) getUiLibraryCacheService()).cacheUiLibraryBundleScript(
+                  outputPath, libraryPaths, content, scriptType, minified, resourceResolver);
+          recordBytesStored(content, scriptType, minified);
+          return;
+        }
+        getUiLibraryCacheService().cacheUiLibraryScript(outputPath, content, scriptType,
                 minified, resourceResolver);
+        recordBytesStored(content, scriptType, minified);
       } catch (CacheBuilderException e) {
         LOG.warn("Unable to build cache for library {}. {}",
-                library.getPath().replaceAll("[\r\n]", ""),
+                outputPath.replaceAll("[\r\n]", ""),
                 e.getMessage().replaceAll("[\r\n]", ""));
       }
     }
   }
 
+  private void recordHit(final boolean minified, final long bytesServed) {
+    UiLibraryCacheMetricsService metricsService = getUiLibraryCacheMetricsService();
+    if (metricsService != null) {
+      metricsService.recordHit(getScriptType(), minified, bytesServed);
+    }
+  }
+
+  private void recordBytesStored(@Nonnull final String content,
+          @Nonnull final ScriptTypes scriptType, final boolean minified) {
+    UiLibraryCacheMetricsService metricsService = getUiLibraryCacheMetricsService();
+    if (metricsService != null) {
+      metricsService.recordBytesStored(scriptType, minified,
+              content.getBytes(StandardCharsets.UTF_8).length);
+    }
+  }
+
   @Nonnull
   String getCachedOutputOrEmptyString(@Nonnull final String libraryPath,
           @Nonnull final Boolean isMinified,
@@ -179,6 +630,238 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
     return StringUtils.EMPTY;
   }
 
+  @Nonnull
+  String getCachedETagOrEmptyString(@Nonnull final String libraryPath,
+          @Nonnull final Boolean isMinified,
+          @Nonnull final ResourceResolver resourceResolver) {
+    if (getUiLibraryCacheService() instanceof UiLibraryOutputCacheService) {
+      try {
+        return ((UiLibraryOutputCacheService) getUiLibraryCacheService()).getCachedETag(
+                libraryPath, getScriptType(), isMinified, resourceResolver);
+      } catch (CacheRetrievalException e) {
+        LOG.debug("Unable to retrieve cached ETag for {}. {}",
+                libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+      }
+    }
+    return StringUtils.EMPTY;
+  }
+
+  /**
+   * Streams cached output, with the specified content encoding, straight from the cache to the
+   * response output stream, without decoding it to a String.  If the output cannot be read before
+   * the response is committed, the response is reset so that another source can be written.  Once
+   * the response is committed, a failed write (usually a client disconnect) ends the response.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param isMinified Whether minified output was requested.
+   * @param encoding Content encoding to write.
+   * @param eTag ETag of the identity encoded output.
+   * @param immutable Whether the current fingerprint was requested.
+   * @param request Current request.
+   * @param response Response to write to.
+   * @return Whether the response is complete.
+   */
+  boolean writeCachedOutputStream(@Nonnull final String libraryPath,
+          @Nonnull final Boolean isMinified, @Nonnull final UiLibraryContentEncoding encoding,
+          @Nonnull final String eTag, final boolean immutable,
+          @Nonnull final SlingHttpServletRequest request,
+          @Nonnull final SlingHttpServletResponse response) {
+    if (getUiLibraryCacheService() instanceof UiLibraryOutputCacheService) {
+      UiLibraryOutputCacheService outputCacheService
+              = (UiLibraryOutputCacheService) getUiLibraryCacheService();
+      try (UiLibraryCachedOutputStream cachedOutput = outputCacheService.getCachedOutputStream(
+              libraryPath, getScriptType(), isMinified, encoding, request.getResourceResolver())) {
+        long contentLength = cachedOutput.getContentLength();
+        if (contentLength > 0) {
+          response.setHeader(HEADER_CONTENT_LENGTH, String.valueOf(contentLength));
+        }
+        if (encoding != UiLibraryContentEncoding.IDENTITY) {
+          response.setHeader(HEADER_CONTENT_ENCODING, encoding.getName());
+        }
+        response.setHeader(HEADER_ETAG, encoding.getETag(eTag));
+        setCachingHeaders(libraryPath, isMinified, immutable, request, response);
+        response.setContentType(getScriptType().getOutputContentType());
+        writeResponse(cachedOutput, response);
+        recordHit(isMinified, contentLength);
+        return true;
+      } catch (CacheRetrievalException e) {
+        LOG.debug("Unable to retrieve {} cached output for {}. {}", encoding.getName(),
+                libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+      } catch (IOException e) {
+        if (!resetUncommittedResponse(response)) {
+          LOG.debug("Stopped writing {} cached output for {}, script type: {}. {}",
+                  encoding.getName(), libraryPath.replaceAll("[\r\n]", ""),
+                  getScriptType().getName().replaceAll("[\r\n]", ""),
+                  String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+          return true;
+        }
+        LOG.warn("Unable to read {} cached output for {}, script type: {}. IOException: {}",
+                encoding.getName(), libraryPath.replaceAll("[\r\n]", ""),
+                getScriptType().getName().replaceAll("[\r\n]", ""),
+                String.valueOf(e.getMessage()).replaceAll("[\r\n]", ""));
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Clears the headers and buffered output of a response that has not been committed, so that it
+   * can be written again.  The Vary header, which applies to every response, is restored.
+   *
+   * @param response Response to reset.
+   * @return Whether the response was reset.  False if the response was already committed.
+   */
+  boolean resetUncommittedResponse(@Nonnull final SlingHttpServletResponse response) {
+    if (response.isCommitted()) {
+      return false;
+    }
+    response.reset();
+    response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+    return true;
+  }
+
+  /**
+   * Caching policy for the current request.  The policy configured on the servlet is overridden by
+   * properties of the requested UiLibrary.
+   *
+   * @param request Current request.
+   * @return Caching policy for the current request.
+   */
+  @Nonnull
+  UiLibraryCachingPolicy getCachingPolicy(@Nonnull final SlingHttpServletRequest request) {
+    if (request.getResource() != null) {
+      return cachingPolicy.withOverrides(request.getResource().getValueMap());
+    }
+    return cachingPolicy;
+  }
+
+  /**
+   * Sets Cache-Control, Expires and Last-Modified headers for a successful or not modified
+   * response.  Responses for the current fingerprint are immutable, other responses follow the
+   * caching policy.  Last-Modified is the time the output was cached.
+   *
+   * @param libraryPath UiLibrary output path.
+   * @param isMinified Whether minified output was requested.
+   * @param immutable Whether the current fingerprint was requested.
+   * @param request Current request.
+   * @param response Response to set headers on.
+   */
+  void setCachingHeaders(@Nonnull final String libraryPath, @Nonnull final Boolean isMinified,
+          final boolean immutable, @Nonnull final SlingHttpServletRequest request,
+          @Nonnull final SlingHttpServletResponse response) {
+    long now = System.currentTimeMillis();
+    if (immutable) {
+      response.setHeader(HEADER_CACHE_CONTROL, CACHE_CONTROL_IMMUTABLE);
+      response.setDateHeader(HEADER_EXPIRES, now + IMMUTABLE_MAX_AGE_MILLISECONDS);
+    } else {
+      UiLibraryCachingPolicy policy = getCachingPolicy(request);
+      response.setHeader(HEADER_CACHE_CONTROL, policy.getCacheControl());
+      response.setDateHeader(HEADER_EXPIRES, policy.getExpires(now));
+    }
+    if (getUiLibraryCacheService() instanceof UiLibraryOutputCacheService) {
+      try {
+        long lastModified = ((UiLibraryOutputCacheService) getUiLibraryCacheService())
+                .getCachedLastModified(libraryPath, getScriptType(), isMinified,
+                        request.getResourceResolver());
+        response.setDateHeader(HEADER_LAST_MODIFIED, Math.min(lastModified, now));
+      } catch (CacheRetrievalException e) {
+        LOG.debug("Unable to retrieve cached creation time for {}. {}",
+                libraryPath.replaceAll("[\r\n]", ""), e.getMessage().replaceAll("[\r\n]", ""));
+      }
+    }
+  }
+
+  /**
+   * Redirects requests for a stale fingerprint to the current fingerprinted URL.  Requests for the
+   * current fingerprint are left to be served, see {@link #isCurrentFingerprint(String,
+   * SlingHttpServletRequest)}.
+   *
+   * @param eTag ETag of the current output.
+   * @param minified Whether minified output was requested.
+   * @param request Current request.
+   * @param response Current response.
+   * @return Whether the response is complete (the request was redirected).
+   */
+  boolean handleFingerprint(@Nonnull final String eTag, final boolean minified,
+          @Nonnull final SlingHttpServletRequest request,
+          @Nonnull final SlingHttpServletResponse response) {
+    String requestedFingerprint = getRequestedFingerprint(request);
+    if (StringUtils.isEmpty(requestedFingerprint)) {
+      return false;
+    }
+    String currentFingerprint = UiLibraryCacheUtils.getFingerprint(eTag);
+    if (StringUtils.isEmpty(currentFingerprint) || requestedFingerprint.equals(
+            currentFingerprint)) {
+      return false;
+    }
+    String currentPath = UiLibraryCacheUtils.getFingerprintedPath(
+            request.getResource().getPath(), currentFingerprint, minified,
+            getScriptType().getExtension());
+    String location = request.getResourceResolver().map(request, currentPath);
+    if (StringUtils.isNotEmpty(request.getQueryString())) {
+      location += "?" + request.getQueryString();
+    }
+    response.setHeader(HEADER_CACHE_CONTROL, CACHE_CONTROL_NO_CACHE);
+    response.setHeader(HEADER_LOCATION, location);
+    response.setStatus(SlingHttpServletResponse.SC_FOUND);
+    return true;
+  }
+
+  /**
+   * Whether the request is for the fingerprint of the current output, so that the response can be
+   * cached as immutable.
+   *
+   * @param eTag ETag of the current output.
+   * @param request Current request.
+   * @return Whether the request is for the fingerprint of the current output.
+   */
+  boolean isCurrentFingerprint(@Nonnull final String eTag,
+          @Nonnull final SlingHttpServletRequest request) {
+    String requestedFingerprint = getRequestedFingerprint(request);
+    return StringUtils.isNotEmpty(requestedFingerprint) && requestedFingerprint.equals(
+            UiLibraryCacheUtils.getFingerprint(eTag));
+  }
+
+  @Nonnull
+  String getRequestedFingerprint(@Nonnull final SlingHttpServletRequest request) {
+    for (String selector : request.getRequestPathInfo().getSelectors()) {
+      if (UiLibraryCacheUtils.isFingerprint(selector)) {
+        return selector;
+      }
+    }
+    return StringUtils.EMPTY;
+  }
+
+  /**
+   * ETag matched by the If-None-Match request header.  The identity ETag is matched as well as the
+   * ETag of the accepted encoding, since identity output is served whenever encoded output has not
+   * been cached.
+   *
+   * @param request Current request.
+   * @param eTag ETag of the identity encoded output.
+   * @param encoding Content encoding accepted by the request.
+   * @return ETag matched by the If-None-Match request header, or an empty String if neither
+   *     matches.
+   */
+  @Nonnull
+  String getNotModifiedETag(@Nonnull final SlingHttpServletRequest request,
+          @Nonnull final String eTag, @Nonnull final UiLibraryContentEncoding encoding) {
+    if (isNotModified(request, encoding.getETag(eTag))) {
+      return encoding.getETag(eTag);
+    }
+    if (encoding != UiLibraryContentEncoding.IDENTITY && isNotModified(request, eTag)) {
+      return eTag;
+    }
+    return StringUtils.EMPTY;
+  }
+
+  boolean isNotModified(@Nonnull final SlingHttpServletRequest request,
+          @Nonnull final String eTag) {
+    String ifNoneMatch = request.getHeader(HEADER_IF_NONE_MATCH);
+    return StringUtils.isNotEmpty(ifNoneMatch) && UiLibraryCacheUtils.isETagMatch(ifNoneMatch,
+            eTag);
+  }
+
   void writeResponse(@Nonnull final String output, final int responseStatus,
           @Nonnull final SlingHttpServletResponse response)
           throws IOException {
@@ -188,4 +871,15 @@ public abstract class BaseUiLibraryServlet extends SlingSafeMethodsServlet {
       response.setStatus(responseStatus);
     }
   }
+
+  void writeResponse(@Nonnull final InputStream output,
+          @Nonnull final SlingHttpServletResponse response) throws IOException {
+    OutputStream outputStream = response.getOutputStream();
+    byte[] buffer = new byte[8192];
+    int bytesRead;
+    while ((bytesRead = output.read(buffer)) != -1) {
+      outputStream.write(buffer, 0, bytesRead);
+    }
+    outputStream.flush();
+  }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.servlets;
+
+import java.io.Serializable;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.sling.api.resource.ValueMap;
+
+/**
+ * How long browsers and shared caches may reuse UiLibrary responses without revalidating them.
+ * Servlets configure a policy for their script type, which UiLibraries can override with
+ * {@value #PROPERTY_MAX_AGE} and {@value #PROPERTY_SHARED_MAX_AGE} properties.
+ */
+final class UiLibraryCachingPolicy implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Seconds that responses may be reused.  Zero or less requires revalidation on every use.
+   */
+  static final String PROPERTY_MAX_AGE = "cacheMaxAge";
+
+  /**
+   * Seconds that shared caches, such as CDNs, may reuse responses.  Less than zero uses the max
+   * age.
+   */
+  static final String PROPERTY_SHARED_MAX_AGE = "cacheSharedMaxAge";
+
+  static final long DEFAULT_MAX_AGE = 0;
+  static final long DEFAULT_SHARED_MAX_AGE = -1;
+
+  private final long maxAge;
+  private final long sharedMaxAge;
+
+  UiLibraryCachingPolicy(final long maxAge, final long sharedMaxAge) {
+    this.maxAge = maxAge;
+    this.sharedMaxAge = sharedMaxAge;
+  }
+
+  /**
+   * Policy with values overridden by the properties of a UiLibrary.
+   *
+   * @param properties UiLibrary properties.
+   * @return Policy with values overridden by the properties of a UiLibrary.
+   */
+  @Nonnull
+  UiLibraryCachingPolicy withOverrides(@Nullable final ValueMap properties) {
+    if (properties == null) {
+      return this;
+    }
+    Long overriddenMaxAge = properties.get(PROPERTY_MAX_AGE, Long.class);
+    Long overriddenSharedMaxAge = properties.get(PROPERTY_SHARED_MAX_AGE, Long.class);
+    if (overriddenMaxAge == null && overriddenSharedMaxAge == null) {
+      return this;
+    }
+    return new UiLibraryCachingPolicy(overriddenMaxAge != null ? overriddenMaxAge : maxAge,
+            overriddenSharedMaxAge != null ? overriddenSharedMaxAge : sharedMaxAge);
+  }
+
+  long getMaxAge() {
+    return maxAge;
+  }
+
+  long getSharedMaxAge() {
+    return sharedMaxAge;
+  }
+
+  /**
+   * Cache-Control header value.  Responses that may not be reused by any cache are marked
+   * no-cache, so that they are always revalidated with their ETag.
+   *
+   * @return Cache-Control header value.
+   */
+  @Nonnull
+  String getCacheControl() {
+    if (maxAge <= 0 && sharedMaxAge <= 0) {
+      return "no-cache";
+    }
+    StringBuilder cacheControl = new StringBuilder("public, max-age=").append(Math.max(0, maxAge));
+    if (sharedMaxAge >= 0) {
+      cacheControl.append(", s-maxage=").append(sharedMaxAge);
+    }
+    return cacheControl.toString();
+  }
+
+  /**
+   * Expires header value, for HTTP/1.0 caches that ignore Cache-Control.
+   *
+   * @param now Current time, in milliseconds since the epoch.
+   * @return Expires header value, in milliseconds since the epoch.
+   */
+  long getExpires(final long now) {
+    return now + Math.max(0, maxAge) * 1000;
+  }
+
+  @Override
+  public String toString() {
+    return getCacheControl();
+  }
+}
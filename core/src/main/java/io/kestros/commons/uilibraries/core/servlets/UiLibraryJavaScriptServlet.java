@@ -28,6 +28,8 @@ import io.kestros.commons.uilibraries.api.services.UiLibraryConfigurationService
 import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
 import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCacheMetricsService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompilationExecutorService;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.Servlet;
@@ -77,6 +79,16 @@ public class UiLibraryJavaScriptServlet extends BaseUiLibraryServlet {
           policyOption = ReferencePolicyOption.GREEDY)
   private UiLibraryMinificationService uiLibraryMinificationService;
 
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED", "SE_BAD_FIELD"})
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCompilationExecutorService uiLibraryCompilationExecutorService;
+
+  @SuppressFBWarnings({"SE_TRANSIENT_FIELD_NOT_RESTORED", "SE_BAD_FIELD"})
+  @Reference(cardinality = ReferenceCardinality.OPTIONAL,
+          policyOption = ReferencePolicyOption.GREEDY)
+  private UiLibraryCacheMetricsService uiLibraryCacheMetricsService;
+
   @Nullable
 
   @Override
@@ -131,6 +143,18 @@ public class UiLibraryJavaScriptServlet extends BaseUiLibraryServlet {
     return uiLibraryCacheService;
   }
 
+  @Nullable
+  @Override
+  protected UiLibraryCompilationExecutorService getUiLibraryCompilationExecutorService() {
+    return uiLibraryCompilationExecutorService;
+  }
+
+  @Nullable
+  @Override
+  protected UiLibraryCacheMetricsService getUiLibraryCacheMetricsService() {
+    return uiLibraryCacheMetricsService;
+  }
+
   @Nonnull
   @Override
   protected ScriptTypes getScriptType() {
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.osgi.service.component.ComponentContext;
+
+/**
+ * Utility methods for reading OSGi component configuration properties.
+ */
+public final class ComponentPropertyUtils {
+
+  private ComponentPropertyUtils() {
+  }
+
+  /**
+   * Reads a component property as a long.
+   *
+   * @param componentContext ComponentContext to read properties from.
+   * @param propertyName Property to read.
+   * @param defaultValue Value to return when the property is missing or invalid.
+   * @return Property value, or the default value.
+   */
+  public static long getLongProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName, final long defaultValue) {
+    Object value = getProperty(componentContext, propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value != null) {
+      try {
+        return Long.parseLong(value.toString().trim());
+      } catch (NumberFormatException e) {
+        return defaultValue;
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Reads a component property as a boolean.
+   *
+   * @param componentContext ComponentContext to read properties from.
+   * @param propertyName Property to read.
+   * @param defaultValue Value to return when the property is missing.
+   * @return Property value, or the default value.
+   */
+  public static boolean getBooleanProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName, final boolean defaultValue) {
+    Object value = getProperty(componentContext, propertyName);
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    if (value != null) {
+      return Boolean.parseBoolean(value.toString().trim());
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Reads a component property as a String array.  Single values are returned as a one item
+   * array.
+   *
+   * @param componentContext ComponentContext to read properties from.
+   * @param propertyName Property to read.
+   * @return Property values, or an empty array when the property is missing.
+   */
+  @Nonnull
+  public static String[] getStringArrayProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName) {
+    Object value = getProperty(componentContext, propertyName);
+    if (value instanceof String[]) {
+      return ((String[]) value).clone();
+    }
+    if (value instanceof Collection) {
+      List<String> values = new ArrayList<>();
+      for (Object item : (Collection<?>) value) {
+        values.add(String.valueOf(item));
+      }
+      return values.toArray(new String[0]);
+    }
+    if (value != null) {
+      return new String[]{value.toString()};
+    }
+    return new String[0];
+  }
+
+  @Nullable
+  private static Object getProperty(@Nullable final ComponentContext componentContext,
+          @Nonnull final String propertyName) {
+    if (componentContext != null && componentContext.getProperties() != null) {
+      return componentContext.getProperties().get(propertyName);
+    }
+    return null;
+  }
+}
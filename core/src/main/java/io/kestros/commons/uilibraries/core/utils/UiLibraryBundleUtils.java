@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Utility methods for building UiLibrary bundles, which concatenate the output of multiple
+ * UiLibraries into a single response.
+ */
+public final class UiLibraryBundleUtils {
+
+  /**
+   * Path of the UiLibrary CSS bundle servlet.
+   */
+  public static final String CSS_BUNDLE_SERVLET_PATH = "/bin/kestros/ui-libraries/css-bundle";
+
+  /**
+   * Path of the UiLibrary JavaScript bundle servlet.
+   */
+  public static final String JS_BUNDLE_SERVLET_PATH = "/bin/kestros/ui-libraries/js-bundle";
+
+  /**
+   * Request parameter that lists bundled UiLibrary paths, in output order.
+   */
+  public static final String PARAMETER_LIBRARY = "library";
+
+  /**
+   * Path, relative to the cache root, that bundle output is cached under.
+   */
+  public static final String BUNDLE_OUTPUT_ROOT_PATH = "/bundles";
+
+  private UiLibraryBundleUtils() {
+  }
+
+  /**
+   * Bundled UiLibrary paths, in the order they were first listed.  Blank and repeated paths are
+   * removed, so that the same libraries in the same order always build the same bundle.
+   *
+   * @param libraryPaths Requested UiLibrary paths.
+   * @return Bundled UiLibrary paths, in the order they were first listed.
+   */
+  @Nonnull
+  public static List<String> getBundledLibraryPaths(@Nullable final String[] libraryPaths) {
+    Set<String> bundledLibraryPaths = new LinkedHashSet<>();
+    if (libraryPaths != null) {
+      for (String libraryPath : libraryPaths) {
+        if (StringUtils.isNotBlank(libraryPath)) {
+          bundledLibraryPaths.add(libraryPath.trim());
+        }
+      }
+    }
+    return new ArrayList<>(bundledLibraryPaths);
+  }
+
+  /**
+   * Bundled UiLibrary paths, sorted and without repeats.  Identifies a bundle regardless of the
+   * order its libraries are listed in.
+   *
+   * @param libraryPaths Bundled UiLibrary paths.
+   * @return Bundled UiLibrary paths, sorted and without repeats.
+   */
+  @Nonnull
+  public static List<String> getCanonicalLibraryPaths(
+          @Nonnull final Collection<String> libraryPaths) {
+    return new ArrayList<>(new TreeSet<>(libraryPaths));
+  }
+
+  /**
+   * Path that bundle output is cached under.  Derived from the canonical bundled library paths,
+   * so that listing the same libraries in another order cannot create another cache entry.  Each
+   * set of libraries is therefore only cached in one order, the order it was declared in.
+   *
+   * @param libraryPaths Bundled UiLibrary paths.
+   * @return Path that bundle output is cached under.
+   */
+  @Nonnull
+  public static String getBundleOutputPath(@Nonnull final Collection<String> libraryPaths) {
+    return BUNDLE_OUTPUT_ROOT_PATH + "/" + UiLibraryCacheUtils.getContentHash(
+            String.join("\n", getCanonicalLibraryPaths(libraryPaths)).getBytes(
+                    StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Bundle servlet URL for the specified libraries.
+   *
+   * @param libraryPaths Bundled UiLibrary paths, in output order.
+   * @param scriptType ScriptType of the bundle, either CSS or JavaScript.
+   * @param fingerprint Content fingerprint of the bundle output, or an empty String.
+   * @param minified Whether the URL is for minified output.
+   * @return Bundle servlet URL for the specified libraries.
+   */
+  @Nonnull
+  public static String getBundleUrl(@Nonnull final Collection<String> libraryPaths,
+          @Nonnull final ScriptTypes scriptType, @Nonnull final String fingerprint,
+          final boolean minified) {
+    StringBuilder bundleUrl = new StringBuilder(getBundleServletPath(scriptType));
+    if (StringUtils.isNotEmpty(fingerprint)) {
+      bundleUrl.append('.').append(fingerprint);
+    }
+    if (minified) {
+      bundleUrl.append(".min");
+    }
+    bundleUrl.append(scriptType.getExtension());
+    char separator = '?';
+    for (String libraryPath : libraryPaths) {
+      bundleUrl.append(separator).append(PARAMETER_LIBRARY).append('=').append(
+              encodeParameterValue(libraryPath));
+      separator = '&';
+    }
+    return bundleUrl.toString();
+  }
+
+  /**
+   * Path of the bundle servlet for a ScriptType.
+   *
+   * @param scriptType ScriptType of the bundle, either CSS or JavaScript.
+   * @return Path of the bundle servlet for a ScriptType.
+   */
+  @Nonnull
+  public static String getBundleServletPath(@Nonnull final ScriptTypes scriptType) {
+    if (scriptType == ScriptTypes.JAVASCRIPT) {
+      return JS_BUNDLE_SERVLET_PATH;
+    }
+    return CSS_BUNDLE_SERVLET_PATH;
+  }
+
+  @Nonnull
+  private static String encodeParameterValue(@Nonnull final String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      // Every Java platform is required to support UTF-8.
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+}
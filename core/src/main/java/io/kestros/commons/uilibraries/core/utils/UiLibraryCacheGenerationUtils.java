@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+/**
+ * Utility methods for naming UiLibrary cache generations.  Cached output is stored under a
+ * generation named {@code <number>-<versionKey>}.  The number increases each time the cache is
+ * purged, and the version key is derived from the versions of the compilers and minifiers that
+ * built the output, so that output built by a different compiler or minifier is not served.
+ */
+public final class UiLibraryCacheGenerationUtils {
+
+  private static final int VERSION_KEY_LENGTH = 16;
+  private static final Pattern GENERATION_NAME_PATTERN = Pattern.compile(
+          "(\\d{1,18})-([0-9a-f]{" + VERSION_KEY_LENGTH + "})");
+
+  private UiLibraryCacheGenerationUtils() {
+  }
+
+  /**
+   * Builds a generation name.
+   *
+   * @param number Generation number.
+   * @param versionKey Compiler and minifier version key.
+   * @return Generation name.
+   */
+  @Nonnull
+  public static String getGenerationName(final long number, @Nonnull final String versionKey) {
+    return number + "-" + versionKey;
+  }
+
+  /**
+   * Whether a cache resource name is a generation name.
+   *
+   * @param name Resource name.
+   * @return Whether a cache resource name is a generation name.
+   */
+  public static boolean isGenerationName(@Nonnull final String name) {
+    return GENERATION_NAME_PATTERN.matcher(name).matches();
+  }
+
+  /**
+   * Number of a generation.
+   *
+   * @param generationName Generation name.
+   * @return Number of a generation, or 0 if the name is not a generation name.
+   */
+  public static long getGenerationNumber(@Nonnull final String generationName) {
+    Matcher matcher = GENERATION_NAME_PATTERN.matcher(generationName);
+    if (matcher.matches()) {
+      return Long.parseLong(matcher.group(1));
+    }
+    return 0;
+  }
+
+  /**
+   * Compiler and minifier version key of a generation.
+   *
+   * @param generationName Generation name.
+   * @return Compiler and minifier version key of a generation, or an empty String if the name is
+   *     not a generation name.
+   */
+  @Nonnull
+  public static String getVersionKey(@Nonnull final String generationName) {
+    Matcher matcher = GENERATION_NAME_PATTERN.matcher(generationName);
+    if (matcher.matches()) {
+      return matcher.group(2);
+    }
+    return StringUtils.EMPTY;
+  }
+
+  /**
+   * Builds a version key from component versions.  The key does not depend on the order of the
+   * versions.
+   *
+   * @param componentVersions Versions of the compilers and minifiers that build output, as
+   *     returned by {@link #getComponentVersion(Object)}.
+   * @return Version key.
+   */
+  @Nonnull
+  public static String getVersionKey(@Nonnull final Collection<String> componentVersions) {
+    List<String> sortedVersions = new ArrayList<>(componentVersions);
+    Collections.sort(sortedVersions);
+    return UiLibraryCacheUtils.getContentHash(
+            String.join("\n", sortedVersions).getBytes(StandardCharsets.UTF_8)).substring(0,
+            VERSION_KEY_LENGTH);
+  }
+
+  /**
+   * Version of a compiler or minifier.  Made up of the component's class name, and the symbolic
+   * name and version of the bundle that provides it, so that upgrading the bundle (or a library it
+   * embeds) changes the version.
+   *
+   * @param component Compiler or minifier.
+   * @return Version of a compiler or minifier.
+   */
+  @Nonnull
+  public static String getComponentVersion(@Nonnull final Object component) {
+    Bundle bundle = FrameworkUtil.getBundle(component.getClass());
+    if (bundle == null) {
+      return component.getClass().getName();
+    }
+    return String.format("%s:%s:%s", component.getClass().getName(), bundle.getSymbolicName(),
+            bundle.getVersion());
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Utility methods for building and comparing cache validators for UiLibrary output.
+ */
+public final class UiLibraryCacheUtils {
+
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final String WEAK_ETAG_PREFIX = "W/";
+  private static final char[] HEX_CHARACTERS = "0123456789abcdef".toCharArray();
+  private static final int FINGERPRINT_LENGTH = 16;
+  private static final Pattern FINGERPRINT_PATTERN = Pattern.compile(
+          "[0-9a-f]{" + FINGERPRINT_LENGTH + "}");
+
+  private UiLibraryCacheUtils() {
+  }
+
+  /**
+   * Builds a strong ETag from the SHA-256 hash of the specified content.
+   *
+   * @param content Output to build an ETag for.
+   * @return Quoted strong ETag for the specified content.
+   */
+  @Nonnull
+  public static String getETag(@Nonnull final String content) {
+    return getETag(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Builds a strong ETag from the SHA-256 hash of the specified content.
+   *
+   * @param content Output bytes to build an ETag for.
+   * @return Quoted strong ETag for the specified content.
+   */
+  @Nonnull
+  public static String getETag(@Nonnull final byte[] content) {
+    return "\"" + getContentHash(content) + "\"";
+  }
+
+  /**
+   * Whether an If-None-Match request header matches the specified ETag.  Uses weak comparison, as
+   * required for If-None-Match.
+   *
+   * @param ifNoneMatchHeader If-None-Match request header value.
+   * @param eTag Current ETag of the requested output.
+   * @return Whether an If-None-Match request header matches the specified ETag.
+   */
+  public static boolean isETagMatch(@Nonnull final String ifNoneMatchHeader,
+          @Nonnull final String eTag) {
+    if (StringUtils.isEmpty(eTag)) {
+      return false;
+    }
+    String currentETag = StringUtils.removeStart(eTag, WEAK_ETAG_PREFIX);
+    for (String requestedETag : ifNoneMatchHeader.split(",")) {
+      String trimmedETag = requestedETag.trim();
+      if ("*".equals(trimmedETag)) {
+        return true;
+      }
+      if (currentETag.equals(StringUtils.removeStart(trimmedETag, WEAK_ETAG_PREFIX))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Content fingerprint used in UiLibrary URLs, derived from the output's ETag.
+   *
+   * @param eTag ETag of UiLibrary output.
+   * @return Content fingerprint, or an empty String if the ETag is not a content hash.
+   */
+  @Nonnull
+  public static String getFingerprint(@Nonnull final String eTag) {
+    String hash = StringUtils.removeStart(eTag, WEAK_ETAG_PREFIX).replace("\"", "");
+    if (hash.length() >= FINGERPRINT_LENGTH && isFingerprint(
+            hash.substring(0, FINGERPRINT_LENGTH))) {
+      return hash.substring(0, FINGERPRINT_LENGTH);
+    }
+    return StringUtils.EMPTY;
+  }
+
+  /**
+   * Whether a request selector is a content fingerprint.
+   *
+   * @param selector Request selector.
+   * @return Whether a request selector is a content fingerprint.
+   */
+  public static boolean isFingerprint(@Nonnull final String selector) {
+    return FINGERPRINT_PATTERN.matcher(selector).matches();
+  }
+
+  /**
+   * Path of UiLibrary output, with a content fingerprint selector.
+   *
+   * @param libraryPath UiLibrary path.
+   * @param fingerprint Content fingerprint.
+   * @param minified Whether the path is for minified output.
+   * @param extension Output extension, including the leading '.'.
+   * @return Path of UiLibrary output, with a content fingerprint selector.
+   */
+  @Nonnull
+  public static String getFingerprintedPath(@Nonnull final String libraryPath,
+          @Nonnull final String fingerprint, final boolean minified,
+          @Nonnull final String extension) {
+    StringBuilder fingerprintedPath = new StringBuilder(libraryPath);
+    fingerprintedPath.append('.').append(fingerprint);
+    if (minified) {
+      fingerprintedPath.append(".min");
+    }
+    return fingerprintedPath.append(extension).toString();
+  }
+
+  /**
+   * Preferred compressed encoding, out of the encodings accepted by an Accept-Encoding request
+   * header.  Falls back to {@link UiLibraryContentEncoding#IDENTITY} when no compressed encoding is
+   * accepted.
+   *
+   * @param acceptEncodingHeader Accept-Encoding request header value.
+   * @return Preferred compressed encoding, or identity.
+   */
+  @Nonnull
+  public static UiLibraryContentEncoding getAcceptedContentEncoding(
+          @Nullable final String acceptEncodingHeader) {
+    UiLibraryContentEncoding acceptedEncoding = UiLibraryContentEncoding.IDENTITY;
+    if (StringUtils.isEmpty(acceptEncodingHeader)) {
+      return acceptedEncoding;
+    }
+    double bestQuality = 0;
+    for (String acceptedCoding : acceptEncodingHeader.split(",")) {
+      String[] codingParts = acceptedCoding.split(";");
+      String coding = codingParts[0].trim().toLowerCase(Locale.ENGLISH);
+      double quality = getQuality(codingParts);
+      for (UiLibraryContentEncoding encoding : UiLibraryContentEncoding.getCompressedEncodings()) {
+        if (encoding.getName().equals(coding) && quality > bestQuality) {
+          acceptedEncoding = encoding;
+          bestQuality = quality;
+        }
+      }
+    }
+    return acceptedEncoding;
+  }
+
+  private static double getQuality(@Nonnull final String[] codingParts) {
+    for (int i = 1; i < codingParts.length; i++) {
+      String parameter = codingParts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  @Nonnull
+  static String getContentHash(@Nonnull final byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(content);
+      char[] hash = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hash[i * 2] = HEX_CHARACTERS[(digest[i] >> 4) & 0xF];
+        hash[i * 2 + 1] = HEX_CHARACTERS[digest[i] & 0xF];
+      }
+      return new String(hash);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+}
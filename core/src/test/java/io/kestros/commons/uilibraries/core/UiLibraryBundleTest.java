@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryBundleTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryBundle bundle;
+
+  private UiLibraryResource libraryOne;
+
+  private Resource libraryTwoResource;
+
+  @Before
+  public void setUp() {
+    context.addModelsForPackage("io.kestros");
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    libraryOne = context.create().resource("/etc/library-one", properties).adaptTo(
+        UiLibraryResource.class);
+    libraryTwoResource = context.create().resource("/etc/library-two", properties);
+  }
+
+  @Test
+  public void testGetLibraryPaths() {
+    context.request().setAttribute("uiLibraries",
+        Arrays.asList(libraryOne, libraryTwoResource, "/etc/library-three", libraryOne));
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals(Arrays.asList("/etc/library-one", "/etc/library-two", "/etc/library-three"),
+        bundle.getLibraryPaths());
+  }
+
+  @Test
+  public void testGetLibraryPathsWhenArray() {
+    context.request().setAttribute("uiLibraries", new Object[]{libraryTwoResource, libraryOne});
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals(Arrays.asList("/etc/library-two", "/etc/library-one"), bundle.getLibraryPaths());
+  }
+
+  @Test
+  public void testGetLibraryPathsWhenCommaSeparatedString() {
+    context.request().setAttribute("uiLibraries", "/etc/library-one,/etc/library-two");
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals(Arrays.asList("/etc/library-one", "/etc/library-two"), bundle.getLibraryPaths());
+  }
+
+  @Test
+  public void testGetCssPath() {
+    context.request().setAttribute("uiLibraries", Arrays.asList(libraryOne, libraryTwoResource));
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals("/bin/kestros/ui-libraries/css-bundle.css?library=%2Fetc%2Flibrary-one"
+                 + "&library=%2Fetc%2Flibrary-two", bundle.getCssPath());
+    assertEquals(bundle.getCssPath(), bundle.getFingerprintedCssPath());
+  }
+
+  @Test
+  public void testGetJsPath() {
+    context.request().setAttribute("uiLibraries", Collections.singletonList(libraryOne));
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals("/bin/kestros/ui-libraries/js-bundle.js?library=%2Fetc%2Flibrary-one",
+        bundle.getJsPath());
+    assertEquals("/bin/kestros/ui-libraries/js-bundle.min.js?library=%2Fetc%2Flibrary-one",
+        bundle.getFingerprintedMinifiedJsPath());
+  }
+
+  @Test
+  public void testGetPathsWhenNoLibraries() {
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals("", bundle.getCssPath());
+    assertEquals("", bundle.getJsPath());
+    assertEquals("", bundle.getFingerprintedCssPath());
+    assertEquals("", bundle.getFingerprintedJsPath());
+  }
+
+  @Test
+  public void testGetFingerprintedPathsWhenBundleIsCached() throws CacheRetrievalException {
+    String eTag = UiLibraryCacheUtils.getETag("bundle-output");
+    String bundleOutputPath = UiLibraryBundleUtils.getBundleOutputPath(
+        Collections.singletonList("/etc/library-one"));
+    UiLibraryOutputCacheService cacheService = mock(UiLibraryOutputCacheService.class);
+    when(cacheService.getCachedETag(eq(bundleOutputPath), eq(ScriptTypes.CSS), eq(true),
+        any())).thenReturn(eTag);
+    when(cacheService.getCachedETag(eq(bundleOutputPath), eq(ScriptTypes.JAVASCRIPT), eq(false),
+        any())).thenThrow(new CacheRetrievalException("not cached"));
+    context.registerService(UiLibraryCacheService.class, cacheService);
+    context.request().setAttribute("uiLibraries", Collections.singletonList(libraryOne));
+    bundle = context.request().adaptTo(UiLibraryBundle.class);
+
+    assertEquals("/bin/kestros/ui-libraries/css-bundle." + UiLibraryCacheUtils.getFingerprint(eTag)
+                 + ".min.css?library=%2Fetc%2Flibrary-one",
+        bundle.getFingerprintedMinifiedCssPath());
+    assertEquals("/bin/kestros/ui-libraries/js-bundle.js?library=%2Fetc%2Flibrary-one",
+        bundle.getFingerprintedJsPath());
+  }
+}
@@ -20,10 +20,24 @@
 package io.kestros.commons.uilibraries.core;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.models.ScriptFile;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
@@ -74,6 +88,58 @@ public class UiLibraryResourceTest {
     assertEquals("/ui-library.js", uiLibrary.getJsPath());
   }
 
+  @Test
+  public void testGetFingerprintedCssPath() throws CacheRetrievalException {
+    UiLibraryOutputCacheService cacheService = mock(UiLibraryOutputCacheService.class);
+    when(cacheService.getCachedETag(eq("/ui-library"), eq(ScriptTypes.CSS), eq(false),
+        any())).thenReturn(UiLibraryCacheUtils.getETag("css-output"));
+    context.registerService(UiLibraryCacheService.class, cacheService);
+    resource = context.create().resource("/ui-library", properties);
+    uiLibrary = resource.adaptTo(UiLibraryResource.class);
+
+    assertEquals("/ui-library."
+                 + UiLibraryCacheUtils.getFingerprint(UiLibraryCacheUtils.getETag("css-output"))
+                 + ".css", uiLibrary.getFingerprintedCssPath());
+  }
+
+  @Test
+  public void testGetFingerprintedMinifiedJsPath() throws CacheRetrievalException {
+    UiLibraryOutputCacheService cacheService = mock(UiLibraryOutputCacheService.class);
+    when(cacheService.getCachedETag(eq("/ui-library"), eq(ScriptTypes.JAVASCRIPT), eq(true),
+        any())).thenReturn(UiLibraryCacheUtils.getETag("js-output"));
+    context.registerService(UiLibraryCacheService.class, cacheService);
+    resource = context.create().resource("/ui-library", properties);
+    uiLibrary = resource.adaptTo(UiLibraryResource.class);
+
+    assertEquals("/ui-library."
+                 + UiLibraryCacheUtils.getFingerprint(UiLibraryCacheUtils.getETag("js-output"))
+                 + ".min.js", uiLibrary.getFingerprintedMinifiedJsPath());
+  }
+
+  @Test
+  public void testGetFingerprintedPathsWhenOutputIsNotCached() throws CacheRetrievalException {
+    UiLibraryOutputCacheService cacheService = mock(UiLibraryOutputCacheService.class);
+    when(cacheService.getCachedETag(any(), any(), anyBoolean(), any())).thenThrow(
+        new CacheRetrievalException("not cached"));
+    context.registerService(UiLibraryCacheService.class, cacheService);
+    resource = context.create().resource("/ui-library", properties);
+    uiLibrary = resource.adaptTo(UiLibraryResource.class);
+
+    assertEquals("/ui-library.css", uiLibrary.getFingerprintedCssPath());
+    assertEquals("/ui-library.min.css", uiLibrary.getFingerprintedMinifiedCssPath());
+    assertEquals("/ui-library.js", uiLibrary.getFingerprintedJsPath());
+    assertEquals("/ui-library.min.js", uiLibrary.getFingerprintedMinifiedJsPath());
+  }
+
+  @Test
+  public void testGetFingerprintedPathsWhenCacheServiceIsMissing() {
+    resource = context.create().resource("/ui-library", properties);
+    uiLibrary = resource.adaptTo(UiLibraryResource.class);
+
+    assertEquals("/ui-library.css", uiLibrary.getFingerprintedCssPath());
+    assertEquals("/ui-library.js", uiLibrary.getFingerprintedJsPath());
+  }
+
   @Test
   public void testGetSupportedScriptTypes() {
   }
@@ -161,4 +227,42 @@ public class UiLibraryResourceTest {
         Collections.singletonList(ScriptTypes.JAVASCRIPT), "js").get(1).getName());
 
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetScriptFilesWhenMultipleScriptTypes() {
+    resource = context.create().resource("/ui-library", properties);
+    cssFolderProperties.put("include", new String[]{"file-1.css", "missing.css", "file-2.js"});
+    context.create().resource("/ui-library/css", cssFolderProperties);
+    context.create().resource("/ui-library/css/file-1.css", fileProperties);
+    context.create().resource("/ui-library/css/file-1.css/jcr:content", cssFileProperties);
+    context.create().resource("/ui-library/css/file-2.js", fileProperties);
+    context.create().resource("/ui-library/css/file-2.js/jcr:content", jsFileProperties);
+
+    uiLibrary = resource.adaptTo(UiLibraryResource.class);
+
+    List<ScriptFile> scriptFiles = uiLibrary.getScriptFiles(
+        Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT), "css");
+    assertEquals(2, scriptFiles.size());
+    assertEquals("file-1.css", scriptFiles.get(0).getName());
+    assertEquals(ScriptTypes.CSS, scriptFiles.get(0).getFileType());
+    assertEquals("file-2.js", scriptFiles.get(1).getName());
+    assertEquals(ScriptTypes.JAVASCRIPT, scriptFiles.get(1).getFileType());
+  }
+
+  @Test
+  public void testIsReadableAs() {
+    assertTrue(UiLibraryResource.isReadableAs("file.css", "text/css", ScriptTypes.CSS));
+    assertTrue(UiLibraryResource.isReadableAs("file.css", "application/octet-stream",
+        ScriptTypes.CSS));
+    assertTrue(UiLibraryResource.isReadableAs("file.js", "application/javascript",
+        ScriptTypes.JAVASCRIPT));
+    assertFalse(UiLibraryResource.isReadableAs("file.css", "text/css", ScriptTypes.JAVASCRIPT));
+    assertFalse(UiLibraryResource.isReadableAs("file.js", "application/javascript",
+        ScriptTypes.CSS));
+  }
+
+  @Test
+  public void testIsReadableAsWhenMimeTypeIsUnknown() {
+    assertTrue(UiLibraryResource.isReadableAs("file.css", null, ScriptTypes.JAVASCRIPT));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RankedServicesTest {
+
+  private RankedServices<String> rankedServices;
+
+  @Before
+  public void setUp() {
+    rankedServices = new RankedServices<>();
+  }
+
+  private Map<String, Object> properties(Integer ranking, long serviceId) {
+    Map<String, Object> properties = new HashMap<>();
+    if (ranking != null) {
+      properties.put("service.ranking", ranking);
+    }
+    properties.put("service.id", serviceId);
+    return properties;
+  }
+
+  @Test
+  public void testGetServices() {
+    rankedServices.bind("one", properties(null, 1L));
+    rankedServices.bind("two", properties(null, 2L));
+
+    assertEquals(Arrays.asList("one", "two"), rankedServices.getServices());
+  }
+
+  @Test
+  public void testGetServicesWhenEmpty() {
+    assertTrue(rankedServices.getServices().isEmpty());
+  }
+
+  @Test
+  public void testGetServicesOrdersByRanking() {
+    rankedServices.bind("one", properties(null, 1L));
+    rankedServices.bind("two", properties(100, 2L));
+    rankedServices.bind("three", properties(-10, 3L));
+
+    assertEquals(Arrays.asList("two", "one", "three"), rankedServices.getServices());
+  }
+
+  @Test
+  public void testUnbind() {
+    rankedServices.bind("one", properties(null, 1L));
+    rankedServices.bind("two", properties(null, 2L));
+    rankedServices.unbind("one");
+
+    assertEquals(Arrays.asList("two"), rankedServices.getServices());
+  }
+
+  @Test
+  public void testGetServicesIsSnapshot() {
+    rankedServices.bind("one", properties(null, 1L));
+    List<String> services = rankedServices.getServices();
+    rankedServices.bind("two", properties(null, 2L));
+
+    assertEquals(1, services.size());
+    assertEquals(2, rankedServices.getServices().size());
+  }
+}
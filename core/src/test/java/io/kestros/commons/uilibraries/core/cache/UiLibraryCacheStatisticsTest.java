@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheStatistics.Counters;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCacheStatisticsTest {
+
+  private UiLibraryCacheStatistics statistics;
+
+  @Before
+  public void setUp() {
+    statistics = new UiLibraryCacheStatistics();
+  }
+
+  @Test
+  public void testGetKey() {
+    assertEquals("css", UiLibraryCacheStatistics.getKey(ScriptTypes.CSS, false));
+    assertEquals("css.min", UiLibraryCacheStatistics.getKey(ScriptTypes.CSS, true));
+    assertEquals("js.min", UiLibraryCacheStatistics.getKey(ScriptTypes.JAVASCRIPT, true));
+  }
+
+  @Test
+  public void testGetCountersReturnsSameCountersForSameOutput() {
+    assertSame(statistics.getCounters(ScriptTypes.CSS, true),
+        statistics.getCounters(ScriptTypes.CSS, true));
+    assertEquals(1, statistics.getAllCounters().size());
+  }
+
+  @Test
+  public void testHitRatio() {
+    Counters counters = statistics.getCounters(ScriptTypes.CSS, false);
+    assertEquals(0.0, counters.getHitRatio(), 0.0);
+
+    counters.recordHit();
+    counters.recordHit();
+    counters.recordHit();
+    counters.recordMiss();
+
+    assertEquals(3, counters.getHitCount());
+    assertEquals(1, counters.getMissCount());
+    assertEquals(0.75, counters.getHitRatio(), 0.0);
+  }
+
+  @Test
+  public void testFillTimes() {
+    Counters counters = statistics.getCounters(ScriptTypes.JAVASCRIPT, false);
+    assertEquals(0.0, counters.getAverageFillTime(), 0.0);
+
+    counters.recordFill(10);
+    counters.recordFill(30);
+
+    assertEquals(2, counters.getFillCount());
+    assertEquals(40, counters.getTotalFillTime());
+    assertEquals(20.0, counters.getAverageFillTime(), 0.0);
+    assertEquals(30, counters.getMaximumFillTime());
+  }
+
+  @Test
+  public void testGetTotals() {
+    statistics.getCounters(ScriptTypes.CSS, false).recordHit();
+    statistics.getCounters(ScriptTypes.CSS, false).recordBytesServed(100);
+    statistics.getCounters(ScriptTypes.JAVASCRIPT, true).recordMiss();
+    statistics.getCounters(ScriptTypes.JAVASCRIPT, true).recordFill(50);
+    statistics.getCounters(ScriptTypes.JAVASCRIPT, true).recordBytesStored(200);
+    statistics.getCounters(ScriptTypes.CSS, true).recordFill(20);
+
+    Counters totals = statistics.getTotals();
+    assertEquals(1, totals.getHitCount());
+    assertEquals(1, totals.getMissCount());
+    assertEquals(2, totals.getFillCount());
+    assertEquals(50, totals.getMaximumFillTime());
+    assertEquals(100, totals.getBytesServed());
+    assertEquals(200, totals.getBytesStored());
+  }
+
+  @Test
+  public void testReset() {
+    statistics.getCounters(ScriptTypes.CSS, false).recordHit();
+    statistics.reset();
+
+    assertEquals(0, statistics.getAllCounters().size());
+    assertEquals(0, statistics.getTotals().getHitCount());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue.PendingCacheWrite;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue.WriteBatch;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCacheWriteQueueTest {
+
+  private UiLibraryCacheWriteQueue writeQueue;
+
+  @Before
+  public void setUp() {
+    writeQueue = new UiLibraryCacheWriteQueue();
+  }
+
+  private PendingCacheWrite write(String path, String content) {
+    return new PendingCacheWrite(path, Collections.emptyList(), content, ScriptTypes.CSS, false,
+        "etag-" + content, 1000L);
+  }
+
+  @Test
+  public void testOfferCoalescesWritesToTheSameKey() {
+    writeQueue.offer(write("/one", "first"));
+    writeQueue.offer(write("/two", "other"));
+    writeQueue.offer(write("/one", "second"));
+
+    assertEquals(2, writeQueue.size());
+    List<PendingCacheWrite> writes = writeQueue.drain(10).getWrites();
+    assertEquals("/two", writes.get(0).getOutputPath());
+    assertEquals("second", writes.get(1).getContent());
+  }
+
+  @Test
+  public void testDrain() {
+    writeQueue.offer(write("/one", "one"));
+    writeQueue.offer(write("/two", "two"));
+    writeQueue.offer(write("/three", "three"));
+
+    assertEquals(2, writeQueue.drain(2).getWrites().size());
+    assertEquals(1, writeQueue.size());
+    assertEquals("/three", writeQueue.drain(2).getWrites().get(0).getOutputPath());
+    assertTrue(writeQueue.drain(2).isEmpty());
+  }
+
+  @Test
+  public void testDrainRecordsGeneration() {
+    writeQueue.offer(write("/one", "one"));
+    writeQueue.remove("/two|css|false");
+    long generation = writeQueue.getGeneration();
+
+    WriteBatch batch = writeQueue.drain(10);
+    writeQueue.clear();
+
+    assertEquals(generation, batch.getGeneration());
+    assertNotEquals(batch.getGeneration(), writeQueue.getGeneration());
+  }
+
+  @Test
+  public void testRequeueDoesNotReplaceNewerWrites() {
+    PendingCacheWrite failedWrite = write("/one", "first");
+    writeQueue.offer(write("/one", "second"));
+
+    writeQueue.requeue(Collections.singletonList(failedWrite));
+
+    assertEquals("second", writeQueue.get("/one|css|false").getContent());
+  }
+
+  @Test
+  public void testRemoveChangesGeneration() {
+    writeQueue.offer(write("/one", "one"));
+    long generation = writeQueue.getGeneration();
+
+    writeQueue.remove("/one|css|false");
+
+    assertNull(writeQueue.get("/one|css|false"));
+    assertNotEquals(generation, writeQueue.getGeneration());
+  }
+
+  @Test
+  public void testClear() {
+    writeQueue.offer(write("/one", "one"));
+    long generation = writeQueue.getGeneration();
+
+    writeQueue.clear();
+
+    assertEquals(0, writeQueue.size());
+    assertNotEquals(generation, writeQueue.getGeneration());
+  }
+
+  @Test
+  public void testGetCachedOutput() {
+    PendingCacheWrite write = write("/one", "one");
+
+    assertEquals("one", write.getCachedOutput().getOutput());
+    assertEquals("etag-one", write.getCachedOutput().getETag());
+    assertEquals(1000L, write.getCachedOutput().getCreated());
+  }
+
+  @Test
+  public void testRecordFailedAttempt() {
+    PendingCacheWrite write = write("/one", "one");
+
+    assertEquals(1, write.recordFailedAttempt());
+    assertEquals(2, write.recordFailedAttempt());
+  }
+}
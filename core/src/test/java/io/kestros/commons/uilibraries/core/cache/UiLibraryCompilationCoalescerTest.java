@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCompilationCoalescerTest {
+
+  private UiLibraryCompilationCoalescer coalescer;
+
+  @Before
+  public void setUp() {
+    coalescer = new UiLibraryCompilationCoalescer();
+  }
+
+  @Test
+  public void testCompile() throws Exception {
+    assertEquals("output", coalescer.compile("key", () -> "output"));
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  public void testCompileWhenCompilationFails() throws InterruptedException {
+    ExecutionException exception = null;
+    try {
+      coalescer.compile("key", () -> {
+        throw new IllegalStateException("compile failure");
+      });
+    } catch (ExecutionException e) {
+      exception = e;
+    }
+    assertNotNull(exception);
+    assertEquals("compile failure", exception.getCause().getMessage());
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  public void testCompileWhenConcurrentRequestsShareCompilation() throws Exception {
+    AtomicInteger compilationCount = new AtomicInteger();
+    CountDownLatch leaderStarted = new CountDownLatch(1);
+    CountDownLatch releaseLeader = new CountDownLatch(1);
+    List<String> outputs = new ArrayList<>();
+
+    Thread leader = new Thread(() -> {
+      try {
+        String output = coalescer.compile("key", () -> {
+          compilationCount.incrementAndGet();
+          leaderStarted.countDown();
+          releaseLeader.await();
+          return "output";
+        });
+        synchronized (outputs) {
+          outputs.add(output);
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    leader.start();
+    assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+    List<Thread> followers = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Thread follower = new Thread(() -> {
+        try {
+          String output = coalescer.compile("key", () -> {
+            compilationCount.incrementAndGet();
+            return "duplicate-output";
+          });
+          synchronized (outputs) {
+            outputs.add(output);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      followers.add(follower);
+      follower.start();
+    }
+    for (Thread follower : followers) {
+      while (follower.getState() != Thread.State.WAITING) {
+        Thread.sleep(5);
+      }
+    }
+    releaseLeader.countDown();
+
+    leader.join(5000);
+    for (Thread follower : followers) {
+      follower.join(5000);
+    }
+    assertEquals(1, compilationCount.get());
+    assertEquals(6, outputs.size());
+    for (String output : outputs) {
+      assertEquals("output", output);
+    }
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  public void testCompileWhenKeysDiffer() throws Exception {
+    assertEquals("css", coalescer.compile("css", () -> "css"));
+    assertEquals("js", coalescer.compile("js", () -> "js"));
+  }
+
+  @Test
+  public void testSubmit() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertEquals("output", coalescer.submit("key", () -> "output", executor).get(5,
+          TimeUnit.SECONDS));
+      assertEquals(0, coalescer.getInFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSubmitWhenCompilationIsInFlight() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch releaseCompilation = new CountDownLatch(1);
+    AtomicInteger compilationCount = new AtomicInteger();
+    try {
+      CompletableFuture<String> first = coalescer.submit("key", () -> {
+        compilationCount.incrementAndGet();
+        releaseCompilation.await();
+        return "output";
+      }, executor);
+      CompletableFuture<String> second = coalescer.submit("key", () -> {
+        compilationCount.incrementAndGet();
+        return "duplicate-output";
+      }, executor);
+      assertSame(first, second);
+      assertEquals(1, coalescer.getInFlightCount());
+
+      releaseCompilation.countDown();
+      assertEquals("output", second.get(5, TimeUnit.SECONDS));
+      assertEquals(1, compilationCount.get());
+      assertEquals(0, coalescer.getInFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSubmitWhenCompilationFails() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    ExecutionException exception = null;
+    try {
+      coalescer.submit("key", () -> {
+        throw new IllegalStateException("compile failure");
+      }, executor).get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      exception = e;
+    } finally {
+      executor.shutdownNow();
+    }
+    assertNotNull(exception);
+    assertEquals("compile failure", exception.getCause().getMessage());
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  public void testSubmitWhenExecutorRejectsCompilation() {
+    RejectedExecutionException exception = null;
+    try {
+      coalescer.submit("key", () -> "output", command -> {
+        throw new RejectedExecutionException("queue full");
+      });
+    } catch (RejectedExecutionException e) {
+      exception = e;
+    }
+    assertNotNull(exception);
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.uilibraries.api.models.ScriptFile;
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompileManifest.ManifestFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCompileManifestTest {
+
+  private ScriptTypeCompiler cssCompiler;
+  private ScriptTypeCompiler combinedCompiler;
+  private UiLibraryCompilerIndex compilerIndex;
+
+  @Before
+  public void setUp() {
+    cssCompiler = mock(ScriptTypeCompiler.class);
+    when(cssCompiler.getScriptTypes()).thenReturn(Collections.singletonList(ScriptTypes.CSS));
+    combinedCompiler = mock(ScriptTypeCompiler.class);
+    when(combinedCompiler.getScriptTypes()).thenReturn(
+        Arrays.asList(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS));
+    compilerIndex = new UiLibraryCompilerIndex(Arrays.asList(cssCompiler, combinedCompiler),
+        Collections.emptyList(), Collections.emptyList());
+  }
+
+  private ScriptFile scriptFile(String name, ScriptType scriptType) {
+    ScriptFile scriptFile = mock(ScriptFile.class);
+    when(scriptFile.getName()).thenReturn(name);
+    when(scriptFile.getFileType()).thenReturn(scriptType);
+    return scriptFile;
+  }
+
+  @Test
+  public void testGetFiles() {
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp",
+        compilerIndex, Arrays.asList(scriptFile("file-1.css", ScriptTypes.CSS),
+        scriptFile("file-2.css", ScriptTypes.CSS)));
+
+    assertEquals("css", manifest.getFolderName());
+    assertEquals(2, manifest.getFiles().size());
+    assertEquals("file-1.css", manifest.getFiles().get(0).getName());
+    assertEquals(ScriptTypes.CSS, manifest.getFiles().get(0).getFileType());
+    assertEquals("file-2.css", manifest.getFiles().get(1).getName());
+  }
+
+  @Test
+  public void testGetScriptTypesAndCompiler() {
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp",
+        compilerIndex, Arrays.asList(scriptFile("file-1.css", ScriptTypes.CSS),
+        scriptFile("file-2.css", ScriptTypes.CSS)));
+
+    assertEquals(Collections.singletonList(ScriptTypes.CSS), manifest.getScriptTypes());
+    assertSame(cssCompiler, manifest.getCompiler());
+  }
+
+  @Test
+  public void testGetCompilerWhenMultipleScriptTypes() {
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp",
+        compilerIndex, Arrays.asList(scriptFile("file-1.css", ScriptTypes.CSS),
+        scriptFile("file-2.js", ScriptTypes.JAVASCRIPT)));
+
+    assertEquals(Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT),
+        manifest.getScriptTypes());
+    assertSame(combinedCompiler, manifest.getCompiler());
+  }
+
+  @Test
+  public void testGetCompilerWhenNoMatchingCompiler() {
+    UiLibraryCompilerIndex emptyIndex = new UiLibraryCompilerIndex(Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList());
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp", emptyIndex,
+        Collections.singletonList(scriptFile("file-1.css", ScriptTypes.CSS)));
+
+    assertNull(manifest.getCompiler());
+  }
+
+  @Test
+  public void testGetFilesForCompilerScriptTypes() {
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp",
+        compilerIndex, Arrays.asList(scriptFile("file-1", ScriptTypes.CSS),
+        scriptFile("file-1", ScriptTypes.JAVASCRIPT), scriptFile("file-2", ScriptTypes.CSS)));
+
+    List<ManifestFile> files = manifest.getFiles(
+        Arrays.asList(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS));
+    assertEquals(3, files.size());
+    assertEquals(ScriptTypes.JAVASCRIPT, files.get(0).getFileType());
+    assertEquals(ScriptTypes.CSS, files.get(1).getFileType());
+    assertEquals("file-2", files.get(2).getName());
+
+    files = manifest.getFiles(Collections.singletonList(ScriptTypes.CSS));
+    assertEquals(2, files.size());
+    assertEquals("file-1", files.get(0).getName());
+    assertEquals("file-2", files.get(1).getName());
+  }
+
+  @Test
+  public void testIsCurrent() {
+    UiLibraryCompileManifest manifest = new UiLibraryCompileManifest("css", "stamp",
+        compilerIndex, Collections.emptyList());
+
+    assertTrue(manifest.isCurrent("stamp", compilerIndex));
+    assertFalse(manifest.isCurrent("changed", compilerIndex));
+    assertFalse(manifest.isCurrent("stamp", new UiLibraryCompilerIndex(Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList())));
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.kestros.commons.uilibraries.api.models.ScriptType;
+import io.kestros.commons.uilibraries.api.services.CssScriptTypeCompilerService;
+import io.kestros.commons.uilibraries.api.services.JavaScriptScriptTypeCompilerService;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCompilerIndexTest {
+
+  private TestCssCompiler cssCompiler;
+  private TestJavaScriptCompiler javaScriptCompiler;
+  private TestCssCompiler combinedCompiler;
+  private UiLibraryCompilerIndex index;
+
+  @Before
+  public void setUp() {
+    cssCompiler = new TestCssCompiler(ScriptTypes.CSS);
+    javaScriptCompiler = new TestJavaScriptCompiler(ScriptTypes.JAVASCRIPT);
+    combinedCompiler = new TestCssCompiler(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS);
+    index = new UiLibraryCompilerIndex(
+        Arrays.asList(combinedCompiler, cssCompiler, javaScriptCompiler),
+        Arrays.asList(combinedCompiler, cssCompiler),
+        Collections.singletonList(javaScriptCompiler));
+  }
+
+  @Test
+  public void testGetCompilers() {
+    assertEquals(Arrays.asList(combinedCompiler, cssCompiler, javaScriptCompiler),
+        index.getCompilers());
+    assertEquals(Arrays.asList(combinedCompiler, cssCompiler), index.getCssCompilers());
+    assertEquals(Collections.singletonList(javaScriptCompiler), index.getJavaScriptCompilers());
+  }
+
+  @Test
+  public void testGetCompilersIsUnmodifiable() {
+    Exception exception = null;
+    try {
+      index.getCompilers().clear();
+    } catch (UnsupportedOperationException e) {
+      exception = e;
+    }
+    assertNotNull(exception);
+    assertEquals(3, index.getCompilers().size());
+  }
+
+  @Test
+  public void testGetScriptTypes() {
+    assertEquals(Arrays.asList(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS),
+        index.getCssScriptTypes());
+    assertEquals(Collections.singletonList(ScriptTypes.JAVASCRIPT),
+        index.getJavaScriptScriptTypes());
+    assertEquals(Arrays.asList(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS, ScriptTypes.JAVASCRIPT),
+        index.getAllScriptTypes());
+  }
+
+  @Test
+  public void testGetCompilerPrefersSingleScriptTypeCompilers() {
+    assertSame(cssCompiler, index.getCompiler(Collections.singletonList(ScriptTypes.CSS)));
+    assertSame(javaScriptCompiler,
+        index.getCompiler(Collections.singletonList(ScriptTypes.JAVASCRIPT)));
+    assertSame(cssCompiler, index.getCompiler(Collections.emptyList()));
+  }
+
+  @Test
+  public void testGetCompilerWhenMultipleScriptTypes() {
+    assertSame(combinedCompiler,
+        index.getCompiler(Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT)));
+    assertSame(combinedCompiler,
+        index.getCompiler(Arrays.asList(ScriptTypes.JAVASCRIPT, ScriptTypes.CSS)));
+  }
+
+  @Test
+  public void testGetCompilerWhenRepeatedScriptTypes() {
+    assertNull(index.getCompiler(
+        Arrays.asList(ScriptTypes.CSS, ScriptTypes.CSS, ScriptTypes.JAVASCRIPT)));
+  }
+
+  @Test
+  public void testGetCompilerWhenNoMatchingCompiler() {
+    UiLibraryCompilerIndex cssIndex = new UiLibraryCompilerIndex(
+        Collections.singletonList(cssCompiler), Collections.singletonList(cssCompiler),
+        Collections.emptyList());
+
+    assertNull(cssIndex.getCompiler(Collections.singletonList(ScriptTypes.JAVASCRIPT)));
+    assertNull(cssIndex.getCompiler(Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT)));
+  }
+
+  @Test
+  public void testGetCompilerWhenEmpty() {
+    UiLibraryCompilerIndex emptyIndex = new UiLibraryCompilerIndex(Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList());
+
+    assertNull(emptyIndex.getCompiler(Collections.singletonList(ScriptTypes.CSS)));
+    assertEquals(0, emptyIndex.getAllScriptTypes().size());
+  }
+
+  @Test
+  public void testFindCompiler() {
+    assertSame(cssCompiler, UiLibraryCompilerIndex.findCompiler(
+        Collections.singletonList(ScriptTypes.CSS), Arrays.asList(combinedCompiler, cssCompiler)));
+    assertSame(combinedCompiler, UiLibraryCompilerIndex.findCompiler(
+        Collections.singletonList(ScriptTypes.CSS), Collections.singletonList(combinedCompiler)));
+  }
+
+  private static class TestCssCompiler implements CssScriptTypeCompilerService {
+
+    private final List<ScriptType> scriptTypes;
+
+    TestCssCompiler(ScriptType... scriptTypes) {
+      this.scriptTypes = Arrays.asList(scriptTypes);
+    }
+
+    @Nonnull
+    @Override
+    public List<ScriptType> getScriptTypes() {
+      return scriptTypes;
+    }
+
+    @Nonnull
+    @Override
+    public String getOutput(@Nonnull String source) {
+      return source;
+    }
+  }
+
+  private static class TestJavaScriptCompiler implements JavaScriptScriptTypeCompilerService {
+
+    private final List<ScriptType> scriptTypes;
+
+    TestJavaScriptCompiler(ScriptType... scriptTypes) {
+      this.scriptTypes = Arrays.asList(scriptTypes);
+    }
+
+    @Nonnull
+    @Override
+    public List<ScriptType> getScriptTypes() {
+      return scriptTypes;
+    }
+
+    @Nonnull
+    @Override
+    public String getOutput(@Nonnull String source) {
+      return source;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryDependencyGraphTest {
+
+  private UiLibraryDependencyGraph graph;
+
+  @Before
+  public void setUp() {
+    graph = new UiLibraryDependencyGraph();
+    graph.put("/apps/library-1", Arrays.asList("/apps/library-1/css/file.css",
+        "/apps/library-1/css/styles.less", "/apps/shared/less/variables.less"));
+    graph.put("/apps/library-2", Arrays.asList("/apps/library-2/css/styles.less",
+        "/apps/shared/less/variables.less"));
+  }
+
+  @Test
+  public void testGetFilePaths() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/apps/library-2/css/styles.less",
+        "/apps/shared/less/variables.less")), graph.getFilePaths("/apps/library-2"));
+    assertTrue(graph.getFilePaths("/apps/missing").isEmpty());
+  }
+
+  @Test
+  public void testGetDependentLibraryPaths() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/apps/library-1", "/apps/library-2")),
+        graph.getDependentLibraryPaths("/apps/shared/less/variables.less"));
+    assertEquals(Collections.singleton("/apps/library-1"),
+        graph.getDependentLibraryPaths("/apps/library-1/css/file.css"));
+    assertTrue(graph.getDependentLibraryPaths("/apps/shared/less/other.less").isEmpty());
+  }
+
+  @Test
+  public void testGetDependentLibraryPathsWhenFileContentChanges() {
+    assertEquals(Collections.singleton("/apps/library-1"),
+        graph.getDependentLibraryPaths("/apps/library-1/css/file.css/jcr:content"));
+  }
+
+  @Test
+  public void testGetDependentLibraryPathsWhenFolderChanges() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/apps/library-1", "/apps/library-2")),
+        graph.getDependentLibraryPaths("/apps/shared"));
+    assertTrue(graph.getDependentLibraryPaths("/apps/share").isEmpty());
+  }
+
+  @Test
+  public void testPutReplacesFiles() {
+    graph.put("/apps/library-1", Collections.singletonList("/apps/library-1/css/file.css"));
+
+    assertEquals(Collections.singleton("/apps/library-2"),
+        graph.getDependentLibraryPaths("/apps/shared/less/variables.less"));
+  }
+
+  @Test
+  public void testRemove() {
+    graph.remove("/apps/library-1");
+
+    assertFalse(graph.contains("/apps/library-1"));
+    assertTrue(graph.contains("/apps/library-2"));
+    assertTrue(graph.getDependentLibraryPaths("/apps/library-1/css/file.css").isEmpty());
+    assertEquals(Collections.singleton("/apps/library-2"), graph.getLibraryPaths());
+  }
+
+  @Test
+  public void testClear() {
+    graph.clear();
+
+    assertTrue(graph.getLibraryPaths().isEmpty());
+    assertTrue(graph.getDependentLibraryPaths("/apps/shared").isEmpty());
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache.Failure;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryFailureCacheTest {
+
+  private UiLibraryFailureCache failureCache;
+
+  @Before
+  public void setUp() {
+    failureCache = new UiLibraryFailureCache(2);
+  }
+
+  private Failure failure(String outputPath, long expires) {
+    return new Failure(outputPath, Collections.singletonList(outputPath), "<h1>error</h1>",
+        expires);
+  }
+
+  @Test
+  public void testGet() {
+    failureCache.put("/one|css|false", failure("/one", 2000L), 1000L);
+
+    assertEquals("<h1>error</h1>", failureCache.get("/one|css|false", 1500L).getErrorOutput());
+    assertNull(failureCache.get("/two|css|false", 1500L));
+  }
+
+  @Test
+  public void testGetRemovesExpiredFailure() {
+    failureCache.put("/one|css|false", failure("/one", 2000L), 1000L);
+
+    assertNull(failureCache.get("/one|css|false", 2000L));
+    assertEquals(0, failureCache.size());
+  }
+
+  @Test
+  public void testPutWhenFullRemovesExpiredFailures() {
+    failureCache.put("/one|css|false", failure("/one", 2000L), 1000L);
+    failureCache.put("/two|css|false", failure("/two", 5000L), 1000L);
+
+    assertTrue(failureCache.put("/three|css|false", failure("/three", 5000L), 3000L));
+    assertNull(failureCache.get("/one|css|false", 3000L));
+    assertNotNull(failureCache.get("/three|css|false", 3000L));
+  }
+
+  @Test
+  public void testPutWhenFull() {
+    failureCache.put("/one|css|false", failure("/one", 5000L), 1000L);
+    failureCache.put("/two|css|false", failure("/two", 5000L), 1000L);
+
+    assertFalse(failureCache.put("/three|css|false", failure("/three", 5000L), 1000L));
+    assertTrue(failureCache.put("/one|css|false", failure("/one", 6000L), 1000L));
+    assertEquals(2, failureCache.size());
+  }
+
+  @Test
+  public void testRemoveLibrary() {
+    failureCache.put("/bundles/one|js|true",
+        new Failure("/bundles/one", Arrays.asList("/one", "/two"), null, 5000L), 1000L);
+    failureCache.put("/two|js|true", failure("/two", 5000L), 1000L);
+
+    failureCache.removeLibrary("/one");
+
+    assertNull(failureCache.get("/bundles/one|js|true", 1000L));
+    assertNotNull(failureCache.get("/two|js|true", 1000L));
+  }
+
+  @Test
+  public void testRemoveAndClear() {
+    failureCache.put("/one|css|false", failure("/one", 5000L), 1000L);
+    failureCache.put("/two|css|false", failure("/two", 5000L), 1000L);
+
+    failureCache.remove("/one|css|false");
+    assertEquals(1, failureCache.size());
+
+    failureCache.clear();
+    assertEquals(0, failureCache.size());
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryFileContentCacheTest {
+
+  private UiLibraryFileContentCache fileContentCache;
+
+  @Before
+  public void setUp() {
+    fileContentCache = new UiLibraryFileContentCache(40);
+  }
+
+  @Test
+  public void testGetKey() {
+    assertEquals("/library/css/file.css|java.lang.String",
+        UiLibraryFileContentCache.getKey("/library/css/file.css", String.class));
+  }
+
+  @Test
+  public void testGet() {
+    assertTrue(fileContentCache.put("/one", "1", "body{}"));
+
+    assertEquals("body{}", fileContentCache.get("/one", "1"));
+    assertNull(fileContentCache.get("/two", "1"));
+    assertEquals(1, fileContentCache.getEntryCount());
+    assertEquals(14, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testGetWhenStampChanged() {
+    fileContentCache.put("/one", "1", "body{}");
+
+    assertNull(fileContentCache.get("/one", "2"));
+    assertEquals(0, fileContentCache.getEntryCount());
+    assertEquals(0, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testGetDependencyPaths() {
+    fileContentCache.put("/one", "1", "a{}");
+    fileContentCache.put("/two", "1|2", "a{}", Collections.singleton("/b"));
+
+    assertEquals(Collections.emptySet(), fileContentCache.getDependencyPaths("/one"));
+    assertEquals(Collections.singleton("/b"), fileContentCache.getDependencyPaths("/two"));
+    assertNull(fileContentCache.getDependencyPaths("/three"));
+    assertEquals(24, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testPutReplacesContent() {
+    fileContentCache.put("/one", "1", "body{}");
+    fileContentCache.put("/one", "2", "p{}");
+
+    assertEquals("p{}", fileContentCache.get("/one", "2"));
+    assertEquals(8, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testPutEvictsLeastRecentlyUsedContent() {
+    fileContentCache.put("/one", "1", "body{}");
+    fileContentCache.put("/two", "1", "body{}");
+    fileContentCache.get("/one", "1");
+    fileContentCache.put("/three", "1", "main{}");
+
+    assertEquals("body{}", fileContentCache.get("/one", "1"));
+    assertNull(fileContentCache.get("/two", "1"));
+    assertEquals("main{}", fileContentCache.get("/three", "1"));
+    assertEquals(28, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testPutWhenContentIsLargerThanCache() {
+    assertFalse(fileContentCache.put("/one", "1", "body{color:red;margin:0;}"));
+
+    assertNull(fileContentCache.get("/one", "1"));
+    assertEquals(0, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testRemoveAll() {
+    fileContentCache.put("/library/css/one.css|model", "1", "a{}");
+    fileContentCache.put("/library-2/css/one.css|model", "1", "a{}");
+    fileContentCache.put("/library|model", "1", "a{}");
+
+    fileContentCache.removeAll("/library");
+
+    assertNull(fileContentCache.get("/library/css/one.css|model", "1"));
+    assertNull(fileContentCache.get("/library|model", "1"));
+    assertEquals("a{}", fileContentCache.get("/library-2/css/one.css|model", "1"));
+    assertEquals(8, fileContentCache.getSize());
+  }
+
+  @Test
+  public void testClear() {
+    fileContentCache.put("/one", "1", "a{}");
+
+    fileContentCache.clear();
+
+    assertNull(fileContentCache.get("/one", "1"));
+    assertEquals(0, fileContentCache.getSize());
+  }
+}
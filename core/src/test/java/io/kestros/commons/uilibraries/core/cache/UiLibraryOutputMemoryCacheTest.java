@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache.CachedOutput;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryOutputMemoryCacheTest {
+
+  private UiLibraryOutputMemoryCache memoryCache;
+
+  @Before
+  public void setUp() {
+    // Each entry below uses 12 bytes (8 bytes of output, 2 characters of ETag).
+    memoryCache = new UiLibraryOutputMemoryCache(24);
+  }
+
+  @Test
+  public void testGetKey() {
+    assertEquals("/ui-library|css|true",
+        UiLibraryOutputMemoryCache.getKey("/ui-library", ScriptTypes.CSS, true));
+  }
+
+  @Test
+  public void testPutAndGet() {
+    assertTrue(memoryCache.put("a", "output-a", "ea"));
+    assertEquals("output-a", memoryCache.get("a").getOutput());
+    assertEquals("ea", memoryCache.get("a").getETag());
+    assertEquals(12, memoryCache.getSize());
+  }
+
+  @Test
+  public void testPutWhenCreatedIsSpecified() {
+    assertTrue(memoryCache.put("a", "output-a", "ea", 1000L));
+    assertEquals(1000L, memoryCache.get("a").getCreated());
+    memoryCache.markAllStale();
+    assertEquals(1000L, memoryCache.get("a").getCreated());
+  }
+
+  @Test
+  public void testPutWhenCreatedIsNotSpecified() {
+    long before = System.currentTimeMillis();
+    assertTrue(memoryCache.put("a", "output-a", "ea"));
+    assertTrue(memoryCache.get("a").getCreated() >= before);
+  }
+
+  @Test
+  public void testGetWhenNotCached() {
+    assertNull(memoryCache.get("a"));
+    assertEquals(1, memoryCache.getFrequency("a"));
+  }
+
+  @Test
+  public void testPutWhenReplacingEntry() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.put("a", "output-b", "eb");
+    assertEquals("output-b", memoryCache.get("a").getOutput());
+    assertEquals(12, memoryCache.getSize());
+  }
+
+  @Test
+  public void testPutWhenLargerThanMaximumSize() {
+    assertFalse(memoryCache.put("a", "output-larger-than-the-cache", "ea"));
+    assertNull(memoryCache.get("a"));
+    assertEquals(0, memoryCache.getSize());
+  }
+
+  @Test
+  public void testPutEvictsLeastFrequentlyUsedEntry() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.put("b", "output-b", "eb");
+    memoryCache.get("a");
+    memoryCache.get("a");
+    memoryCache.get("b");
+    memoryCache.get("c");
+    memoryCache.get("c");
+
+    assertTrue(memoryCache.put("c", "output-c", "ec"));
+    assertNotNull(memoryCache.get("a"));
+    assertNull(memoryCache.get("b"));
+    assertNotNull(memoryCache.get("c"));
+    assertEquals(24, memoryCache.getSize());
+  }
+
+  @Test
+  public void testPutRejectsEntryLessFrequentThanCachedEntries() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.put("b", "output-b", "eb");
+    memoryCache.get("a");
+    memoryCache.get("b");
+
+    assertFalse(memoryCache.put("c", "output-c", "ec"));
+    assertNotNull(memoryCache.get("a"));
+    assertNotNull(memoryCache.get("b"));
+    assertNull(memoryCache.get("c"));
+  }
+
+  @Test
+  public void testRemove() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.remove("a");
+    assertNull(memoryCache.get("a"));
+    assertEquals(0, memoryCache.getSize());
+  }
+
+  @Test
+  public void testClear() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.put("b", "output-b", "eb");
+    memoryCache.clear();
+    assertNull(memoryCache.get("a"));
+    assertNull(memoryCache.get("b"));
+    assertEquals(0, memoryCache.getSize());
+  }
+
+  @Test
+  public void testAgeHalvesFrequencies() {
+    memoryCache.put("a", "output-a", "ea");
+    for (int i = 0; i < 9999; i++) {
+      memoryCache.get("a");
+    }
+    memoryCache.get("b");
+    assertEquals(4999, memoryCache.getFrequency("a"));
+    assertEquals(0, memoryCache.getFrequency("b"));
+  }
+
+  @Test
+  public void testGetMaximumSize() {
+    assertEquals(24, memoryCache.getMaximumSize());
+  }
+
+  @Test
+  public void testMarkAllStale() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.markAllStale();
+    assertTrue(memoryCache.get("a").isStale());
+    assertEquals("output-a", memoryCache.get("a").getOutput());
+    assertEquals(12, memoryCache.getSize());
+  }
+
+  @Test
+  public void testMarkStale() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.put("b", "output-b", "eb");
+    memoryCache.markStale("a");
+    memoryCache.markStale("c");
+    assertTrue(memoryCache.get("a").isStale());
+    assertFalse(memoryCache.get("b").isStale());
+    assertNull(memoryCache.get("c"));
+    assertEquals(24, memoryCache.getSize());
+  }
+
+  @Test
+  public void testPutReplacesStaleEntry() {
+    memoryCache.put("a", "output-a", "ea");
+    memoryCache.markAllStale();
+    memoryCache.put("a", "output-b", "eb");
+    assertFalse(memoryCache.get("a").isStale());
+    assertEquals("output-b", memoryCache.get("a").getOutput());
+  }
+
+  @Test
+  public void testRequestRevalidation() {
+    memoryCache.put("a", "output-a", "ea");
+    assertFalse(memoryCache.get("a").requestRevalidation());
+    memoryCache.markAllStale();
+    assertTrue(memoryCache.get("a").requestRevalidation());
+    assertFalse(memoryCache.get("a").requestRevalidation());
+  }
+
+  @Test
+  public void testRemoveIfStale() {
+    memoryCache.put("a", "output-a", "ea");
+    assertFalse(memoryCache.removeIfStale("a"));
+    assertNotNull(memoryCache.get("a"));
+    memoryCache.markAllStale();
+    assertTrue(memoryCache.removeIfStale("a"));
+    assertNull(memoryCache.get("a"));
+    assertEquals(0, memoryCache.getSize());
+  }
+
+  @Test
+  public void testGetOutputStream() throws IOException {
+    memoryCache.put("a", "output-\u00e9", "ea");
+    CachedOutput cachedOutput = memoryCache.get("a");
+    byte[] expected = "output-\u00e9".getBytes(StandardCharsets.UTF_8);
+    byte[] actual = new byte[expected.length];
+    try (InputStream inputStream = cachedOutput.getOutputStream()) {
+      assertEquals(expected.length, inputStream.read(actual));
+    }
+    assertArrayEquals(expected, actual);
+    assertEquals(expected.length, cachedOutput.getContentLength());
+    assertEquals("output-\u00e9", cachedOutput.getOutput());
+  }
+
+  @Test
+  public void testPutWithEncodedOutputs() throws IOException {
+    byte[] encoded = new byte[]{1, 2, 3, 4};
+    assertTrue(memoryCache.put("a", new CachedOutput("output-a",
+        Collections.singletonMap(UiLibraryContentEncoding.GZIP, encoded), "ea", 1L)));
+    CachedOutput cachedOutput = memoryCache.get("a");
+    assertEquals(16, memoryCache.getSize());
+    assertTrue(cachedOutput.hasEncoding(UiLibraryContentEncoding.IDENTITY));
+    assertTrue(cachedOutput.hasEncoding(UiLibraryContentEncoding.GZIP));
+    assertEquals(4, cachedOutput.getContentLength(UiLibraryContentEncoding.GZIP));
+    assertEquals(8, cachedOutput.getContentLength(UiLibraryContentEncoding.IDENTITY));
+    byte[] actual = new byte[encoded.length];
+    try (InputStream inputStream = cachedOutput.getOutputStream(UiLibraryContentEncoding.GZIP)) {
+      assertEquals(encoded.length, inputStream.read(actual));
+    }
+    assertArrayEquals(encoded, actual);
+    assertTrue(memoryCache.get("a").asStale().hasEncoding(UiLibraryContentEncoding.GZIP));
+  }
+
+  @Test
+  public void testPutWhenEncodedOutputsExceedMaximumSize() {
+    assertFalse(memoryCache.put("a", new CachedOutput("output-a",
+        Collections.singletonMap(UiLibraryContentEncoding.GZIP, new byte[13]), "ea", 1L)));
+    assertNull(memoryCache.get("a"));
+    assertEquals(0, memoryCache.getSize());
+  }
+
+  @Test
+  public void testGetOutputStreamWhenEncodingIsNotHeld() {
+    memoryCache.put("a", "output-a", "ea");
+    CachedOutput cachedOutput = memoryCache.get("a");
+    assertFalse(cachedOutput.hasEncoding(UiLibraryContentEncoding.GZIP));
+    assertNull(cachedOutput.getOutputStream(UiLibraryContentEncoding.GZIP));
+    assertEquals(-1, cachedOutput.getContentLength(UiLibraryContentEncoding.GZIP));
+  }
+}
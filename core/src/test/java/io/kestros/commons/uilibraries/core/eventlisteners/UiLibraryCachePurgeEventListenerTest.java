@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.eventlisteners;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompileManifestService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryDependencyIndexService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryCachePurgeEventListenerTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryCachePurgeEventListener eventListener;
+
+  private UiLibraryOutputCacheService uiLibraryCacheService;
+
+  @Before
+  public void setUp() throws Exception {
+    eventListener = spy(new UiLibraryCachePurgeEventListener());
+    uiLibraryCacheService = mock(UiLibraryOutputCacheService.class);
+
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(
+        mock(ResourceResolver.class));
+    doReturn(resourceResolverFactory).when(eventListener).getResourceResolverFactory();
+    doReturn(Collections.singletonList(uiLibraryCacheService)).when(eventListener)
+        .getCacheServices();
+
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    context.create().resource("/apps/ui-library", properties);
+    context.create().resource("/apps/ui-library/css");
+    context.create().resource("/apps/component");
+  }
+
+  private ResourceChange change(String path) {
+    return new ResourceChange(ChangeType.CHANGED, path, false);
+  }
+
+  @Test
+  public void testGetLibraryPath() {
+    assertEquals("/apps/ui-library",
+        UiLibraryCachePurgeEventListener.getLibraryPath("/apps/ui-library",
+            context.resourceResolver()));
+    assertEquals("/apps/ui-library",
+        UiLibraryCachePurgeEventListener.getLibraryPath("/apps/ui-library/css",
+            context.resourceResolver()));
+  }
+
+  @Test
+  public void testGetLibraryPathWhenResourceWasRemoved() {
+    assertEquals("/apps/ui-library",
+        UiLibraryCachePurgeEventListener.getLibraryPath("/apps/ui-library/css/removed.css",
+            context.resourceResolver()));
+  }
+
+  @Test
+  public void testGetLibraryPathWhenNotInLibrary() {
+    assertNull(UiLibraryCachePurgeEventListener.getLibraryPath("/apps/component/dialog",
+        context.resourceResolver()));
+  }
+
+  @Test
+  public void testRequiresFullPurge() {
+    assertTrue(UiLibraryCachePurgeEventListener.requiresFullPurge(
+        "/etc/vendor-libraries/jquery"));
+    assertTrue(UiLibraryCachePurgeEventListener.requiresFullPurge("/etc/ui-frameworks/theme"));
+    assertFalse(UiLibraryCachePurgeEventListener.requiresFullPurge(
+        "/apps/ui-library/css/file.css"));
+    assertFalse(UiLibraryCachePurgeEventListener.requiresFullPurge("/apps/component/dialog"));
+    assertFalse(UiLibraryCachePurgeEventListener.requiresFullPurge(
+        "/apps/ui-library/css/variables.less"));
+  }
+
+  @Test
+  public void testIsLessPath() {
+    assertTrue(UiLibraryCachePurgeEventListener.isLessPath("/apps/ui-library/css/variables.less"));
+    assertTrue(UiLibraryCachePurgeEventListener.isLessPath(
+        "/apps/ui-library/css/variables.less/jcr:content"));
+    assertFalse(UiLibraryCachePurgeEventListener.isLessPath("/apps/ui-library/css/file.css"));
+  }
+
+  @Test
+  public void testGetAffectedLibraryPaths() {
+    Set<String> libraryPaths = eventListener.getAffectedLibraryPaths(
+        Arrays.asList(change("/apps/ui-library/css/file.css"), change("/apps/ui-library"),
+            change("/apps/component/dialog")), context.resourceResolver());
+    assertEquals(Collections.singleton("/apps/ui-library"), libraryPaths);
+  }
+
+  @Test
+  public void testGetAffectedLibraryPathsWhenLessFileChanges() {
+    assertNull(eventListener.getAffectedLibraryPaths(
+        Arrays.asList(change("/apps/ui-library/css/file.css"),
+            change("/apps/ui-library/css/variables.less")), context.resourceResolver()));
+  }
+
+  @Test
+  public void testGetAffectedLibraryPathsWhenIndexedLessFileChanges() {
+    UiLibraryDependencyIndexService dependencyIndexService = mock(
+        UiLibraryDependencyIndexService.class);
+    when(dependencyIndexService.isAvailable()).thenReturn(true);
+    when(dependencyIndexService.getDependentLibraryPaths("/apps/shared/less/variables.less"))
+        .thenReturn(Collections.singleton("/apps/ui-library"));
+    doReturn(dependencyIndexService).when(eventListener).getDependencyIndexService();
+
+    Set<String> libraryPaths = eventListener.getAffectedLibraryPaths(Collections.singletonList(
+        change("/apps/shared/less/variables.less")), context.resourceResolver());
+    assertEquals(Collections.singleton("/apps/ui-library"), libraryPaths);
+  }
+
+  @Test
+  public void testGetAffectedLibraryPathsWhenLessFileChangesWhileIndexIsBuilt() {
+    UiLibraryDependencyIndexService dependencyIndexService = mock(
+        UiLibraryDependencyIndexService.class);
+    when(dependencyIndexService.isAvailable()).thenReturn(false);
+    when(dependencyIndexService.getDependentLibraryPaths("/apps/shared/less/variables.less"))
+        .thenReturn(Collections.singleton("/apps/ui-library"));
+    doReturn(dependencyIndexService).when(eventListener).getDependencyIndexService();
+
+    assertNull(eventListener.getAffectedLibraryPaths(Collections.singletonList(
+        change("/apps/shared/less/variables.less")), context.resourceResolver()));
+  }
+
+  @Test
+  public void testOnChangeUpdatesDependencyIndex() {
+    UiLibraryDependencyIndexService dependencyIndexService = mock(
+        UiLibraryDependencyIndexService.class);
+    doReturn(dependencyIndexService).when(eventListener).getDependencyIndexService();
+    doReturn(new LinkedHashSet<>(Collections.singletonList("/apps/ui-library"))).when(
+        eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeLibraryOutput("/apps/ui-library")).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/apps/ui-library/css/file.css")));
+    verify(dependencyIndexService).indexLibraries(Collections.singleton("/apps/ui-library"));
+  }
+
+  @Test
+  public void testGetAffectedLibraryPathsWhenProviderChanges() {
+    assertNull(eventListener.getAffectedLibraryPaths(Collections.singletonList(
+        new ResourceChange(ChangeType.PROVIDER_ADDED, "/apps", false)),
+        context.resourceResolver()));
+  }
+
+  @Test
+  public void testOnChange() {
+    doReturn(new LinkedHashSet<>(Collections.singletonList("/apps/ui-library"))).when(
+        eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeLibraryOutput("/apps/ui-library")).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/apps/ui-library/css/file.css")));
+    verify(uiLibraryCacheService).purgeLibraryOutput("/apps/ui-library");
+  }
+
+  @Test
+  public void testOnChangeWhenNoLibraryIsAffected() {
+    doReturn(new LinkedHashSet<>()).when(eventListener).getAffectedLibraryPaths(any(), any());
+
+    eventListener.onChange(Collections.singletonList(change("/apps/component/dialog")));
+    verify(uiLibraryCacheService, never()).purgeLibraryOutput(anyString());
+  }
+
+  @Test
+  public void testOnChangeWhenAffectedLibrariesCannotBeDetermined() {
+    doReturn(null).when(eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeAllOutput()).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/etc/ui-frameworks/file.less")));
+    verify(uiLibraryCacheService).purgeAllOutput();
+    verify(uiLibraryCacheService, never()).purgeLibraryOutput(anyString());
+  }
+
+  @Test
+  public void testOnChangeWhenLibraryOutputCannotBePurged() {
+    doReturn(new LinkedHashSet<>(Collections.singletonList("/apps/ui-library"))).when(
+        eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeLibraryOutput("/apps/ui-library")).thenReturn(false);
+    when(uiLibraryCacheService.purgeAllOutput()).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/apps/ui-library/css/file.css")));
+    verify(uiLibraryCacheService).purgeAllOutput();
+  }
+
+  @Test
+  public void testOnChangePurgesCompileManifests() {
+    UiLibraryCompileManifestService compileManifestService = mock(
+        UiLibraryCompileManifestService.class);
+    doReturn(compileManifestService).when(eventListener).getCompileManifestService();
+    doReturn(new LinkedHashSet<>(Collections.singletonList("/apps/ui-library"))).when(
+        eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeLibraryOutput("/apps/ui-library")).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/apps/ui-library/css/new.css")));
+    verify(compileManifestService).purgeCompileManifests("/apps/ui-library");
+    verify(compileManifestService, never()).purgeAllCompileManifests();
+  }
+
+  @Test
+  public void testOnChangePurgesAllCompileManifestsWhenAffectedLibrariesCannotBeDetermined() {
+    UiLibraryCompileManifestService compileManifestService = mock(
+        UiLibraryCompileManifestService.class);
+    doReturn(compileManifestService).when(eventListener).getCompileManifestService();
+    doReturn(null).when(eventListener).getAffectedLibraryPaths(any(), any());
+    when(uiLibraryCacheService.purgeAllOutput()).thenReturn(true);
+
+    eventListener.onChange(Collections.singletonList(change("/etc/ui-frameworks/file.less")));
+    verify(compileManifestService).purgeAllCompileManifests();
+    verify(compileManifestService, never()).purgeCompileManifests(anyString());
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.uilibraries.api.exceptions.LibraryRetrievalException;
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobConsumer.JobResult;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryCacheRevalidationJobConsumerTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryCacheRevalidationJobConsumer jobConsumer;
+
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
+  private UiLibraryOutputCacheService uiLibraryCacheService;
+
+  private UiLibrary uiLibrary;
+
+  private Job job;
+
+  @Before
+  public void setUp() throws Exception {
+    jobConsumer = spy(new UiLibraryCacheRevalidationJobConsumer());
+    uiLibraryRetrievalService = mock(UiLibraryRetrievalService.class);
+    uiLibraryCompilationService = mock(UiLibraryCompilationService.class);
+    uiLibraryMinificationService = mock(UiLibraryMinificationService.class);
+    uiLibraryCacheService = mock(UiLibraryOutputCacheService.class);
+    uiLibrary = mock(UiLibrary.class);
+    job = mock(Job.class);
+
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(
+        context.resourceResolver());
+    doReturn(resourceResolverFactory).when(jobConsumer).getResourceResolverFactory();
+
+    when(job.getProperty("libraryPath", "")).thenReturn("/ui-library");
+    when(job.getProperty("scriptType", "")).thenReturn("css");
+    when(job.getProperty("minified", Boolean.FALSE)).thenReturn(true);
+
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/ui-library"), any())).thenReturn(uiLibrary);
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(uiLibrary), eq(ScriptTypes.CSS),
+        any())).thenReturn("output");
+    when(uiLibraryMinificationService.getMinifiedOutput("output", ScriptTypes.CSS)).thenReturn(
+        "minified-output");
+  }
+
+  private void registerServices() {
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCompilationService.class, uiLibraryCompilationService);
+    context.registerService(UiLibraryMinificationService.class, uiLibraryMinificationService);
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerInjectActivateService(jobConsumer);
+  }
+
+  @Test
+  public void testProcess() throws Exception {
+    registerServices();
+
+    assertEquals(JobResult.OK, jobConsumer.process(job));
+    verify(uiLibraryCacheService).cacheUiLibraryScript(eq("/ui-library"), eq("minified-output"),
+        eq(ScriptTypes.CSS), eq(true), any());
+    verify(uiLibraryCacheService, never()).removeStaleOutput(anyString(), any(), anyBoolean());
+  }
+
+  @Test
+  public void testProcessWhenNotMinified() throws Exception {
+    when(job.getProperty("minified", Boolean.FALSE)).thenReturn(false);
+    registerServices();
+
+    assertEquals(JobResult.OK, jobConsumer.process(job));
+    verify(uiLibraryCacheService).cacheUiLibraryScript(eq("/ui-library"), eq("output"),
+        eq(ScriptTypes.CSS), eq(false), any());
+  }
+
+  @Test
+  public void testProcessWhenCompilationFails() throws Exception {
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(uiLibrary), eq(ScriptTypes.CSS),
+        any())).thenReturn("<h1>Error</h1>");
+    registerServices();
+
+    assertEquals(JobResult.CANCEL, jobConsumer.process(job));
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(anyString(), anyString(), any(),
+        anyBoolean(), any());
+    verify(uiLibraryCacheService).removeStaleOutput("/ui-library", ScriptTypes.CSS, true);
+  }
+
+  @Test
+  public void testProcessWhenLibraryNotFound() throws Exception {
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/ui-library"), any())).thenThrow(
+        new LibraryRetrievalException("message"));
+    registerServices();
+
+    assertEquals(JobResult.CANCEL, jobConsumer.process(job));
+    verify(uiLibraryCacheService).removeStaleOutput("/ui-library", ScriptTypes.CSS, true);
+  }
+
+  @Test
+  public void testProcessWhenServicesAreMissing() {
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerInjectActivateService(jobConsumer);
+
+    assertEquals(JobResult.CANCEL, jobConsumer.process(job));
+    verify(uiLibraryCacheService).removeStaleOutput("/ui-library", ScriptTypes.CSS, true);
+  }
+
+  @Test
+  public void testProcessWhenScriptTypeIsUnknown() {
+    when(job.getProperty("scriptType", "")).thenReturn("unknown");
+    registerServices();
+
+    assertEquals(JobResult.CANCEL, jobConsumer.process(job));
+    verify(uiLibraryCacheService, never()).removeStaleOutput(anyString(), any(), anyBoolean());
+  }
+
+  @Test
+  public void testGetScriptType() {
+    assertEquals(ScriptTypes.CSS, UiLibraryCacheRevalidationJobConsumer.getScriptType("css"));
+    assertEquals(ScriptTypes.JAVASCRIPT,
+        UiLibraryCacheRevalidationJobConsumer.getScriptType(ScriptTypes.JAVASCRIPT.getName()));
+    assertNull(UiLibraryCacheRevalidationJobConsumer.getScriptType("unknown"));
+  }
+
+  @Test
+  public void testGetServiceUserName() {
+    assertEquals("ui-library-manager", jobConsumer.getServiceUserName());
+  }
+
+  @Test
+  public void testGetDisplayName() {
+    assertEquals("UI Library Cache Revalidation Job Consumer", jobConsumer.getDisplayName());
+  }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.jobs.UiLibraryCacheWarmUpJobExecutor.WarmUpResult;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext.ResultBuilder;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class UiLibraryCacheWarmUpJobExecutorTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryCacheWarmUpJobExecutor jobExecutor;
+
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
+  private UiLibraryOutputCacheService uiLibraryCacheService;
+
+  private Job job;
+
+  private JobExecutionContext jobExecutionContext;
+
+  private ResultBuilder resultBuilder;
+
+  private JobExecutionResult succeeded;
+
+  private JobExecutionResult cancelled;
+
+  @Before
+  public void setUp() throws Exception {
+    jobExecutor = spy(new UiLibraryCacheWarmUpJobExecutor());
+    uiLibraryRetrievalService = mock(UiLibraryRetrievalService.class);
+    uiLibraryCompilationService = mock(UiLibraryCompilationService.class);
+    uiLibraryMinificationService = mock(UiLibraryMinificationService.class);
+    uiLibraryCacheService = mock(UiLibraryOutputCacheService.class);
+    job = mock(Job.class);
+    jobExecutionContext = mock(JobExecutionContext.class);
+    resultBuilder = mock(ResultBuilder.class);
+    succeeded = mock(JobExecutionResult.class);
+    cancelled = mock(JobExecutionResult.class);
+
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenAnswer(
+        invocation -> mock(ResourceResolver.class));
+    doReturn(resourceResolverFactory).when(jobExecutor).getResourceResolverFactory();
+
+    when(jobExecutionContext.result()).thenReturn(resultBuilder);
+    when(resultBuilder.message(anyString())).thenReturn(resultBuilder);
+    when(resultBuilder.succeeded()).thenReturn(succeeded);
+    when(resultBuilder.cancelled()).thenReturn(cancelled);
+
+    when(job.getProperty("libraryPaths", String[].class)).thenReturn(
+        new String[]{"/ui-library-1", "/ui-library-2"});
+
+    UiLibrary uiLibrary = mock(UiLibrary.class);
+    when(uiLibraryRetrievalService.getUiLibrary(anyString(), any())).thenReturn(uiLibrary);
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(uiLibrary), any(), any())).thenReturn(
+        "output");
+    when(uiLibraryMinificationService.getMinifiedOutput(eq("output"), any())).thenReturn(
+        "minified-output");
+    when(uiLibraryCacheService.getCachedETag(anyString(), any(), anyBoolean(), any())).thenThrow(
+        new CacheRetrievalException("message"));
+  }
+
+  private void registerServices() {
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCompilationService.class, uiLibraryCompilationService);
+    context.registerService(UiLibraryMinificationService.class, uiLibraryMinificationService);
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerInjectActivateService(jobExecutor, "threadCount", 2L);
+  }
+
+  @Test
+  public void testGetDisplayName() {
+    assertEquals("UI Library Cache Warm-Up Job Executor", jobExecutor.getDisplayName());
+  }
+
+  @Test
+  public void testProcess() throws Exception {
+    registerServices();
+
+    assertEquals(succeeded, jobExecutor.process(job, jobExecutionContext));
+    verify(jobExecutionContext).initProgress(4, -1);
+    verify(jobExecutionContext, times(4)).incrementProgressCount(1);
+    for (String libraryPath : Arrays.asList("/ui-library-1", "/ui-library-2")) {
+      for (ScriptTypes scriptType : Arrays.asList(ScriptTypes.CSS, ScriptTypes.JAVASCRIPT)) {
+        verify(uiLibraryCacheService).cacheUiLibraryScript(eq(libraryPath), eq("output"),
+            eq(scriptType), eq(false), any());
+        verify(uiLibraryCacheService).cacheUiLibraryScript(eq(libraryPath),
+            eq("minified-output"), eq(scriptType), eq(true), any());
+      }
+    }
+
+    ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+    verify(resultBuilder).message(message.capture());
+    assertTrue(message.getValue().contains("4 outputs compiled, 0 already cached, 0 failed"));
+  }
+
+  @Test
+  public void testProcessWhenServicesAreMissing() {
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerInjectActivateService(jobExecutor);
+
+    assertEquals(cancelled, jobExecutor.process(job, jobExecutionContext));
+  }
+
+  @Test
+  public void testProcessWhenStopped() throws Exception {
+    when(jobExecutionContext.isStopped()).thenReturn(true);
+    registerServices();
+
+    assertEquals(cancelled, jobExecutor.process(job, jobExecutionContext));
+    verify(jobExecutionContext, never()).incrementProgressCount(1);
+  }
+
+  @Test
+  public void testWarmUpWhenAlreadyCached() throws Exception {
+    UiLibraryOutputCacheService cachedOutputService = mock(UiLibraryOutputCacheService.class);
+    when(cachedOutputService.getCachedETag(anyString(), any(), anyBoolean(), any())).thenReturn(
+        "etag");
+    uiLibraryCacheService = cachedOutputService;
+    registerServices();
+
+    assertEquals(WarmUpResult.SKIPPED, jobExecutor.warmUp("/ui-library-1", ScriptTypes.CSS));
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(any(), any(), any());
+  }
+
+  @Test
+  public void testWarmUpWhenCompilationFails() throws Exception {
+    when(uiLibraryCompilationService.getUiLibraryOutput(any(), eq(ScriptTypes.CSS),
+        any())).thenReturn("<h1>Error</h1>");
+    registerServices();
+
+    assertEquals(WarmUpResult.FAILED, jobExecutor.warmUp("/ui-library-1", ScriptTypes.CSS));
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(anyString(), anyString(), any(),
+        anyBoolean(), any());
+  }
+
+  @Test
+  public void testGetLibraryPathsFromJob() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/ui-library-1", "/ui-library-2")),
+        jobExecutor.getLibraryPaths(job));
+  }
+
+  @Test
+  public void testAddWarmUpJob() {
+    JobManager jobManager = mock(JobManager.class);
+    when(jobManager.addJob(eq(UiLibraryCacheWarmUpJobExecutor.TOPIC), anyMap())).thenReturn(job);
+
+    assertTrue(UiLibraryCacheWarmUpJobExecutor.addWarmUpJob(jobManager,
+        Collections.singletonList("/ui-library-1")));
+
+    ArgumentCaptor<Map<String, Object>> jobProperties = ArgumentCaptor.forClass(Map.class);
+    verify(jobManager).addJob(eq("kestros/ui-libraries/cache/warm-up"), jobProperties.capture());
+    assertEquals("/ui-library-1",
+        ((String[]) jobProperties.getValue().get("libraryPaths"))[0]);
+  }
+
+  @Test
+  public void testAddWarmUpJobWhenJobManagerIsMissing() {
+    assertFalse(UiLibraryCacheWarmUpJobExecutor.addWarmUpJob(null, Collections.emptyList()));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class UiLibraryContentEncodingTest {
+
+  @Test
+  public void testGetName() {
+    assertEquals("identity", UiLibraryContentEncoding.IDENTITY.getName());
+    assertEquals("gzip", UiLibraryContentEncoding.GZIP.getName());
+  }
+
+  @Test
+  public void testGetExtension() {
+    assertEquals("", UiLibraryContentEncoding.IDENTITY.getExtension());
+    assertEquals(".gz", UiLibraryContentEncoding.GZIP.getExtension());
+  }
+
+  @Test
+  public void testGetETag() {
+    assertEquals("\"abc\"", UiLibraryContentEncoding.IDENTITY.getETag("\"abc\""));
+    assertEquals("\"abc-gzip\"", UiLibraryContentEncoding.GZIP.getETag("\"abc\""));
+    assertEquals("", UiLibraryContentEncoding.GZIP.getETag(""));
+  }
+
+  @Test
+  public void testEncodeWhenIdentity() throws IOException {
+    byte[] content = "body{}".getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(content, UiLibraryContentEncoding.IDENTITY.encode(content));
+  }
+
+  @Test
+  public void testEncodeWhenGzip() throws IOException {
+    byte[] content = "body { color: #000; }".getBytes(StandardCharsets.UTF_8);
+    byte[] encoded = UiLibraryContentEncoding.GZIP.encode(content);
+
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+      byte[] buffer = new byte[1024];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1) {
+        decoded.write(buffer, 0, bytesRead);
+      }
+    }
+    assertArrayEquals(content, decoded.toByteArray());
+  }
+
+  @Test
+  public void testGetCompressedEncodings() {
+    assertEquals(Collections.singletonList(UiLibraryContentEncoding.GZIP),
+        UiLibraryContentEncoding.getCompressedEncodings());
+  }
+}
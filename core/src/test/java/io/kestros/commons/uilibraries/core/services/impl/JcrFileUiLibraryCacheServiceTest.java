@@ -22,6 +22,25 @@ package io.kestros.commons.uilibraries.core.services.impl;
 import io.kestros.commons.osgiserviceutils.exceptions.CacheBuilderException;
 import io.kestros.commons.osgiserviceutils.exceptions.CacheRetrievalException;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCacheWriteQueue.WriteBatch;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryOutputMemoryCache.CachedOutput;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCachedOutputStream;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.JobManager;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
@@ -29,7 +48,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class JcrFileUiLibraryCacheServiceTest {
 
@@ -45,6 +70,10 @@ public class JcrFileUiLibraryCacheServiceTest {
         jobManager = mock(JobManager.class);
     }
 
+    private String cachePath(String relativePath) {
+        return "/var/cache/ui-libraries/" + jcrFileUiLibraryCacheService.getCurrentGeneration() + relativePath;
+    }
+
     @Test
     public void getJobManager() {
         context.registerService(JobManager.class, jobManager);
@@ -111,6 +140,56 @@ public class JcrFileUiLibraryCacheServiceTest {
         assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, true, context.resourceResolver()));
     }
 
+    @Test
+    public void testGetCachedOutputWhenHeldInMemory() throws CacheBuilderException, CacheRetrievalException, PersistenceException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        context.resourceResolver().delete(context.resourceResolver().getResource(cachePath("/path.css")));
+
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertEquals(UiLibraryCacheUtils.getETag("test"), jcrFileUiLibraryCacheService.getCachedETag("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+    }
+
+    @Test
+    public void testGetCachedOutputWhenMemoryCacheIsClearedAfterPurge() throws CacheBuilderException, CacheRetrievalException, PersistenceException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        context.resourceResolver().delete(context.resourceResolver().getResource(cachePath("/path.css")));
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+
+        assertEquals(0, jcrFileUiLibraryCacheService.getMemoryCache().getSize());
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+    }
+
+    @Test
+    public void testGetCachedOutputPopulatesMemoryCache() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.getMemoryCache().clear();
+
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertEquals("test", jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").getOutput());
+    }
+
+    @Test
+    public void testActivateWhenMemoryCacheMaximumSizeIsConfigured() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "memoryCacheMaximumSize", 1024L);
+        assertEquals(1024L, jcrFileUiLibraryCacheService.getMemoryCache().getMaximumSize());
+    }
+
     @Test
     public void testGetCachedOutputWhenFileNotCached() throws CacheBuilderException, CacheRetrievalException {
         context.registerService(JobManager.class, jobManager);
@@ -125,11 +204,605 @@ public class JcrFileUiLibraryCacheServiceTest {
             exception = e;
         }
         assertNotNull(exception);
-        assertEquals("Unable to adapt '/var/cache/ui-libraries/path.min.css': Resource not found.", exception.getMessage());
+        assertEquals("Unable to adapt '" + cachePath("/path.min.css") + "': Resource not found.", exception.getMessage());
+    }
+
+
+    @Test
+    public void testGetCachedETag() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        assertEquals(UiLibraryCacheUtils.getETag("test"), jcrFileUiLibraryCacheService.getCachedETag("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+    }
+
+    @Test
+    public void testGetCachedETagWhenFileNotCached() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedETag("/path", ScriptTypes.CSS, true, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("No cached ETag found for '" + cachePath("/path.min.css/jcr:content") + "'.", exception.getMessage());
+    }
+
+    @Test
+    public void cacheUiLibraryScript() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, true, context.resourceResolver());
+        ValueMap properties = context.resourceResolver().getResource(cachePath("/path.min.css/jcr:content")).getValueMap();
+        assertArrayEquals(new String[]{"kes:UiLibraryCacheEntry"}, properties.get("jcr:mixinTypes", String[].class));
+        assertEquals(UiLibraryCacheUtils.getETag("test"), properties.get("etag", String.class));
+    }
+
+    @Test
+    public void testGetCachedOutputStreamWhenGzip() throws CacheBuilderException, CacheRetrievalException, IOException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        ValueMap properties = context.resourceResolver().getResource(cachePath("/path.css.gz/jcr:content")).getValueMap();
+        assertEquals(UiLibraryContentEncoding.GZIP.getETag(UiLibraryCacheUtils.getETag("test")), properties.get("etag", String.class));
+
+        try (InputStream inputStream = new GZIPInputStream(jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver()))) {
+            assertEquals("test", new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).readLine());
+        }
+    }
+
+    @Test
+    public void testGetCachedOutputStreamWhenGzipIsServedFromMemory() throws CacheBuilderException, CacheRetrievalException, IOException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        assertTrue(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").hasEncoding(UiLibraryContentEncoding.GZIP));
+
+        context.resourceResolver().delete(context.resourceResolver().getResource(cachePath("/path.css.gz")));
+        try (InputStream inputStream = new GZIPInputStream(jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver()))) {
+            assertEquals("test", new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).readLine());
+        }
+    }
+
+    @Test
+    public void testGetCachedOutputLoadsGzipIntoMemory() throws CacheBuilderException, CacheRetrievalException, IOException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        long contentLength = jcrFileUiLibraryCacheService.getCachedContentLength("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver());
+        jcrFileUiLibraryCacheService.getMemoryCache().clear();
+
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        CachedOutput cachedOutput = jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false");
+        assertTrue(cachedOutput.hasEncoding(UiLibraryContentEncoding.GZIP));
+        assertEquals(contentLength, cachedOutput.getContentLength(UiLibraryContentEncoding.GZIP));
+        try (InputStream inputStream = new GZIPInputStream(cachedOutput.getOutputStream(UiLibraryContentEncoding.GZIP))) {
+            assertEquals("test", new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).readLine());
+        }
+    }
+
+    @Test
+    public void testGetCachedOutputStreamWhenNotCached() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("No cached gzip output found for '" + cachePath("/path.css.gz/jcr:content") + "'.", exception.getMessage());
+    }
+
+    @Test
+    public void testAfterCachePurgeCompleteClearsMemoryCache() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+        assertEquals(0, jcrFileUiLibraryCacheService.getMemoryCache().getSize());
+    }
+
+    @Test
+    public void testGetCachedOutputWhenStaleWhileRevalidate() throws CacheBuilderException, CacheRetrievalException {
+        when(jobManager.addJob(eq("kestros/ui-libraries/cache"), any())).thenReturn(mock(Job.class));
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "staleWhileRevalidate", true);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, true, context.resourceResolver());
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+
+        assertEquals(UiLibraryCacheUtils.getETag("test"), jcrFileUiLibraryCacheService.getCachedETag("/path", ScriptTypes.CSS, true, context.resourceResolver()));
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, true, context.resourceResolver()));
+
+        Map<String, Object> jobProperties = new HashMap<>();
+        jobProperties.put("libraryPath", "/path");
+        jobProperties.put("scriptType", "css");
+        jobProperties.put("minified", true);
+        verify(jobManager, times(1)).addJob("kestros/ui-libraries/cache", jobProperties);
+    }
+
+    @Test
+    public void testCacheUiLibraryScriptReplacesStaleOutput() throws CacheBuilderException, CacheRetrievalException, PersistenceException {
+        when(jobManager.addJob(eq("kestros/ui-libraries/cache"), any())).thenReturn(mock(Job.class));
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "staleWhileRevalidate", true);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        context.resourceResolver().delete(context.resourceResolver().getResource(cachePath("/path.css")));
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","updated", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertEquals("updated", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertFalse(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").isStale());
+        verify(jobManager, never()).addJob(any(), any());
+    }
+
+    @Test
+    public void testGetCachedOutputWhenRevalidationJobCannotBeAdded() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "staleWhileRevalidate", true);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false"));
+    }
+
+    @Test
+    public void testRemoveStaleOutput() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "staleWhileRevalidate", true);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.removeStaleOutput("/path", ScriptTypes.CSS, false);
+        assertNotNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false"));
+
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+        jcrFileUiLibraryCacheService.removeStaleOutput("/path", ScriptTypes.CSS, false);
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false"));
+    }
+
+    @Test
+    public void testGetCachedOutputStreamWhenIdentity() throws CacheBuilderException, CacheRetrievalException, IOException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        try (InputStream inputStream = jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver())) {
+            assertEquals("test", new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).readLine());
+        }
+    }
+
+    @Test
+    public void testGetCachedOutputStreamContentLength() throws CacheBuilderException, CacheRetrievalException, IOException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","t\u00e9st", ScriptTypes.CSS, false, context.resourceResolver());
+
+        try (UiLibraryCachedOutputStream inputStream = jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver())) {
+            assertEquals(5L, inputStream.getContentLength());
+        }
+        jcrFileUiLibraryCacheService.getMemoryCache().clear();
+        try (UiLibraryCachedOutputStream inputStream = jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver())) {
+            assertEquals(5L, inputStream.getContentLength());
+        }
+
+        ValueMap properties = context.resourceResolver().getResource(cachePath("/path.css.gz/jcr:content")).getValueMap();
+        try (UiLibraryCachedOutputStream inputStream = jcrFileUiLibraryCacheService.getCachedOutputStream("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver())) {
+            assertEquals(properties.get("contentLength", Long.class).longValue(), inputStream.getContentLength());
+        }
+    }
+
+    @Test
+    public void testGetCachedContentLength() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","t\u00e9st", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertEquals(5L, jcrFileUiLibraryCacheService.getCachedContentLength("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver()));
+        jcrFileUiLibraryCacheService.getMemoryCache().clear();
+        assertEquals(5L, jcrFileUiLibraryCacheService.getCachedContentLength("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver()));
+
+        ValueMap properties = context.resourceResolver().getResource(cachePath("/path.css.gz/jcr:content")).getValueMap();
+        assertEquals(properties.get("contentLength", Long.class).longValue(), jcrFileUiLibraryCacheService.getCachedContentLength("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver()));
+    }
+
+    @Test
+    public void testGetCachedContentLengthWhenNotCached() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedContentLength("/path", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("No cached gzip content length found for '" + cachePath("/path.css.gz/jcr:content") + "'.", exception.getMessage());
+    }
+
+    @Test
+    public void testGetCachedLastModified() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        long before = System.currentTimeMillis();
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        long after = System.currentTimeMillis();
+
+        long lastModified = jcrFileUiLibraryCacheService.getCachedLastModified("/path", ScriptTypes.CSS, false, context.resourceResolver());
+        assertTrue(lastModified >= before && lastModified <= after);
+        jcrFileUiLibraryCacheService.getMemoryCache().clear();
+        assertEquals(lastModified, jcrFileUiLibraryCacheService.getCachedLastModified("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver());
+        assertEquals(lastModified, jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").getCreated());
+    }
+
+    @Test
+    public void testGetCachedLastModifiedWhenNotCached() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedLastModified("/path", ScriptTypes.CSS, false, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("No cached creation time found for '" + cachePath("/path.css/jcr:content") + "'.", exception.getMessage());
+    }
+
+    @Test
+    public void testPurgeLibraryOutputWhenStaleWhileRevalidate() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "staleWhileRevalidate", true);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/other","other", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css")));
+        assertTrue(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").isStale());
+        assertEquals("test", jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false").getOutput());
+        assertFalse(jcrFileUiLibraryCacheService.getMemoryCache().get("/other|css|false").isStale());
+
+        jcrFileUiLibraryCacheService.removeStaleOutput("/path", ScriptTypes.CSS, false);
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false"));
     }
 
+    @Test
+    public void testPurgeLibraryOutput() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        context.create().resource(cachePath("/bundles"));
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, true, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.JAVASCRIPT, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/other","other", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryBundleScript("/bundles/one", Arrays.asList("/other", "/path"), "bundle", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryBundleScript("/bundles/two", Collections.singletonList("/other"), "bundle", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css")));
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css.gz")));
+        assertNull(context.resourceResolver().getResource(cachePath("/path.min.css")));
+        assertNull(context.resourceResolver().getResource(cachePath("/path") + ScriptTypes.JAVASCRIPT.getExtension()));
+        assertNull(context.resourceResolver().getResource(cachePath("/bundles/one.css")));
+        assertNull(context.resourceResolver().getResource(cachePath("/bundles/one.css.gz")));
+        assertNotNull(context.resourceResolver().getResource(cachePath("/bundles/two.css")));
+        assertNotNull(context.resourceResolver().getResource(cachePath("/other.css")));
+
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|false"));
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/path|css|true"));
+        assertNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/bundles/one|css|false"));
+        assertNotNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/bundles/two|css|false"));
+        assertNotNull(jcrFileUiLibraryCacheService.getMemoryCache().get("/other|css|false"));
+    }
+
+    @Test
+    public void testPurgeLibraryOutputWhenNotCached() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+    }
+
+    @Test
+    public void testCacheUiLibraryBundleScript() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        context.create().resource(cachePath("/bundles"));
+        jcrFileUiLibraryCacheService.cacheUiLibraryBundleScript("/bundles/one", Arrays.asList("/other", "/path"), "bundle", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertEquals("bundle", jcrFileUiLibraryCacheService.getCachedOutput("/bundles/one", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertArrayEquals(new String[]{"/other", "/path"}, context.resourceResolver().getResource(cachePath("/bundles/one.css/jcr:content")).getValueMap().get("libraries", String[].class));
+    }
 
     @Test
-    public void cacheUiLibraryScript() {
+    public void testCacheUiLibraryScriptWithWriteBehind() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "writeBehind", true, "writeBehindInterval", 600000L);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css")));
+        assertEquals("test", jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver()));
+        assertEquals(1, jcrFileUiLibraryCacheService.getWriteQueue().size());
+
+        jcrFileUiLibraryCacheService.flushPendingWrites();
+        context.resourceResolver().refresh();
+
+        assertEquals(0, jcrFileUiLibraryCacheService.getWriteQueue().size());
+        assertNotNull(context.resourceResolver().getResource(cachePath("/path.css")));
+        assertNotNull(context.resourceResolver().getResource(cachePath("/path.css.gz")));
+    }
+
+    @Test
+    public void testCacheUiLibraryScriptWithWriteBehindCoalescesWrites() throws CacheBuilderException, CacheRetrievalException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "writeBehind", true, "writeBehindInterval", 600000L);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","first", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","second", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertEquals(1, jcrFileUiLibraryCacheService.getWriteQueue().size());
+        assertEquals("second", jcrFileUiLibraryCacheService.getWriteQueue().get("/path|css|false").getContent());
+    }
+
+    @Test
+    public void testPurgeLibraryOutputRemovesPendingWrites() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "writeBehind", true, "writeBehindInterval", 600000L);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/other","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+
+        assertNull(jcrFileUiLibraryCacheService.getWriteQueue().get("/path|css|false"));
+        assertNotNull(jcrFileUiLibraryCacheService.getWriteQueue().get("/other|css|false"));
+    }
+
+    @Test
+    public void testFlushBatchWhenPurgedAfterDrain() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "writeBehind", true, "writeBehindInterval", 600000L);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        WriteBatch batch = jcrFileUiLibraryCacheService.getWriteQueue().drain(10);
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+
+        assertTrue(jcrFileUiLibraryCacheService.flushBatch(batch, context.resourceResolver()));
+        context.resourceResolver().refresh();
+
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css")));
+        assertNull(context.resourceResolver().getResource(cachePath("/path.css.gz")));
+        assertEquals(0, jcrFileUiLibraryCacheService.getWriteQueue().size());
+    }
+
+    @Test
+    public void testGetRetryDelay() {
+        assertEquals(1000, JcrFileUiLibraryCacheService.getRetryDelay(1, 1000, 60000));
+        assertEquals(2000, JcrFileUiLibraryCacheService.getRetryDelay(2, 1000, 60000));
+        assertEquals(8000, JcrFileUiLibraryCacheService.getRetryDelay(4, 1000, 60000));
+        assertEquals(60000, JcrFileUiLibraryCacheService.getRetryDelay(100, 1000, 60000));
+    }
+
+    @Test
+    public void testCacheFailure() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        jcrFileUiLibraryCacheService.cacheFailure("/path", Collections.singletonList("/path"), "<h1>error</h1>", ScriptTypes.CSS, false);
+
+        assertEquals("<h1>error</h1>", jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, false).getErrorOutput());
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, true));
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.JAVASCRIPT, false));
+    }
+
+    @Test
+    public void testCacheFailureWhenTimeToLiveIsZero() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "failureCacheTimeToLive", 0L);
+        jcrFileUiLibraryCacheService.cacheFailure("/path", Collections.singletonList("/path"), null, ScriptTypes.CSS, false);
+
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, false));
+    }
+
+    @Test
+    public void testAfterCachePurgeCompleteClearsFailures() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        jcrFileUiLibraryCacheService.cacheFailure("/path", Collections.singletonList("/path"), null, ScriptTypes.CSS, false);
+
+        jcrFileUiLibraryCacheService.afterCachePurgeComplete(context.resourceResolver());
+
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, false));
+    }
+
+    @Test
+    public void testPurgeLibraryOutputRemovesFailures() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheFailure("/path", Collections.singletonList("/path"), null, ScriptTypes.CSS, false);
+        jcrFileUiLibraryCacheService.cacheFailure("/bundles/one", Arrays.asList("/other", "/path"), null, ScriptTypes.CSS, false);
+        jcrFileUiLibraryCacheService.cacheFailure("/other", Collections.singletonList("/other"), null, ScriptTypes.CSS, false);
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeLibraryOutput("/path", context.resourceResolver()));
+
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, false));
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/bundles/one", ScriptTypes.CSS, false));
+        assertNotNull(jcrFileUiLibraryCacheService.getCachedFailure("/other", ScriptTypes.CSS, false));
+    }
+
+    @Test
+    public void testCacheUiLibraryScriptRemovesFailure() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheFailure("/path", Collections.singletonList("/path"), null, ScriptTypes.CSS, false);
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+
+        assertNull(jcrFileUiLibraryCacheService.getCachedFailure("/path", ScriptTypes.CSS, false));
+    }
+
+    @Test
+    public void testGetCurrentGeneration() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+
+        assertEquals("1-" + jcrFileUiLibraryCacheService.getVersionKey(), jcrFileUiLibraryCacheService.getCurrentGeneration());
+    }
+
+    @Test
+    public void testGetCurrentGenerationWhenPersisted() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        String generation = "5-" + jcrFileUiLibraryCacheService.getVersionKey();
+        context.create().resource("/var/cache/ui-libraries", "currentGeneration", generation);
+
+        assertEquals(generation, jcrFileUiLibraryCacheService.getCurrentGeneration());
+    }
+
+    @Test
+    public void testGetCurrentGenerationWhenVersionKeyHasChanged() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries", "currentGeneration", "5-0000000000000000");
+        context.create().resource("/var/cache/ui-libraries/5-0000000000000000");
+
+        assertEquals("5-0000000000000000", jcrFileUiLibraryCacheService.getCurrentGeneration());
+        assertNull(context.resourceResolver().getResource("/var/cache/ui-libraries/5-0000000000000000").getValueMap().get("retired", Calendar.class));
+    }
+
+    @Test
+    public void testMaintainGenerationsWhenVersionKeyHasChanged() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries", "currentGeneration", "5-0000000000000000");
+        context.create().resource("/var/cache/ui-libraries/5-0000000000000000");
+
+        jcrFileUiLibraryCacheService.maintainGenerations();
+        assertEquals("5-0000000000000000", jcrFileUiLibraryCacheService.getCurrentGeneration());
+
+        jcrFileUiLibraryCacheService.maintainGenerations();
+        context.resourceResolver().refresh();
+        String generation = jcrFileUiLibraryCacheService.getCurrentGeneration();
+
+        assertEquals("6-" + jcrFileUiLibraryCacheService.getVersionKey(), generation);
+        assertEquals(generation, context.resourceResolver().getResource("/var/cache/ui-libraries").getValueMap().get("currentGeneration", String.class));
+        assertNotNull(context.resourceResolver().getResource("/var/cache/ui-libraries/5-0000000000000000").getValueMap().get("retired", Calendar.class));
+    }
+
+    @Test
+    public void testMaintainGenerationsDeletesLegacyOutput() {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries/apps/ui-library.css");
+        String generation = jcrFileUiLibraryCacheService.getCurrentGeneration();
+        context.create().resource("/var/cache/ui-libraries/" + generation + "/apps/ui-library.css");
+
+        jcrFileUiLibraryCacheService.maintainGenerations();
+        context.resourceResolver().refresh();
+
+        assertNull(context.resourceResolver().getResource("/var/cache/ui-libraries/apps"));
+        assertNotNull(context.resourceResolver().getResource("/var/cache/ui-libraries/" + generation + "/apps/ui-library.css"));
+    }
+
+    @Test
+    public void testPurgeAllOutput() throws CacheBuilderException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        String previousCachePath = cachePath("/path.css");
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeAllOutput());
+        context.resourceResolver().refresh();
+
+        assertEquals("2-" + jcrFileUiLibraryCacheService.getVersionKey(), jcrFileUiLibraryCacheService.getCurrentGeneration());
+        assertNotNull(context.resourceResolver().getResource(previousCachePath));
+        assertEquals(0, jcrFileUiLibraryCacheService.getMemoryCache().getSize());
+        Exception exception = null;
+        try {
+            jcrFileUiLibraryCacheService.getCachedOutput("/path", ScriptTypes.CSS, false, context.resourceResolver());
+        } catch (CacheRetrievalException e) {
+            exception = e;
+        }
+        assertNotNull(exception);
+    }
+
+    @Test
+    public void testPurgeAllOutputCoalescesPurgesWithinMinimumInterval() throws InterruptedException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries");
+
+        assertTrue(jcrFileUiLibraryCacheService.purgeAllOutput());
+        assertTrue(jcrFileUiLibraryCacheService.purgeAllOutput());
+        assertTrue(jcrFileUiLibraryCacheService.purgeAllOutput());
+        assertEquals("2-" + jcrFileUiLibraryCacheService.getVersionKey(), jcrFileUiLibraryCacheService.getCurrentGeneration());
+
+        long deadline = System.currentTimeMillis() + jcrFileUiLibraryCacheService.getMinimumTimeBetweenCachePurges() + 5000;
+        while (!jcrFileUiLibraryCacheService.getCurrentGeneration().startsWith("3-") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("3-" + jcrFileUiLibraryCacheService.getVersionKey(), jcrFileUiLibraryCacheService.getCurrentGeneration());
+    }
+
+    @Test
+    public void testDeleteRetiredGenerations() throws CacheBuilderException, PersistenceException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService, "generationGracePeriod", 1000L);
+        context.create().resource("/var/cache/ui-libraries");
+        jcrFileUiLibraryCacheService.cacheUiLibraryScript("/path","test", ScriptTypes.CSS, false, context.resourceResolver());
+        String previousGenerationPath = cachePath("");
+        assertTrue(jcrFileUiLibraryCacheService.purgeAllOutput());
+        context.resourceResolver().refresh();
+
+        jcrFileUiLibraryCacheService.deleteRetiredGenerations(System.currentTimeMillis(), context.resourceResolver());
+        assertNotNull(context.resourceResolver().getResource(previousGenerationPath));
+
+        jcrFileUiLibraryCacheService.deleteRetiredGenerations(System.currentTimeMillis() + 1000L, context.resourceResolver());
+        assertNull(context.resourceResolver().getResource(previousGenerationPath));
+        assertNotNull(context.resourceResolver().getResource(cachePath("")));
+    }
+
+    @Test
+    public void testDeleteRetiredGenerationsMarksUnretiredGenerations() throws PersistenceException {
+        context.registerService(JobManager.class, jobManager);
+        context.registerInjectActivateService(jcrFileUiLibraryCacheService);
+        context.create().resource("/var/cache/ui-libraries/1-0000000000000000");
+        context.create().resource("/var/cache/ui-libraries/other");
+
+        jcrFileUiLibraryCacheService.deleteRetiredGenerations(System.currentTimeMillis(), context.resourceResolver());
+
+        assertNotNull(context.resourceResolver().getResource("/var/cache/ui-libraries/1-0000000000000000").getValueMap().get("retired", Calendar.class));
+        assertNull(context.resourceResolver().getResource("/var/cache/ui-libraries/other").getValueMap().get("retired", Calendar.class));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UiLibraryCacheMetricsServiceImplTest {
+
+  private UiLibraryCacheMetricsServiceImpl metricsService;
+
+  @Before
+  public void setUp() throws Exception {
+    metricsService = new UiLibraryCacheMetricsServiceImpl();
+  }
+
+  @Test
+  public void testRecordHit() {
+    metricsService.recordHit(ScriptTypes.CSS, false, 100);
+    metricsService.recordHit(ScriptTypes.JAVASCRIPT, true, 50);
+
+    assertEquals(2, metricsService.getHitCount());
+    assertEquals(0, metricsService.getMissCount());
+    assertEquals(150, metricsService.getBytesServed());
+    assertEquals(1.0, metricsService.getHitRatio(), 0.0);
+  }
+
+  @Test
+  public void testRecordMissAndFill() {
+    metricsService.recordMiss(ScriptTypes.CSS, false);
+    metricsService.recordFill(ScriptTypes.CSS, false, 40, 200);
+    metricsService.recordBytesStored(ScriptTypes.CSS, false, 200);
+
+    assertEquals(1, metricsService.getMissCount());
+    assertEquals(1, metricsService.getFillCount());
+    assertEquals(40.0, metricsService.getAverageFillTime(), 0.0);
+    assertEquals(40, metricsService.getMaximumFillTime());
+    assertEquals(200, metricsService.getBytesServed());
+    assertEquals(200, metricsService.getBytesStored());
+    assertEquals(0.0, metricsService.getHitRatio(), 0.0);
+  }
+
+  @Test
+  public void testGetStatistics() throws Exception {
+    metricsService.recordHit(ScriptTypes.CSS, true, 10);
+    metricsService.recordMiss(ScriptTypes.JAVASCRIPT, false);
+
+    TabularData statistics = metricsService.getStatistics();
+
+    assertEquals(2, statistics.size());
+    CompositeData css = statistics.get(new Object[]{"css.min"});
+    assertEquals(1L, css.get("hits"));
+    assertEquals(10L, css.get("bytesServed"));
+    CompositeData javaScript = statistics.get(new Object[]{"js"});
+    assertEquals(1L, javaScript.get("misses"));
+  }
+
+  @Test
+  public void testResetStatistics() {
+    metricsService.recordHit(ScriptTypes.CSS, false, 10);
+    metricsService.resetStatistics();
+
+    assertEquals(0, metricsService.getHitCount());
+    assertEquals(0, metricsService.getBytesServed());
+  }
+}
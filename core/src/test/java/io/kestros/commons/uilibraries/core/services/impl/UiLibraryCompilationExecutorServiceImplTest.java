@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryCompilationExecutorServiceImplTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryCompilationExecutorServiceImpl executorService;
+
+  private ResourceResolver serviceResourceResolver;
+
+  private final CountDownLatch releaseCompilations = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws LoginException {
+    executorService = spy(new UiLibraryCompilationExecutorServiceImpl());
+    serviceResourceResolver = mock(ResourceResolver.class);
+
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(
+        serviceResourceResolver);
+    doReturn(resourceResolverFactory).when(executorService).getResourceResolverFactory();
+  }
+
+  @After
+  public void tearDown() {
+    releaseCompilations.countDown();
+  }
+
+  @Test
+  public void testGetDisplayName() {
+    assertEquals("UI Library Compilation Executor Service", executorService.getDisplayName());
+  }
+
+  @Test
+  public void testCompile() throws Exception {
+    context.registerInjectActivateService(executorService);
+
+    assertEquals("output", executorService.compile("key", resourceResolver -> {
+      assertEquals(serviceResourceResolver, resourceResolver);
+      return "output";
+    }));
+  }
+
+  @Test
+  public void testCompileWhenCompilationFails() throws Exception {
+    context.registerInjectActivateService(executorService);
+
+    ExecutionException exception = null;
+    try {
+      executorService.compile("key", resourceResolver -> {
+        throw new IllegalStateException("compile failure");
+      });
+    } catch (ExecutionException e) {
+      exception = e;
+    }
+    assertNotNull(exception);
+    assertEquals("compile failure", exception.getCause().getMessage());
+  }
+
+  @Test
+  public void testCompileWhenCompilationTimesOut() throws Exception {
+    context.registerInjectActivateService(executorService, "timeout", 50L);
+
+    TimeoutException exception = null;
+    try {
+      executorService.compile("key", resourceResolver -> {
+        releaseCompilations.await();
+        return "output";
+      });
+    } catch (TimeoutException e) {
+      exception = e;
+    }
+    assertNotNull(exception);
+  }
+
+  @Test
+  public void testCompileWhenQueueIsFull() throws Exception {
+    context.registerInjectActivateService(executorService, "timeout", 50L, "threadCount", 1L,
+        "queueSize", 1L);
+
+    int timeoutCount = 0;
+    for (String key : new String[]{"running", "queued", "rejected"}) {
+      try {
+        executorService.compile(key, resourceResolver -> {
+          releaseCompilations.await();
+          return "output";
+        });
+      } catch (TimeoutException e) {
+        timeoutCount++;
+      }
+    }
+    assertEquals(3, timeoutCount);
+    assertEquals(1, executorService.getQueuedCount());
+  }
+
+  @Test
+  public void testCompileWhenDeactivated() throws Exception {
+    context.registerInjectActivateService(executorService);
+    executorService.deactivate(context.componentContext());
+
+    assertEquals("output", executorService.compile("key", resourceResolver -> "output"));
+  }
+
+  @Test
+  public void testGetTimeoutResponse() {
+    context.registerInjectActivateService(executorService);
+
+    assertEquals(503, executorService.getTimeoutResponseStatus());
+    assertEquals(5, executorService.getRetryAfterSeconds());
+  }
+
+  @Test
+  public void testGetTimeoutResponseWhenConfigured() {
+    context.registerInjectActivateService(executorService, "timeoutResponseStatus", 504L,
+        "retryAfterSeconds", 0L);
+
+    assertEquals(504, executorService.getTimeoutResponseStatus());
+    assertEquals(0, executorService.getRetryAfterSeconds());
+  }
+}
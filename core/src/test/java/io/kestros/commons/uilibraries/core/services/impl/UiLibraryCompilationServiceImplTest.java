@@ -20,9 +20,15 @@
 package io.kestros.commons.uilibraries.core.services.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -37,22 +43,39 @@ import io.kestros.commons.uilibraries.api.models.ScriptFile;
 import io.kestros.commons.uilibraries.api.models.ScriptType;
 import io.kestros.commons.uilibraries.api.models.UiLibrary;
 import io.kestros.commons.uilibraries.api.services.CssScriptTypeCompilerService;
+import io.kestros.commons.uilibraries.api.services.ScriptTypeCompiler;
 import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
 import io.kestros.commons.uilibraries.basecompilers.services.CssCompilerService;
 import io.kestros.commons.uilibraries.basecompilers.services.JavaScriptCompilerService;
+import io.kestros.commons.uilibraries.core.UiLibraryResource;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryCompileManifest;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompileManifestService;
 import io.kestros.commons.uilibraries.core.services.impl.sample.SampleCompilerService;
 import io.kestros.commons.uilibraries.core.services.impl.sample.SampleScriptType;
+import io.kestros.commons.uilibraries.lesscss.filetypes.LessCssFile;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import org.apache.felix.hc.api.FormattingResultLog;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.osgi.framework.ServiceRegistration;
 
 public class UiLibraryCompilationServiceImplTest {
 
@@ -121,6 +144,48 @@ public class UiLibraryCompilationServiceImplTest {
     assertEquals(2, compilationService.getCompilers().size());
   }
 
+  @Test
+  public void testGetCompilersWhenCompilerRegisteredAfterActivation() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(compilationService);
+
+    assertEquals(1, compilationService.getCompilers().size());
+    assertEquals(0, compilationService.getRegisteredJavaScriptScriptTypes().size());
+
+    context.registerInjectActivateService(javaScriptCompilerService);
+
+    assertEquals(2, compilationService.getCompilers().size());
+    assertEquals(1, compilationService.getJavaScriptCompilers().size());
+    assertEquals(Collections.singletonList(ScriptTypes.JAVASCRIPT),
+        compilationService.getRegisteredJavaScriptScriptTypes());
+  }
+
+  @Test
+  public void testGetCompilersWhenCompilerUnregistered() {
+    ServiceRegistration<ScriptTypeCompiler> registration = context.bundleContext().registerService(
+        ScriptTypeCompiler.class, sampleCompilerService, new Hashtable<>());
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(compilationService);
+
+    assertEquals(2, compilationService.getCompilers().size());
+
+    registration.unregister();
+
+    assertEquals(1, compilationService.getCompilers().size());
+    assertEquals(cssCompilerService, compilationService.getCompilers().get(0));
+  }
+
+  @Test
+  public void testGetCompilersOrderedByServiceRanking() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerService(ScriptTypeCompiler.class, sampleCompilerService,
+        "service.ranking", 100);
+    context.registerInjectActivateService(compilationService);
+
+    assertEquals(sampleCompilerService, compilationService.getCompilers().get(0));
+    assertEquals(cssCompilerService, compilationService.getCompilers().get(1));
+  }
+
   @Test
   public void testGetCompiler() throws NoMatchingCompilerException {
     context.registerInjectActivateService(cssCompilerService);
@@ -275,6 +340,32 @@ public class UiLibraryCompilationServiceImplTest {
     verify(javaScriptCompilerService, never()).getOutput(any());
   }
 
+  @Test
+  public void testGetUiLibrarySourceReadsEachFileOnce()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, IOException,
+      JcrFileReadException {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+
+    UiLibrary uiLibrary = mock(UiLibrary.class);
+
+    List<ScriptFile> scriptFileList = new ArrayList<>();
+    for (String fileContent : Arrays.asList("", "body{}", "", "p{}", "a{}")) {
+      ScriptFile scriptFile = mock(ScriptFile.class);
+      when(scriptFile.getFileContent()).thenReturn(fileContent);
+      when(scriptFile.getFileType()).thenReturn(ScriptTypes.CSS);
+      scriptFileList.add(scriptFile);
+    }
+    when(uiLibrary.getScriptFiles(any(), eq("css"))).thenReturn(scriptFileList);
+
+    assertEquals("body{}\np{}\na{}", compilationService.getUiLibrarySource(uiLibrary,
+        ScriptTypes.CSS, context.resourceResolver()));
+    for (ScriptFile scriptFile : scriptFileList) {
+      verify(scriptFile, times(1)).getFileContent();
+    }
+  }
+
   @Test
   public void testGetCompilerWhenNoLessFilesAreUsed() throws NoMatchingCompilerException {
     context.registerInjectActivateService(cssCompilerService);
@@ -313,4 +404,336 @@ public class UiLibraryCompilationServiceImplTest {
             Arrays.asList(ScriptTypes.CSS, SampleScriptType.SAMPLE_SCRIPT_TYPE),
             Arrays.asList(cssCompilerService, sampleCompilerService)));
   }
-}
\ No newline at end of file
+
+  private UiLibraryResource createCssLibrary(String... includes) {
+    Map<String, Object> libraryProperties = new HashMap<>();
+    libraryProperties.put("jcr:primaryType", "kes:UiLibrary");
+    Map<String, Object> folderProperties = new HashMap<>();
+    folderProperties.put("include", includes);
+    Map<String, Object> fileProperties = new HashMap<>();
+    fileProperties.put("jcr:primaryType", "nt:file");
+    Resource resource = context.create().resource("/ui-library", libraryProperties);
+    context.create().resource("/ui-library/css", folderProperties);
+    for (String include : includes) {
+      Map<String, Object> contentProperties = new HashMap<>();
+      contentProperties.put("jcr:primaryType", "nt:resource");
+      contentProperties.put("jcr:mimeType", "text/css");
+      contentProperties.put("jcr:data", new ByteArrayInputStream(include.getBytes()));
+      context.create().resource("/ui-library/css/" + include, fileProperties);
+      context.create().resource("/ui-library/css/" + include + "/jcr:content",
+          contentProperties);
+    }
+    return resource.adaptTo(UiLibraryResource.class);
+  }
+
+  @Test
+  public void testGetCompileManifest() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+
+    UiLibraryCompileManifest manifest
+        = ((UiLibraryCompileManifestService) compilationService).getCompileManifest(
+        createCssLibrary("file-1.css", "file-2.css"), "css");
+
+    assertEquals("css", manifest.getFolderName());
+    assertEquals(2, manifest.getFiles().size());
+    assertEquals("file-1.css", manifest.getFiles().get(0).getName());
+    assertEquals("file-2.css", manifest.getFiles().get(1).getName());
+    assertEquals(Collections.singletonList(ScriptTypes.CSS), manifest.getScriptTypes());
+    assertEquals(cssCompilerService, manifest.getCompiler());
+  }
+
+  @Test
+  public void testGetCompileManifestIsReused() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = spy(createCssLibrary("file-1.css", "file-2.css"));
+
+    UiLibraryCompileManifest manifest
+        = ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+        "css");
+
+    assertSame(manifest,
+        ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+            "css"));
+    assertEquals(Collections.singletonList(ScriptTypes.CSS),
+        compilationService.getLibraryScriptTypes(uiLibrary, "css"));
+    verify(uiLibrary, times(1)).getScriptFiles(any(), eq("css"));
+  }
+
+  @Test
+  public void testGetCompileManifestWhenIncludesChange() throws PersistenceException {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css");
+
+    UiLibraryCompileManifest manifest
+        = ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+        "css");
+    context.resourceResolver().getResource("/ui-library/css").adaptTo(
+        ModifiableValueMap.class).put("include", new String[]{"file-2.css"});
+    context.resourceResolver().commit();
+
+    UiLibraryCompileManifest updatedManifest
+        = ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+        "css");
+    assertNotSame(manifest, updatedManifest);
+    assertEquals(1, updatedManifest.getFiles().size());
+    assertEquals("file-2.css", updatedManifest.getFiles().get(0).getName());
+  }
+
+  @Test
+  public void testGetCompileManifestWhenCompilersChange() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css");
+
+    UiLibraryCompileManifest manifest
+        = ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+        "css");
+    context.registerInjectActivateService(javaScriptCompilerService);
+
+    assertNotSame(manifest,
+        ((UiLibraryCompileManifestService) compilationService).getCompileManifest(uiLibrary,
+            "css"));
+  }
+
+  @Test
+  public void testPurgeCompileManifests() {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css");
+    UiLibraryCompileManifestService compileManifestService
+        = (UiLibraryCompileManifestService) compilationService;
+
+    UiLibraryCompileManifest manifest = compileManifestService.getCompileManifest(uiLibrary,
+        "css");
+    compileManifestService.purgeCompileManifests("/ui-library-2");
+    assertSame(manifest, compileManifestService.getCompileManifest(uiLibrary, "css"));
+
+    compileManifestService.purgeCompileManifests("/ui-library");
+    assertNotSame(manifest, compileManifestService.getCompileManifest(uiLibrary, "css"));
+
+    manifest = compileManifestService.getCompileManifest(uiLibrary, "css");
+    compileManifestService.purgeAllCompileManifests();
+    assertNotSame(manifest, compileManifestService.getCompileManifest(uiLibrary, "css"));
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenLibraryResource()
+      throws InvalidResourceTypeException, NoMatchingCompilerException {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = spy(createCssLibrary("file-1.css"));
+
+    assertEquals("file-1.css", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+    verify(uiLibrary, times(1)).getScriptFiles(any(), eq("css"));
+  }
+
+  private ResourceResolverFactory mockServiceResourceResolverFactory(
+      UiLibraryCompilationServiceImpl compilationService) throws LoginException {
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    ResourceResolverFactory slingResourceResolverFactory = context.getService(
+        ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenAnswer(
+        invocation -> slingResourceResolverFactory.getServiceResourceResolver(null));
+    doReturn(resourceResolverFactory).when(compilationService).getResourceResolverFactory();
+    return resourceResolverFactory;
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenParallelFileLoading()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, LoginException,
+      PersistenceException {
+    UiLibraryCompilationServiceImpl compilationService = spy(
+        new UiLibraryCompilationServiceImpl());
+    ResourceResolverFactory resourceResolverFactory = mockServiceResourceResolverFactory(
+        compilationService);
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService, "parallelFileLoading", true,
+        "fileLoadingThreadCount", 2L, "parallelFileLoadingThreshold", 2L);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css", "file-3.css",
+        "file-4.css", "file-5.css");
+    context.resourceResolver().commit();
+    clearInvocations(resourceResolverFactory);
+
+    assertEquals("file-1.css\nfile-2.css\nfile-3.css\nfile-4.css\nfile-5.css",
+        compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+            context.resourceResolver()));
+    verify(resourceResolverFactory, times(1)).getServiceResourceResolver(any());
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenParallelFileLoadingAndWorkerCannotReadFiles()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, LoginException {
+    UiLibraryCompilationServiceImpl compilationService = spy(
+        new UiLibraryCompilationServiceImpl());
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(
+        mock(ResourceResolver.class));
+    doReturn(resourceResolverFactory).when(compilationService).getResourceResolverFactory();
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService, "parallelFileLoading", true,
+        "fileLoadingThreadCount", 2L, "parallelFileLoadingThreshold", 2L);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css", "file-3.css",
+        "file-4.css");
+    clearInvocations(resourceResolverFactory);
+
+    assertEquals("file-1.css\nfile-2.css\nfile-3.css\nfile-4.css",
+        compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+            context.resourceResolver()));
+    verify(resourceResolverFactory, times(1)).getServiceResourceResolver(any());
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenParallelFileLoadingAndBelowThreshold()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, LoginException {
+    UiLibraryCompilationServiceImpl compilationService = spy(
+        new UiLibraryCompilationServiceImpl());
+    ResourceResolverFactory resourceResolverFactory = mockServiceResourceResolverFactory(
+        compilationService);
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService, "parallelFileLoading", true,
+        "fileLoadingThreadCount", 2L, "parallelFileLoadingThreshold", 3L);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css");
+    clearInvocations(resourceResolverFactory);
+
+    assertEquals("file-1.css\nfile-2.css", compilationService.getUiLibraryOutput(uiLibrary,
+        ScriptTypes.CSS, context.resourceResolver()));
+    verify(resourceResolverFactory, never()).getServiceResourceResolver(any());
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenParallelFileLoadingAndServiceLoginFails()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, LoginException {
+    UiLibraryCompilationServiceImpl compilationService = spy(
+        new UiLibraryCompilationServiceImpl());
+    ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+    when(resourceResolverFactory.getServiceResourceResolver(any())).thenThrow(
+        new LoginException("Invalid service user."));
+    doReturn(resourceResolverFactory).when(compilationService).getResourceResolverFactory();
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService, "parallelFileLoading", true,
+        "fileLoadingThreadCount", 2L, "parallelFileLoadingThreshold", 2L);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css", "file-3.css");
+
+    assertEquals("file-1.css\nfile-2.css\nfile-3.css", compilationService.getUiLibraryOutput(
+        uiLibrary, ScriptTypes.CSS, context.resourceResolver()));
+  }
+
+  private void updateFile(String path, String content, long lastModified)
+      throws PersistenceException {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastModified);
+    ModifiableValueMap properties = context.resourceResolver().getResource(
+        path + "/jcr:content").adaptTo(ModifiableValueMap.class);
+    properties.put("jcr:data", new ByteArrayInputStream(content.getBytes()));
+    properties.put("jcr:lastModified", calendar);
+    context.resourceResolver().commit();
+  }
+
+  @Test
+  public void testGetUiLibraryOutputReusesUnmodifiedFileContent()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, PersistenceException {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css", "file-2.css");
+    updateFile("/ui-library/css/file-1.css", "a{}", 1000L);
+    updateFile("/ui-library/css/file-2.css", "p{}", 1000L);
+
+    assertEquals("a{}\np{}", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+
+    updateFile("/ui-library/css/file-1.css", "b{}", 1000L);
+    updateFile("/ui-library/css/file-2.css", "q{}", 2000L);
+    assertEquals("a{}\nq{}", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+
+    ((UiLibraryCompileManifestService) compilationService).purgeCompileManifests("/ui-library");
+    assertEquals("b{}\nq{}", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+  }
+
+  private void createLessFile(String path, String content, long lastModified) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(lastModified);
+    Map<String, Object> contentProperties = new HashMap<>();
+    contentProperties.put("jcr:primaryType", "nt:resource");
+    contentProperties.put("jcr:mimeType", "text/less");
+    contentProperties.put("jcr:data", new ByteArrayInputStream(content.getBytes()));
+    contentProperties.put("jcr:lastModified", calendar);
+    context.create().resource(path, "jcr:primaryType", "nt:file");
+    context.create().resource(path + "/jcr:content", contentProperties);
+  }
+
+  @Test
+  public void testGetFileContentWhenLessImportIsModified() throws PersistenceException {
+    context.registerInjectActivateService(compilationService);
+    createLessFile("/ui-library/css/variables.less", "@color: red;", 1000L);
+    createLessFile("/ui-library/css/styles.less",
+        "@import \"variables.less\";\n.a { color: @color; }", 1000L);
+    ScriptFile lessFile = context.resourceResolver().getResource("/ui-library/css/styles.less")
+        .adaptTo(LessCssFile.class);
+    UiLibraryCompilationServiceImpl compilationServiceImpl
+        = (UiLibraryCompilationServiceImpl) compilationService;
+
+    assertEquals("@color: red;\n.a { color: @color; }",
+        compilationServiceImpl.getFileContent(lessFile));
+
+    updateFile("/ui-library/css/styles.less", "@import \"variables.less\";\n.b { color: @color; }",
+        1000L);
+    assertEquals("@color: red;\n.a { color: @color; }",
+        compilationServiceImpl.getFileContent(lessFile));
+
+    updateFile("/ui-library/css/variables.less", "@color: blue;", 2000L);
+    assertEquals("@color: blue;\n.b { color: @color; }",
+        compilationServiceImpl.getFileContent(lessFile));
+  }
+
+  @Test
+  public void testIsLessFile() {
+    createLessFile("/ui-library/css/styles.less", ".a {}", 1000L);
+    ScriptFile lessFile = context.resourceResolver().getResource("/ui-library/css/styles.less")
+        .adaptTo(LessCssFile.class);
+
+    assertTrue(UiLibraryCompilationServiceImpl.isLessFile(lessFile));
+    assertFalse(UiLibraryCompilationServiceImpl.isLessFile(mock(ScriptFile.class)));
+  }
+
+  @Test
+  public void testIsFileContentCacheable() {
+    createCssLibrary("file-1.css");
+    ScriptFile cssFile = (ScriptFile) context.resourceResolver().getResource(
+        "/ui-library/css/file-1.css").adaptTo(ScriptTypes.CSS.getFileModelClass());
+
+    assertTrue(UiLibraryCompilationServiceImpl.isFileContentCacheable(cssFile));
+    assertFalse(UiLibraryCompilationServiceImpl.isFileContentCacheable(mock(ScriptFile.class)));
+  }
+
+  @Test
+  public void testGetUiLibraryOutputWhenFileContentCacheDisabled()
+      throws InvalidResourceTypeException, NoMatchingCompilerException, PersistenceException {
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(javaScriptCompilerService);
+    context.registerInjectActivateService(compilationService, "fileContentCacheMaximumSize", 0L);
+    UiLibraryResource uiLibrary = createCssLibrary("file-1.css");
+    updateFile("/ui-library/css/file-1.css", "a{}", 1000L);
+
+    assertEquals("a{}", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+
+    updateFile("/ui-library/css/file-1.css", "b{}", 1000L);
+    assertEquals("b{}", compilationService.getUiLibraryOutput(uiLibrary, ScriptTypes.CSS,
+        context.resourceResolver()));
+  }
+}
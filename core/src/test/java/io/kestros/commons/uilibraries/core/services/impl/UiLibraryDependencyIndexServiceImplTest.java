@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.services.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import io.kestros.commons.uilibraries.lesscss.services.LessImportParserService;
+import io.kestros.commons.uilibraries.lesscss.services.impl.LessImportParserServiceImpl;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryDependencyIndexServiceImplTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryDependencyIndexServiceImpl dependencyIndexService;
+
+  @Before
+  public void setUp() {
+    dependencyIndexService = spy(new UiLibraryDependencyIndexServiceImpl());
+    doReturn(new LessImportParserServiceImpl()).when(dependencyIndexService)
+        .getLessImportParserService();
+
+    Map<String, Object> libraryProperties = new HashMap<>();
+    libraryProperties.put("jcr:primaryType", "kes:UiLibrary");
+    context.create().resource("/apps/ui-library", libraryProperties);
+
+    Map<String, Object> folderProperties = new HashMap<>();
+    folderProperties.put("include", new String[]{"file.css", "styles.less"});
+    context.create().resource("/apps/ui-library/css", folderProperties);
+
+    createFile("/apps/ui-library/css/file.css", "body {}");
+    createFile("/apps/ui-library/css/styles.less",
+        "@import \"../../shared/less/variables.less\";\n"
+        + "// @import \"commented.less\";\n"
+        + ".class { color: @color; }");
+    createFile("/apps/shared/less/variables.less",
+        "@import \"mixins.less\";\n@import \"missing.less\";\n@color: red;");
+    createFile("/apps/shared/less/mixins.less", "@import \"variables.less\";");
+  }
+
+  private void createFile(String path, String content) {
+    context.load().binaryFile(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+        path);
+  }
+
+  @Test
+  public void testGetDisplayName() {
+    assertEquals("UI Library Dependency Index Service", dependencyIndexService.getDisplayName());
+  }
+
+  @Test
+  public void testGetLibraryFilePaths() {
+    Resource libraryResource = context.resourceResolver().getResource("/apps/ui-library");
+    assertNotNull(libraryResource);
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/apps/ui-library/css",
+            "/apps/ui-library/css/file.css", "/apps/ui-library/css/styles.less",
+            "/apps/shared/less/variables.less", "/apps/shared/less/mixins.less",
+            "/apps/shared/less/missing.less", "/apps/ui-library/js")),
+        dependencyIndexService.getLibraryFilePaths(libraryResource));
+  }
+
+  @Test
+  public void testGetLibraryFilePathsWhenLessImportParserServiceIsMissing() {
+    Resource libraryResource = context.resourceResolver().getResource("/apps/ui-library");
+    assertNotNull(libraryResource);
+    doReturn(null).when(dependencyIndexService).getLessImportParserService();
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("/apps/ui-library/css",
+            "/apps/ui-library/css/file.css", "/apps/ui-library/css/styles.less",
+            "/apps/ui-library/js")),
+        dependencyIndexService.getLibraryFilePaths(libraryResource));
+  }
+
+  @Test
+  public void testIndexLibraries() {
+    dependencyIndexService.indexLibraries(Collections.singletonList("/apps/ui-library"),
+        context.resourceResolver());
+
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getLibraryPaths());
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getDependentLibraryPaths("/apps/shared/less/mixins.less"));
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getDependentLibraryPaths("/apps/shared/less/missing.less"));
+
+    Resource entryResource = context.resourceResolver().getResource(
+        "/var/ui-libraries/dependencies/apps/ui-library");
+    assertNotNull(entryResource);
+    assertArrayEquals(
+        dependencyIndexService.getFilePaths("/apps/ui-library").toArray(new String[0]),
+        entryResource.getValueMap().get("files", String[].class));
+  }
+
+  @Test
+  public void testIndexLibrariesWhenLibraryWasRemoved() throws Exception {
+    dependencyIndexService.indexLibraries(Collections.singletonList("/apps/ui-library"),
+        context.resourceResolver());
+    context.resourceResolver().delete(
+        context.resourceResolver().getResource("/apps/ui-library"));
+
+    dependencyIndexService.indexLibraries(Collections.singletonList("/apps/ui-library"),
+        context.resourceResolver());
+
+    assertTrue(dependencyIndexService.getLibraryPaths().isEmpty());
+    assertTrue(dependencyIndexService.getDependentLibraryPaths("/apps/shared").isEmpty());
+    assertNull(context.resourceResolver().getResource(
+        "/var/ui-libraries/dependencies/apps/ui-library"));
+  }
+
+  @Test
+  public void testLoadIndex() {
+    Map<String, Object> entryProperties = new HashMap<>();
+    entryProperties.put("files", new String[]{"/apps/ui-library/css/file.css"});
+    context.create().resource("/var/ui-libraries/dependencies/apps/ui-library", entryProperties);
+
+    dependencyIndexService.loadIndex(context.resourceResolver());
+
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getDependentLibraryPaths("/apps/ui-library/css/file.css"));
+    assertEquals(Collections.singleton("/apps/ui-library/css/file.css"),
+        dependencyIndexService.getFilePaths("/apps/ui-library"));
+  }
+
+  @Test
+  public void testIsAvailableWhenIndexIsPersisted() {
+    Map<String, Object> entryProperties = new HashMap<>();
+    entryProperties.put("files", new String[]{"/apps/ui-library/css/file.css"});
+    context.create().resource("/var/ui-libraries/dependencies/apps/ui-library", entryProperties);
+    context.registerService(LessImportParserService.class, new LessImportParserServiceImpl());
+    UiLibraryDependencyIndexServiceImpl activatedIndexService =
+        new UiLibraryDependencyIndexServiceImpl();
+
+    context.registerInjectActivateService(activatedIndexService);
+
+    assertTrue(activatedIndexService.isAvailable());
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        activatedIndexService.getLibraryPaths());
+  }
+
+  @Test
+  public void testRebuildIndexWhenNotActive() {
+    dependencyIndexService.rebuildIndex();
+
+    assertFalse(dependencyIndexService.isAvailable());
+    assertTrue(dependencyIndexService.getLibraryPaths().isEmpty());
+  }
+
+  @Test
+  public void testRebuildIndex() {
+    Resource libraryResource = context.resourceResolver().getResource("/apps/ui-library");
+    ResourceResolver resourceResolver = spy(context.resourceResolver());
+    doReturn(Collections.singletonList(libraryResource).iterator()).when(resourceResolver)
+        .findResources(anyString(), anyString());
+    assertFalse(dependencyIndexService.isAvailable());
+
+    dependencyIndexService.rebuildIndex(resourceResolver);
+
+    assertTrue(dependencyIndexService.isAvailable());
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getDependentLibraryPaths("/apps/shared/less/mixins.less"));
+  }
+
+  @Test
+  public void testRebuildIndexReindexesLibrariesChangedWhileRunning() {
+    ResourceResolver resourceResolver = spy(context.resourceResolver());
+    doAnswer(invocation -> {
+      dependencyIndexService.indexLibraries(Collections.singletonList("/apps/ui-library"));
+      return Collections.emptyIterator();
+    }).when(resourceResolver).findResources(anyString(), anyString());
+
+    dependencyIndexService.rebuildIndex(resourceResolver);
+
+    assertTrue(dependencyIndexService.isAvailable());
+    assertEquals(Collections.singleton("/apps/ui-library"),
+        dependencyIndexService.getLibraryPaths());
+  }
+}
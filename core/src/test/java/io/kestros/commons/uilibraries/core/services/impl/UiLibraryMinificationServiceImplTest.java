@@ -34,11 +34,13 @@ import static org.mockito.Mockito.when;
 import io.kestros.commons.uilibraries.api.exceptions.ScriptCompressionException;
 import io.kestros.commons.uilibraries.api.services.ScriptMinifierService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import java.util.Hashtable;
 import org.apache.felix.hc.api.FormattingResultLog;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.osgi.framework.ServiceRegistration;
 
 public class UiLibraryMinificationServiceImplTest {
 
@@ -132,6 +134,48 @@ public class UiLibraryMinificationServiceImplTest {
     assertEquals(3, minificationService.getMinificationServices().size());
   }
 
+  @Test
+  public void testGetMinificationServicesWhenRegisteredAfterActivation() {
+    context.registerService(ScriptMinifierService.class, scriptMinifierService1);
+
+    context.registerInjectActivateService(minificationService);
+
+    assertEquals(0, minificationService.getJavaScriptMinificationServices().size());
+
+    context.registerService(ScriptMinifierService.class, scriptMinifierService3);
+
+    assertEquals(2, minificationService.getMinificationServices().size());
+    assertEquals(1, minificationService.getJavaScriptMinificationServices().size());
+  }
+
+  @Test
+  public void testGetMinificationServicesWhenUnregistered() {
+    ServiceRegistration<ScriptMinifierService> registration = context.bundleContext()
+        .registerService(ScriptMinifierService.class, scriptMinifierService1, new Hashtable<>());
+    context.registerService(ScriptMinifierService.class, scriptMinifierService2);
+
+    context.registerInjectActivateService(minificationService);
+
+    assertEquals(2, minificationService.getCssMinificationServices().size());
+
+    registration.unregister();
+
+    assertEquals(1, minificationService.getCssMinificationServices().size());
+    assertEquals(scriptMinifierService2, minificationService.getCssMinificationServices().get(0));
+  }
+
+  @Test
+  public void testGetCssMinificationServicesOrderedByServiceRanking() {
+    context.registerService(ScriptMinifierService.class, scriptMinifierService1);
+    context.registerService(ScriptMinifierService.class, scriptMinifierService2,
+        "service.ranking", 100);
+
+    context.registerInjectActivateService(minificationService);
+
+    assertEquals(scriptMinifierService2, minificationService.getCssMinificationServices().get(0));
+    assertEquals(scriptMinifierService1, minificationService.getCssMinificationServices().get(1));
+  }
+
   @Test
   public void testGetCssMinificationServices() {
     context.registerService(ScriptMinifierService.class, scriptMinifierService1);
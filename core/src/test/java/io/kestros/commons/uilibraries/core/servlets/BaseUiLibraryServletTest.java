@@ -19,8 +19,16 @@
 
 package io.kestros.commons.uilibraries.core.servlets;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -42,11 +50,23 @@ import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
 import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
 import io.kestros.commons.uilibraries.basecompilers.services.CssCompilerService;
 import io.kestros.commons.uilibraries.core.UiLibraryResource;
+import io.kestros.commons.uilibraries.core.cache.UiLibraryFailureCache.Failure;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCacheMetricsService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCachedOutputStream;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompilationExecutorService;
+import io.kestros.commons.uilibraries.core.services.UiLibraryCompilationExecutorService.UiLibraryCompilation;
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
 import io.kestros.commons.uilibraries.core.services.impl.UiLibraryCompilationServiceImpl;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.junit.Before;
@@ -122,6 +142,7 @@ public class BaseUiLibraryServletTest {
     assertEquals(200, context.response().getStatus());
     assertEquals("text/css", context.response().getContentType());
     assertEquals("css-output", context.response().getOutputAsString());
+    assertEquals(UiLibraryCacheUtils.getETag("css-output"), context.response().getHeader("ETag"));
     verify(uiLibraryCompilationService, times(1)).getUiLibraryOutput(any(), any(), any());
     verify(uiLibraryCacheService, times(1)).cacheUiLibraryScript("/ui-library", "css-output",
         ScriptTypes.CSS, false, context.resourceResolver());
@@ -183,6 +204,346 @@ public class BaseUiLibraryServletTest {
         context.resourceResolver());
   }
 
+  @Test
+  public void testDoGetWhenETagMatches() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("If-None-Match", "\"etag\"");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(304, context.response().getStatus());
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("", context.response().getOutputAsString());
+    verify(outputCacheService, never()).getCachedOutput("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenETagDoesNotMatch() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("If-None-Match", "\"stale-etag\"");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 13L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("13", context.response().getHeader("Content-Length"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+    verify(outputCacheService, never()).getCachedOutput("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenCachedOutputStreamIsNotAvailable() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    doThrow(new CacheRetrievalException("")).when(outputCacheService).getCachedOutputStream(
+        "/ui-library", ScriptTypes.CSS, false, UiLibraryContentEncoding.IDENTITY,
+        context.resourceResolver());
+    when(outputCacheService.getCachedOutput("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("cached-output");
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertNull(context.response().getHeader("Content-Length"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+  }
+
+  @Test
+  public void testDoGetWhenGzipIsAccepted() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip, deflate");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.GZIP, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("gzipped-output".getBytes()),
+            14L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("gzip", context.response().getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", context.response().getHeader("Vary"));
+    assertEquals("\"etag-gzip\"", context.response().getHeader("ETag"));
+    assertEquals("14", context.response().getHeader("Content-Length"));
+    assertEquals("text/css", context.response().getContentType());
+    assertArrayEquals("gzipped-output".getBytes(), context.response().getOutput());
+    verify(outputCacheService, never()).getCachedOutput("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenGzipIsAcceptedAndNotCached() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    doThrow(new CacheRetrievalException("")).when(outputCacheService).getCachedOutputStream(
+        "/ui-library", ScriptTypes.CSS, false, UiLibraryContentEncoding.GZIP,
+        context.resourceResolver());
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 0L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertNull(context.response().getHeader("Content-Encoding"));
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+  }
+
+  @Test
+  public void testDoGetWhenGzipOutputCannotBeRead() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.GZIP, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new FailingInputStream(), 14L));
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 13L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertNull(context.response().getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", context.response().getHeader("Vary"));
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("13", context.response().getHeader("Content-Length"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+  }
+
+  @Test
+  public void testDoGetWhenWriteFailsAfterResponseIsCommitted() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip");
+    SlingHttpServletResponse response = spy(context.response());
+    doReturn(true).when(response).isCommitted();
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.GZIP, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new FailingInputStream(), 14L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), response);
+    verify(response, never()).reset();
+    verify(response, never()).getWriter();
+    verify(outputCacheService, never()).getCachedOutputStream("/ui-library", ScriptTypes.CSS,
+        false, UiLibraryContentEncoding.IDENTITY, context.resourceResolver());
+    verify(outputCacheService, never()).getCachedOutput("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenGzipIsAcceptedAndIdentityETagMatches() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip");
+    context.request().addHeader("If-None-Match", "\"etag\"");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(304, context.response().getStatus());
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("", context.response().getOutputAsString());
+    verify(outputCacheService, never()).getCachedOutputStream("/ui-library", ScriptTypes.CSS,
+        false, UiLibraryContentEncoding.GZIP, context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenGzipIsAcceptedAndGzipETagMatches() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("Accept-Encoding", "gzip");
+    context.request().addHeader("If-None-Match", "\"etag-gzip\"");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(304, context.response().getStatus());
+    assertEquals("\"etag-gzip\"", context.response().getHeader("ETag"));
+  }
+
+  @Test
+  public void testDoGetWhenIdentityIsAcceptedAndGzipETagMatches() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("If-None-Match", "\"etag-gzip\"");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 13L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("\"etag\"", context.response().getHeader("ETag"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+  }
+
+  @Test
+  public void testDoGetWhenFingerprintIsCurrent() throws CacheRetrievalException {
+    String eTag = UiLibraryCacheUtils.getETag("cached-output");
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.requestPathInfo().setSelectorString(UiLibraryCacheUtils.getFingerprint(eTag));
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn(eTag);
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 0L));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("public, max-age=31536000, immutable",
+        context.response().getHeader("Cache-Control"));
+    assertEquals("cached-output", context.response().getOutputAsString());
+  }
+
+  @Test
+  public void testDoGetWhenFingerprintIsCurrentAndNotModified() throws CacheRetrievalException {
+    String eTag = UiLibraryCacheUtils.getETag("cached-output");
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.requestPathInfo().setSelectorString(UiLibraryCacheUtils.getFingerprint(eTag));
+    context.request().addHeader("If-None-Match", eTag);
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn(eTag);
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(304, context.response().getStatus());
+    assertEquals("public, max-age=31536000, immutable",
+        context.response().getHeader("Cache-Control"));
+  }
+
+  @Test
+  public void testDoGetWhenFingerprintIsStale() throws CacheRetrievalException {
+    String eTag = UiLibraryCacheUtils.getETag("cached-output");
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.requestPathInfo().setSelectorString("0123456789abcdef.min");
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, true,
+        context.resourceResolver())).thenReturn(eTag);
+
+    context.registerService(UiLibraryMinificationService.class, uiLibraryMinificationService);
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+    when(uiLibraryMinificationService.isMinifiedRequest(any())).thenReturn(true);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(302, context.response().getStatus());
+    assertEquals("/ui-library." + UiLibraryCacheUtils.getFingerprint(eTag) + ".min.css",
+        context.response().getHeader("Location"));
+    assertEquals("no-cache", context.response().getHeader("Cache-Control"));
+    assertEquals("", context.response().getOutputAsString());
+    verify(outputCacheService, never()).getCachedOutput("/ui-library", ScriptTypes.CSS, true,
+        context.resourceResolver());
+  }
+
   @Test
   public void testDoGetWhenWhenCompilationError()
       throws LibraryRetrievalException, InvalidResourceTypeException, NoMatchingCompilerException,
@@ -222,4 +583,310 @@ public class BaseUiLibraryServletTest {
   @Test
   public void testWriteResponse() {
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testDoGetWhenCompiledByExecutorService() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    cssFolderProperties.put("include", new String[]{"file-1.css"});
+    context.create().resource("/ui-library/css", cssFolderProperties);
+    context.create().resource("/ui-library/css/file-1.css", fileProperties);
+    context.create().resource("/ui-library/css/file-1.css/jcr:content", cssFileProperties);
+
+    UiLibraryResource uiLibrary = resource.adaptTo(UiLibraryResource.class);
+    context.request().setResource(resource);
+
+    when(uiLibraryRetrievalService.getUiLibrary("/ui-library", context.resourceResolver())).thenReturn(uiLibrary);
+
+    UiLibraryCompilationExecutorService executorService = mock(
+        UiLibraryCompilationExecutorService.class);
+    when(executorService.compile(anyString(), any())).thenAnswer(
+        invocation -> invocation.getArgument(1, UiLibraryCompilation.class).compile(
+            context.resourceResolver()));
+
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCompilationExecutorService.class, executorService);
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("css-output", context.response().getOutputAsString());
+    verify(executorService, times(1)).compile(any(), any());
+    verify(uiLibraryCacheService, times(1)).cacheUiLibraryScript("/ui-library", "css-output",
+        ScriptTypes.CSS, false, context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenCompilationTimesOut() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    UiLibraryResource uiLibrary = resource.adaptTo(UiLibraryResource.class);
+    context.request().setResource(resource);
+
+    when(uiLibraryRetrievalService.getUiLibrary("/ui-library", context.resourceResolver())).thenReturn(uiLibrary);
+
+    UiLibraryCompilationExecutorService executorService = mock(
+        UiLibraryCompilationExecutorService.class);
+    when(executorService.compile(anyString(), any())).thenThrow(new TimeoutException());
+    when(executorService.getTimeoutResponseStatus()).thenReturn(503);
+    when(executorService.getRetryAfterSeconds()).thenReturn(5L);
+
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCompilationExecutorService.class, executorService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(503, context.response().getStatus());
+    assertEquals("5", context.response().getHeader("Retry-After"));
+    assertEquals("no-store", context.response().getHeader("Cache-Control"));
+    assertNull(context.response().getHeader("ETag"));
+  }
+
+  @Test
+  public void testDoGetWhenCompilationTimesOutAndRetryAfterIsDisabled() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    UiLibraryResource uiLibrary = resource.adaptTo(UiLibraryResource.class);
+    context.request().setResource(resource);
+
+    when(uiLibraryRetrievalService.getUiLibrary("/ui-library", context.resourceResolver())).thenReturn(uiLibrary);
+
+    UiLibraryCompilationExecutorService executorService = mock(
+        UiLibraryCompilationExecutorService.class);
+    when(executorService.compile(anyString(), any())).thenThrow(new TimeoutException());
+    when(executorService.getTimeoutResponseStatus()).thenReturn(504);
+    when(executorService.getRetryAfterSeconds()).thenReturn(0L);
+
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCompilationExecutorService.class, executorService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(504, context.response().getStatus());
+    assertNull(context.response().getHeader("Retry-After"));
+  }
+
+  private UiLibraryOutputCacheService registerCachedOutput() throws CacheRetrievalException {
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedETag("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("\"etag\"");
+    when(outputCacheService.getCachedOutputStream("/ui-library", ScriptTypes.CSS, false,
+        UiLibraryContentEncoding.IDENTITY, context.resourceResolver())).thenReturn(
+        new UiLibraryCachedOutputStream(new ByteArrayInputStream("cached-output".getBytes()), 0L));
+    when(outputCacheService.getCachedLastModified("/ui-library", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn(1000L);
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    return outputCacheService;
+  }
+
+  @Test
+  public void testDoGetSetsCachingHeaders() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    registerCachedOutput();
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("no-cache", context.response().getHeader("Cache-Control"));
+    assertEquals("Thu, 01 Jan 1970 00:00:01 GMT",
+        context.response().getHeader("Last-Modified"));
+    assertNotNull(context.response().getHeader("Expires"));
+  }
+
+  @Test
+  public void testDoGetSetsCachingHeadersWhenNotModified() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.request().addHeader("If-None-Match", "\"etag\"");
+    registerCachedOutput();
+    context.registerInjectActivateService(servlet, "cacheMaxAge", 600L);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(304, context.response().getStatus());
+    assertEquals("public, max-age=600", context.response().getHeader("Cache-Control"));
+    assertEquals("Thu, 01 Jan 1970 00:00:01 GMT",
+        context.response().getHeader("Last-Modified"));
+  }
+
+  @Test
+  public void testDoGetWhenCacheControlIsAlreadySet() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    context.response().setHeader("Cache-Control", "private");
+    registerCachedOutput();
+    context.registerInjectActivateService(servlet, "cacheMaxAge", 600L);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("public, max-age=600", context.response().getHeader("Cache-Control"));
+  }
+
+  @Test
+  public void testDoGetWhenCachingPolicyIsConfigured() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    registerCachedOutput();
+    context.registerInjectActivateService(servlet, "cacheMaxAge", 600L, "cacheSharedMaxAge",
+        3600L);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals("public, max-age=600, s-maxage=3600",
+        context.response().getHeader("Cache-Control"));
+  }
+
+  @Test
+  public void testDoGetWhenLibraryOverridesCachingPolicy() throws CacheRetrievalException {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    properties.put("cacheMaxAge", 60L);
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+    registerCachedOutput();
+    context.registerInjectActivateService(servlet, "cacheMaxAge", 600L, "cacheSharedMaxAge",
+        3600L);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals("public, max-age=60, s-maxage=3600",
+        context.response().getHeader("Cache-Control"));
+  }
+
+  @Test
+  public void testDoGetRecordsMissAndFillMetrics() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    cssFolderProperties.put("include", new String[]{"file-1.css"});
+    context.create().resource("/ui-library/css", cssFolderProperties);
+    context.create().resource("/ui-library/css/file-1.css", fileProperties);
+    context.create().resource("/ui-library/css/file-1.css/jcr:content", cssFileProperties);
+
+    UiLibraryResource uiLibrary = resource.adaptTo(UiLibraryResource.class);
+    context.request().setResource(resource);
+
+    when(uiLibraryRetrievalService.getUiLibrary("/ui-library", context.resourceResolver())).thenReturn(uiLibrary);
+
+    UiLibraryCacheMetricsService metricsService = mock(UiLibraryCacheMetricsService.class);
+
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCacheMetricsService.class, metricsService);
+    context.registerInjectActivateService(cssCompilerService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    verify(metricsService, times(1)).recordMiss(ScriptTypes.CSS, false);
+    verify(metricsService, times(1)).recordFill(eq(ScriptTypes.CSS), eq(false), anyLong(),
+        eq(10L));
+    verify(metricsService, times(1)).recordBytesStored(ScriptTypes.CSS, false, 10L);
+    verify(metricsService, never()).recordHit(any(), anyBoolean(), anyLong());
+  }
+
+  @Test
+  public void testDoGetRecordsHitMetrics() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+
+    when(uiLibraryCacheService.getCachedOutput("/ui-library", ScriptTypes.CSS, false, context.resourceResolver())).thenReturn(
+        "cached-output");
+
+    UiLibraryCacheMetricsService metricsService = mock(UiLibraryCacheMetricsService.class);
+
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerService(UiLibraryCacheMetricsService.class, metricsService);
+    context.registerService(ScriptTypeCompiler.class, cssCompilerService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals("cached-output", context.response().getOutputAsString());
+    verify(metricsService, times(1)).recordHit(ScriptTypes.CSS, false, 13L);
+    verify(metricsService, never()).recordMiss(any(), anyBoolean());
+  }
+
+  @Test
+  public void testDoGetWhenFailureIsCached() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedFailure("/ui-library", ScriptTypes.CSS, false)).thenReturn(
+        new Failure("/ui-library", Collections.singletonList("/ui-library"), "<h1>error</h1>",
+            Long.MAX_VALUE));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(uiLibraryCompilationService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(500, context.response().getStatus());
+    assertEquals("text/html", context.response().getContentType());
+    assertEquals("<h1>error</h1>", context.response().getOutputAsString());
+    verify(uiLibraryRetrievalService, never()).getUiLibrary(any(), any());
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(any(), any(), any());
+  }
+
+  @Test
+  public void testDoGetWhenNotFoundFailureIsCached() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    when(outputCacheService.getCachedFailure("/ui-library", ScriptTypes.CSS, false)).thenReturn(
+        new Failure("/ui-library", Collections.singletonList("/ui-library"), null,
+            Long.MAX_VALUE));
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    assertEquals("", context.response().getOutputAsString());
+    verify(uiLibraryRetrievalService, never()).getUiLibrary(any(), any());
+  }
+
+  @Test
+  public void testDoGetCachesFailureWhenLibraryCannotBeRetrieved() throws Exception {
+    properties.put("jcr:primaryType", "kes:UiLibrary");
+    resource = context.create().resource("/ui-library", properties);
+    context.request().setResource(resource);
+
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+
+    context.registerService(UiLibraryCacheService.class, outputCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(outputCacheService, times(1)).cacheFailure("/ui-library",
+        Collections.singletonList("/ui-library"), null, ScriptTypes.CSS, false);
+  }
+
+  private static class FailingInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      throw new IOException("Broken pipe");
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Test;
+
+public class UiLibraryCachingPolicyTest {
+
+  @Test
+  public void testGetCacheControl() {
+    assertEquals("public, max-age=600", new UiLibraryCachingPolicy(600, -1).getCacheControl());
+  }
+
+  @Test
+  public void testGetCacheControlWhenSharedMaxAgeIsSet() {
+    assertEquals("public, max-age=600, s-maxage=3600",
+        new UiLibraryCachingPolicy(600, 3600).getCacheControl());
+  }
+
+  @Test
+  public void testGetCacheControlWhenOnlySharedCachesMayReuse() {
+    assertEquals("public, max-age=0, s-maxage=3600",
+        new UiLibraryCachingPolicy(0, 3600).getCacheControl());
+  }
+
+  @Test
+  public void testGetCacheControlWhenNoCacheMayReuse() {
+    assertEquals("no-cache", new UiLibraryCachingPolicy(0, -1).getCacheControl());
+    assertEquals("no-cache", new UiLibraryCachingPolicy(-1, 0).getCacheControl());
+  }
+
+  @Test
+  public void testGetExpires() {
+    assertEquals(601000L, new UiLibraryCachingPolicy(600, -1).getExpires(1000L));
+    assertEquals(1000L, new UiLibraryCachingPolicy(-1, -1).getExpires(1000L));
+  }
+
+  @Test
+  public void testWithOverrides() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("cacheMaxAge", 60L);
+    UiLibraryCachingPolicy policy = new UiLibraryCachingPolicy(600, 3600).withOverrides(
+        new ValueMapDecorator(properties));
+    assertEquals(60, policy.getMaxAge());
+    assertEquals(3600, policy.getSharedMaxAge());
+
+    properties.put("cacheSharedMaxAge", "120");
+    policy = new UiLibraryCachingPolicy(600, 3600).withOverrides(
+        new ValueMapDecorator(properties));
+    assertEquals(60, policy.getMaxAge());
+    assertEquals(120, policy.getSharedMaxAge());
+  }
+
+  @Test
+  public void testWithOverridesWhenNoOverrides() {
+    UiLibraryCachingPolicy policy = new UiLibraryCachingPolicy(600, 3600);
+    assertSame(policy, policy.withOverrides(new ValueMapDecorator(new HashMap<>())));
+    assertSame(policy, policy.withOverrides(null));
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.uilibraries.api.exceptions.LibraryRetrievalException;
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryMinificationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.services.UiLibraryOutputCacheService;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryCacheUtils;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryCssBundleServletTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryCssBundleServlet servlet;
+
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  private UiLibraryMinificationService uiLibraryMinificationService;
+
+  private UiLibraryCacheService uiLibraryCacheService;
+
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  private UiLibrary libraryOne;
+
+  private UiLibrary libraryTwo;
+
+  @Before
+  public void setUp() throws Exception {
+    servlet = new UiLibraryCssBundleServlet();
+
+    uiLibraryCompilationService = mock(UiLibraryCompilationService.class);
+    uiLibraryMinificationService = mock(UiLibraryMinificationService.class);
+    uiLibraryCacheService = mock(UiLibraryCacheService.class);
+    uiLibraryRetrievalService = mock(UiLibraryRetrievalService.class);
+    libraryOne = mock(UiLibrary.class);
+    libraryTwo = mock(UiLibrary.class);
+
+    when(libraryOne.getPath()).thenReturn("/etc/library-one");
+    when(libraryTwo.getPath()).thenReturn("/etc/library-two");
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/etc/library-one"), any())).thenReturn(
+        libraryOne);
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/etc/library-two"), any())).thenReturn(
+        libraryTwo);
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(libraryOne), eq(ScriptTypes.CSS),
+        any())).thenReturn("output-one");
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(libraryTwo), eq(ScriptTypes.CSS),
+        any())).thenReturn("output-two");
+
+    context.request().setResource(
+        context.create().resource(UiLibraryBundleUtils.CSS_BUNDLE_SERVLET_PATH));
+    context.registerService(UiLibraryCompilationService.class, uiLibraryCompilationService);
+    context.registerService(UiLibraryMinificationService.class, uiLibraryMinificationService);
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet, "bundles",
+        new String[]{"/etc/library-one,/etc/library-two"});
+  }
+
+  private void setLibraryParameters(String... libraryPaths) {
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("library", libraryPaths);
+    context.request().setParameterMap(parameters);
+  }
+
+  @Test
+  public void testDoGet() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-two");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("text/css", context.response().getContentType());
+    assertEquals("output-one\noutput-two", context.response().getOutputAsString());
+    assertEquals(UiLibraryCacheUtils.getETag("output-one\noutput-two"),
+        context.response().getHeader("ETag"));
+    verify(uiLibraryCacheService).cacheUiLibraryScript(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-one", "/etc/library-two")), "output-one\noutput-two",
+        ScriptTypes.CSS, false, context.resourceResolver());
+    verify(uiLibraryCacheService).cacheUiLibraryScript("/etc/library-one", "output-one",
+        ScriptTypes.CSS, false, context.resourceResolver());
+    verify(uiLibraryCacheService).cacheUiLibraryScript("/etc/library-two", "output-two",
+        ScriptTypes.CSS, false, context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetJoinsCachedLibraryOutput() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-two");
+    when(uiLibraryCacheService.getCachedOutput("/etc/library-one", ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("cached-one");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("cached-one\noutput-two", context.response().getOutputAsString());
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(eq(libraryOne), any(),
+        any());
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(eq("/etc/library-one"),
+        anyString(), any(), anyBoolean(), any());
+  }
+
+  @Test
+  public void testDoGetWhenDeclaredBundleIsListedInAnotherOrder() throws Exception {
+    setLibraryParameters("/etc/library-two", "/etc/library-one", "/etc/library-two");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("output-one\noutput-two", context.response().getOutputAsString());
+    verify(uiLibraryCacheService).cacheUiLibraryScript(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-one", "/etc/library-two")), "output-one\noutput-two",
+        ScriptTypes.CSS, false, context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenBundleIsNotDeclared() throws Exception {
+    setLibraryParameters("/etc/library-two", "/etc/library-one");
+    UiLibraryCssBundleServlet undeclaredServlet = new UiLibraryCssBundleServlet();
+    context.registerInjectActivateService(undeclaredServlet, "allowUndeclaredBundles", true);
+
+    undeclaredServlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("output-two\noutput-one", context.response().getOutputAsString());
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(startsWith("/undeclared-bundles/"),
+        anyString(), any(), anyBoolean(), any());
+  }
+
+  @Test
+  public void testDoGetWhenBundleIsNotDeclaredByDefault() throws Exception {
+    setLibraryParameters("/etc/library-two", "/etc/library-one");
+    UiLibraryCssBundleServlet undeclaredServlet = new UiLibraryCssBundleServlet();
+    context.registerInjectActivateService(undeclaredServlet);
+
+    undeclaredServlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(any(), any(), any());
+  }
+
+  @Test
+  public void testDoGetWhenUndeclaredBundlesAreNotAllowed() throws Exception {
+    setLibraryParameters("/etc/library-two");
+    UiLibraryCssBundleServlet declaredOnlyServlet = new UiLibraryCssBundleServlet();
+    context.registerInjectActivateService(declaredOnlyServlet, "bundles",
+        new String[]{"/etc/library-one,/etc/library-two"}, "allowUndeclaredBundles", false);
+
+    declaredOnlyServlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(uiLibraryRetrievalService, never()).getUiLibrary(anyString(), any());
+  }
+
+  @Test
+  public void testGetOutputPath() {
+    setLibraryParameters("/etc/library-two", "/etc/library-one");
+    assertEquals(UiLibraryBundleUtils.getBundleOutputPath(
+        Arrays.asList("/etc/library-one", "/etc/library-two")),
+        servlet.getOutputPath(context.request()));
+
+    setLibraryParameters("/etc/library-two");
+    assertTrue(servlet.getOutputPath(context.request()).startsWith("/undeclared-bundles/"));
+  }
+
+  @Test
+  public void testDoGetWhenMinified() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-two");
+    when(uiLibraryMinificationService.isMinifiedRequest(any())).thenReturn(true);
+    when(uiLibraryMinificationService.getMinifiedOutput("output-one", ScriptTypes.CSS))
+        .thenReturn("minified-one");
+    when(uiLibraryMinificationService.getMinifiedOutput("output-two", ScriptTypes.CSS))
+        .thenReturn("minified-two");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("minified-one\nminified-two", context.response().getOutputAsString());
+    verify(uiLibraryCacheService).cacheUiLibraryScript(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-one", "/etc/library-two")), "minified-one\nminified-two",
+        ScriptTypes.CSS, true, context.resourceResolver());
+    verify(uiLibraryCacheService).cacheUiLibraryScript("/etc/library-one", "minified-one",
+        ScriptTypes.CSS, true, context.resourceResolver());
+  }
+
+  @Test
+  public void testDoGetWhenCachedOutputIsRetrieved() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-two");
+    when(uiLibraryCacheService.getCachedOutput(UiLibraryBundleUtils.getBundleOutputPath(
+        Arrays.asList("/etc/library-one", "/etc/library-two")), ScriptTypes.CSS, false,
+        context.resourceResolver())).thenReturn("cached-output");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("cached-output", context.response().getOutputAsString());
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(any(), any(), any());
+  }
+
+  @Test
+  public void testDoGetCachesBundledLibraryPaths() throws Exception {
+    setLibraryParameters("/etc/library-two", "/etc/library-one");
+    UiLibraryOutputCacheService outputCacheService = mock(UiLibraryOutputCacheService.class);
+    context.registerService(UiLibraryCacheService.class, outputCacheService, "service.ranking",
+        100);
+    UiLibraryCssBundleServlet outputCacheServlet = new UiLibraryCssBundleServlet();
+    context.registerInjectActivateService(outputCacheServlet, "bundles",
+        new String[]{"/etc/library-two,/etc/library-one"});
+
+    outputCacheServlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    verify(outputCacheService).cacheUiLibraryBundleScript(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-two", "/etc/library-one")),
+        Arrays.asList("/etc/library-two", "/etc/library-one"), "output-two\noutput-one",
+        ScriptTypes.CSS, false, context.resourceResolver());
+    verify(outputCacheService, never()).cacheUiLibraryScript(startsWith("/bundles/"),
+        anyString(), any(), anyBoolean(), any());
+  }
+
+  @Test
+  public void testDoGetWhenLibraryIsMissing() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-missing");
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/etc/library-missing"), any())).thenThrow(
+        new LibraryRetrievalException("message"));
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(uiLibraryCompilationService, never()).getUiLibraryOutput(any(), any(), any());
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(anyString(), anyString(), any(),
+        anyBoolean(), any());
+  }
+
+  @Test
+  public void testDoGetWhenNoLibrariesAreListed() throws Exception {
+    servlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(uiLibraryRetrievalService, never()).getUiLibrary(anyString(), any());
+  }
+
+  @Test
+  public void testDoGetWhenTooManyLibrariesAreListed() throws Exception {
+    String[] libraryPaths = new String[BaseUiLibraryBundleServlet.MAXIMUM_BUNDLE_SIZE + 1];
+    for (int i = 0; i < libraryPaths.length; i++) {
+      libraryPaths[i] = "/etc/library-" + i;
+    }
+    setLibraryParameters(libraryPaths);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(400, context.response().getStatus());
+    verify(uiLibraryRetrievalService, never()).getUiLibrary(anyString(), any());
+  }
+
+  @Test
+  public void testDoGetWhenCompilationError() throws Exception {
+    setLibraryParameters("/etc/library-one", "/etc/library-two");
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(libraryTwo), eq(ScriptTypes.CSS),
+        any())).thenReturn("<h1>Error</h1>");
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(500, context.response().getStatus());
+    assertTrue(context.response().getOutputAsString().startsWith("<h1>"));
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(eq(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-one", "/etc/library-two"))), anyString(), any(),
+        anyBoolean(), any());
+    verify(uiLibraryCacheService, never()).cacheUiLibraryScript(eq("/etc/library-two"),
+        anyString(), any(), anyBoolean(), any());
+  }
+
+  @Test
+  public void testGetScriptType() {
+    assertEquals(ScriptTypes.CSS, servlet.getScriptType());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.kestros.commons.uilibraries.api.models.UiLibrary;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCacheService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryCompilationService;
+import io.kestros.commons.uilibraries.api.services.UiLibraryRetrievalService;
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import io.kestros.commons.uilibraries.core.utils.UiLibraryBundleUtils;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class UiLibraryJavaScriptBundleServletTest {
+
+  @Rule
+  public SlingContext context = new SlingContext();
+
+  private UiLibraryJavaScriptBundleServlet servlet;
+
+  private UiLibraryCompilationService uiLibraryCompilationService;
+
+  private UiLibraryCacheService uiLibraryCacheService;
+
+  private UiLibraryRetrievalService uiLibraryRetrievalService;
+
+  @Before
+  public void setUp() throws Exception {
+    servlet = new UiLibraryJavaScriptBundleServlet();
+
+    uiLibraryCompilationService = mock(UiLibraryCompilationService.class);
+    uiLibraryCacheService = mock(UiLibraryCacheService.class);
+    uiLibraryRetrievalService = mock(UiLibraryRetrievalService.class);
+    UiLibrary libraryOne = mock(UiLibrary.class);
+    UiLibrary libraryTwo = mock(UiLibrary.class);
+    when(libraryOne.getPath()).thenReturn("/etc/library-one");
+    when(libraryTwo.getPath()).thenReturn("/etc/library-two");
+
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/etc/library-one"), any())).thenReturn(
+        libraryOne);
+    when(uiLibraryRetrievalService.getUiLibrary(eq("/etc/library-two"), any())).thenReturn(
+        libraryTwo);
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(libraryOne), eq(ScriptTypes.JAVASCRIPT),
+        any())).thenReturn("(function(){})()");
+    when(uiLibraryCompilationService.getUiLibraryOutput(eq(libraryTwo), eq(ScriptTypes.JAVASCRIPT),
+        any())).thenReturn("(function(){})()");
+
+    context.request().setResource(
+        context.create().resource(UiLibraryBundleUtils.JS_BUNDLE_SERVLET_PATH));
+    context.registerService(UiLibraryCompilationService.class, uiLibraryCompilationService);
+    context.registerService(UiLibraryCacheService.class, uiLibraryCacheService);
+    context.registerService(UiLibraryRetrievalService.class, uiLibraryRetrievalService);
+    context.registerInjectActivateService(servlet, "bundles",
+        new String[]{"/etc/library-one,/etc/library-two"});
+  }
+
+  @Test
+  public void testDoGet() throws Exception {
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("library", new String[]{"/etc/library-one", "/etc/library-two"});
+    context.request().setParameterMap(parameters);
+
+    servlet.doGet(context.request(), context.response());
+    assertEquals(200, context.response().getStatus());
+    assertEquals("(function(){})();\n(function(){})()", context.response().getOutputAsString());
+    verify(uiLibraryCacheService).cacheUiLibraryScript(
+        UiLibraryBundleUtils.getBundleOutputPath(
+            Arrays.asList("/etc/library-one", "/etc/library-two")),
+        "(function(){})();\n(function(){})()", ScriptTypes.JAVASCRIPT, false,
+        context.resourceResolver());
+  }
+
+  @Test
+  public void testGetScriptType() {
+    assertEquals(ScriptTypes.JAVASCRIPT, servlet.getScriptType());
+  }
+}
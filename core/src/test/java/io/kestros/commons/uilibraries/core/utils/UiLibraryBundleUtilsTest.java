@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.basecompilers.filetypes.ScriptTypes;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class UiLibraryBundleUtilsTest {
+
+  @Test
+  public void testGetBundledLibraryPaths() {
+    assertEquals(Arrays.asList("/etc/b", "/etc/a"), UiLibraryBundleUtils.getBundledLibraryPaths(
+        new String[]{"/etc/b", " /etc/a", "", "/etc/b"}));
+  }
+
+  @Test
+  public void testGetBundledLibraryPathsWhenNull() {
+    assertTrue(UiLibraryBundleUtils.getBundledLibraryPaths(null).isEmpty());
+  }
+
+  @Test
+  public void testGetBundleOutputPath() {
+    String bundleOutputPath = UiLibraryBundleUtils.getBundleOutputPath(
+        Arrays.asList("/etc/a", "/etc/b"));
+    assertTrue(bundleOutputPath.matches("/bundles/[0-9a-f]{64}"));
+    assertEquals(bundleOutputPath,
+        UiLibraryBundleUtils.getBundleOutputPath(Arrays.asList("/etc/a", "/etc/b")));
+  }
+
+  @Test
+  public void testGetBundleOutputPathIgnoresOrderAndRepeats() {
+    assertEquals(UiLibraryBundleUtils.getBundleOutputPath(Arrays.asList("/etc/a", "/etc/b")),
+        UiLibraryBundleUtils.getBundleOutputPath(Arrays.asList("/etc/b", "/etc/a", "/etc/b")));
+    assertNotEquals(UiLibraryBundleUtils.getBundleOutputPath(Arrays.asList("/etc/a", "/etc/b")),
+        UiLibraryBundleUtils.getBundleOutputPath(Collections.singletonList("/etc/a")));
+  }
+
+  @Test
+  public void testGetCanonicalLibraryPaths() {
+    assertEquals(Arrays.asList("/etc/a", "/etc/b"), UiLibraryBundleUtils.getCanonicalLibraryPaths(
+        Arrays.asList("/etc/b", "/etc/a", "/etc/b")));
+  }
+
+  @Test
+  public void testGetBundleUrl() {
+    assertEquals("/bin/kestros/ui-libraries/css-bundle.css?library=%2Fetc%2Fa&library=%2Fetc%2Fb",
+        UiLibraryBundleUtils.getBundleUrl(Arrays.asList("/etc/a", "/etc/b"), ScriptTypes.CSS, "",
+            false));
+  }
+
+  @Test
+  public void testGetBundleUrlWhenFingerprintedAndMinified() {
+    assertEquals("/bin/kestros/ui-libraries/js-bundle.2cf24dba5fb0a30e.min.js?library=%2Fetc%2Fa",
+        UiLibraryBundleUtils.getBundleUrl(Collections.singletonList("/etc/a"),
+            ScriptTypes.JAVASCRIPT, "2cf24dba5fb0a30e", true));
+  }
+
+  @Test
+  public void testGetBundleServletPath() {
+    assertEquals("/bin/kestros/ui-libraries/css-bundle",
+        UiLibraryBundleUtils.getBundleServletPath(ScriptTypes.CSS));
+    assertEquals("/bin/kestros/ui-libraries/js-bundle",
+        UiLibraryBundleUtils.getBundleServletPath(ScriptTypes.JAVASCRIPT));
+  }
+}
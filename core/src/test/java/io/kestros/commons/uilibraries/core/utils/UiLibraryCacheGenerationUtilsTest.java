@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class UiLibraryCacheGenerationUtilsTest {
+
+  @Test
+  public void testGetGenerationName() {
+    assertEquals("3-0123456789abcdef",
+        UiLibraryCacheGenerationUtils.getGenerationName(3, "0123456789abcdef"));
+  }
+
+  @Test
+  public void testIsGenerationName() {
+    assertTrue(UiLibraryCacheGenerationUtils.isGenerationName("3-0123456789abcdef"));
+    assertFalse(UiLibraryCacheGenerationUtils.isGenerationName("bundles"));
+    assertFalse(UiLibraryCacheGenerationUtils.isGenerationName("3-0123"));
+    assertFalse(UiLibraryCacheGenerationUtils.isGenerationName("etc"));
+  }
+
+  @Test
+  public void testGetGenerationNumber() {
+    assertEquals(12, UiLibraryCacheGenerationUtils.getGenerationNumber("12-0123456789abcdef"));
+    assertEquals(0, UiLibraryCacheGenerationUtils.getGenerationNumber("bundles"));
+  }
+
+  @Test
+  public void testGetVersionKeyOfGeneration() {
+    assertEquals("0123456789abcdef",
+        UiLibraryCacheGenerationUtils.getVersionKey("12-0123456789abcdef"));
+    assertEquals("", UiLibraryCacheGenerationUtils.getVersionKey("bundles"));
+  }
+
+  @Test
+  public void testGetVersionKey() {
+    String versionKey = UiLibraryCacheGenerationUtils.getVersionKey(
+        Arrays.asList("less:1.0.0", "yui:2.4.8"));
+
+    assertEquals(16, versionKey.length());
+    assertTrue(UiLibraryCacheGenerationUtils.isGenerationName("1-" + versionKey));
+    assertEquals(versionKey, UiLibraryCacheGenerationUtils.getVersionKey(
+        Arrays.asList("yui:2.4.8", "less:1.0.0")));
+    assertNotEquals(versionKey, UiLibraryCacheGenerationUtils.getVersionKey(
+        Arrays.asList("less:1.0.1", "yui:2.4.8")));
+    assertNotEquals(versionKey,
+        UiLibraryCacheGenerationUtils.getVersionKey(Collections.emptyList()));
+  }
+
+  @Test
+  public void testGetComponentVersionWhenNotInBundle() {
+    assertEquals(String.class.getName(),
+        UiLibraryCacheGenerationUtils.getComponentVersion("component"));
+  }
+}
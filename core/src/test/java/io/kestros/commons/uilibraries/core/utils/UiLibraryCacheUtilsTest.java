@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.kestros.commons.uilibraries.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.kestros.commons.uilibraries.core.services.UiLibraryContentEncoding;
+import org.junit.Test;
+
+public class UiLibraryCacheUtilsTest {
+
+  @Test
+  public void testGetETag() {
+    assertEquals("\"2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824\"",
+        UiLibraryCacheUtils.getETag("hello"));
+  }
+
+  @Test
+  public void testGetETagWhenContentDiffers() {
+    assertNotEquals(UiLibraryCacheUtils.getETag("body{}"), UiLibraryCacheUtils.getETag("div{}"));
+  }
+
+  @Test
+  public void testIsETagMatch() {
+    assertTrue(UiLibraryCacheUtils.isETagMatch("\"abc\"", "\"abc\""));
+  }
+
+  @Test
+  public void testIsETagMatchWhenMultipleETagsRequested() {
+    assertTrue(UiLibraryCacheUtils.isETagMatch("\"xyz\", \"abc\"", "\"abc\""));
+  }
+
+  @Test
+  public void testIsETagMatchWhenWeakETagRequested() {
+    assertTrue(UiLibraryCacheUtils.isETagMatch("W/\"abc\"", "\"abc\""));
+  }
+
+  @Test
+  public void testIsETagMatchWhenWildcard() {
+    assertTrue(UiLibraryCacheUtils.isETagMatch("*", "\"abc\""));
+  }
+
+  @Test
+  public void testIsETagMatchWhenNotMatching() {
+    assertFalse(UiLibraryCacheUtils.isETagMatch("\"xyz\"", "\"abc\""));
+  }
+
+  @Test
+  public void testIsETagMatchWhenETagIsEmpty() {
+    assertFalse(UiLibraryCacheUtils.isETagMatch("*", ""));
+  }
+
+  @Test
+  public void testGetAcceptedContentEncoding() {
+    assertEquals(UiLibraryContentEncoding.GZIP,
+        UiLibraryCacheUtils.getAcceptedContentEncoding("gzip, deflate, br"));
+  }
+
+  @Test
+  public void testGetAcceptedContentEncodingWhenGzipIsRejected() {
+    assertEquals(UiLibraryContentEncoding.IDENTITY,
+        UiLibraryCacheUtils.getAcceptedContentEncoding("deflate, gzip;q=0"));
+  }
+
+  @Test
+  public void testGetAcceptedContentEncodingWhenHeaderIsMissing() {
+    assertEquals(UiLibraryContentEncoding.IDENTITY,
+        UiLibraryCacheUtils.getAcceptedContentEncoding(null));
+  }
+
+  @Test
+  public void testGetFingerprint() {
+    assertEquals("2cf24dba5fb0a30e", UiLibraryCacheUtils.getFingerprint(
+        "\"2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824\""));
+  }
+
+  @Test
+  public void testGetFingerprintWhenETagIsNotAContentHash() {
+    assertEquals("", UiLibraryCacheUtils.getFingerprint("\"etag\""));
+  }
+
+  @Test
+  public void testIsFingerprint() {
+    assertTrue(UiLibraryCacheUtils.isFingerprint("2cf24dba5fb0a30e"));
+    assertFalse(UiLibraryCacheUtils.isFingerprint("min"));
+    assertFalse(UiLibraryCacheUtils.isFingerprint("2cf24dba5fb0a30e26"));
+  }
+
+  @Test
+  public void testGetFingerprintedPath() {
+    assertEquals("/ui-library.2cf24dba5fb0a30e.css",
+        UiLibraryCacheUtils.getFingerprintedPath("/ui-library", "2cf24dba5fb0a30e", false,
+            ".css"));
+    assertEquals("/ui-library.2cf24dba5fb0a30e.min.js",
+        UiLibraryCacheUtils.getFingerprintedPath("/ui-library", "2cf24dba5fb0a30e", true, ".js"));
+  }
+}